@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.cache;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.metrics.ChunkCacheMetrics;
+import org.apache.cassandra.utils.FastByteOperations;
+import org.apache.cassandra.utils.memory.MemoryUtil;
+
+/**
+ * A cache of decompressed sstable chunks, shared by all the compressed files and keyed by the path of the file and
+ * the position of the chunk in it.
+ *
+ * Chunks are kept off-heap and copied into the buffer of the reader on a hit. An entry is reference counted, so that
+ * its memory is only freed once it has been evicted or invalidated and no reader is copying it anymore.
+ */
+//解压一个chunk要比复制它慢得多，热点chunk被反复读取时只需解压一次
+public class ChunkCache implements CacheSize
+{
+    private static final Logger logger = LoggerFactory.getLogger(ChunkCache.class);
+
+    public static final String TYPE = "ChunkCache";
+
+    public static final ChunkCache instance = new ChunkCache(DatabaseDescriptor.getChunkCacheSizeInMB() * 1024 * 1024);
+
+    private final ConcurrentLinkedHashMap<Key, Chunk> map;
+    public final ChunkCacheMetrics metrics;
+
+    private ChunkCache(long capacity)
+    {
+        logger.info("Initializing chunk cache with capacity of {} MBs.", capacity / 1024 / 1024);
+
+        metrics = new ChunkCacheMetrics(TYPE, this);
+        map = new ConcurrentLinkedHashMap.Builder<Key, Chunk>()
+              .weigher(chunk -> chunk.buffer.capacity())
+              .maximumWeightedCapacity(capacity)
+              .concurrencyLevel(ConcurrentLinkedHashCache.DEFAULT_CONCURENCY_LEVEL)
+              .listener((key, chunk) ->
+                        {
+                            metrics.evictions.mark();
+                            chunk.release();
+                        })
+              .build();
+    }
+
+    /**
+     * Copies the cached chunk of the given file at the given position, if any, into the target buffer, which is
+     * then ready to be read from its start.
+     *
+     * @return whether the chunk was cached
+     */
+    public boolean read(String path, long position, ByteBuffer target)
+    {
+        if (capacity() == 0)
+            return false;
+
+        metrics.requests.mark();
+        Chunk chunk = map.get(new Key(path, position));
+        if (chunk == null || !chunk.ref())
+        {
+            metrics.misses.mark();
+            return false;
+        }
+
+        try
+        {
+            int length = chunk.buffer.capacity();
+            target.clear();
+            FastByteOperations.copy(chunk.buffer, 0, target, 0, length);
+            target.limit(length);
+        }
+        finally
+        {
+            chunk.release();
+        }
+        metrics.hits.mark();
+        return true;
+    }
+
+    /**
+     * Caches a copy of the remaining bytes of the given buffer, the decompressed chunk of the given file at the given
+     * position.
+     */
+    public void put(String path, long position, ByteBuffer decompressed)
+    {
+        int length = decompressed.remaining();
+        if (capacity() == 0 || length == 0)
+            return;
+
+        Chunk chunk = new Chunk(length);
+        FastByteOperations.copy(decompressed, decompressed.position(), chunk.buffer, 0, length);
+        if (map.putIfAbsent(new Key(path, position), chunk) != null)
+            chunk.release();
+    }
+
+    /**
+     * Drops the chunks of the given file, once it is not read anymore.
+     */
+    public void invalidateFile(String path)
+    {
+        if (map.isEmpty())
+            return;
+
+        for (Key key : map.keySet())
+        {
+            if (key.path.equals(path))
+                invalidate(key);
+        }
+    }
+
+    public void clear()
+    {
+        for (Key key : map.keySet())
+            invalidate(key);
+    }
+
+    private void invalidate(Key key)
+    {
+        Chunk chunk = map.remove(key);
+        if (chunk != null)
+            chunk.release();
+    }
+
+    @VisibleForTesting
+    public boolean contains(String path, long position)
+    {
+        return map.containsKey(new Key(path, position));
+    }
+
+    public long capacity()
+    {
+        return map.capacity();
+    }
+
+    public void setCapacity(long capacity)
+    {
+        map.setCapacity(capacity);
+    }
+
+    public int size()
+    {
+        return map.size();
+    }
+
+    public long weightedSize()
+    {
+        return map.weightedSize();
+    }
+
+    private static final class Key
+    {
+        final String path;
+        final long position;
+
+        Key(String path, long position)
+        {
+            this.path = path;
+            this.position = position;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+
+            Key that = (Key) o;
+            return position == that.position && path.equals(that.path);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * path.hashCode() + Long.hashCode(position);
+        }
+    }
+
+    private static final class Chunk
+    {
+        final long address;
+        final ByteBuffer buffer;
+        // one reference is held by the cache itself, the others by the readers copying the chunk
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        Chunk(int length)
+        {
+            address = MemoryUtil.allocate(length);
+            buffer = MemoryUtil.getByteBuffer(address, length);
+        }
+
+        boolean ref()
+        {
+            while (true)
+            {
+                int count = references.get();
+                if (count <= 0)
+                    return false;
+                if (references.compareAndSet(count, count + 1))
+                    return true;
+            }
+        }
+
+        void release()
+        {
+            if (references.decrementAndGet() == 0)
+                MemoryUtil.free(address);
+        }
+    }
+}
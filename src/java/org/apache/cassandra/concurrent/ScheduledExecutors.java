@@ -26,6 +26,11 @@ public class ScheduledExecutors
      * This pool is used for periodic short (sub-second) tasks.
      */
      public static final DebuggableScheduledThreadPoolExecutor scheduledTasks = new DebuggableScheduledThreadPoolExecutor("ScheduledTasks");
+    static
+    {
+        // request timeouts are scheduled here and almost always cancelled, don't keep them queued until they expire
+        scheduledTasks.setRemoveOnCancelPolicy(true);
+    }
 
     /**
      * This executor is used for tasks that can have longer execution times, and usually are non periodic.
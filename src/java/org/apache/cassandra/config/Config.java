@@ -80,6 +80,9 @@ public class Config
 
     public volatile Long range_request_timeout_in_ms = 10000L;
 
+    public volatile boolean adaptive_range_reads = false;
+    public volatile int range_read_max_concurrency = 32;
+
     public volatile Long write_request_timeout_in_ms = 2000L;
 
     public volatile Long counter_write_request_timeout_in_ms = 5000L;
@@ -106,6 +109,7 @@ public class Config
     public Integer memtable_heap_space_in_mb;
     public Integer memtable_offheap_space_in_mb;
     public Float memtable_cleanup_threshold = null;
+    public Integer memtable_shards = 1;
 
     public Integer storage_port = 7000;
     public Integer ssl_storage_port = 7001;
@@ -138,8 +142,15 @@ public class Config
     public Integer native_transport_port_ssl = null;
     public Integer native_transport_max_threads = 128;
     public Integer native_transport_max_frame_size_in_mb = 256;
+    public volatile boolean native_transport_async_requests = false;
+    public volatile boolean native_transport_batch_requests = false;
     public volatile Long native_transport_max_concurrent_connections = -1L;
     public volatile Long native_transport_max_concurrent_connections_per_ip = -1L;
+    public volatile Long native_transport_max_concurrent_requests_in_bytes_per_connection = -1L;
+    public volatile Long native_transport_max_concurrent_requests_in_bytes_per_ip = -1L;
+    public volatile Long native_transport_max_concurrent_requests_in_bytes = -1L;
+    public volatile boolean native_transport_throw_on_overload = false;
+    public volatile boolean native_transport_encode_rows_on_read = false;
 
     @Deprecated
     public Integer thrift_max_message_length_in_mb = 16; //代码中没有地方使用了
@@ -150,16 +161,23 @@ public class Config
 
     /* if the size of columns or super-columns are more than this, indexing will kick in */
     public Integer column_index_size_in_kb = 64;
+    public volatile int column_index_cache_size_in_kb = 2;
     public volatile int batch_size_warn_threshold_in_kb = 5;
     public volatile int batch_size_fail_threshold_in_kb = 50;
     public Integer concurrent_compactors;
     public volatile Integer compaction_throughput_mb_per_sec = 16;
     public volatile Integer compaction_large_partition_warning_threshold_mb = 100;
+    public Integer compaction_subranges = 1;
+    public Integer compaction_subrange_min_size_in_mb = 64;
+    public Integer validation_subranges = 1;
+    public RepairRowHash repair_row_hash = RepairRowHash.sha256;
+    public boolean persist_validation_trees = false;
 
     public Integer max_streaming_retries = 3;
 
     public volatile Integer stream_throughput_outbound_megabits_per_sec = 200;
     public volatile Integer inter_dc_stream_throughput_outbound_megabits_per_sec = 0;
+    public boolean stream_entire_sstables = true;
 
     public String[] data_file_directories = new String[0];
 
@@ -171,9 +189,14 @@ public class Config
     public CommitLogSync commitlog_sync;
     public Double commitlog_sync_batch_window_in_ms;
     public Integer commitlog_sync_period_in_ms;
+    public Double commitlog_sync_group_window_in_ms;
+    public Integer commitlog_sync_group_threshold_in_kb = 1024;
     public int commitlog_segment_size_in_mb = 32;
     public ParameterizedClass commitlog_compression;
     public int commitlog_max_compression_buffers_in_pool = 3;
+    public boolean commitlog_direct_io = false;
+    public int commitlog_replay_parallelism = 1;
+    public Set<String> commitlog_dedicated_tables = Sets.newHashSet();
     public TransparentDataEncryptionOptions transparent_data_encryption_options = new TransparentDataEncryptionOptions();
 
     public Integer max_mutation_size_in_kb;
@@ -186,6 +209,8 @@ public class Config
     public Integer dynamic_snitch_update_interval_in_ms = 100;
     public Integer dynamic_snitch_reset_interval_in_ms = 600000;
     public Double dynamic_snitch_badness_threshold = 0.1;
+    public volatile boolean speculative_retry_per_replica = false;
+    public volatile boolean speculative_range_reads = false;
 
     public String request_scheduler;
     public RequestSchedulerId request_scheduler_id;
@@ -198,6 +223,8 @@ public class Config
 
     public InternodeCompression internode_compression = InternodeCompression.none;
 
+    public InternodeTransport internode_transport = InternodeTransport.blocking;
+
     @Deprecated
     public Integer index_interval = null;
 
@@ -225,6 +252,8 @@ public class Config
     public volatile int counter_cache_save_period = 7200;
     public volatile int counter_cache_keys_to_save = Integer.MAX_VALUE;
 
+    public Long chunk_cache_size_in_mb = null;
+
     @Deprecated
     public String memory_allocator;
 
@@ -252,6 +281,12 @@ public class Config
     public volatile Long index_summary_capacity_in_mb;
     public volatile int index_summary_resize_interval_in_minutes = 60;
 
+    /**
+     * The format new sstables are written in: "big", or "trie" to replace the index summary with an on-disk
+     * partition index.
+     */
+    public String sstable_format = "big";
+
     public int gc_warn_threshold_in_ms = 0;
 
     // TTL for different types of trace events.
@@ -332,13 +367,25 @@ public class Config
     public enum CommitLogSync
     {
         periodic,
-        batch
+        batch,
+        group
     }
+    public enum RepairRowHash
+    {
+        sha256,
+        murmur3
+    }
+
     public enum InternodeCompression
     {
         all, none, dc
     }
 
+    public enum InternodeTransport
+    {
+        blocking, netty
+    }
+
     public enum DiskAccessMode
     {
         auto,
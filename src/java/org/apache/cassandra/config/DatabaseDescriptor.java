@@ -100,6 +100,7 @@ public class DatabaseDescriptor
     private static RequestSchedulerOptions requestSchedulerOptions; //未见使用
 
     private static long keyCacheSizeInMB;
+    private static long chunkCacheSizeInMB;
     private static long counterCacheSizeInMB;
     private static long indexSummaryCapacityInMB;
 
@@ -275,7 +276,7 @@ public class DatabaseDescriptor
     {
         conf = config;
 
-        //必须配置commitlog_sync参数, 取值是batch或periodic，
+        //必须配置commitlog_sync参数, 取值是batch, group或periodic，
         //如果是batch必需设置commitlog_sync_batch_window_in_ms且不能设置commitlog_sync_period_in_ms;
         //如果是periodic必需设置commitlog_sync_period_in_ms且不能设置commitlog_sync_batch_window_in_ms;
         if (conf.commitlog_sync == null)
@@ -295,6 +296,22 @@ public class DatabaseDescriptor
             }
             logger.debug("Syncing log with a batch window of {}", conf.commitlog_sync_batch_window_in_ms);
         }
+        else if (conf.commitlog_sync == Config.CommitLogSync.group)
+        {
+            if (conf.commitlog_sync_group_window_in_ms == null || conf.commitlog_sync_group_window_in_ms < 1)
+            {
+                throw new ConfigurationException("Missing value for commitlog_sync_group_window_in_ms: Double of at least 1 expected.", false);
+            }
+            else if (conf.commitlog_sync_period_in_ms != null || conf.commitlog_sync_batch_window_in_ms != null)
+            {
+                throw new ConfigurationException("Group sync specified, but commitlog_sync_period_in_ms or commitlog_sync_batch_window_in_ms found. Only specify commitlog_sync_group_window_in_ms when using group sync", false);
+            }
+            else if (conf.commitlog_sync_group_threshold_in_kb == null || conf.commitlog_sync_group_threshold_in_kb <= 0)
+            {
+                throw new ConfigurationException("commitlog_sync_group_threshold_in_kb must be positive, but was " + conf.commitlog_sync_group_threshold_in_kb, false);
+            }
+            logger.debug("Syncing log with a group window of {} and threshold of {}KB", conf.commitlog_sync_group_window_in_ms, conf.commitlog_sync_group_threshold_in_kb);
+        }
         else
         {
             if (conf.commitlog_sync_period_in_ms == null)
@@ -308,6 +325,17 @@ public class DatabaseDescriptor
             logger.debug("Syncing log with a period of {}", conf.commitlog_sync_period_in_ms);
         }
 
+        if (conf.commitlog_replay_parallelism < 1)
+            throw new ConfigurationException("commitlog_replay_parallelism must be at least 1, but was " + conf.commitlog_replay_parallelism, false);
+
+        if (conf.commitlog_dedicated_tables == null)
+            conf.commitlog_dedicated_tables = Collections.emptySet();
+        for (String table : conf.commitlog_dedicated_tables)
+        {
+            if (table == null || table.split("\\.", -1).length != 2)
+                throw new ConfigurationException("commitlog_dedicated_tables entries must be of the form keyspace.table, but found " + table, false);
+        }
+
         /* evaluate the DiskAccessMode Config directive, which also affects indexAccessMode selection */
         if (conf.disk_access_mode == Config.DiskAccessMode.auto) //自动侦测，64位系统使用mmap
         {
@@ -600,6 +628,30 @@ public class DatabaseDescriptor
         if (conf.memtable_flush_writers < 1)
             throw new ConfigurationException("memtable_flush_writers must be at least 1, but was " + conf.memtable_flush_writers, false);
 
+        if (conf.range_read_max_concurrency < 1)
+            throw new ConfigurationException("range_read_max_concurrency must be at least 1, but was " + conf.range_read_max_concurrency, false);
+
+        if (conf.memtable_shards == null || conf.memtable_shards < 1)
+            throw new ConfigurationException("memtable_shards must be at least 1, but was " + conf.memtable_shards, false);
+
+        if (conf.compaction_subranges == null || conf.compaction_subranges < 1)
+            throw new ConfigurationException("compaction_subranges must be at least 1, but was " + conf.compaction_subranges, false);
+
+        if (conf.compaction_subrange_min_size_in_mb == null || conf.compaction_subrange_min_size_in_mb < 0)
+            throw new ConfigurationException("compaction_subrange_min_size_in_mb must not be negative, but was " + conf.compaction_subrange_min_size_in_mb, false);
+
+        if (conf.validation_subranges == null || conf.validation_subranges < 1)
+            throw new ConfigurationException("validation_subranges must be at least 1, but was " + conf.validation_subranges, false);
+
+        try
+        {
+            sstable_format = SSTableFormat.Type.validate(conf.sstable_format);
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new ConfigurationException("Unknown sstable_format " + conf.sstable_format + ", must be one of big or trie", false);
+        }
+
         if (conf.memtable_cleanup_threshold == null)
             conf.memtable_cleanup_threshold = (float) (1.0 / (1 + conf.memtable_flush_writers));
 
@@ -657,6 +709,22 @@ public class DatabaseDescriptor
                     + conf.counter_cache_size_in_mb + "', supported values are <integer> >= 0.", false);
         }
 
+        try
+        {
+            // if chunk_cache_size_in_mb option was set to "auto" then size of the cache should be "min(5% of Heap (in MB), 256MB)
+            chunkCacheSizeInMB = (conf.chunk_cache_size_in_mb == null)
+                    ? Math.min(Math.max(1, (int) (Runtime.getRuntime().totalMemory() * 0.05 / 1024 / 1024)), 256)
+                    : conf.chunk_cache_size_in_mb;
+
+            if (chunkCacheSizeInMB < 0)
+                throw new NumberFormatException(); // to escape duplicating error message
+        }
+        catch (NumberFormatException e)
+        {
+            throw new ConfigurationException("chunk_cache_size_in_mb option was set incorrectly to '"
+                    + conf.chunk_cache_size_in_mb + "', supported values are <integer> >= 0.", false);
+        }
+
         // if set to empty/"auto" then use 5% of Heap size
         indexSummaryCapacityInMB = (conf.index_summary_capacity_in_mb == null)
             ? Math.max(1, (int) (Runtime.getRuntime().totalMemory() * 0.05 / 1024 / 1024))
@@ -900,6 +968,11 @@ public class DatabaseDescriptor
         return conf.column_index_size_in_kb * 1024;
     }
 
+    public static int getColumnIndexCacheSize()
+    {
+        return conf.column_index_cache_size_in_kb * 1024;
+    }
+
     public static int getBatchSizeWarnThreshold()
     {
         return conf.batch_size_warn_threshold_in_kb * 1024;
@@ -1051,6 +1124,27 @@ public class DatabaseDescriptor
         conf.range_request_timeout_in_ms = timeOutInMillis;
     }
 
+    public static boolean getAdaptiveRangeReads()
+    {
+        return conf.adaptive_range_reads;
+    }
+
+    public static void setAdaptiveRangeReads(boolean adaptive)
+    {
+        conf.adaptive_range_reads = adaptive;
+    }
+
+    public static int getRangeReadMaxConcurrency()
+    {
+        return conf.range_read_max_concurrency;
+    }
+
+    @VisibleForTesting
+    public static void setRangeReadMaxConcurrency(int concurrency)
+    {
+        conf.range_read_max_concurrency = concurrency;
+    }
+
     public static long getWriteRpcTimeout()
     {
         return conf.write_request_timeout_in_ms;
@@ -1171,6 +1265,17 @@ public class DatabaseDescriptor
             return conf.memtable_flush_writers;
     }
 
+    public static int getMemtableShards()
+    {
+        return conf.memtable_shards;
+    }
+
+    @VisibleForTesting
+    public static void setMemtableShards(int shards)
+    {
+        conf.memtable_shards = shards;
+    }
+
     public static int getConcurrentCompactors()
     {
         return conf.concurrent_compactors;
@@ -1188,11 +1293,77 @@ public class DatabaseDescriptor
 
     public static int getCompactionLargePartitionWarningThreshold() { return conf.compaction_large_partition_warning_threshold_mb * 1024 * 1024; }
 
+    public static int getCompactionSubranges()
+    {
+        return conf.compaction_subranges;
+    }
+
+    @VisibleForTesting
+    public static void setCompactionSubranges(int subranges)
+    {
+        conf.compaction_subranges = subranges;
+    }
+
+    public static long getCompactionSubrangeMinSize()
+    {
+        return conf.compaction_subrange_min_size_in_mb * (1L << 20);
+    }
+
+    @VisibleForTesting
+    public static void setCompactionSubrangeMinSizeInMB(int sizeInMB)
+    {
+        conf.compaction_subrange_min_size_in_mb = sizeInMB;
+    }
+
+    public static int getValidationSubranges()
+    {
+        return conf.validation_subranges;
+    }
+
+    @VisibleForTesting
+    public static void setValidationSubranges(int subranges)
+    {
+        conf.validation_subranges = subranges;
+    }
+
+    public static Config.RepairRowHash getRepairRowHash()
+    {
+        return conf.repair_row_hash;
+    }
+
+    @VisibleForTesting
+    public static void setRepairRowHash(Config.RepairRowHash rowHash)
+    {
+        conf.repair_row_hash = rowHash;
+    }
+
+    public static boolean getPersistValidationTrees()
+    {
+        return conf.persist_validation_trees;
+    }
+
+    @VisibleForTesting
+    public static void setPersistValidationTrees(boolean persist)
+    {
+        conf.persist_validation_trees = persist;
+    }
+
     public static boolean getDisableSTCSInL0()
     {
         return Boolean.getBoolean("cassandra.disable_stcs_in_l0");
     }
 
+    public static boolean streamEntireSSTables()
+    {
+        return conf.stream_entire_sstables;
+    }
+
+    @VisibleForTesting
+    public static void setStreamEntireSSTables(boolean streamEntireSSTables)
+    {
+        conf.stream_entire_sstables = streamEntireSSTables;
+    }
+
     public static int getStreamThroughputOutboundMegabitsPerSec()
     {
         return conf.stream_throughput_outbound_megabits_per_sec;
@@ -1238,6 +1409,42 @@ public class DatabaseDescriptor
         return conf.commitlog_max_compression_buffers_in_pool;
     }
 
+    public static boolean getCommitLogDirectIO()
+    {
+        return conf.commitlog_direct_io;
+    }
+
+    @VisibleForTesting
+    public static void setCommitLogDirectIO(boolean directIO)
+    {
+        conf.commitlog_direct_io = directIO;
+    }
+
+    public static int getCommitLogReplayParallelism()
+    {
+        return conf.commitlog_replay_parallelism;
+    }
+
+    @VisibleForTesting
+    public static void setCommitLogReplayParallelism(int parallelism)
+    {
+        conf.commitlog_replay_parallelism = parallelism;
+    }
+
+    /**
+     * @return the names, as keyspace.table, of the tables with their own set of commit log segments
+     */
+    public static Set<String> getCommitLogDedicatedTables()
+    {
+        return conf.commitlog_dedicated_tables;
+    }
+
+    @VisibleForTesting
+    public static void setCommitLogDedicatedTables(Set<String> tables)
+    {
+        conf.commitlog_dedicated_tables = tables;
+    }
+
     public static int getMaxMutationSize()
     {
         return conf.max_mutation_size_in_kb * 1024;
@@ -1403,6 +1610,27 @@ public class DatabaseDescriptor
         return conf.native_transport_max_frame_size_in_mb * 1024 * 1024;
     }
 
+    public static boolean getNativeTransportAsyncRequests()
+    {
+        return conf.native_transport_async_requests;
+    }
+
+    public static void setNativeTransportAsyncRequests(boolean async)
+    {
+        conf.native_transport_async_requests = async;
+    }
+
+    public static boolean getNativeTransportBatchRequests()
+    {
+        return conf.native_transport_batch_requests;
+    }
+
+    @VisibleForTesting
+    public static void setNativeTransportBatchRequests(boolean batch)
+    {
+        conf.native_transport_batch_requests = batch;
+    }
+
     public static Long getNativeTransportMaxConcurrentConnections()
     {
         return conf.native_transport_max_concurrent_connections;
@@ -1422,6 +1650,57 @@ public class DatabaseDescriptor
         conf.native_transport_max_concurrent_connections_per_ip = native_transport_max_concurrent_connections_per_ip;
     }
 
+    public static long getNativeTransportMaxConcurrentRequestsInBytesPerConnection()
+    {
+        return conf.native_transport_max_concurrent_requests_in_bytes_per_connection;
+    }
+
+    public static void setNativeTransportMaxConcurrentRequestsInBytesPerConnection(long maxBytes)
+    {
+        conf.native_transport_max_concurrent_requests_in_bytes_per_connection = maxBytes;
+    }
+
+    public static long getNativeTransportMaxConcurrentRequestsInBytesPerIp()
+    {
+        return conf.native_transport_max_concurrent_requests_in_bytes_per_ip;
+    }
+
+    public static void setNativeTransportMaxConcurrentRequestsInBytesPerIp(long maxBytes)
+    {
+        conf.native_transport_max_concurrent_requests_in_bytes_per_ip = maxBytes;
+    }
+
+    public static long getNativeTransportMaxConcurrentRequestsInBytes()
+    {
+        return conf.native_transport_max_concurrent_requests_in_bytes;
+    }
+
+    public static void setNativeTransportMaxConcurrentRequestsInBytes(long maxBytes)
+    {
+        conf.native_transport_max_concurrent_requests_in_bytes = maxBytes;
+    }
+
+    public static boolean getNativeTransportThrowOnOverload()
+    {
+        return conf.native_transport_throw_on_overload;
+    }
+
+    public static void setNativeTransportThrowOnOverload(boolean throwOnOverload)
+    {
+        conf.native_transport_throw_on_overload = throwOnOverload;
+    }
+
+    public static boolean getNativeTransportEncodeRowsOnRead()
+    {
+        return conf.native_transport_encode_rows_on_read;
+    }
+
+    @VisibleForTesting
+    public static void setNativeTransportEncodeRowsOnRead(boolean encodeRowsOnRead)
+    {
+        conf.native_transport_encode_rows_on_read = encodeRowsOnRead;
+    }
+
     public static double getCommitLogSyncBatchWindow()
     {
         return conf.commitlog_sync_batch_window_in_ms;
@@ -1432,6 +1711,27 @@ public class DatabaseDescriptor
         conf.commitlog_sync_batch_window_in_ms = windowMillis;
     }
 
+    public static double getCommitLogSyncGroupWindow()
+    {
+        return conf.commitlog_sync_group_window_in_ms;
+    }
+
+    public static void setCommitLogSyncGroupWindow(double windowMillis)
+    {
+        conf.commitlog_sync_group_window_in_ms = windowMillis;
+    }
+
+    public static long getCommitLogSyncGroupThreshold()
+    {
+        return conf.commitlog_sync_group_threshold_in_kb * 1024L;
+    }
+
+    @VisibleForTesting
+    public static void setCommitLogSyncGroupThresholdInKB(int thresholdInKB)
+    {
+        conf.commitlog_sync_group_threshold_in_kb = thresholdInKB;
+    }
+
     public static int getCommitLogSyncPeriod()
     {
         return conf.commitlog_sync_period_in_ms;
@@ -1596,6 +1896,26 @@ public class DatabaseDescriptor
         conf.dynamic_snitch_badness_threshold = dynamicBadnessThreshold;
     }
 
+    public static boolean getSpeculativeRetryPerReplica()
+    {
+        return conf.speculative_retry_per_replica;
+    }
+
+    public static void setSpeculativeRetryPerReplica(boolean perReplica)
+    {
+        conf.speculative_retry_per_replica = perReplica;
+    }
+
+    public static boolean getSpeculativeRangeReads()
+    {
+        return conf.speculative_range_reads;
+    }
+
+    public static void setSpeculativeRangeReads(boolean speculativeRangeReads)
+    {
+        conf.speculative_range_reads = speculativeRangeReads;
+    }
+
     public static ServerEncryptionOptions getServerEncryptionOptions()
     {
         return conf.server_encryption_options;
@@ -1708,6 +2028,11 @@ public class DatabaseDescriptor
         return keyCacheSizeInMB;
     }
 
+    public static long getChunkCacheSizeInMB()
+    {
+        return chunkCacheSizeInMB;
+    }
+
     public static long getIndexSummaryCapacityInMB()
     {
         return indexSummaryCapacityInMB;
@@ -1814,6 +2139,23 @@ public class DatabaseDescriptor
         return conf.internode_compression;
     }
 
+    @VisibleForTesting
+    public static void setInternodeCompression(Config.InternodeCompression compression)
+    {
+        conf.internode_compression = compression;
+    }
+
+    public static Config.InternodeTransport getInternodeTransport()
+    {
+        return conf.internode_transport;
+    }
+
+    @VisibleForTesting
+    public static void setInternodeTransport(Config.InternodeTransport transport)
+    {
+        conf.internode_transport = transport;
+    }
+
     public static boolean getInterDCTcpNoDelay()
     {
         return conf.inter_dc_tcp_nodelay;
@@ -1825,6 +2167,12 @@ public class DatabaseDescriptor
         return sstable_format;
     }
 
+    @VisibleForTesting
+    public static void setSSTableFormat(SSTableFormat.Type format)
+    {
+        sstable_format = format;
+    }
+
     public static MemtablePool getMemtableAllocatorPool()
     {
         long heapLimit = ((long) conf.memtable_heap_space_in_mb) << 20;
@@ -17,6 +17,11 @@
  */
 package org.apache.cassandra.cql3;
 
+import java.util.concurrent.Executor;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
 import org.apache.cassandra.cql3.functions.Function;
 import org.apache.cassandra.exceptions.*;
 import org.apache.cassandra.service.ClientState;
@@ -55,6 +60,32 @@ public interface CQLStatement
      */
     public ResultMessage execute(QueryState state, QueryOptions options) throws RequestValidationException, RequestExecutionException;
 
+    /**
+     * Execute the statement without waiting on the replicas if the statement supports it. By default, this simply
+     * executes the statement synchronously.
+     *
+     * @param state the current query state
+     * @param options options for this query (consistency, variables, pageSize, ...)
+     * @param executor the executor running the work that follows the replica responses
+     * @return a future on the result of the statement, or on null if there is no result
+     */
+    public default ListenableFuture<ResultMessage> executeAsync(QueryState state, QueryOptions options, Executor executor)
+    throws RequestValidationException, RequestExecutionException
+    {
+        return Futures.immediateFuture(execute(state, options));
+    }
+
+    /**
+     * Whether {@link #executeAsync} returns without waiting on the replicas for the given options, rather than
+     * executing the statement synchronously.
+     *
+     * @param options options for this query (consistency, variables, pageSize, ...)
+     */
+    public default boolean executesAsync(QueryOptions options) throws RequestValidationException
+    {
+        return false;
+    }
+
     /**
      * Variant of execute used for internal query against the system tables, and thus only query the local node.
      *
@@ -19,6 +19,10 @@ package org.apache.cassandra.cql3;
 
 import java.nio.ByteBuffer;
 import java.util.Map;
+import java.util.concurrent.Executor;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import org.apache.cassandra.cql3.statements.BatchStatement;
 import org.apache.cassandra.cql3.statements.ParsedStatement;
@@ -35,6 +39,21 @@ public interface QueryHandler
                           QueryOptions options,
                           Map<String, ByteBuffer> customPayload) throws RequestExecutionException, RequestValidationException;
 
+    /**
+     * Variant of process that doesn't wait on the replicas when the statement supports it. By default, this simply
+     * processes the query synchronously.
+     *
+     * @param executor the executor running the work that follows the replica responses
+     */
+    default ListenableFuture<ResultMessage> processAsync(String query,
+                                                         QueryState state,
+                                                         QueryOptions options,
+                                                         Map<String, ByteBuffer> customPayload,
+                                                         Executor executor) throws RequestExecutionException, RequestValidationException
+    {
+        return Futures.immediateFuture(process(query, state, options, customPayload));
+    }
+
     ResultMessage.Prepared prepare(String query,
                                    QueryState state,
                                    Map<String, ByteBuffer> customPayload) throws RequestValidationException;
@@ -48,6 +67,21 @@ public interface QueryHandler
                                   QueryOptions options,
                                   Map<String, ByteBuffer> customPayload) throws RequestExecutionException, RequestValidationException;
 
+    /**
+     * Variant of processPrepared that doesn't wait on the replicas when the statement supports it. By default, this
+     * simply processes the statement synchronously.
+     *
+     * @param executor the executor running the work that follows the replica responses
+     */
+    default ListenableFuture<ResultMessage> processPreparedAsync(CQLStatement statement,
+                                                                 QueryState state,
+                                                                 QueryOptions options,
+                                                                 Map<String, ByteBuffer> customPayload,
+                                                                 Executor executor) throws RequestExecutionException, RequestValidationException
+    {
+        return Futures.immediateFuture(processPrepared(statement, state, options, customPayload));
+    }
+
     ResultMessage processBatch(BatchStatement statement,
                                QueryState state,
                                BatchQueryOptions options,
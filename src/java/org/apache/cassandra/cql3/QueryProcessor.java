@@ -21,13 +21,17 @@ import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
 import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -91,6 +95,10 @@ public class QueryProcessor implements QueryHandler
     // bother with expiration on those.
     private static final ConcurrentMap<String, ParsedStatement.Prepared> internalStatements = new ConcurrentHashMap<>();
 
+    // The ids of the statements persisted before the restart that haven't been prepared again yet. Only those are
+    // looked up in the system table on a cache miss.
+    private static final Set<MD5Digest> unloadedPersistedStatements = ConcurrentHashMap.newKeySet();
+
     // Direct calls to processStatement do not increment the preparedStatementsExecuted/regularStatementsExecuted
     // counters. Callers of processStatement are responsible for correctly notifying metrics
     public static final CQLMetrics metrics = new CQLMetrics();
@@ -108,6 +116,11 @@ public class QueryProcessor implements QueryHandler
                                  {
                                      metrics.preparedStatementsEvicted.inc();
                                      lastMinuteEvictionsCount.incrementAndGet();
+                                     // not on the thread caching a new statement, unless it has been cached again since
+                                     ScheduledExecutors.optionalTasks.execute(() -> {
+                                         if (!preparedStatements.containsKey(md5Digest))
+                                             SystemKeyspace.removePreparedStatement(md5Digest);
+                                     });
                                  }
                              }).build();
 
@@ -142,6 +155,22 @@ public class QueryProcessor implements QueryHandler
         return preparedStatements.size() + thriftPreparedStatements.size();
     }
 
+    @VisibleForTesting
+    public static void clearPreparedStatementsCache()
+    {
+        preparedStatements.clear();
+        thriftPreparedStatements.clear();
+    }
+
+    /**
+     * Records the prepared statements persisted before the restart, so that they can be prepared again on their first
+     * execution. Must be called once the system keyspace is readable.
+     */
+    public static void loadPersistedStatementIds()
+    {
+        unloadedPersistedStatements.addAll(SystemKeyspace.loadPreparedStatementIds());
+    }
+
     // Work around initialization dependency
     private static enum InternalStateInstance
     {
@@ -169,12 +198,56 @@ public class QueryProcessor implements QueryHandler
 
     public ParsedStatement.Prepared getPrepared(MD5Digest id)
     {
-        return preparedStatements.get(id);
+        ParsedStatement.Prepared prepared = preparedStatements.get(id);
+        if (prepared != null)
+        {
+            metrics.preparedStatementsHits.mark();
+            return prepared;
+        }
+
+        metrics.preparedStatementsMisses.mark();
+        return unloadedPersistedStatements.contains(id) ? reloadPreparedStatement(id) : null;
     }
 
     public ParsedStatement.Prepared getPreparedForThrift(Integer id)
     {
-        return thriftPreparedStatements.get(id);
+        ParsedStatement.Prepared prepared = thriftPreparedStatements.get(id);
+        if (prepared != null)
+            metrics.preparedStatementsHits.mark();
+        else
+            metrics.preparedStatementsMisses.mark();
+        return prepared;
+    }
+
+    /**
+     * Prepares again a statement persisted in the system keyspace but not in the cache, typically because it was
+     * prepared before a restart, so that clients don't have to.
+     */
+    private static ParsedStatement.Prepared reloadPreparedStatement(MD5Digest id)
+    {
+        Pair<String, String> persisted = SystemKeyspace.loadPreparedStatement(id);
+        unloadedPersistedStatements.remove(id);
+        if (persisted == null)
+            return null;
+
+        try
+        {
+            ClientState clientState = ClientState.forInternalCalls();
+            if (persisted.left != null)
+                clientState.setKeyspace(persisted.left);
+
+            ParsedStatement.Prepared prepared = getStatement(persisted.right, clientState);
+            ParsedStatement.Prepared existing = preparedStatements.putIfAbsent(id, prepared);
+            metrics.preparedStatementsReloaded.inc();
+            return existing == null ? prepared : existing;
+        }
+        catch (RequestValidationException e)
+        {
+            // the schema changed in a way that makes the statement invalid, the client will have to prepare it again
+            logger.debug("Dropping persisted prepared statement {}: {}", persisted.right, e.getMessage());
+            SystemKeyspace.removePreparedStatement(id);
+            return null;
+        }
     }
 
     public static void validateKey(ByteBuffer key) throws InvalidRequestException
@@ -206,6 +279,18 @@ public class QueryProcessor implements QueryHandler
         return result == null ? new ResultMessage.Void() : result;
     }
 
+    public ListenableFuture<ResultMessage> processStatementAsync(CQLStatement statement, QueryState queryState, QueryOptions options, Executor executor)
+    throws RequestExecutionException, RequestValidationException
+    {
+        logger.trace("Process {} @CL.{}", statement, options.getConsistency());
+        ClientState clientState = queryState.getClientState();
+        statement.checkAccess(clientState);
+        statement.validate(clientState);
+
+        return Futures.transform(statement.executeAsync(queryState, options, executor),
+                                 (ResultMessage result) -> result == null ? new ResultMessage.Void() : result);
+    }
+
     public static ResultMessage process(String queryString, ConsistencyLevel cl, QueryState queryState)
     throws RequestExecutionException, RequestValidationException
     {
@@ -223,6 +308,22 @@ public class QueryProcessor implements QueryHandler
 
     public ResultMessage process(String queryString, QueryState queryState, QueryOptions options)
     throws RequestExecutionException, RequestValidationException
+    {
+        return processStatement(getStatementForExecution(queryString, queryState, options), queryState, options);
+    }
+
+    public ListenableFuture<ResultMessage> processAsync(String query,
+                                                        QueryState state,
+                                                        QueryOptions options,
+                                                        Map<String, ByteBuffer> customPayload,
+                                                        Executor executor)
+                                                                throws RequestExecutionException, RequestValidationException
+    {
+        return processStatementAsync(getStatementForExecution(query, state, options), state, options, executor);
+    }
+
+    private CQLStatement getStatementForExecution(String queryString, QueryState queryState, QueryOptions options)
+    throws RequestValidationException
     {
         ParsedStatement.Prepared p = getStatement(queryString, queryState.getClientState());
         options.prepare(p.boundNames);
@@ -233,7 +334,7 @@ public class QueryProcessor implements QueryHandler
         if (!queryState.getClientState().isInternal)
             metrics.regularStatementsExecuted.inc();
 
-        return processStatement(prepared, queryState, options);
+        return prepared;
     }
 
     //执行batch时调用
@@ -435,7 +536,8 @@ public class QueryProcessor implements QueryHandler
         else
         {
             MD5Digest statementId = computeId(queryString, keyspace);
-            preparedStatements.put(statementId, prepared);
+            if (preparedStatements.put(statementId, prepared) == null)
+                SystemKeyspace.writePreparedStatement(keyspace, statementId, queryString);
             return new ResultMessage.Prepared(statementId, prepared);
         }
     }
@@ -451,6 +553,23 @@ public class QueryProcessor implements QueryHandler
 
     public ResultMessage processPrepared(CQLStatement statement, QueryState queryState, QueryOptions options)
     throws RequestExecutionException, RequestValidationException
+    {
+        validateBoundVariables(statement, options);
+        return processStatement(statement, queryState, options);
+    }
+
+    public ListenableFuture<ResultMessage> processPreparedAsync(CQLStatement statement,
+                                                                QueryState state,
+                                                                QueryOptions options,
+                                                                Map<String, ByteBuffer> customPayload,
+                                                                Executor executor)
+                                                                        throws RequestExecutionException, RequestValidationException
+    {
+        validateBoundVariables(statement, options);
+        return processStatementAsync(statement, state, options, executor);
+    }
+
+    private static void validateBoundVariables(CQLStatement statement, QueryOptions options) throws InvalidRequestException
     {
         List<ByteBuffer> variables = options.getValues();
         // Check to see if there are any bound variables to verify
@@ -469,7 +588,6 @@ public class QueryProcessor implements QueryHandler
         }
 
         metrics.preparedStatementsExecuted.inc();
-        return processStatement(statement, queryState, options);
     }
 
     public ResultMessage processBatch(BatchStatement statement,
@@ -562,10 +680,28 @@ public class QueryProcessor implements QueryHandler
         private void removeInvalidPreparedStatements(String ksName, String cfName)
         {
             removeInvalidPreparedStatements(internalStatements.values().iterator(), ksName, cfName);
-            removeInvalidPreparedStatements(preparedStatements.values().iterator(), ksName, cfName);
+            removeInvalidPersistedStatements(prepared -> shouldInvalidate(ksName, cfName, prepared.statement));
             removeInvalidPreparedStatements(thriftPreparedStatements.values().iterator(), ksName, cfName);
         }
 
+        /**
+         * Removes the invalidated statements from the cache and from the system table, so that clients prepare them
+         * again. The persisted statements that are not cached are checked against the schema when they are reloaded.
+         */
+        private static void removeInvalidPersistedStatements(Predicate<ParsedStatement.Prepared> isInvalid)
+        {
+            Iterator<Map.Entry<MD5Digest, ParsedStatement.Prepared>> iterator = preparedStatements.entrySet().iterator();
+            while (iterator.hasNext())
+            {
+                Map.Entry<MD5Digest, ParsedStatement.Prepared> entry = iterator.next();
+                if (isInvalid.apply(entry.getValue()))
+                {
+                    iterator.remove();
+                    SystemKeyspace.removePreparedStatement(entry.getKey());
+                }
+            }
+        }
+
         private void removeInvalidPreparedStatements(Iterator<ParsedStatement.Prepared> iterator, String ksName, String cfName)
         {
             while (iterator.hasNext())
@@ -626,8 +762,7 @@ public class QueryProcessor implements QueryHandler
             // matching may change (due to type casting)
             if (Schema.instance.getKSMetaData(ksName).functions.get(new FunctionName(ksName, functionName)).size() > 1)
             {
-                removeInvalidPreparedStatementsForFunction(preparedStatements.values().iterator(), ksName, functionName);
-                removeInvalidPreparedStatementsForFunction(thriftPreparedStatements.values().iterator(), ksName, functionName);
+                removeInvalidPreparedStatementsForFunction(ksName, functionName);
             }
         }
 
@@ -662,16 +797,15 @@ public class QueryProcessor implements QueryHandler
 
         private static void onDropFunctionInternal(String ksName, String functionName, List<AbstractType<?>> argTypes)
         {
-            removeInvalidPreparedStatementsForFunction(preparedStatements.values().iterator(), ksName, functionName);
-            removeInvalidPreparedStatementsForFunction(thriftPreparedStatements.values().iterator(), ksName, functionName);
+            removeInvalidPreparedStatementsForFunction(ksName, functionName);
         }
 
-        private static void removeInvalidPreparedStatementsForFunction(Iterator<ParsedStatement.Prepared> statements,
-                                                                       final String ksName,
-                                                                       final String functionName)
+        private static void removeInvalidPreparedStatementsForFunction(final String ksName, final String functionName)
         {
             Predicate<Function> matchesFunction = f -> ksName.equals(f.name().keyspace) && functionName.equals(f.name().name);
-            Iterators.removeIf(statements, statement -> Iterables.any(statement.statement.getFunctions(), matchesFunction));
+            Predicate<ParsedStatement.Prepared> usesFunction = statement -> Iterables.any(statement.statement.getFunctions(), matchesFunction);
+            removeInvalidPersistedStatements(usesFunction);
+            Iterators.removeIf(thriftPreparedStatements.values().iterator(), usesFunction);
         }
     }
 }
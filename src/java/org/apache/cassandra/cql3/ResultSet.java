@@ -51,6 +51,22 @@ public class ResultSet
         this.rows = rows;
     }
 
+    /**
+     * Creates a result set whose rows are serialized in the native protocol format as they are added, into a buffer
+     * of the native transport allocator, rather than kept as lists of values until the response is encoded. Encoding
+     * the result set then only copies that buffer.
+     * <p>
+     * This is only worth it for results sent to clients as they are: accessing the rows in any other way decodes them
+     * back into lists. The buffer is released once the result set is encoded or decoded, so such a result set must
+     * end up being one or the other, or be discarded.
+     */
+    public static ResultSet withEncodedRows(ResultMetadata metadata)
+    {
+        // the rows must not have values that are not sent to the client, see ResultMetadata.names
+        assert metadata.valueCount() == metadata.getColumnCount();
+        return new ResultSet(metadata, new EncodedRows(metadata.getColumnCount()));
+    }
+
     public int size()
     {
         return rows.size();
@@ -95,6 +111,16 @@ public class ResultSet
         }
     }
 
+    /**
+     * Releases the rows of a result set created by {@link #withEncodedRows} that will be neither encoded nor decoded,
+     * because building it or sending it failed. Does nothing if the rows are already released.
+     */
+    public void discard()
+    {
+        if (EncodedRows.isEncoded(rows))
+            ((EncodedRows) rows).release();
+    }
+
     public CqlResult toThriftResult()
     {
         assert metadata.names != null;
@@ -195,6 +221,12 @@ public class ResultSet
         {
             ResultMetadata.codec.encode(rs.metadata, dest, version);
             dest.writeInt(rs.rows.size());
+            if (EncodedRows.isEncoded(rs.rows))
+            {
+                ((EncodedRows) rs.rows).writeTo(dest);
+                return;
+            }
+
             for (List<ByteBuffer> row : rs.rows)
             {
                 // Note that we do only want to serialize only the first columnCount values, even if the row
@@ -207,6 +239,9 @@ public class ResultSet
         public int encodedSize(ResultSet rs, int version)
         {
             int size = ResultMetadata.codec.encodedSize(rs.metadata, version) + 4;
+            if (EncodedRows.isEncoded(rs.rows))
+                return size + ((EncodedRows) rs.rows).encodedSize();
+
             for (List<ByteBuffer> row : rs.rows)
             {
                 for (int i = 0; i < rs.metadata.columnCount; i++)
@@ -216,6 +251,130 @@ public class ResultSet
         }
     }
 
+    /**
+     * The rows of a result set created by {@link #withEncodedRows}: each row appended is written right away as
+     * [value]s of the native protocol, and the rows are only decoded back into lists if they are accessed otherwise.
+     */
+    private static class EncodedRows extends AbstractList<List<ByteBuffer>>
+    {
+        private final int columnCount;
+
+        private ByteBuf encoded;
+        private int size;
+
+        // set once the rows have been decoded, after which all operations are delegated to it
+        private List<List<ByteBuffer>> decoded;
+
+        private EncodedRows(int columnCount)
+        {
+            this.columnCount = columnCount;
+            this.encoded = CBUtil.allocator.buffer();
+        }
+
+        private static boolean isEncoded(List<List<ByteBuffer>> rows)
+        {
+            return rows instanceof EncodedRows && ((EncodedRows) rows).decoded == null;
+        }
+
+        public int size()
+        {
+            return decoded == null ? size : decoded.size();
+        }
+
+        public void add(int index, List<ByteBuffer> row)
+        {
+            if (decoded != null || index != size)
+            {
+                decoded().add(index, row);
+                return;
+            }
+
+            checkNotReleased();
+            for (int i = 0; i < columnCount; i++)
+                CBUtil.writeValue(row.get(i), encoded);
+            size++;
+            modCount++;
+        }
+
+        public List<ByteBuffer> get(int index)
+        {
+            return decoded().get(index);
+        }
+
+        public List<ByteBuffer> set(int index, List<ByteBuffer> row)
+        {
+            return decoded().set(index, row);
+        }
+
+        public List<ByteBuffer> remove(int index)
+        {
+            modCount++;
+            return decoded().remove(index);
+        }
+
+        private int encodedSize()
+        {
+            checkNotReleased();
+            return encoded.readableBytes();
+        }
+
+        /**
+         * Copies the encoded rows to {@code dest} and releases them.
+         */
+        private void writeTo(ByteBuf dest)
+        {
+            checkNotReleased();
+            try
+            {
+                dest.writeBytes(encoded, encoded.readerIndex(), encoded.readableBytes());
+            }
+            finally
+            {
+                release();
+            }
+        }
+
+        private void release()
+        {
+            if (encoded != null)
+            {
+                encoded.release();
+                encoded = null;
+            }
+        }
+
+        private List<List<ByteBuffer>> decoded()
+        {
+            if (decoded != null)
+                return decoded;
+
+            checkNotReleased();
+            List<List<ByteBuffer>> rows = new ArrayList<>(size);
+            try
+            {
+                for (int i = 0; i < size; i++)
+                {
+                    List<ByteBuffer> row = new ArrayList<>(columnCount);
+                    for (int j = 0; j < columnCount; j++)
+                        row.add(CBUtil.readValue(encoded));
+                    rows.add(row);
+                }
+            }
+            finally
+            {
+                release();
+            }
+            decoded = rows;
+            return decoded;
+        }
+
+        private void checkNotReleased()
+        {
+            if (encoded == null)
+                throw new IllegalStateException("The rows of this result set have already been encoded");
+        }
+    }
+
     /**
      * The metadata for the results of executing a query or prepared statement.
      */
@@ -269,6 +428,11 @@ public class ResultSet
             return names == null ? columnCount : names.size();
         }
 
+        public int getColumnCount()
+        {
+            return columnCount;
+        }
+
         public void addNonSerializedColumn(ColumnSpecification name)
         {
             // See comment above. Because columnCount doesn't account the newly added name, it
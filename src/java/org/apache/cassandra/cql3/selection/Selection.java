@@ -236,7 +236,17 @@ public abstract class Selection
 
     public ResultSetBuilder resultSetBuilder(boolean isJons) throws InvalidRequestException
     {
-        return new ResultSetBuilder(isJons);
+        return new ResultSetBuilder(isJons, false);
+    }
+
+    /**
+     * Returns a <code>ResultSetBuilder</code> which, if <code>encodeRows</code> is set and all the selected values are
+     * sent to the client, builds a result set whose rows are encoded as they are added (see
+     * {@link ResultSet#withEncodedRows}).
+     */
+    public ResultSetBuilder resultSetBuilder(boolean isJons, boolean encodeRows) throws InvalidRequestException
+    {
+        return new ResultSetBuilder(isJons, encodeRows);
     }
 
     public abstract boolean isAggregate();
@@ -277,9 +287,16 @@ public abstract class Selection
 
         private final boolean isJson;
 
-        private ResultSetBuilder(boolean isJson) throws InvalidRequestException
+        // whether the rows are copied as they are added to the result set, in which case current can be reused
+        private final boolean encodesRows;
+
+        private ResultSetBuilder(boolean isJson, boolean encodeRows) throws InvalidRequestException
         {
-            this.resultSet = new ResultSet(getResultMetadata(isJson).copy(), new ArrayList<List<ByteBuffer>>());
+            ResultSet.ResultMetadata resultMetadata = getResultMetadata(isJson).copy();
+            this.encodesRows = encodeRows && resultMetadata.valueCount() == resultMetadata.getColumnCount();
+            this.resultSet = encodesRows
+                           ? ResultSet.withEncodedRows(resultMetadata)
+                           : new ResultSet(resultMetadata, new ArrayList<List<ByteBuffer>>());
             this.selectors = newSelectors();
             this.timestamps = collectTimestamps ? new long[columns.size()] : null;
             this.ttls = collectTTLs ? new int[columns.size()] : null;
@@ -340,6 +357,12 @@ public abstract class Selection
                     resultSet.addRow(getOutputRow(protocolVersion));
                     selectors.reset();
                 }
+
+                if (encodesRows)
+                {
+                    current.clear();
+                    return;
+                }
             }
             current = new ArrayList<>(columns.size());
         }
@@ -359,6 +382,14 @@ public abstract class Selection
             return resultSet;
         }
 
+        /**
+         * Releases the rows added so far, when the result set is not going to be built.
+         */
+        public void discard()
+        {
+            resultSet.discard();
+        }
+
         private List<ByteBuffer> getOutputRow(int protocolVersion)
         {
             List<ByteBuffer> outputRow = selectors.getOutputRow(protocolVersion);
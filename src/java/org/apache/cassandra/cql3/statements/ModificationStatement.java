@@ -19,8 +19,12 @@ package org.apache.cassandra.cql3.statements;
 
 import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.Executor;
 
+import com.google.common.base.Functions;
 import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -408,26 +412,68 @@ public abstract class ModificationStatement implements CQLStatement
              : executeWithoutCondition(queryState, options);
     }
 
+    @Override
+    public ListenableFuture<ResultMessage> executeAsync(QueryState queryState, QueryOptions options, Executor executor)
+    throws RequestExecutionException, RequestValidationException
+    {
+        if (options.getConsistency() == null)
+            throw new InvalidRequestException("Invalid empty consistency level");
+
+        // conditional updates go through paxos, which is synchronous
+        if (hasConditions())
+            return Futures.immediateFuture(executeWithCondition(queryState, options));
+
+        ConsistencyLevel cl = options.getConsistency();
+        validateForWrite(cl);
+
+        ListenableFuture<Void> written = Futures.immediateFuture(null);
+        Collection<? extends IMutation> mutations = getMutations(options, false, options.getTimestamp(queryState));
+        if (!mutations.isEmpty())
+            written = StorageProxy.mutateWithTriggersAsync(mutations, cl);
+
+        maybeFlush(queryState);
+        return Futures.transform(written, Functions.<ResultMessage>constant(null));
+    }
+
+    @Override
+    public boolean executesAsync(QueryOptions options)
+    {
+        // as in executeAsync(), conditional updates and the updates written through the batchlog are synchronous
+        return !hasConditions()
+               && cfm.getTriggers().isEmpty()
+               && Iterables.isEmpty(View.findAll(keyspace(), columnFamily()));
+    }
+
     private ResultMessage executeWithoutCondition(QueryState queryState, QueryOptions options)
     throws RequestExecutionException, RequestValidationException
     {
         ConsistencyLevel cl = options.getConsistency();
-        if (isCounter())
-            cl.validateCounterForWrite(cfm);
-        else
-            cl.validateForWrite(cfm.ksName);
+        validateForWrite(cl);
 
         Collection<? extends IMutation> mutations = getMutations(options, false, options.getTimestamp(queryState));
         if (!mutations.isEmpty())
             StorageProxy.mutateWithTriggers(mutations, cl, false);
 
+        maybeFlush(queryState);
+        return null;
+    }
+
+    private void validateForWrite(ConsistencyLevel cl) throws InvalidRequestException
+    {
+        if (isCounter())
+            cl.validateCounterForWrite(cfm);
+        else
+            cl.validateForWrite(cfm.ksName);
+    }
+
+    private void maybeFlush(QueryState queryState)
+    {
         //我加上的，用于测试，触发memtable的flush
         if(queryState.getClientState().count > 200) {
             Keyspace.open(cfm.ksName).getColumnFamilyStore(cfm.cfName).forceBlockingFlush();
             queryState.getClientState().count = 0;
         }
         queryState.getClientState().count++;
-        return null;
     }
 
     public ResultMessage executeWithCondition(QueryState queryState, QueryOptions options)
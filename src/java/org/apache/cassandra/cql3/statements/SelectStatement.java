@@ -19,16 +19,21 @@ package org.apache.cassandra.cql3.statements;
 
 import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.Executor;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.cassandra.auth.Permission;
 import org.apache.cassandra.config.CFMetaData;
 import org.apache.cassandra.config.ColumnDefinition;
+import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.cql3.*;
 import org.apache.cassandra.cql3.functions.Function;
 import org.apache.cassandra.cql3.restrictions.StatementRestrictions;
@@ -53,6 +58,7 @@ import org.apache.cassandra.service.ClientWarn;
 import org.apache.cassandra.service.QueryState;
 import org.apache.cassandra.service.pager.PagingState;
 import org.apache.cassandra.service.pager.QueryPager;
+import org.apache.cassandra.thrift.ThriftClientState;
 import org.apache.cassandra.thrift.ThriftValidation;
 import org.apache.cassandra.transport.messages.ResultMessage;
 import org.apache.cassandra.utils.ByteBufferUtil;
@@ -207,11 +213,58 @@ public class SelectStatement implements CQLStatement
 
         int pageSize = getPageSize(options);
 
+        boolean encodeRows = encodeRows(state);
+
         if (pageSize <= 0 || query.limits().count() <= pageSize) //有limit时，如果limit<=fetchSize就不分页了
-            return execute(query, options, state, nowInSec);
+            return execute(query, options, state, nowInSec, encodeRows);
 
         QueryPager pager = query.getPager(options.getPagingState(), options.getProtocolVersion());
-        return execute(Pager.forDistributedQuery(pager, cl, state.getClientState()), options, pageSize, nowInSec);
+        return execute(Pager.forDistributedQuery(pager, cl, state.getClientState()), options, pageSize, nowInSec, encodeRows);
+    }
+
+    @Override
+    public ListenableFuture<ResultMessage> executeAsync(QueryState state, final QueryOptions options, Executor executor)
+    throws RequestExecutionException, RequestValidationException
+    {
+        ConsistencyLevel cl = options.getConsistency();
+        checkNotNull(cl, "Invalid empty consistency level");
+
+        cl.validateForRead(keyspace());
+
+        final int nowInSec = FBUtilities.nowInSeconds();
+        ReadQuery query = getQuery(options, nowInSec);
+
+        int pageSize = getPageSize(options);
+        final boolean encodeRows = encodeRows(state);
+
+        // pages are fetched through a QueryPager, which reads synchronously
+        if (pageSize > 0 && query.limits().count() > pageSize)
+        {
+            QueryPager pager = query.getPager(options.getPagingState(), options.getProtocolVersion());
+            return Futures.<ResultMessage>immediateFuture(execute(Pager.forDistributedQuery(pager, cl, state.getClientState()), options, pageSize, nowInSec, encodeRows));
+        }
+
+        return Futures.transform(query.executeAsync(cl, state.getClientState()), new AsyncFunction<PartitionIterator, ResultMessage>()
+        {
+            public ListenableFuture<ResultMessage> apply(PartitionIterator partitions) throws RequestValidationException
+            {
+                try (PartitionIterator data = partitions)
+                {
+                    return Futures.<ResultMessage>immediateFuture(processResults(data, options, nowInSec, encodeRows));
+                }
+            }
+        }, executor);
+    }
+
+    @Override
+    public boolean executesAsync(QueryOptions options) throws RequestValidationException
+    {
+        // as in executeAsync(), range queries and paged queries are read synchronously
+        if (restrictions.isKeyRange() || restrictions.usesSecondaryIndexing())
+            return false;
+
+        int pageSize = getPageSize(options);
+        return pageSize <= 0 || getLimit(options).count() <= pageSize;
     }
 
     private int getPageSize(QueryOptions options)
@@ -239,11 +292,23 @@ public class SelectStatement implements CQLStatement
         return getSliceCommands(options, limit, nowInSec); //单行
     }
 
-    private ResultMessage.Rows execute(ReadQuery query, QueryOptions options, QueryState state, int nowInSec) throws RequestValidationException, RequestExecutionException
+    /**
+     * Whether the rows of the results can be serialized for the native protocol as they are read (see
+     * {@link ResultSet#withEncodedRows}), which is only worth it if they are sent to a client as they are.
+     */
+    private boolean encodeRows(QueryState state)
+    {
+        return DatabaseDescriptor.getNativeTransportEncodeRowsOnRead()
+               && !state.getClientState().isInternal
+               && !(state.getClientState() instanceof ThriftClientState)
+               && !needsPostQueryOrdering();
+    }
+
+    private ResultMessage.Rows execute(ReadQuery query, QueryOptions options, QueryState state, int nowInSec, boolean encodeRows) throws RequestValidationException, RequestExecutionException
     {
         try (PartitionIterator data = query.execute(options.getConsistency(), state.getClientState()))
         {
-            return processResults(data, options, nowInSec);
+            return processResults(data, options, nowInSec, encodeRows);
         }
     }
 
@@ -314,7 +379,7 @@ public class SelectStatement implements CQLStatement
         }
     }
 
-    private ResultMessage.Rows execute(Pager pager, QueryOptions options, int pageSize, int nowInSec)
+    private ResultMessage.Rows execute(Pager pager, QueryOptions options, int pageSize, int nowInSec, boolean encodeRows)
     throws RequestValidationException, RequestExecutionException
     {
         if (selection.isAggregate())
@@ -328,7 +393,7 @@ public class SelectStatement implements CQLStatement
         ResultMessage.Rows msg;
         try (PartitionIterator page = pager.fetchPage(pageSize))
         {
-            msg = processResults(page, options, nowInSec);
+            msg = processResults(page, options, nowInSec, encodeRows);
         }
 
         // Please note that the isExhausted state of the pager only gets updated when we've closed the page, so this
@@ -370,9 +435,9 @@ public class SelectStatement implements CQLStatement
         return new ResultMessage.Rows(result.build(options.getProtocolVersion()));
     }
 
-    private ResultMessage.Rows processResults(PartitionIterator partitions, QueryOptions options, int nowInSec) throws RequestValidationException
+    private ResultMessage.Rows processResults(PartitionIterator partitions, QueryOptions options, int nowInSec, boolean encodeRows) throws RequestValidationException
     {
-        ResultSet rset = process(partitions, options, nowInSec);
+        ResultSet rset = process(partitions, options, nowInSec, encodeRows);
         return new ResultMessage.Rows(rset);
     }
 
@@ -388,20 +453,20 @@ public class SelectStatement implements CQLStatement
             {
                 try (PartitionIterator data = query.executeInternal(orderGroup))
                 {
-                    return processResults(data, options, nowInSec);
+                    return processResults(data, options, nowInSec, false);
                 }
             }
             else
             {
                 QueryPager pager = query.getPager(options.getPagingState(), options.getProtocolVersion());
-                return execute(Pager.forInternalQuery(pager, orderGroup), options, pageSize, nowInSec);
+                return execute(Pager.forInternalQuery(pager, orderGroup), options, pageSize, nowInSec, false);
             }
         }
     }
 
     public ResultSet process(PartitionIterator partitions, int nowInSec) throws InvalidRequestException
     {
-        return process(partitions, QueryOptions.DEFAULT, nowInSec);
+        return process(partitions, QueryOptions.DEFAULT, nowInSec, false);
     }
 
     public String keyspace()
@@ -608,18 +673,27 @@ public class SelectStatement implements CQLStatement
         return filter;
     }
 
-    private ResultSet process(PartitionIterator partitions, QueryOptions options, int nowInSec) throws InvalidRequestException
+    private ResultSet process(PartitionIterator partitions, QueryOptions options, int nowInSec, boolean encodeRows) throws InvalidRequestException
     {
-        Selection.ResultSetBuilder result = selection.resultSetBuilder(parameters.isJson);
-        while (partitions.hasNext())
+        Selection.ResultSetBuilder result = selection.resultSetBuilder(parameters.isJson, encodeRows);
+        ResultSet cqlRows;
+        try
         {
-            try (RowIterator partition = partitions.next())
+            while (partitions.hasNext())
             {
-                processPartition(partition, options, result, nowInSec);
+                try (RowIterator partition = partitions.next())
+                {
+                    processPartition(partition, options, result, nowInSec);
+                }
             }
-        }
 
-        ResultSet cqlRows = result.build(options.getProtocolVersion());
+            cqlRows = result.build(options.getProtocolVersion());
+        }
+        catch (Throwable t)
+        {
+            result.discard();
+            throw t;
+        }
 
         orderResults(cqlRows);
 
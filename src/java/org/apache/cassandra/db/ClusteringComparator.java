@@ -17,6 +17,7 @@
  */
 package org.apache.cassandra.db;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Comparator;
@@ -28,8 +29,10 @@ import com.google.common.collect.ImmutableList;
 
 import org.apache.cassandra.db.rows.Row;
 import org.apache.cassandra.db.marshal.AbstractType;
+import org.apache.cassandra.io.util.DataOutputBuffer;
 import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.ByteComparable;
 import org.apache.cassandra.utils.FastByteOperations;
 
 import static org.apache.cassandra.io.sstable.IndexHelper.IndexInfo;
@@ -51,6 +54,8 @@ public class ClusteringComparator implements Comparator<Clusterable>
 
     private final Comparator<Row> rowComparator = (r1, r2) -> compare(r1.clustering(), r2.clustering());
 
+    private final boolean isByteComparable;
+
     public ClusteringComparator(AbstractType<?>... clusteringTypes)
     {
         this(ImmutableList.copyOf(clusteringTypes));
@@ -64,8 +69,13 @@ public class ClusteringComparator implements Comparator<Clusterable>
         this.indexComparator = (o1, o2) -> ClusteringComparator.this.compare(o1.lastName, o2.lastName);
         this.indexReverseComparator = (o1, o2) -> ClusteringComparator.this.compare(o1.firstName, o2.firstName);
         this.reverseComparator = (c1, c2) -> ClusteringComparator.this.compare(c2, c1);
+        boolean isByteComparable = true;
         for (AbstractType<?> type : clusteringTypes)
+        {
             type.checkComparable(); // this should already be enforced by CFMetaData.rebuild, but we check again for other constructors
+            isByteComparable &= type.isByteComparable();
+        }
+        this.isByteComparable = isByteComparable;
     }
 
     /**
@@ -166,6 +176,37 @@ public class ClusteringComparator implements Comparator<Clusterable>
         return clusteringTypes.get(i).compare(v1, v2);
     }
 
+    /**
+     * Whether all the clustering types have a byte-comparable representation, see {@link #asComparableBytes}.
+     */
+    public boolean isByteComparable()
+    {
+        return isByteComparable;
+    }
+
+    /**
+     * Returns a byte-comparable representation of the provided prefix: the representations of two prefixes compare
+     * as unsigned bytes (see {@link ByteComparable#compare}) the way {@link #compare(ClusteringPrefix, ClusteringPrefix)}
+     * compares the prefixes themselves. Comparing representations that are computed once avoids dispatching to the
+     * type of every component on each comparison.
+     */
+    public ByteBuffer asComparableBytes(ClusteringPrefix prefix)
+    {
+        assert isByteComparable : this + " has no byte-comparable representation";
+        try (DataOutputBuffer out = new DataOutputBuffer())
+        {
+            for (int i = 0; i < prefix.size(); i++)
+                ByteComparable.writeComponent(clusteringTypes.get(i), prefix.get(i), out);
+            out.writeByte(prefix.kind().comparableTerminator());
+            return out.buffer();
+        }
+        catch (IOException e)
+        {
+            // writing to a DataOutputBuffer does not throw
+            throw new AssertionError(e);
+        }
+    }
+
     /**
      * Returns whether this clustering comparator is compatible with the provided one,
      * that is if the provided one can be safely replaced by this new one.
@@ -29,6 +29,7 @@ import org.apache.cassandra.db.marshal.AbstractType;
 import org.apache.cassandra.io.util.DataInputPlus;
 import org.apache.cassandra.io.util.DataOutputPlus;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.ByteComparable;
 
 /**
  * A clustering prefix is the unit of what a {@link ClusteringComparator} can compare.
@@ -91,6 +92,26 @@ public interface ClusteringPrefix extends IMeasurableMemory, Clusterable
             return Integer.compare(k1.comparison, k2.comparison);
         }
 
+        /**
+         * The byte closing the byte-comparable representation of prefixes of this kind (see
+         * {@link ClusteringComparator#asComparableBytes}). It sorts like the kind itself, and before the header of
+         * any further component for kinds sorting before the clusterings they prefix (after it for the others).
+         */
+        public int comparableTerminator()
+        {
+            switch (comparison)
+            {
+                case 0:
+                    return ByteComparable.TERMINATOR;
+                case 1:
+                    return 0x30;
+                case 2:
+                    return 0x38;
+                default:
+                    return 0x60;
+            }
+        }
+
         /**
          * Returns the inverse of the current kind.
          * <p>
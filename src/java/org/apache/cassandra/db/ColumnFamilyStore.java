@@ -120,6 +120,18 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
                                                                                           new NamedThreadFactory("MemtableFlushWriter"),
                                                                                           "internal");
 
+    // writes the shards of a memtable beyond the first one, concurrently with the flush writer that owns the memtable
+    private static final ExecutorService shardFlushExecutor = new JMXEnabledThreadPoolExecutor(DatabaseDescriptor.getFlushWriters(),
+                                                                                               StageManager.KEEPALIVE,
+                                                                                               TimeUnit.SECONDS,
+                                                                                               new LinkedBlockingQueue<Runnable>(),
+                                                                                               new NamedThreadFactory("MemtableShardFlushWriter"),
+                                                                                               "internal");
+
+    // when a table has several data directories, its memtables are split by disk and each part is written by the
+    // executor of its data directory, so that flushes to different disks happen in parallel
+    private static final ConcurrentMap<Directories.DataDirectory, ExecutorService> perDiskFlushExecutors = new ConcurrentHashMap<>();
+
     // post-flush executor is single threaded to provide guarantee that any flush Future on a CF will never return until prior flushes have completed
     private static final ExecutorService postFlushExecutor = new JMXEnabledThreadPoolExecutor(1,
                                                                                               StageManager.KEEPALIVE,
@@ -242,6 +254,14 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
             switchMemtable();
     }
 
+    /**
+     * @return a new memtable for this table, of the implementation configured by its memtable option.
+     */
+    public Memtable createMemtable()
+    {
+        return metadata.params.memtable.factory().create(this);
+    }
+
     void scheduleFlush()
     {
         //默认是1小时刷新一次
@@ -534,6 +554,29 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         return createColumnFamilyStore(keyspace, columnFamily, Schema.instance.getCFMetaData(keyspace.getName(), columnFamily), loadSSTables);
     }
 
+    static ExecutorService perDiskFlushExecutor(Directories.DataDirectory dataDirectory)
+    {
+        ExecutorService executor = perDiskFlushExecutors.get(dataDirectory);
+        if (executor != null)
+            return executor;
+
+        synchronized (perDiskFlushExecutors)
+        {
+            executor = perDiskFlushExecutors.get(dataDirectory);
+            if (executor == null)
+            {
+                executor = new JMXEnabledThreadPoolExecutor(DatabaseDescriptor.getFlushWriters(),
+                                                            StageManager.KEEPALIVE,
+                                                            TimeUnit.SECONDS,
+                                                            new LinkedBlockingQueue<Runnable>(),
+                                                            new NamedThreadFactory("PerDiskMemtableFlushWriter_" + perDiskFlushExecutors.size()),
+                                                            "internal");
+                perDiskFlushExecutors.put(dataDirectory, executor);
+            }
+            return executor;
+        }
+    }
+
     public static synchronized ColumnFamilyStore createColumnFamilyStore(Keyspace keyspace,
                                                                          String columnFamily,
                                                                          CFMetaData metadata,
@@ -748,7 +791,11 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
 
     public String getSSTablePath(File directory)
     {
-        return getSSTablePath(directory, DatabaseDescriptor.getSSTableFormat().info.getLatestVersion(), DatabaseDescriptor.getSSTableFormat());
+        SSTableFormat.Type format = DatabaseDescriptor.getSSTableFormat();
+        // secondary indexes use partitioners that the trie format can't index
+        if (!format.info.supports(metadata.partitioner))
+            format = SSTableFormat.Type.BIG;
+        return getSSTablePath(directory, format);
     }
 
     public String getSSTablePath(File directory, SSTableFormat.Type format)
@@ -985,7 +1032,7 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
             ReplayPosition lastReplayPosition;
             while (true)
             {
-                lastReplayPosition = new Memtable.LastReplayPosition(CommitLog.instance.getContext());
+                lastReplayPosition = new Memtable.LastReplayPosition(CommitLog.instance.getContext(metadata.cfId));
                 ReplayPosition currentLast = lastReplayPositionHolder.get();
                 if ((currentLast == null || currentLast.compareTo(lastReplayPosition) <= 0)
                     && lastReplayPositionHolder.compareAndSet(currentLast, lastReplayPosition))
@@ -1032,7 +1079,7 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
             for (Memtable memtable : memtables)
             {
                 // flush the memtable
-                MoreExecutors.sameThreadExecutor().execute(memtable.flushRunnable());
+                memtable.flush(shardFlushExecutor);
                 reclaim(memtable);
             }
 
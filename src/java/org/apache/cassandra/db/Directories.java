@@ -324,6 +324,28 @@ public class Directories
         return getLocationForDisk(getWriteableLocation(writeSize));
     }
 
+    /**
+     * @return all the data directories of this table, including blacklisted ones.
+     */
+    public DataDirectory[] getDataDirectories()
+    {
+        return paths;
+    }
+
+    /**
+     * @return the data directories of this table that are not blacklisted for writes, in configuration order.
+     */
+    public DataDirectory[] getWriteableLocations()
+    {
+        List<DataDirectory> locations = new ArrayList<>(paths.length);
+        for (DataDirectory dataDir : paths)
+        {
+            if (!BlacklistedDirectories.isUnwritable(getLocationForDisk(dataDir)))
+                locations.add(dataDir);
+        }
+        return locations.toArray(new DataDirectory[locations.size()]);
+    }
+
     /**
      * Returns a non-blacklisted data directory that _currently_ has {@code writeSize} bytes as usable space.
      *
@@ -456,7 +478,7 @@ public class Directories
         return getEphemeralSnapshotMarkerFile(snapshotDir);
     }
 
-    private static File getEphemeralSnapshotMarkerFile(File snapshotDirectory)
+    public static File getEphemeralSnapshotMarkerFile(File snapshotDirectory)
     {
         return new File(snapshotDirectory, "ephemeral.snapshot");
     }
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.collect.Lists;
+
+import org.apache.cassandra.db.filter.ColumnFilter;
+import org.apache.cassandra.db.partitions.AtomicBTreePartition;
+import org.apache.cassandra.db.partitions.Partition;
+import org.apache.cassandra.db.partitions.PartitionUpdate;
+import org.apache.cassandra.dht.AbstractBounds;
+import org.apache.cassandra.index.transactions.UpdateTransaction;
+import org.apache.cassandra.utils.concurrent.OpOrder;
+
+/**
+ * A memtable indexing partitions in a hash map.
+ * <p>
+ * Writes and single partition reads don't pay for keeping the partitions sorted, which suits tables that are
+ * mostly written and read by partition key. Range reads and flushes have to sort the selected partitions instead,
+ * which makes them more expensive than with {@link SkipListMemtable}.
+ */
+public class HashMemtable extends Memtable
+{
+    private static final int ROW_OVERHEAD_HEAP_SIZE =
+            estimateRowOverhead(Integer.parseInt(System.getProperty("cassandra.memtable_row_overhead_computation_step", "1000")),
+                                new ConcurrentHashMap<>());
+
+    // We only ever store DecoratedKey, the PartitionPosition type is only there to share the iteration code with the
+    // sorted implementations
+    private final ConcurrentMap<PartitionPosition, AtomicBTreePartition> partitions = new ConcurrentHashMap<>();
+    private final AtomicLong liveDataSize = new AtomicLong(0);
+    private final AtomicLong currentOperations = new AtomicLong(0);
+    private final ColumnsCollector columnsCollector;
+    private final StatsCollector statsCollector = new StatsCollector();
+
+    public HashMemtable(ColumnFamilyStore cfs)
+    {
+        super(cfs);
+        this.columnsCollector = new ColumnsCollector(cfs.metadata.partitionColumns());
+    }
+
+    public long getLiveDataSize()
+    {
+        return liveDataSize.get();
+    }
+
+    public long getOperations()
+    {
+        return currentOperations.get();
+    }
+
+    public int partitionCount()
+    {
+        return partitions.size();
+    }
+
+    public boolean isClean()
+    {
+        return partitions.isEmpty();
+    }
+
+    protected long put(PartitionUpdate update, UpdateTransaction indexer, OpOrder.Group opGroup)
+    {
+        AtomicBTreePartition previous = partitions.get(update.partitionKey());
+
+        long initialSize = 0;
+        if (previous == null)
+        {
+            final DecoratedKey cloneKey = allocator.clone(update.partitionKey(), opGroup);
+            AtomicBTreePartition empty = new AtomicBTreePartition(cfs.metadata, cloneKey, allocator);
+            // We'll add the columns later. This avoids wasting works if we get beaten in the putIfAbsent
+            previous = partitions.putIfAbsent(cloneKey, empty);
+            if (previous == null)
+            {
+                previous = empty;
+                int overhead = (int) (cloneKey.getToken().getHeapSize() + ROW_OVERHEAD_HEAP_SIZE);
+                allocator.onHeap().allocate(overhead, opGroup);
+                initialSize = 8;
+            }
+            else
+            {
+                allocator.reclaimer().reclaimImmediately(cloneKey);
+            }
+        }
+
+        long[] pair = previous.addAllWithSizeDelta(update, opGroup, indexer);
+        liveDataSize.addAndGet(initialSize + pair[0]);
+        columnsCollector.update(update.columns());
+        statsCollector.update(update.stats());
+        currentOperations.addAndGet(update.operationCount());
+        return pair[1];
+    }
+
+    public Partition getPartition(DecoratedKey key)
+    {
+        return partitions.get(key);
+    }
+
+    public MemtableUnfilteredPartitionIterator makePartitionIterator(ColumnFilter columnFilter, DataRange dataRange, boolean isForThrift)
+    {
+        AbstractBounds<PartitionPosition> keyRange = dataRange.keyRange();
+        List<Map.Entry<PartitionPosition, AtomicBTreePartition>> selected = new ArrayList<>();
+        for (Map.Entry<PartitionPosition, AtomicBTreePartition> entry : partitions.entrySet())
+        {
+            if (keyRange.contains(entry.getKey()))
+                selected.add(entry);
+        }
+        selected.sort(Map.Entry.comparingByKey());
+
+        int minLocalDeletionTime = Integer.MAX_VALUE;
+
+        // avoid iterating over the memtable if we purge all tombstones
+        if (cfs.getCompactionStrategyManager().onlyPurgeRepairedTombstones())
+            minLocalDeletionTime = findMinLocalDeletionTime(selected.iterator());
+
+        return new MemtableUnfilteredPartitionIterator(cfs, selected.iterator(), isForThrift, minLocalDeletionTime, columnFilter, dataRange);
+    }
+
+    protected FlushSet getFlushSet(PartitionPosition from, PartitionPosition to)
+    {
+        List<Map.Entry<PartitionPosition, AtomicBTreePartition>> selected = new ArrayList<>();
+        for (Map.Entry<PartitionPosition, AtomicBTreePartition> entry : partitions.entrySet())
+        {
+            if ((from == null || entry.getKey().compareTo(from) >= 0) && (to == null || entry.getKey().compareTo(to) < 0))
+                selected.add(entry);
+        }
+        selected.sort(Map.Entry.comparingByKey());
+
+        // we don't track the data size per partition, so assume the partitions of the range have an average size
+        int partitionCount = partitions.size();
+        long selectedDataSize = partitionCount == 0 ? 0 : liveDataSize.get() * selected.size() / partitionCount;
+        return new FlushSet(Lists.transform(selected, Map.Entry::getValue),
+                            selected.size(),
+                            columnsCollector.get(),
+                            statsCollector.get(),
+                            selectedDataSize);
+    }
+}
@@ -459,10 +459,15 @@ public class Keyspace
         {
             // write the mutation to the commitlog and memtables
             ReplayPosition replayPosition = null;
+            // the positions of each table's update, if they went to different sets of commit log segments
+            Map<UUID, ReplayPosition> replayPositions = null;
             if (writeCommitLog)
             {
                 Tracing.trace("Appending to commitlog");
-                replayPosition = CommitLog.instance.add(mutation);
+                if (CommitLog.instance.spansSegmentSets(mutation))
+                    replayPositions = CommitLog.instance.addSplit(mutation);
+                else
+                    replayPosition = CommitLog.instance.add(mutation);
             }
 
             for (PartitionUpdate upd : mutation.getPartitionUpdates())
@@ -495,7 +500,7 @@ public class Keyspace
                 UpdateTransaction indexTransaction = updateIndexes
                                                      ? cfs.indexManager.newUpdateTransaction(upd, opGroup, nowInSec)
                                                      : UpdateTransaction.NO_OP;
-                cfs.apply(upd, indexTransaction, opGroup, replayPosition);
+                cfs.apply(upd, indexTransaction, opGroup, replayPositions == null ? replayPosition : replayPositions.get(upd.metadata().cfId));
                 if (requiresViewUpdate)
                     baseComplete.set(System.currentTimeMillis());
             }
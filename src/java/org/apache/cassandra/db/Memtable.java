@@ -21,10 +21,10 @@ import java.io.File;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -56,27 +56,32 @@ import org.apache.cassandra.utils.concurrent.OpOrder;
 import org.apache.cassandra.utils.memory.MemtableAllocator;
 import org.apache.cassandra.utils.memory.MemtablePool;
 
-public class Memtable implements Comparable<Memtable>
+import static org.apache.cassandra.utils.Throwables.maybeFail;
+import static org.apache.cassandra.utils.Throwables.merge;
+
+/**
+ * The in-memory structure receiving the writes of a table until they are flushed to sstables.
+ * <p>
+ * This class handles what all implementations share: the allocator, the commit log bounds, the write barrier used
+ * when switching memtables, and the flush. How partitions are indexed is left to the subclasses, which are created by
+ * the {@link MemtableFactory} configured by the {@code memtable} option of the table. Partitions themselves are always
+ * {@link AtomicBTreePartition}s.
+ */
+public abstract class Memtable implements Comparable<Memtable>
 {
     private static final Logger logger = LoggerFactory.getLogger(Memtable.class);
 
     static final MemtablePool MEMORY_POOL = DatabaseDescriptor.getMemtableAllocatorPool();
-    private static final int ROW_OVERHEAD_HEAP_SIZE = //
-            estimateRowOverhead( //
-                    Integer.parseInt( //
-                            System.getProperty( //
-                                    "cassandra.memtable_row_overhead_computation_step", "1000"))); //原来是"100000"
 
-    private final MemtableAllocator allocator;
-    private final AtomicLong liveDataSize = new AtomicLong(0);
-    private final AtomicLong currentOperations = new AtomicLong(0);
+    protected final MemtableAllocator allocator;
 
     // the write barrier for directing writes to this memtable during a switch
     private volatile OpOrder.Barrier writeBarrier;
     // the last ReplayPosition owned by this Memtable; all ReplayPositions lower are owned by this or an earlier Memtable
     private volatile AtomicReference<ReplayPosition> lastReplayPosition;
     // the "first" ReplayPosition owned by this Memtable; this is inaccurate, and only used as a convenience to prevent CLSM flushing wantonly
-    private final ReplayPosition minReplayPosition = CommitLog.instance.getContext();
+    // (taken from the set of commit log segments the table is written to)
+    private final ReplayPosition minReplayPosition;
 
     public int compareTo(Memtable that)
     {
@@ -90,17 +95,6 @@ public class Memtable implements Comparable<Memtable>
         }
     }
 
-    // We index the memtable by PartitionPosition only for the purpose of being able
-    // to select key range using Token.KeyBound. However put() ensures that we
-    // actually only store DecoratedKey.
-    //PartitionPosition接口是java.lang.Comparable<C>的子接口，
-    //往ConcurrentSkipListMap放数据时，
-    //会在java.util.concurrent.ConcurrentSkipListMap.cpr(Comparator, Object, Object)里面转成((Comparable)x).compareTo(y);
-    //而DecoratedKey类实现了PartitionPosition接口
-    //它的DecoratedKey.compareTo(PartitionPosition)方法中会依据不同IPartitioner的子类进行比较，
-    //比如Murmur3Partitioner是对key进行hash后，按hash值的大小来排的，
-    //所以数据放入ConcurrentSkipListMap后并不是按key的自然序来排的。
-    private final ConcurrentNavigableMap<PartitionPosition, AtomicBTreePartition> partitions = new ConcurrentSkipListMap<>();
     public final ColumnFamilyStore cfs;
     private final long creationTime = System.currentTimeMillis();
     private final long creationNano = System.nanoTime();
@@ -110,43 +104,88 @@ public class Memtable implements Comparable<Memtable>
     // memtable was created with the new or old comparator.
     public final ClusteringComparator initialComparator;
 
-    private final ColumnsCollector columnsCollector;
-    private final StatsCollector statsCollector = new StatsCollector();
-
-    public Memtable(ColumnFamilyStore cfs)
+    protected Memtable(ColumnFamilyStore cfs)
     {
         this.cfs = cfs;
         this.allocator = MEMORY_POOL.newAllocator();
         this.initialComparator = cfs.metadata.comparator;
+        this.minReplayPosition = CommitLog.instance.getContext(cfs.metadata.cfId);
         this.cfs.scheduleFlush();
-        this.columnsCollector = new ColumnsCollector(cfs.metadata.partitionColumns());
     }
 
     // ONLY to be used for testing, to create a mock Memtable
     @VisibleForTesting
-    public Memtable(CFMetaData metadata)
+    protected Memtable(CFMetaData metadata)
     {
         this.initialComparator = metadata.comparator;
         this.cfs = null;
         this.allocator = null;
-        this.columnsCollector = new ColumnsCollector(metadata.partitionColumns());
+        this.minReplayPosition = CommitLog.instance.getContext(metadata.cfId);
     }
 
-    public MemtableAllocator getAllocator()
+    /**
+     * Splits the token ring of {@code partitioner} in {@code parts} parts of roughly equal size. This is used both
+     * to shard memtables and to split flushes between data directories.
+     *
+     * @return the sorted boundaries between the parts, which is empty if {@code parts <= 1} or if the
+     * partitioner can't split the ring.
+     */
+    @VisibleForTesting
+    static Token[] splitRing(IPartitioner partitioner, int parts)
     {
-        return allocator;
+        if (parts <= 1)
+            return new Token[0];
+
+        List<Token> boundaries = new ArrayList<>(parts - 1);
+        try
+        {
+            Token minimum = partitioner.getMinimumToken();
+            splitRing(partitioner, minimum, minimum, parts, boundaries);
+        }
+        catch (UnsupportedOperationException e)
+        {
+            // LocalPartitioner can't compute midpoints, in which case we just don't shard
+            return new Token[0];
+        }
+
+        // Small or degenerate rings could give us duplicate boundaries, which would make for empty shards.
+        List<Token> distinct = new ArrayList<>(boundaries.size());
+        for (Token boundary : boundaries)
+        {
+            if (!boundary.isMinimum() && (distinct.isEmpty() || distinct.get(distinct.size() - 1).compareTo(boundary) < 0))
+                distinct.add(boundary);
+        }
+        return distinct.toArray(new Token[distinct.size()]);
     }
 
-    public long getLiveDataSize()
+    private static void splitRing(IPartitioner partitioner, Token left, Token right, int parts, List<Token> boundaries)
     {
-        return liveDataSize.get();
+        if (parts <= 1)
+            return;
+
+        Token midpoint = partitioner.midpoint(left, right);
+        splitRing(partitioner, left, midpoint, parts / 2, boundaries);
+        boundaries.add(midpoint);
+        splitRing(partitioner, midpoint, right, parts - parts / 2, boundaries);
     }
 
-    public long getOperations()
+    public MemtableAllocator getAllocator()
     {
-        return currentOperations.get();
+        return allocator;
     }
 
+    /**
+     * @return the serialized size of the data written to this memtable.
+     */
+    public abstract long getLiveDataSize();
+
+    /**
+     * @return the number of cells and deletions written to this memtable.
+     */
+    public abstract long getOperations();
+
+    public abstract int partitionCount();
+
     @VisibleForTesting
     //org.apache.cassandra.db.ColumnFamilyStore.Flush.Flush(ColumnFamilyStore, boolean)也在调用
     //否则lastReplayPosition字段会是null
@@ -198,10 +237,7 @@ public class Memtable implements Comparable<Memtable>
         return allocator.isLive();
     }
 
-    public boolean isClean()
-    {
-        return partitions.isEmpty();
-    }
+    public abstract boolean isClean();
 
     public boolean isCleanAfter(ReplayPosition position)
     {
@@ -222,89 +258,139 @@ public class Memtable implements Comparable<Memtable>
      * OpOrdering.
      *
      * replayPosition should only be null if this is a secondary index, in which case it is *expected* to be null
+     *
+     * @return the smallest timestamp delta between the update and the rows it replaced
      */
-    long put(PartitionUpdate update, UpdateTransaction indexer, OpOrder.Group opGroup)
+    protected abstract long put(PartitionUpdate update, UpdateTransaction indexer, OpOrder.Group opGroup);
+
+    public abstract Partition getPartition(DecoratedKey key);
+
+    //用于按rowkey进行范围扫描的情况
+    public abstract MemtableUnfilteredPartitionIterator makePartitionIterator(ColumnFilter columnFilter, DataRange dataRange, boolean isForThrift);
+
+    /**
+     * Returns the partitions of this memtable that are at or after {@code from} and before {@code to}, to be written
+     * to one sstable. A null bound leaves the range unbounded on that side.
+     */
+    protected abstract FlushSet getFlushSet(PartitionPosition from, PartitionPosition to);
+
+    /**
+     * Splits the whole content of this memtable in non-overlapping sets of partitions that are written to separate
+     * sstables concurrently, when the table has a single data directory.
+     */
+    protected List<FlushSet> getFlushSets()
     {
-        AtomicBTreePartition previous = partitions.get(update.partitionKey());
+        return Collections.singletonList(getFlushSet(null, null));
+    }
+
+    /**
+     * Writes the content of this memtable to disk, and replaces it by the resulting sstables in its column family
+     * store.
+     * <p>
+     * If the table has more than one data directory, the content is split by the token boundaries of each
+     * directory, and written to one sstable per directory on that directory's flush executor. Otherwise, each set
+     * returned by {@link #getFlushSets()} is written to its own sstable; the first one is written by the calling
+     * thread, and the others concurrently on {@code shardExecutor}.
+     * <p>
+     * The sstables are only committed once all of them have been written, and are all aborted if any of them fails,
+     * so that a failed flush doesn't leave some of them behind.
+     */
+    void flush(ExecutorService shardExecutor)
+    {
+        ReplayPosition context = lastReplayPosition.get();
+        List<FlushRunnable> flushRunnables = flushRunnables(context);
+
+        List<Future<?>> futures = new ArrayList<>(flushRunnables.size());
+        FlushRunnable inline = null;
+        for (FlushRunnable flushRunnable : flushRunnables)
+        {
+            if (flushRunnable.dataDirectory != null)
+                futures.add(ColumnFamilyStore.perDiskFlushExecutor(flushRunnable.dataDirectory).submit((Callable<?>) flushRunnable));
+            else if (inline == null)
+                inline = flushRunnable;
+            else
+                futures.add(shardExecutor.submit((Callable<?>) flushRunnable));
+        }
 
-        long initialSize = 0;
-        if (previous == null)
+        // wait for all of them, even if one fails, not to abort sstables still being written
+        Throwable failure = null;
+        if (inline != null)
         {
-            final DecoratedKey cloneKey = allocator.clone(update.partitionKey(), opGroup);
-            AtomicBTreePartition empty = new AtomicBTreePartition(cfs.metadata, cloneKey, allocator);
-            // We'll add the columns later. This avoids wasting works if we get beaten in the putIfAbsent
-            previous = partitions.putIfAbsent(cloneKey, empty);
-            if (previous == null)
+            try
             {
-                previous = empty;
-                // allocate the row overhead after the fact; this saves over allocating and having to free after, but
-                // means we can overshoot our declared limit.
-                int overhead = (int) (cloneKey.getToken().getHeapSize() + ROW_OVERHEAD_HEAP_SIZE);
-                allocator.onHeap().allocate(overhead, opGroup);
-                initialSize = 8;
+                inline.call();
             }
-            else
+            catch (Throwable t)
             {
-                allocator.reclaimer().reclaimImmediately(cloneKey);
+                failure = t;
+            }
+        }
+        for (Future<?> future : futures)
+        {
+            try
+            {
+                FBUtilities.waitOnFuture(future);
+            }
+            catch (Throwable t)
+            {
+                failure = merge(failure, t);
             }
         }
 
-        long[] pair = previous.addAllWithSizeDelta(update, opGroup, indexer);
-        liveDataSize.addAndGet(initialSize + pair[0]);
-        columnsCollector.update(update.columns());
-        statsCollector.update(update.stats());
-        currentOperations.addAndGet(update.operationCount());
-        return pair[1];
-    }
+        if (failure == null)
+        {
+            for (FlushRunnable flushRunnable : flushRunnables)
+                failure = flushRunnable.commit(failure);
+        }
+        else
+        {
+            for (FlushRunnable flushRunnable : flushRunnables)
+                failure = flushRunnable.abort(failure);
+        }
+        maybeFail(failure);
 
-    public int partitionCount()
-    {
-        return partitions.size();
+        List<SSTableReader> sstables = new ArrayList<>();
+        for (FlushRunnable flushRunnable : flushRunnables)
+            sstables.addAll(flushRunnable.flushed());
+        cfs.replaceFlushed(this, sstables.isEmpty() ? null : sstables);
     }
 
-    public FlushRunnable flushRunnable()
+    private List<FlushRunnable> flushRunnables(ReplayPosition context)
     {
-        return new FlushRunnable(lastReplayPosition.get());
+        Directories.DataDirectory[] locations = cfs.getDirectories().getWriteableLocations();
+        Token[] diskBoundaries = splitRing(cfs.metadata.partitioner, locations.length);
+
+        List<FlushRunnable> flushRunnables = new ArrayList<>();
+        if (diskBoundaries.length == 0)
+        {
+            for (FlushSet flushSet : getFlushSets())
+            {
+                if (flushSet.partitionCount > 0)
+                    flushRunnables.add(new FlushRunnable(context, flushSet, null));
+            }
+            return flushRunnables;
+        }
+
+        for (int i = 0; i <= diskBoundaries.length; i++)
+        {
+            // keys are ordered by token first, so the minimum key bound of a token sorts before any key of that token
+            PartitionPosition from = i == 0 ? null : diskBoundaries[i - 1].minKeyBound();
+            PartitionPosition to = i == diskBoundaries.length ? null : diskBoundaries[i].minKeyBound();
+            FlushSet flushSet = getFlushSet(from, to);
+            if (flushSet.partitionCount > 0)
+                flushRunnables.add(new FlushRunnable(context, flushSet, locations[i]));
+        }
+        return flushRunnables;
     }
 
     public String toString()
     {
         return String.format("Memtable-%s@%s(%s serialized bytes, %s ops, %.0f%%/%.0f%% of on/off-heap limit)",
-                             cfs.name, hashCode(), FBUtilities.prettyPrintMemory(liveDataSize.get()), currentOperations,
+                             cfs.name, hashCode(), FBUtilities.prettyPrintMemory(getLiveDataSize()), getOperations(),
                              100 * allocator.onHeap().ownershipRatio(), 100 * allocator.offHeap().ownershipRatio());
     }
 
-    //用于按rowkey进行范围扫描的情况
-    public MemtableUnfilteredPartitionIterator makePartitionIterator(final ColumnFilter columnFilter, final DataRange dataRange, final boolean isForThrift)
-    {
-        AbstractBounds<PartitionPosition> keyRange = dataRange.keyRange();
-
-        boolean startIsMin = keyRange.left.isMinimum();
-        boolean stopIsMin = keyRange.right.isMinimum();
-
-        boolean isBound = keyRange instanceof Bounds;
-        boolean includeStart = isBound || keyRange instanceof IncludingExcludingBounds;
-        boolean includeStop = isBound || keyRange instanceof Range;
-        Map<PartitionPosition, AtomicBTreePartition> subMap;
-        if (startIsMin)
-            subMap = stopIsMin ? partitions : partitions.headMap(keyRange.right, includeStop);
-        else
-            subMap = stopIsMin
-                   ? partitions.tailMap(keyRange.left, includeStart)
-                   : partitions.subMap(keyRange.left, includeStart, keyRange.right, includeStop);
-
-        int minLocalDeletionTime = Integer.MAX_VALUE;
-
-        // avoid iterating over the memtable if we purge all tombstones
-        if (cfs.getCompactionStrategyManager().onlyPurgeRepairedTombstones())
-            minLocalDeletionTime = findMinLocalDeletionTime(subMap.entrySet().iterator());
-
-        final Iterator<Map.Entry<PartitionPosition, AtomicBTreePartition>> iter = subMap.entrySet().iterator();
-
-        return new MemtableUnfilteredPartitionIterator(cfs, iter, isForThrift, minLocalDeletionTime, columnFilter, dataRange);
-    }
-
-    private int findMinLocalDeletionTime(Iterator<Map.Entry<PartitionPosition, AtomicBTreePartition>> iterator)
+    protected static int findMinLocalDeletionTime(Iterator<Map.Entry<PartitionPosition, AtomicBTreePartition>> iterator)
     {
         int minLocalDeletionTime = Integer.MAX_VALUE;
         while (iterator.hasNext())
@@ -315,38 +401,61 @@ public class Memtable implements Comparable<Memtable>
         return minLocalDeletionTime;
     }
 
-    public Partition getPartition(DecoratedKey key) //只找单个Partition key的情况
+    public long creationTime()
     {
-        return partitions.get(key);
+        return creationTime;
     }
 
-    public long creationTime()
+    /**
+     * A set of partitions of a memtable to write to one sstable.
+     */
+    protected static final class FlushSet
     {
-        return creationTime;
+        // the partitions to write, in token order
+        final Iterable<AtomicBTreePartition> partitions;
+        final int partitionCount;
+        final PartitionColumns columns;
+        final EncodingStats stats;
+        final long liveDataSize;
+
+        public FlushSet(Iterable<AtomicBTreePartition> partitions, int partitionCount, PartitionColumns columns, EncodingStats stats, long liveDataSize)
+        {
+            this.partitions = partitions;
+            this.partitionCount = partitionCount;
+            this.columns = columns;
+            this.stats = stats;
+            this.liveDataSize = liveDataSize;
+        }
     }
 
     //由org.apache.cassandra.db.ColumnFamilyStore.Flush()触发
-    class FlushRunnable extends DiskAwareRunnable
+    class FlushRunnable extends DiskAwareRunnable implements Callable<SSTableTxnWriter>
     {
         private final ReplayPosition context;
+        private final FlushSet toFlush;
         private final long estimatedSize;
 
+        // the data directory to write to, or null to pick one based on the available space
+        final Directories.DataDirectory dataDirectory;
+
         private final boolean isBatchLogTable;
 
-        FlushRunnable(ReplayPosition context)
+        // the directory written to, and the writer prepared to commit once done (or null if nothing was written)
+        private Directories.DataDirectory directory;
+        private SSTableTxnWriter writer;
+
+        FlushRunnable(ReplayPosition context, FlushSet toFlush, Directories.DataDirectory dataDirectory)
         {
             this.context = context;
+            this.toFlush = toFlush;
+            this.dataDirectory = dataDirectory;
 
             long keySize = 0;
-            for (PartitionPosition key : partitions.keySet())
-            {
-                //  make sure we don't write non-sensical keys
-                assert key instanceof DecoratedKey;
-                keySize += ((DecoratedKey)key).getKey().remaining();
-            }
+            for (AtomicBTreePartition partition : toFlush.partitions)
+                keySize += partition.partitionKey().getKey().remaining();
             estimatedSize = (long) ((keySize // index entries
                                     + keySize // keys in data file
-                                    + liveDataSize.get()) // data
+                                    + toFlush.liveDataSize) // data
                                     * 1.2); // bloom filter and row index overhead
 
             this.isBatchLogTable = cfs.name.equals(SystemKeyspace.BATCHES) && cfs.keyspace.getName().equals(SystemKeyspace.NAME);
@@ -360,11 +469,52 @@ public class Memtable implements Comparable<Memtable>
         protected void runMayThrow() throws Exception
         {
             long writeSize = getExpectedWriteSize();
-            Directories.DataDirectory dataDirectory = getWriteDirectory(writeSize);
-            File sstableDirectory = cfs.getDirectories().getLocationForDisk(dataDirectory);
+            // fall back to any other directory if the one we are bound to can't take the write anymore
+            directory = dataDirectory;
+            if (directory == null
+                || directory.getAvailableSpace() < writeSize
+                || BlacklistedDirectories.isUnwritable(cfs.getDirectories().getLocationForDisk(directory)))
+                directory = getWriteDirectory(writeSize);
+            File sstableDirectory = cfs.getDirectories().getLocationForDisk(directory);
             assert sstableDirectory != null : "Flush task is not bound to any disk";
-            Collection<SSTableReader> sstables = writeSortedContents(context, sstableDirectory);
-            cfs.replaceFlushed(Memtable.this, sstables);
+
+            writer = writeSortedContents(context, sstableDirectory);
+        }
+
+        /**
+         * Writes the partitions of this runnable, returning the writer of the resulting sstables, prepared to commit
+         * (or null if nothing needed to be written). Unlike {@link #run()}, this doesn't wrap checked exceptions.
+         */
+        public SSTableTxnWriter call() throws Exception
+        {
+            runMayThrow();
+            return writer;
+        }
+
+        Throwable commit(Throwable accumulate)
+        {
+            return writer == null ? accumulate : writer.commit(accumulate);
+        }
+
+        Throwable abort(Throwable accumulate)
+        {
+            return writer == null ? accumulate : writer.abort(accumulate);
+        }
+
+        /**
+         * @return the sstables written, once committed
+         */
+        Collection<SSTableReader> flushed()
+        {
+            if (writer == null)
+                return Collections.emptyList();
+
+            Collection<SSTableReader> flushed = writer.finished();
+            long bytes = 0;
+            for (SSTableReader sstable : flushed)
+                bytes += sstable.bytesOnDisk();
+            cfs.metric.updateFlushedBytes(directory, bytes);
+            return flushed;
         }
 
         protected Directories getDirectories()
@@ -372,18 +522,18 @@ public class Memtable implements Comparable<Memtable>
             return cfs.getDirectories();
         }
 
-        private Collection<SSTableReader> writeSortedContents(ReplayPosition context, File sstableDirectory)
+        private SSTableTxnWriter writeSortedContents(ReplayPosition context, File sstableDirectory)
         {
             logger.debug("Writing {}", Memtable.this.toString());
 
-            Collection<SSTableReader> ssTables;
-            try (SSTableTxnWriter writer = createFlushWriter(cfs.getSSTablePath(sstableDirectory), columnsCollector.get(), statsCollector.get()))
+            SSTableTxnWriter writer = createFlushWriter(cfs.getSSTablePath(sstableDirectory), toFlush.columns, toFlush.stats);
+            try
             {
                 boolean trackContention = logger.isTraceEnabled();
                 int heavilyContendedRowCount = 0;
                 // (we can't clear out the map as-we-go to free up memory,
                 //  since the memtable is being used for queries in the "pending flush" category)
-                for (AtomicBTreePartition partition : partitions.values())
+                for (AtomicBTreePartition partition : toFlush.partitions)
                 {
                     // Each batchlog partition is a separate entry in the log. And for an entry, we only do 2
                     // operations: 1) we insert the entry and 2) we delete it. Further, BL data is strictly local,
@@ -405,6 +555,9 @@ public class Memtable implements Comparable<Memtable>
                     }
                 }
 
+                if (heavilyContendedRowCount > 0)
+                    logger.trace(String.format("High update contention in %d/%d partitions of %s ", heavilyContendedRowCount, toFlush.partitionCount, Memtable.this.toString()));
+
                 if (writer.getFilePointer() > 0)
                 {
                     logger.debug(String.format("Completed flushing %s (%s) for commitlog position %s",
@@ -413,20 +566,18 @@ public class Memtable implements Comparable<Memtable>
                                                context));
 
                     // sstables should contain non-repaired data.
-                    ssTables = writer.finish(true);
+                    writer.setOpenResult(true).prepareToCommit();
+                    return writer;
                 }
-                else
-                {
-                    logger.debug("Completed flushing {}; nothing needed to be retained.  Commitlog position was {}",
-                                writer.getFilename(), context);
-                    writer.abort();
-                    ssTables = null;
-                }
-
-                if (heavilyContendedRowCount > 0)
-                    logger.trace(String.format("High update contention in %d/%d partitions of %s ", heavilyContendedRowCount, partitions.size(), Memtable.this.toString()));
 
-                return ssTables;
+                logger.debug("Completed flushing {}; nothing needed to be retained.  Commitlog position was {}",
+                            writer.getFilename(), context);
+                writer.abort();
+                return null;
+            }
+            catch (Throwable t)
+            {
+                throw Throwables.propagate(writer.abort(t));
             }
         }
 
@@ -440,7 +591,7 @@ public class Memtable implements Comparable<Memtable>
             MetadataCollector sstableMetadataCollector = new MetadataCollector(cfs.metadata.comparator).replayPosition(context);
             return new SSTableTxnWriter(txn,
                                         cfs.createSSTableMultiWriter(Descriptor.fromFilename(filename),
-                                                                     (long)partitions.size(),
+                                                                     (long)toFlush.partitionCount,
                                                                      ActiveRepairService.UNREPAIRED_SSTABLE,
                                                                      sstableMetadataCollector,
                                                                      new SerializationHeader(cfs.metadata, columns, stats),
@@ -448,14 +599,17 @@ public class Memtable implements Comparable<Memtable>
         }
     }
 
-    private static int estimateRowOverhead(final int count)
+    /**
+     * Estimates the on-heap overhead of each partition in a memtable, by measuring the size of {@code count} keys
+     * indexed in {@code partitions}, which must be empty.
+     */
+    protected static int estimateRowOverhead(final int count, Map<PartitionPosition, Object> partitions)
     {
         // calculate row overhead
         try (final OpOrder.Group group = new OpOrder().start())
         {
             int rowOverhead;
             MemtableAllocator allocator = MEMORY_POOL.newAllocator();
-            ConcurrentNavigableMap<PartitionPosition, Object> partitions = new ConcurrentSkipListMap<>();
             final Object val = new Object();
             for (int i = 0 ; i < count ; i++)
                 partitions.put(allocator.clone(new BufferDecoratedKey(new LongToken(i), ByteBufferUtil.EMPTY_BYTE_BUFFER), group), val);
@@ -469,6 +623,9 @@ public class Memtable implements Comparable<Memtable>
         }
     }
 
+    /**
+     * Iterates over the partitions of a memtable selected by a range query, which must be provided in token order.
+     */
     public static class MemtableUnfilteredPartitionIterator extends AbstractUnfilteredPartitionIterator
     {
         private final ColumnFamilyStore cfs;
@@ -519,11 +676,11 @@ public class Memtable implements Comparable<Memtable>
         }
     }
 
-    private static class ColumnsCollector
+    protected static class ColumnsCollector
     {
         private final HashMap<ColumnDefinition, AtomicBoolean> predefined = new HashMap<>();
         private final ConcurrentSkipListSet<ColumnDefinition> extra = new ConcurrentSkipListSet<>();
-        ColumnsCollector(PartitionColumns columns)
+        public ColumnsCollector(PartitionColumns columns)
         {
             for (ColumnDefinition def : columns.statics)
                 predefined.put(def, new AtomicBoolean());
@@ -563,7 +720,7 @@ public class Memtable implements Comparable<Memtable>
         }
     }
 
-    private static class StatsCollector
+    protected static class StatsCollector
     {
         private final AtomicReference<EncodingStats> stats = new AtomicReference<>(EncodingStats.NO_STATS);
 
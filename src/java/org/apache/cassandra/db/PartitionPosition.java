@@ -25,6 +25,7 @@ import org.apache.cassandra.dht.*;
 import org.apache.cassandra.io.util.DataOutputPlus;
 import org.apache.cassandra.service.StorageService;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.ByteComparable;
 
 public interface PartitionPosition extends RingPosition<PartitionPosition>
 {
@@ -55,6 +56,30 @@ public interface PartitionPosition extends RingPosition<PartitionPosition>
     public Kind kind();
     public boolean isMinimum();
 
+    /**
+     * Writes a prefix-free byte-comparable representation of this position: the representations of two positions
+     * compare as unsigned bytes the way the positions themselves compare. Requires a byte-comparable token (see
+     * {@link Token#isByteComparable}).
+     */
+    public default void writeComparableBytes(DataOutputPlus out) throws IOException
+    {
+        getToken().writeComparableBytes(out);
+        // bounds sort around the keys of their token, and keys of the same token sort by their bytes
+        switch (kind())
+        {
+            case MIN_BOUND:
+                out.writeByte(0x20);
+                break;
+            case ROW_KEY:
+                out.writeByte(0x40);
+                ByteComparable.writeEscaped(((DecoratedKey) this).getKey(), out);
+                break;
+            case MAX_BOUND:
+                out.writeByte(0x60);
+                break;
+        }
+    }
+
     public static class RowPositionSerializer implements IPartitionerDependentSerializer<PartitionPosition>
     {
         /*
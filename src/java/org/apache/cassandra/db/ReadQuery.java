@@ -17,6 +17,9 @@
  */
 package org.apache.cassandra.db;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
 import org.apache.cassandra.db.filter.DataLimits;
 import org.apache.cassandra.db.partitions.*;
 import org.apache.cassandra.exceptions.RequestExecutionException;
@@ -101,6 +104,21 @@ public interface ReadQuery
      */
     public PartitionIterator execute(ConsistencyLevel consistency, ClientState clientState) throws RequestExecutionException;
 
+    /**
+     * Executes the query at the provided consistency level without waiting on the replicas, if the query supports it.
+     * <p>
+     * By default, this simply executes the query synchronously.
+     *
+     * @param consistency the consistency level to achieve for the query.
+     * @param clientState the {@code ClientState} for the query, as for {@link #execute}.
+     *
+     * @return a future on the result of the query.
+     */
+    public default ListenableFuture<PartitionIterator> executeAsync(ConsistencyLevel consistency, ClientState clientState) throws RequestExecutionException
+    {
+        return Futures.immediateFuture(execute(consistency, clientState));
+    }
+
     /**
      * Execute the query for internal queries (that is, it basically executes the query locally).
      *
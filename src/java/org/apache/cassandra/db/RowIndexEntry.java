@@ -32,7 +32,9 @@ import org.apache.cassandra.io.sstable.IndexHelper;
 import org.apache.cassandra.io.sstable.format.Version;
 import org.apache.cassandra.io.util.DataInputPlus;
 import org.apache.cassandra.io.util.DataOutputPlus;
+import org.apache.cassandra.io.util.FileDataInput;
 import org.apache.cassandra.io.util.FileUtils;
+import org.apache.cassandra.io.util.SegmentedFile;
 import org.apache.cassandra.utils.ObjectSizes;
 
 public class RowIndexEntry<T> implements IMeasurableMemory
@@ -73,7 +75,16 @@ public class RowIndexEntry<T> implements IMeasurableMemory
      */
     public boolean isIndexed()
     {
-        return !columnsIndex().isEmpty();
+        return columnsCount() > 0;
+    }
+
+    /**
+     * @return whether the column index of this entry is held on heap. If it isn't, {@link #columnsIndex()} is
+     * not available and the index must be accessed through {@link #openWithIndex(SegmentedFile)}.
+     */
+    public boolean indexOnHeap()
+    {
+        return true;
     }
 
     public DeletionTime deletionTime()
@@ -105,6 +116,26 @@ public class RowIndexEntry<T> implements IMeasurableMemory
         return Collections.emptyList();
     }
 
+    /**
+     * @return the number of column index blocks of this entry, 0 if it isn't indexed.
+     */
+    public int columnsCount()
+    {
+        return columnsIndex().size();
+    }
+
+    /**
+     * Gives access to the column index of this entry, reading it from {@code indexFile} if it isn't held on heap.
+     * This method will throw {@code UnsupportedOperationException} if {@code !isIndexed()}, and the returned
+     * retriever should be closed once done with.
+     *
+     * @param indexFile the partition index file of the sstable this entry comes from.
+     */
+    public IndexHelper.IndexInfoRetriever openWithIndex(SegmentedFile indexFile)
+    {
+        throw new UnsupportedOperationException();
+    }
+
     public long unsharedHeapSize()
     {
         return EMPTY_SIZE;
@@ -216,6 +247,21 @@ public class RowIndexEntry<T> implements IMeasurableMemory
                 long headerLength = in.readUnsignedVInt();
                 DeletionTime deletionTime = DeletionTime.serializer.deserialize(in);
                 int entries = (int)in.readUnsignedVInt();
+
+                // For wide partitions, we only record where the serialized IndexInfo are in the index file and read
+                // them on demand, rather than materializing them all on heap (and then in the key cache).
+                if (in instanceof FileDataInput && size > DatabaseDescriptor.getColumnIndexCacheSize())
+                {
+                    long indexInfoPosition = ((FileDataInput) in).getFilePointer();
+                    int indexInfoSize = size - TypeSizes.sizeofUnsignedVInt(headerLength)
+                                             - (int) DeletionTime.serializer.serializedSize(deletionTime)
+                                             - TypeSizes.sizeofUnsignedVInt(entries);
+                    in.skipBytesFully(indexInfoSize);
+
+                    int offsetsOffset = indexInfoSize - entries * TypeSizes.sizeof(0);
+                    return new ShallowIndexedEntry(position, deletionTime, headerLength, indexInfoPosition, offsetsOffset, entries, idxSerializer);
+                }
+
                 List<IndexHelper.IndexInfo> columnsIndex = new ArrayList<>(entries);
                 for (int i = 0; i < entries; i++)
                     columnsIndex.add(idxSerializer.deserialize(in));
@@ -319,6 +365,12 @@ public class RowIndexEntry<T> implements IMeasurableMemory
             return columnsIndex;
         }
 
+        @Override
+        public IndexHelper.IndexInfoRetriever openWithIndex(SegmentedFile indexFile)
+        {
+            return new IndexHelper.ListIndexInfoRetriever(columnsIndex);
+        }
+
         @Override
         protected int promotedSize(IndexHelper.IndexInfo.Serializer idxSerializer)
         {
@@ -346,4 +398,132 @@ public class RowIndexEntry<T> implements IMeasurableMemory
                    + ObjectSizes.sizeOfReferenceArray(columnsIndex.size());
         }
     }
+
+    /**
+     * An entry in the row index for a row whose columns are indexed, but that only keeps the position of its
+     * serialized IndexInfo in the index file rather than the IndexInfo themselves.
+     * <p>
+     * The IndexInfo are serialized one after the other, followed by the offset of each of them relative to the first
+     * one, so that a given IndexInfo can be read without deserializing the ones before it. This is used for partitions
+     * whose column index is bigger than {@code column_index_cache_size_in_kb}.
+     */
+    private static class ShallowIndexedEntry extends RowIndexEntry<IndexHelper.IndexInfo>
+    {
+        private static final long BASE_SIZE = ObjectSizes.measure(new ShallowIndexedEntry(0, DeletionTime.LIVE, 0, 0, 0, 2, null));
+
+        private final DeletionTime deletionTime;
+        private final long headerLength;
+
+        // The position in the index file of the first serialized IndexInfo
+        private final long indexInfoPosition;
+        // The offset, relative to indexInfoPosition, of the IndexInfo offsets
+        private final int offsetsOffset;
+        private final int columnsCount;
+
+        private final IndexHelper.IndexInfo.Serializer idxSerializer;
+
+        private ShallowIndexedEntry(long position,
+                                    DeletionTime deletionTime,
+                                    long headerLength,
+                                    long indexInfoPosition,
+                                    int offsetsOffset,
+                                    int columnsCount,
+                                    IndexHelper.IndexInfo.Serializer idxSerializer)
+        {
+            super(position);
+            assert deletionTime != null;
+            assert columnsCount > 1;
+            this.deletionTime = deletionTime;
+            this.headerLength = headerLength;
+            this.indexInfoPosition = indexInfoPosition;
+            this.offsetsOffset = offsetsOffset;
+            this.columnsCount = columnsCount;
+            this.idxSerializer = idxSerializer;
+        }
+
+        @Override
+        public DeletionTime deletionTime()
+        {
+            return deletionTime;
+        }
+
+        @Override
+        public long headerLength()
+        {
+            return headerLength;
+        }
+
+        @Override
+        public boolean indexOnHeap()
+        {
+            return false;
+        }
+
+        @Override
+        public List<IndexHelper.IndexInfo> columnsIndex()
+        {
+            throw new UnsupportedOperationException("The column index of this entry is not held on heap");
+        }
+
+        @Override
+        public int columnsCount()
+        {
+            return columnsCount;
+        }
+
+        @Override
+        public IndexHelper.IndexInfoRetriever openWithIndex(SegmentedFile indexFile)
+        {
+            return new FileIndexInfoRetriever(indexFile.createReader(indexInfoPosition));
+        }
+
+        @Override
+        protected int promotedSize(IndexHelper.IndexInfo.Serializer idxSerializer)
+        {
+            throw new UnsupportedOperationException("The column index of this entry is not held on heap");
+        }
+
+        @Override
+        public long unsharedHeapSize()
+        {
+            return BASE_SIZE + deletionTime.unsharedHeapSize();
+        }
+
+        private class FileIndexInfoRetriever implements IndexHelper.IndexInfoRetriever
+        {
+            private final FileDataInput indexReader;
+
+            // The last IndexInfo read, since readers tend to ask for the same one repeatedly.
+            private int lastIndex = -1;
+            private IndexHelper.IndexInfo lastInfo;
+
+            private FileIndexInfoRetriever(FileDataInput indexReader)
+            {
+                this.indexReader = indexReader;
+            }
+
+            public int size()
+            {
+                return columnsCount;
+            }
+
+            public IndexHelper.IndexInfo get(int i) throws IOException
+            {
+                if (i == lastIndex)
+                    return lastInfo;
+
+                indexReader.seek(indexInfoPosition + offsetsOffset + i * TypeSizes.sizeof(0));
+                int offset = indexReader.readInt();
+                indexReader.seek(indexInfoPosition + offset);
+                lastInfo = idxSerializer.deserialize(indexReader);
+                lastIndex = i;
+                return lastInfo;
+            }
+
+            public void close() throws IOException
+            {
+                indexReader.close();
+            }
+        }
+    }
 }
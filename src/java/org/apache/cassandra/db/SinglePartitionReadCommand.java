@@ -22,6 +22,8 @@ import java.nio.ByteBuffer;
 import java.util.*;
 
 import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.ListenableFuture;
+
 import org.apache.cassandra.cache.IRowCacheEntry;
 import org.apache.cassandra.cache.RowCacheKey;
 import org.apache.cassandra.cache.RowCacheSentinel;
@@ -472,6 +474,12 @@ public abstract class SinglePartitionReadCommand<F extends ClusteringIndexFilter
             return StorageProxy.read(this, consistency, clientState);
         }
 
+        @Override
+        public ListenableFuture<PartitionIterator> executeAsync(ConsistencyLevel consistency, ClientState clientState) throws RequestExecutionException
+        {
+            return StorageProxy.readAsync(this, consistency, clientState);
+        }
+
         public int nowInSec()
         {
             return nowInSec;
@@ -0,0 +1,284 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
+
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.db.filter.ColumnFilter;
+import org.apache.cassandra.db.partitions.AtomicBTreePartition;
+import org.apache.cassandra.db.partitions.Partition;
+import org.apache.cassandra.db.partitions.PartitionUpdate;
+import org.apache.cassandra.db.rows.EncodingStats;
+import org.apache.cassandra.dht.*;
+import org.apache.cassandra.index.transactions.UpdateTransaction;
+import org.apache.cassandra.utils.concurrent.OpOrder;
+
+/**
+ * The default memtable, which indexes partitions in concurrent skip lists sorted by token. The skip lists are split
+ * in shards covering contiguous parts of the token ring.
+ */
+public class SkipListMemtable extends Memtable
+{
+    private static final int ROW_OVERHEAD_HEAP_SIZE = //
+            estimateRowOverhead( //
+                    Integer.parseInt( //
+                            System.getProperty( //
+                                    "cassandra.memtable_row_overhead_computation_step", "1000")), //原来是"100000"
+                    new ConcurrentSkipListMap<>());
+
+    // The memtable content is split in shards, each covering a contiguous part of the token ring, so that writes
+    // to different shards don't contend on the same structures and each shard can be flushed in parallel. The
+    // boundaries are sorted, and shard i holds the tokens t such that shardBoundaries[i-1] <= t < shardBoundaries[i].
+    private final Token[] shardBoundaries;
+    private final MemtableShard[] shards;
+
+    public SkipListMemtable(ColumnFamilyStore cfs, int shardCount)
+    {
+        super(cfs);
+        this.shardBoundaries = splitRing(cfs.metadata.partitioner, shardCount);
+        this.shards = createShards(cfs.metadata, shardBoundaries.length + 1);
+    }
+
+    // ONLY to be used for testing, to create a mock Memtable
+    @VisibleForTesting
+    public SkipListMemtable(CFMetaData metadata)
+    {
+        super(metadata);
+        this.shardBoundaries = new Token[0];
+        this.shards = createShards(metadata, 1);
+    }
+
+    private static MemtableShard[] createShards(CFMetaData metadata, int count)
+    {
+        MemtableShard[] shards = new MemtableShard[count];
+        for (int i = 0; i < count; i++)
+            shards[i] = new MemtableShard(metadata);
+        return shards;
+    }
+
+    private MemtableShard shardFor(PartitionPosition key)
+    {
+        if (shards.length == 1)
+            return shards[0];
+
+        int i = Arrays.binarySearch(shardBoundaries, key.getToken());
+        return shards[i < 0 ? -i - 1 : i + 1];
+    }
+
+    public int shardCount()
+    {
+        return shards.length;
+    }
+
+    public long getLiveDataSize()
+    {
+        long size = 0;
+        for (MemtableShard shard : shards)
+            size += shard.liveDataSize.get();
+        return size;
+    }
+
+    public long getOperations()
+    {
+        long operations = 0;
+        for (MemtableShard shard : shards)
+            operations += shard.currentOperations.get();
+        return operations;
+    }
+
+    public boolean isClean()
+    {
+        for (MemtableShard shard : shards)
+        {
+            if (!shard.partitions.isEmpty())
+                return false;
+        }
+        return true;
+    }
+
+    protected long put(PartitionUpdate update, UpdateTransaction indexer, OpOrder.Group opGroup)
+    {
+        MemtableShard shard = shardFor(update.partitionKey());
+        ConcurrentNavigableMap<PartitionPosition, AtomicBTreePartition> partitions = shard.partitions;
+        AtomicBTreePartition previous = partitions.get(update.partitionKey());
+
+        long initialSize = 0;
+        if (previous == null)
+        {
+            final DecoratedKey cloneKey = allocator.clone(update.partitionKey(), opGroup);
+            AtomicBTreePartition empty = new AtomicBTreePartition(cfs.metadata, cloneKey, allocator);
+            // We'll add the columns later. This avoids wasting works if we get beaten in the putIfAbsent
+            previous = partitions.putIfAbsent(cloneKey, empty);
+            if (previous == null)
+            {
+                previous = empty;
+                // allocate the row overhead after the fact; this saves over allocating and having to free after, but
+                // means we can overshoot our declared limit.
+                int overhead = (int) (cloneKey.getToken().getHeapSize() + ROW_OVERHEAD_HEAP_SIZE);
+                allocator.onHeap().allocate(overhead, opGroup);
+                initialSize = 8;
+            }
+            else
+            {
+                allocator.reclaimer().reclaimImmediately(cloneKey);
+            }
+        }
+
+        long[] pair = previous.addAllWithSizeDelta(update, opGroup, indexer);
+        shard.liveDataSize.addAndGet(initialSize + pair[0]);
+        shard.columnsCollector.update(update.columns());
+        shard.statsCollector.update(update.stats());
+        shard.currentOperations.addAndGet(update.operationCount());
+        return pair[1];
+    }
+
+
+    public int partitionCount()
+    {
+        int count = 0;
+        for (MemtableShard shard : shards)
+            count += shard.partitions.size();
+        return count;
+    }
+
+    public MemtableUnfilteredPartitionIterator makePartitionIterator(final ColumnFilter columnFilter, final DataRange dataRange, final boolean isForThrift)
+    {
+        AbstractBounds<PartitionPosition> keyRange = dataRange.keyRange();
+
+        boolean startIsMin = keyRange.left.isMinimum();
+        boolean stopIsMin = keyRange.right.isMinimum();
+
+        boolean isBound = keyRange instanceof Bounds;
+        boolean includeStart = isBound || keyRange instanceof IncludingExcludingBounds;
+        boolean includeStop = isBound || keyRange instanceof Range;
+        // Shards cover consecutive token ranges, so concatenating the selected part of each of them in order gives
+        // us the partitions of the range in the right order.
+        List<Map<PartitionPosition, AtomicBTreePartition>> subMaps = new ArrayList<>(shards.length);
+        for (MemtableShard shard : shards)
+        {
+            ConcurrentNavigableMap<PartitionPosition, AtomicBTreePartition> partitions = shard.partitions;
+            if (startIsMin)
+                subMaps.add(stopIsMin ? partitions : partitions.headMap(keyRange.right, includeStop));
+            else
+                subMaps.add(stopIsMin
+                            ? partitions.tailMap(keyRange.left, includeStart)
+                            : partitions.subMap(keyRange.left, includeStart, keyRange.right, includeStop));
+        }
+
+        int minLocalDeletionTime = Integer.MAX_VALUE;
+
+        // avoid iterating over the memtable if we purge all tombstones
+        if (cfs.getCompactionStrategyManager().onlyPurgeRepairedTombstones())
+            minLocalDeletionTime = findMinLocalDeletionTime(entriesIterator(subMaps));
+
+        final Iterator<Map.Entry<PartitionPosition, AtomicBTreePartition>> iter = entriesIterator(subMaps);
+
+        return new MemtableUnfilteredPartitionIterator(cfs, iter, isForThrift, minLocalDeletionTime, columnFilter, dataRange);
+    }
+
+    private static Iterator<Map.Entry<PartitionPosition, AtomicBTreePartition>> entriesIterator(List<Map<PartitionPosition, AtomicBTreePartition>> maps)
+    {
+        if (maps.size() == 1)
+            return maps.get(0).entrySet().iterator();
+
+        return Iterators.concat(Iterators.transform(maps.iterator(), map -> map.entrySet().iterator()));
+    }
+
+    public Partition getPartition(DecoratedKey key) //只找单个Partition key的情况
+    {
+        return shardFor(key).partitions.get(key);
+    }
+
+    protected FlushSet getFlushSet(PartitionPosition from, PartitionPosition to)
+    {
+        List<Map<PartitionPosition, AtomicBTreePartition>> toFlush = new ArrayList<>(shards.length);
+        PartitionColumns columns = PartitionColumns.NONE;
+        EncodingStats stats = EncodingStats.NO_STATS;
+        int count = 0;
+        for (MemtableShard shard : shards)
+        {
+            ConcurrentNavigableMap<PartitionPosition, AtomicBTreePartition> partitions = shard.partitions;
+            if (from != null)
+                partitions = partitions.tailMap(from, true);
+            if (to != null)
+                partitions = partitions.headMap(to, false);
+            if (partitions.isEmpty())
+                continue;
+
+            toFlush.add(partitions);
+            count += partitions.size();
+            columns = columns.mergeTo(shard.columnsCollector.get());
+            stats = stats.mergeWith(shard.statsCollector.get());
+        }
+
+        // we don't track the data size per partition, so assume the partitions of the range have an average size
+        int partitionCount = partitionCount();
+        long liveDataSize = partitionCount == 0 ? 0 : getLiveDataSize() * count / partitionCount;
+        return new FlushSet(Iterables.concat(Iterables.transform(toFlush, Map::values)), count, columns, stats, liveDataSize);
+    }
+
+    protected List<FlushSet> getFlushSets()
+    {
+        List<FlushSet> flushSets = new ArrayList<>(shards.length);
+        for (MemtableShard shard : shards)
+        {
+            flushSets.add(new FlushSet(shard.partitions.values(),
+                                       shard.partitions.size(),
+                                       shard.columnsCollector.get(),
+                                       shard.statsCollector.get(),
+                                       shard.liveDataSize.get()));
+        }
+        return flushSets;
+    }
+
+    /**
+     * The partitions of one shard of the memtable, along with their size and content accounting.
+     */
+    private static class MemtableShard
+    {
+        // We index the memtable by PartitionPosition only for the purpose of being able
+        // to select key range using Token.KeyBound. However put() ensures that we
+        // actually only store DecoratedKey.
+        //PartitionPosition接口是java.lang.Comparable<C>的子接口，
+        //往ConcurrentSkipListMap放数据时，
+        //会在java.util.concurrent.ConcurrentSkipListMap.cpr(Comparator, Object, Object)里面转成((Comparable)x).compareTo(y);
+        //而DecoratedKey类实现了PartitionPosition接口
+        //它的DecoratedKey.compareTo(PartitionPosition)方法中会依据不同IPartitioner的子类进行比较，
+        //比如Murmur3Partitioner是对key进行hash后，按hash值的大小来排的，
+        //所以数据放入ConcurrentSkipListMap后并不是按key的自然序来排的。
+        private final ConcurrentNavigableMap<PartitionPosition, AtomicBTreePartition> partitions = new ConcurrentSkipListMap<>();
+        private final AtomicLong liveDataSize = new AtomicLong(0);
+        private final AtomicLong currentOperations = new AtomicLong(0);
+        private final ColumnsCollector columnsCollector;
+        private final StatsCollector statsCollector = new StatsCollector();
+
+        private MemtableShard(CFMetaData metadata)
+        {
+            this.columnsCollector = new ColumnsCollector(metadata.partitionColumns());
+        }
+    }
+
+}
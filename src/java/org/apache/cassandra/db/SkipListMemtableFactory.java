@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.exceptions.ConfigurationException;
+
+import static java.lang.String.format;
+
+/**
+ * Creates {@link SkipListMemtable}s, the default.
+ * <p>
+ * Accepts a {@code shards} option overriding the {@code memtable_shards} setting of cassandra.yaml for the table.
+ */
+public class SkipListMemtableFactory implements MemtableFactory
+{
+    public static final String SHARDS_OPTION = "shards";
+
+    // null to use the value of cassandra.yaml at the time the memtable is created
+    private final Integer shards;
+
+    public SkipListMemtableFactory(Map<String, String> options)
+    {
+        Map<String, String> unknown = new HashMap<>(options);
+        String shardsOption = unknown.remove(SHARDS_OPTION);
+        if (!unknown.isEmpty())
+            throw new ConfigurationException(format("Properties specified %s are not understood by %s", unknown.keySet(), getClass().getSimpleName()));
+
+        if (shardsOption == null)
+        {
+            shards = null;
+            return;
+        }
+
+        try
+        {
+            shards = Integer.parseInt(shardsOption);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new ConfigurationException(format("Invalid value %s for '%s' memtable sub-option - must be an integer", shardsOption, SHARDS_OPTION));
+        }
+        if (shards < 1)
+            throw new ConfigurationException(format("'%s' memtable sub-option must be at least 1 (got %d)", SHARDS_OPTION, shards));
+    }
+
+    public Memtable create(ColumnFamilyStore cfs)
+    {
+        return new SkipListMemtable(cfs, shards == null ? DatabaseDescriptor.getMemtableShards() : shards);
+    }
+}
@@ -103,6 +103,7 @@ public final class SystemKeyspace
     public static final String AVAILABLE_RANGES = "available_ranges";
     public static final String VIEWS_BUILDS_IN_PROGRESS = "views_builds_in_progress";
     public static final String BUILT_VIEWS = "built_views";
+    public static final String PREPARED_STATEMENTS = "prepared_statements";
 
     @Deprecated public static final String LEGACY_HINTS = "hints";
     @Deprecated public static final String LEGACY_BATCHLOG = "batchlog";
@@ -286,6 +287,15 @@ public final class SystemKeyspace
                 + "view_name text,"
                 + "PRIMARY KEY ((keyspace_name), view_name))");
 
+    private static final CFMetaData PreparedStatements =
+        compile(PREPARED_STATEMENTS,
+                "prepared statements",
+                "CREATE TABLE %s ("
+                + "prepared_id blob,"
+                + "logged_keyspace text,"
+                + "query_string text,"
+                + "PRIMARY KEY ((prepared_id)))");
+
     @Deprecated
     public static final CFMetaData LegacyHints =
         compile(LEGACY_HINTS,
@@ -454,6 +464,7 @@ public final class SystemKeyspace
                          AvailableRanges,
                          ViewsBuildsInProgress,
                          BuiltViews,
+                         PreparedStatements,
                          LegacyHints,
                          LegacyBatchlog,
                          LegacyKeyspaces,
@@ -1281,6 +1292,41 @@ public final class SystemKeyspace
         availableRanges.truncateBlocking();
     }
 
+    public static void writePreparedStatement(String loggedKeyspace, MD5Digest key, String cql)
+    {
+        String req = "INSERT INTO system.%s (prepared_id, logged_keyspace, query_string) VALUES (?, ?, ?)";
+        executeInternal(String.format(req, PREPARED_STATEMENTS), ByteBuffer.wrap(key.bytes), loggedKeyspace, cql);
+    }
+
+    public static void removePreparedStatement(MD5Digest key)
+    {
+        String req = "DELETE FROM system.%s WHERE prepared_id = ?";
+        executeInternal(String.format(req, PREPARED_STATEMENTS), ByteBuffer.wrap(key.bytes));
+    }
+
+    /**
+     * @return the logged keyspace (possibly null) and the query string of the persisted prepared statement with this id,
+     * or null if there is none
+     */
+    public static Pair<String, String> loadPreparedStatement(MD5Digest key)
+    {
+        String req = "SELECT logged_keyspace, query_string FROM system.%s WHERE prepared_id = ?";
+        UntypedResultSet result = executeInternal(String.format(req, PREPARED_STATEMENTS), ByteBuffer.wrap(key.bytes));
+        if (result.isEmpty())
+            return null;
+
+        UntypedResultSet.Row row = result.one();
+        return Pair.create(row.has("logged_keyspace") ? row.getString("logged_keyspace") : null, row.getString("query_string"));
+    }
+
+    public static List<MD5Digest> loadPreparedStatementIds()
+    {
+        List<MD5Digest> ids = new ArrayList<>();
+        for (UntypedResultSet.Row row : executeInternal(String.format("SELECT prepared_id FROM system.%s", PREPARED_STATEMENTS)))
+            ids.add(MD5Digest.wrap(ByteBufferUtil.getArray(row.getBytes("prepared_id"))));
+        return ids;
+    }
+
     /**
      * Compare the release version in the system.local table with the one included in the distro.
      * If they don't match, snapshot all tables in the system keyspace. This is intended to be
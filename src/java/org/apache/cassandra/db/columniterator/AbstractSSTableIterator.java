@@ -20,7 +20,6 @@ package org.apache.cassandra.db.columniterator;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.Iterator;
-import java.util.List;
 
 import org.apache.cassandra.config.CFMetaData;
 import org.apache.cassandra.db.*;
@@ -31,6 +30,7 @@ import org.apache.cassandra.io.sstable.CorruptSSTableException;
 import org.apache.cassandra.io.sstable.IndexHelper;
 import org.apache.cassandra.io.util.FileDataInput;
 import org.apache.cassandra.io.util.FileMark;
+import org.apache.cassandra.io.util.SegmentedFile;
 import org.apache.cassandra.utils.ByteBufferUtil;
 
 //从SSTable中读出某个Partition，然后遍历这个Partition中的每一行
@@ -406,28 +406,30 @@ abstract class AbstractSSTableIterator implements SliceableUnfilteredRowIterator
     }
 
     // Used by indexed readers to store where they are of the index.
-    protected static class IndexState
+    protected static class IndexState implements AutoCloseable
     {
         private final Reader reader;
         private final ClusteringComparator comparator;
 
         private final RowIndexEntry indexEntry;
-        private final List<IndexHelper.IndexInfo> indexes;
+        private final IndexHelper.IndexInfoRetriever indexes;
         private final boolean reversed;
 
         private int currentIndexIdx;
+        // The IndexInfo for currentIndexIdx, or null if currentIndexIdx is not a valid block.
+        private IndexHelper.IndexInfo currentIndex;
 
         // Marks the beginning of the block corresponding to currentIndexIdx.
         private FileMark mark;
 
-        public IndexState(Reader reader, ClusteringComparator comparator, RowIndexEntry indexEntry, boolean reversed)
+        public IndexState(Reader reader, ClusteringComparator comparator, RowIndexEntry indexEntry, boolean reversed, SegmentedFile indexFile)
         {
             this.reader = reader;
             this.comparator = comparator;
             this.indexEntry = indexEntry;
-            this.indexes = indexEntry.columnsIndex();
+            this.indexes = indexEntry.openWithIndex(indexFile);
             this.reversed = reversed;
-            this.currentIndexIdx = reversed ? indexEntry.columnsIndex().size() : -1;
+            this.currentIndexIdx = reversed ? indexEntry.columnsCount() : -1;
         }
 
         public boolean isDone()
@@ -439,16 +441,23 @@ abstract class AbstractSSTableIterator implements SliceableUnfilteredRowIterator
         public void setToBlock(int blockIdx) throws IOException
         {
             if (blockIdx >= 0 && blockIdx < indexes.size())
-                reader.seekToPosition(columnOffset(blockIdx));
+            {
+                currentIndex = index(blockIdx);
+                reader.seekToPosition(columnOffset(currentIndex));
+            }
+            else
+            {
+                currentIndex = null;
+            }
 
             currentIndexIdx = blockIdx;
-            reader.openMarker = blockIdx > 0 ? indexes.get(blockIdx - 1).endOpenMarker : null;
+            reader.openMarker = blockIdx > 0 ? index(blockIdx - 1).endOpenMarker : null;
             mark = reader.file.mark();
         }
 
-        private long columnOffset(int i)
+        private long columnOffset(IndexHelper.IndexInfo info)
         {
-            return indexEntry.position + indexes.get(i).offset;
+            return indexEntry.position + info.offset;
         }
 
         public int blocksCount()
@@ -462,12 +471,13 @@ abstract class AbstractSSTableIterator implements SliceableUnfilteredRowIterator
             assert currentIndexIdx >= 0;
             while (currentIndexIdx + 1 < indexes.size() && isPastCurrentBlock())
             {
-                reader.openMarker = currentIndex().endOpenMarker;
+                reader.openMarker = currentIndex.endOpenMarker;
                 ++currentIndexIdx;
+                currentIndex = index(currentIndexIdx);
 
                 // We have to set the mark, and we have to set it at the beginning of the block. So if we're not at the beginning of the block, this forces us to a weird seek dance.
                 // This can only happen when reading old file however.
-                long startOfBlock = columnOffset(currentIndexIdx);
+                long startOfBlock = columnOffset(currentIndex);
                 long currentFilePointer = reader.file.getFilePointer();
                 if (startOfBlock == currentFilePointer)
                 {
@@ -485,7 +495,7 @@ abstract class AbstractSSTableIterator implements SliceableUnfilteredRowIterator
         // Check if we've crossed an index boundary (based on the mark on the beginning of the index block).
         public boolean isPastCurrentBlock()
         {
-            return reader.file.bytesPastMark(mark) >= currentIndex().width;
+            return reader.file.bytesPastMark(mark) >= currentIndex.width;
         }
 
         public int currentBlockIdx()
@@ -495,17 +505,17 @@ abstract class AbstractSSTableIterator implements SliceableUnfilteredRowIterator
 
         public IndexHelper.IndexInfo currentIndex()
         {
-            return index(currentIndexIdx);
+            return currentIndex;
         }
 
-        public IndexHelper.IndexInfo index(int i)
+        public IndexHelper.IndexInfo index(int i) throws IOException
         {
             return indexes.get(i);
         }
 
         // Finds the index of the first block containing the provided bound, starting at the provided index.
         // Will be -1 if the bound is before any block, and blocksCount() if it is after every block.
-        public int findBlockIndex(Slice.Bound bound, int fromIdx)
+        public int findBlockIndex(Slice.Bound bound, int fromIdx) throws IOException
         {
             if (bound == Slice.Bound.BOTTOM)
                 return -1;
@@ -515,6 +525,11 @@ abstract class AbstractSSTableIterator implements SliceableUnfilteredRowIterator
             return IndexHelper.indexFor(bound, indexes, comparator, reversed, fromIdx);
         }
 
+        public void close() throws IOException
+        {
+            indexes.close();
+        }
+
         @Override
         public String toString()
         {
@@ -190,7 +190,7 @@ public class SSTableIterator extends AbstractSSTableIterator
         private ForwardIndexedReader(RowIndexEntry indexEntry, FileDataInput file, boolean isAtPartitionStart, boolean shouldCloseFile)
         {
             super(file, isAtPartitionStart, shouldCloseFile);
-            this.indexState = new IndexState(this, sstable.metadata.comparator, indexEntry, false);
+            this.indexState = new IndexState(this, sstable.metadata.comparator, indexEntry, false, sstable.getIndexFile());
             this.lastBlockIdx = indexState.blocksCount(); // if we never call setForSlice, that's where we want to stop
         }
 
@@ -282,5 +282,18 @@ public class SSTableIterator extends AbstractSSTableIterator
                 updateOpenMarker((RangeTombstoneMarker)next);
             return next;
         }
+
+        @Override
+        public void close() throws IOException
+        {
+            try
+            {
+                super.close();
+            }
+            finally
+            {
+                indexState.close();
+            }
+        }
     }
 }
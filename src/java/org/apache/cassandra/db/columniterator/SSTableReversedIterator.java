@@ -215,7 +215,7 @@ public class SSTableReversedIterator extends AbstractSSTableIterator
         private ReverseIndexedReader(RowIndexEntry indexEntry, FileDataInput file, boolean isAtPartitionStart, boolean shouldCloseFile)
         {
             super(file, isAtPartitionStart, shouldCloseFile);
-            this.indexState = new IndexState(this, sstable.metadata.comparator, indexEntry, true);
+            this.indexState = new IndexState(this, sstable.metadata.comparator, indexEntry, true, sstable.getIndexFile());
         }
 
         protected void init() throws IOException
@@ -325,6 +325,19 @@ public class SSTableReversedIterator extends AbstractSSTableIterator
         {
             return indexState.isPastCurrentBlock();
         }
+
+        @Override
+        public void close() throws IOException
+        {
+            try
+            {
+                super.close();
+            }
+            finally
+            {
+                indexState.close();
+            }
+        }
     }
 
     private class ReusablePartitionData
@@ -39,6 +39,8 @@ public abstract class AbstractCommitLogService
     // counts of total written, and pending, log messages
     private final AtomicLong written = new AtomicLong(0);
     protected final AtomicLong pending = new AtomicLong(0);
+    // writes started since the last sync began, i.e. the size of the group of writes the next sync makes durable
+    private final AtomicLong unsynced = new AtomicLong(0);
 
     // signal that writers can wait on to be notified of a completed sync
     //只有PeriodicCommitLogService时才用，BatchCommitLogService不用
@@ -47,28 +49,33 @@ public abstract class AbstractCommitLogService
 
     final CommitLog commitLog;
     private final String name;
-    private final long pollIntervalMillis;
+    final long pollIntervalNanos;
 
     private static final Logger logger = LoggerFactory.getLogger(AbstractCommitLogService.class);
 
     /**
      * CommitLogService provides a fsync service for Allocations, fulfilling either the
-     * Batch or Periodic contract.
+     * Batch, Group or Periodic contract.
      *
      * Subclasses may be notified when a sync finishes by using the syncComplete WaitQueue.
      */
     AbstractCommitLogService(final CommitLog commitLog, final String name, final long pollIntervalMillis)
+    {
+        this(commitLog, name, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    AbstractCommitLogService(final CommitLog commitLog, final String name, final long pollInterval, final TimeUnit unit)
     {
         this.commitLog = commitLog;
         this.name = name;
-        this.pollIntervalMillis = pollIntervalMillis;
+        this.pollIntervalNanos = unit.toNanos(pollInterval);
     }
 
     // Separated into individual method to ensure relevant objects are constructed before this is started.
     void start()
     {
-        if (pollIntervalMillis < 1)
-            throw new IllegalArgumentException(String.format("Commit log flush interval must be positive: %dms", pollIntervalMillis));
+        if (pollIntervalNanos < 1)
+            throw new IllegalArgumentException(String.format("Commit log flush interval must be positive: %sms", pollIntervalNanos / 1e6));
 
         Runnable runnable = new Runnable()
         {
@@ -76,7 +83,7 @@ public abstract class AbstractCommitLogService
             {
                 long firstLagAt = 0;
                 long totalSyncDuration = 0; // total time spent syncing since firstLagAt
-                long syncExceededIntervalBy = 0; // time that syncs exceeded pollInterval since firstLagAt
+                long syncExceededIntervalBy = 0; // time that syncs exceeded pollInterval since firstLagAt, in nanos
                 int lagCount = 0;
                 int syncCount = 0;
 
@@ -89,16 +96,24 @@ public abstract class AbstractCommitLogService
                         run = !shutdown;
 
                         // sync and signal
+                        long groupSize = unsynced.getAndSet(0);
+                        beforeSync();
                         long syncStarted = System.currentTimeMillis();
+                        long syncStartedNanos = System.nanoTime();
                         commitLog.sync(shutdown);
                         lastSyncedAt = syncStarted;
                         syncComplete.signalAll();
+                        if (groupSize > 0)
+                        {
+                            commitLog.metrics.syncLatency.update(System.nanoTime() - syncStartedNanos, TimeUnit.NANOSECONDS);
+                            commitLog.metrics.syncGroupSize.update(groupSize);
+                        }
 
 
                         // sleep any time we have left before the next one is due
                         long now = System.currentTimeMillis();
-                        long sleep = syncStarted + pollIntervalMillis - now;
-                        if (sleep < 0) //commitLog.sync花了太久的时间，超过下一轮的pollIntervalMillis了
+                        long sleep = syncStartedNanos + pollIntervalNanos - System.nanoTime();
+                        if (sleep < 0) //commitLog.sync花了太久的时间，超过下一轮的pollIntervalNanos了
                         {
                             // if we have lagged noticeably, update our lag counter
                             if (firstLagAt == 0)
@@ -121,7 +136,7 @@ public abstract class AbstractCommitLogService
                                     60,//5, //我改过了
                                     TimeUnit.MINUTES,
                                     "Out of {} commit log syncs over the past {}s with average duration of {}ms, {} have exceeded the configured commit interval by an average of {}ms",
-                                                      syncCount, (now - firstLagAt) / 1000, String.format("%.2f", (double) totalSyncDuration / syncCount), lagCount, String.format("%.2f", (double) syncExceededIntervalBy / lagCount));
+                                                      syncCount, (now - firstLagAt) / 1000, String.format("%.2f", (double) totalSyncDuration / syncCount), lagCount, String.format("%.2f", syncExceededIntervalBy / 1e6 / lagCount));
                            if (logged)
                                firstLagAt = 0;
                         }
@@ -132,7 +147,7 @@ public abstract class AbstractCommitLogService
 
                         try
                         {
-                            haveWork.tryAcquire(sleep, TimeUnit.MILLISECONDS);
+                            haveWork.tryAcquire(sleep, TimeUnit.NANOSECONDS);
                             haveWork.drainPermits();
                         }
                         catch (InterruptedException e)
@@ -148,7 +163,7 @@ public abstract class AbstractCommitLogService
                         // sleep for full poll-interval after an error, so we don't spam the log file
                         try
                         {
-                            haveWork.tryAcquire(pollIntervalMillis, TimeUnit.MILLISECONDS);
+                            haveWork.tryAcquire(pollIntervalNanos, TimeUnit.NANOSECONDS);
                         }
                         catch (InterruptedException e)
                         {
@@ -168,12 +183,20 @@ public abstract class AbstractCommitLogService
      */
     public void finishWriteFor(Allocation alloc)
     {
+        unsynced.incrementAndGet();
         maybeWaitForSync(alloc);
         written.incrementAndGet();
     }
 
     protected abstract void maybeWaitForSync(Allocation alloc);
 
+    /**
+     * Called by the sync thread right before each sync, whether there is anything to sync or not.
+     */
+    protected void beforeSync()
+    {
+    }
+
     /**
      * Sync immediately, but don't block for the sync to cmplete
      */
@@ -21,22 +21,27 @@ import java.io.*;
 import java.lang.management.ManagementFactory;
 import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.CRC32;
 
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Iterables;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.commons.lang3.StringUtils;
 
-import org.apache.cassandra.config.Config;
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.config.ParameterizedClass;
+import org.apache.cassandra.config.Schema;
 import org.apache.cassandra.db.*;
+import org.apache.cassandra.db.partitions.PartitionUpdate;
 import org.apache.cassandra.io.FSWriteError;
 import org.apache.cassandra.schema.CompressionParams;
 import org.apache.cassandra.io.compress.ICompressor;
@@ -46,6 +51,8 @@ import org.apache.cassandra.metrics.CommitLogMetrics;
 import org.apache.cassandra.net.MessagingService;
 import org.apache.cassandra.service.StorageService;
 import org.apache.cassandra.utils.JVMStabilityInspector;
+import org.apache.cassandra.utils.NoSpamLogger;
+import org.apache.cassandra.utils.Pair;
 
 import static org.apache.cassandra.db.commitlog.CommitLogSegment.*;
 import static org.apache.cassandra.utils.FBUtilities.updateChecksum;
@@ -70,7 +77,22 @@ public class CommitLog implements CommitLogMBean
     //为什么不加static？
     private final long MAX_MUTATION_SIZE = DatabaseDescriptor.getMaxMutationSize();
 
+    private static final String SPLIT_MUTATION_WARNING = "Mutation of {} tables {} written as one commit log entry per set " +
+                                                         "of segments (commitlog_dedicated_tables); it could be only " +
+                                                         "partially replayed after a crash";
+
+    /**
+     * The manager of the segments shared by all tables but those of commitlog_dedicated_tables.
+     */
     public final CommitLogSegmentManager allocator;
+
+    /**
+     * The managers of the segments dedicated to a table, created on the first write to the table. Their segments are
+     * recycled as soon as that table is flushed, regardless of the others.
+     */
+    private final ConcurrentMap<UUID, CommitLogSegmentManager> dedicatedAllocators = new ConcurrentHashMap<>();
+    // the manager of the segments each table is written to, resolved once per table
+    private final ConcurrentMap<UUID, CommitLogSegmentManager> allocatorByTable = new ConcurrentHashMap<>();
     public final CommitLogArchiver archiver;
     final CommitLogMetrics metrics;
     final AbstractCommitLogService executor;
@@ -107,14 +129,22 @@ public class CommitLog implements CommitLogMBean
         this.archiver = archiver;
         metrics = new CommitLogMetrics();
 
-        executor = DatabaseDescriptor.getCommitLogSync() == Config.CommitLogSync.batch
-                ? new BatchCommitLogService(this)
-                : new PeriodicCommitLogService(this);
+        switch (DatabaseDescriptor.getCommitLogSync())
+        {
+            case batch:
+                executor = new BatchCommitLogService(this);
+                break;
+            case group:
+                executor = new GroupCommitLogService(this);
+                break;
+            default:
+                executor = new PeriodicCommitLogService(this);
+        }
 
         allocator = new CommitLogSegmentManager(this);
 
         // register metrics
-        metrics.attach(executor, allocator);
+        metrics.attach(executor, this);
     }
 
     CommitLog start()
@@ -124,6 +154,61 @@ public class CommitLog implements CommitLogMBean
         return this;
     }
 
+    /**
+     * @return the manager of the segments the writes to the given table go to
+     */
+    CommitLogSegmentManager allocatorFor(UUID cfId)
+    {
+        if (DatabaseDescriptor.getCommitLogDedicatedTables().isEmpty())
+            return allocator;
+
+        CommitLogSegmentManager manager = allocatorByTable.get(cfId);
+        if (manager != null)
+            return manager;
+
+        Pair<String, String> name = Schema.instance.getCF(cfId);
+        // a table we don't know of yet (or anymore) can't be dedicated, but may be later on
+        if (name == null)
+            return allocator;
+        if (!DatabaseDescriptor.getCommitLogDedicatedTables().contains(name.left + '.' + name.right))
+            manager = allocator;
+        else
+            manager = dedicatedAllocator(cfId);
+        allocatorByTable.put(cfId, manager);
+        return manager;
+    }
+
+    private synchronized CommitLogSegmentManager dedicatedAllocator(UUID cfId)
+    {
+        CommitLogSegmentManager manager = dedicatedAllocators.get(cfId);
+        if (manager == null)
+        {
+            manager = new CommitLogSegmentManager(this, cfId);
+            manager.start();
+            // writes may only be made once recovery is over, so the reserve can be created right away
+            if (allocator.createReserveSegments)
+                manager.enableReserveSegmentCreation();
+            dedicatedAllocators.put(cfId, manager);
+        }
+        return manager;
+    }
+
+    /**
+     * @return the managers of all the sets of segments, the shared one first
+     */
+    Iterable<CommitLogSegmentManager> allocators()
+    {
+        return Iterables.concat(Collections.singleton(allocator), dedicatedAllocators.values());
+    }
+
+    /**
+     * @return the segments of all the sets, oldest first within each set
+     */
+    private Iterable<CommitLogSegment> allActiveSegments()
+    {
+        return Iterables.concat(Iterables.transform(allocators(), CommitLogSegmentManager::getActiveSegments));
+    }
+
     /**
      * Perform recovery on commit logs located in the directory specified by the config file.
      *
@@ -147,7 +232,14 @@ public class CommitLog implements CommitLogMBean
                 // we used to try to avoid instantiating commitlog (thus creating an empty segment ready for writes)
                 // until after recover was finished.  this turns out to be fragile; it is less error-prone to go
                 // ahead and allow writes before recover(), and just skip active segments when we do.
-                return CommitLogDescriptor.isValid(name) && !allocator.manages(name);
+                if (!CommitLogDescriptor.isValid(name))
+                    return false;
+                for (CommitLogSegmentManager manager : allocators())
+                {
+                    if (manager.manages(name))
+                        return false;
+                }
+                return true;
             }
         };
 
@@ -178,7 +270,8 @@ public class CommitLog implements CommitLogMBean
                 allocator.recycleSegment(f);
         }
 
-        allocator.enableReserveSegmentCreation();
+        for (CommitLogSegmentManager manager : allocators())
+            manager.enableReserveSegmentCreation();
         return replayed;
     }
 
@@ -191,7 +284,11 @@ public class CommitLog implements CommitLogMBean
     public int recover(File... clogs) throws IOException
     {
         CommitLogReplayer recovery = CommitLogReplayer.construct(this);
-        recovery.recover(clogs);
+        int parallelism = DatabaseDescriptor.getCommitLogReplayParallelism();
+        if (parallelism > 1)
+            recovery.recoverConcurrently(clogs, parallelism);
+        else
+            recovery.recover(clogs);
         return recovery.blockForWrites();
     }
 
@@ -214,12 +311,34 @@ public class CommitLog implements CommitLogMBean
         return allocator.allocatingFrom().getContext();
     }
 
+    /**
+     * @return a ReplayPosition which, if >= one returned from add() for a mutation of the given table, implies add()
+     * was started (but not necessarily finished) prior to this call
+     */
+    public ReplayPosition getContext(UUID cfId)
+    {
+        return allocatorFor(cfId).allocatingFrom().getContext();
+    }
+
     /**
      * Flushes all dirty CFs, waiting for them to free and recycle any segments they were retaining
      */
     public void forceRecycleAllSegments(Iterable<UUID> droppedCfs)
     {
-        allocator.forceRecycleAll(droppedCfs);
+        for (CommitLogSegmentManager manager : allocators())
+            manager.forceRecycleAll(droppedCfs);
+
+        // a dropped table's set of segments would otherwise keep its thread and reserve segment until the restart
+        for (UUID cfId : droppedCfs)
+            discardDedicatedAllocator(cfId);
+    }
+
+    private synchronized void discardDedicatedAllocator(UUID cfId)
+    {
+        allocatorByTable.remove(cfId);
+        CommitLogSegmentManager manager = dedicatedAllocators.remove(cfId);
+        if (manager != null)
+            manager.shutdownAndDiscard();
     }
 
     /**
@@ -227,7 +346,7 @@ public class CommitLog implements CommitLogMBean
      */
     public void forceRecycleAllSegments()
     {
-        allocator.forceRecycleAll(Collections.<UUID>emptyList());
+        forceRecycleAllSegments(Collections.<UUID>emptyList());
     }
 
     /**
@@ -235,12 +354,15 @@ public class CommitLog implements CommitLogMBean
      */
     public void sync(boolean syncAllSegments)
     {
-        CommitLogSegment current = allocator.allocatingFrom();
-        for (CommitLogSegment segment : allocator.getActiveSegments())
+        for (CommitLogSegmentManager manager : allocators())
         {
-            if (!syncAllSegments && segment.id > current.id)
-                return;
-            segment.sync();
+            CommitLogSegment current = manager.allocatingFrom();
+            for (CommitLogSegment segment : manager.getActiveSegments())
+            {
+                if (!syncAllSegments && segment.id > current.id)
+                    break;
+                segment.sync();
+            }
         }
     }
 
@@ -260,6 +382,65 @@ public class CommitLog implements CommitLogMBean
     public ReplayPosition add(Mutation mutation)
     {
         assert mutation != null;
+        Iterator<UUID> cfIds = mutation.getColumnFamilyIds().iterator();
+        return add(mutation, cfIds.hasNext() ? allocatorFor(cfIds.next()) : allocator);
+    }
+
+    /**
+     * @return true if the updates of the mutation are written to different sets of segments, so the mutation must be
+     * added with addSplit()
+     */
+    public boolean spansSegmentSets(Mutation mutation)
+    {
+        if (DatabaseDescriptor.getCommitLogDedicatedTables().isEmpty())
+            return false;
+        CommitLogSegmentManager manager = null;
+        for (UUID cfId : mutation.getColumnFamilyIds())
+        {
+            CommitLogSegmentManager next = allocatorFor(cfId);
+            if (manager != null && manager != next)
+                return true;
+            manager = next;
+        }
+        return false;
+    }
+
+    /**
+     * Add a Mutation to the commit log, as one entry per set of segments its updates are written to.
+     * <p>
+     * The mutation is not atomic in the commit log anymore: a crash between the appends of its entries, or before
+     * they are all synced, can have the updates of some tables replayed without those of the others. So the updates
+     * of a single partition batch that span a dedicated table and another table may only be partially recovered.
+     *
+     * @param mutation the Mutation to add to the log
+     * @return the position of the entry each table's update was added with
+     */
+    public Map<UUID, ReplayPosition> addSplit(Mutation mutation)
+    {
+        NoSpamLogger.log(logger, NoSpamLogger.Level.WARN, 1, TimeUnit.MINUTES, SPLIT_MUTATION_WARNING,
+                         mutation.getKeyspaceName(), mutation.getColumnFamilyIds());
+        Map<CommitLogSegmentManager, Mutation> parts = new HashMap<>();
+        for (PartitionUpdate update : mutation.getPartitionUpdates())
+        {
+            CommitLogSegmentManager manager = allocatorFor(update.metadata().cfId);
+            Mutation part = parts.get(manager);
+            if (part == null)
+                parts.put(manager, part = new Mutation(mutation.getKeyspaceName(), mutation.key()));
+            part.add(update);
+        }
+
+        Map<UUID, ReplayPosition> positions = new HashMap<>();
+        for (Map.Entry<CommitLogSegmentManager, Mutation> part : parts.entrySet())
+        {
+            ReplayPosition position = add(part.getValue(), part.getKey());
+            for (UUID cfId : part.getValue().getColumnFamilyIds())
+                positions.put(cfId, position);
+        }
+        return positions;
+    }
+
+    private ReplayPosition add(Mutation mutation, CommitLogSegmentManager manager)
+    {
 
         int size = (int) Mutation.serializer.serializedSize(mutation, MessagingService.current_version);
 
@@ -270,7 +451,7 @@ public class CommitLog implements CommitLogMBean
                                                              totalSize, MAX_MUTATION_SIZE));
         }
 
-        Allocation alloc = allocator.allocate(mutation, (int) totalSize);
+        Allocation alloc = manager.allocate(mutation, totalSize);
         CRC32 checksum = new CRC32();
         final ByteBuffer buffer = alloc.getBuffer();
         try (BufferedDataOutputStreamPlus dos = new DataOutputBufferFixed(buffer))
@@ -313,7 +494,8 @@ public class CommitLog implements CommitLogMBean
         // flushed CF as clean, until we reach the segment file containing the ReplayPosition passed
         // in the arguments. Any segments that become unused after they are marked clean will be
         // recycled or discarded.
-        for (Iterator<CommitLogSegment> iter = allocator.getActiveSegments().iterator(); iter.hasNext();)
+        CommitLogSegmentManager manager = allocatorFor(cfId);
+        for (Iterator<CommitLogSegment> iter = manager.getActiveSegments().iterator(); iter.hasNext();)
         {
             CommitLogSegment segment = iter.next();
             segment.markClean(cfId, context);
@@ -321,7 +503,7 @@ public class CommitLog implements CommitLogMBean
             if (segment.isUnused())
             {
                 logger.trace("Commit log segment {} is unused", segment);
-                allocator.recycleSegment(segment);
+                manager.recycleSegment(segment);
             }
             else
             {
@@ -369,7 +551,7 @@ public class CommitLog implements CommitLogMBean
     public List<String> getActiveSegmentNames()
     {
         List<String> segmentNames = new ArrayList<>();
-        for (CommitLogSegment segment : allocator.getActiveSegments())
+        for (CommitLogSegment segment : allActiveSegments())
             segmentNames.add(segment.getName());
         return segmentNames;
     }
@@ -383,7 +565,7 @@ public class CommitLog implements CommitLogMBean
     public long getActiveContentSize()
     {
         long size = 0;
-        for (CommitLogSegment segment : allocator.getActiveSegments())
+        for (CommitLogSegment segment : allActiveSegments())
             size += segment.contentSize();
         return size;
     }
@@ -391,14 +573,17 @@ public class CommitLog implements CommitLogMBean
     @Override
     public long getActiveOnDiskSize()
     {
-        return allocator.onDiskSize();
+        long size = 0;
+        for (CommitLogSegmentManager manager : allocators())
+            size += manager.onDiskSize();
+        return size;
     }
 
     @Override
     public Map<String, Double> getActiveSegmentCompressionRatios()
     {
         Map<String, Double> segmentRatios = new TreeMap<>();
-        for (CommitLogSegment segment : allocator.getActiveSegments())
+        for (CommitLogSegment segment : allActiveSegments())
             segmentRatios.put(segment.getName(), 1.0 * segment.onDiskSize() / segment.contentSize());
         return segmentRatios;
     }
@@ -410,8 +595,10 @@ public class CommitLog implements CommitLogMBean
     {
         executor.shutdown();
         executor.awaitTermination();
-        allocator.shutdown();
-        allocator.awaitTermination();
+        for (CommitLogSegmentManager manager : allocators())
+            manager.shutdown();
+        for (CommitLogSegmentManager manager : allocators())
+            manager.awaitTermination();
     }
 
     /**
@@ -438,7 +625,11 @@ public class CommitLog implements CommitLogMBean
         {
             throw new RuntimeException(e);
         }
-        allocator.stopUnsafe(deleteSegments);
+        for (CommitLogSegmentManager manager : allocators())
+            manager.stopUnsafe(deleteSegments);
+        // the dedicated sets are recreated on the next write to their table
+        dedicatedAllocators.clear();
+        allocatorByTable.clear();
     }
 
     /**
@@ -472,7 +663,7 @@ public class CommitLog implements CommitLogMBean
      */
     public int activeSegments()
     {
-        return allocator.getActiveSegments().size();
+        return Iterables.size(allActiveSegments());
     }
 
     @VisibleForTesting
@@ -29,6 +29,7 @@ import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.UUID;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.CRC32;
@@ -53,6 +54,7 @@ public class CommitLogDescriptor
     private static final Pattern COMMIT_LOG_FILE_PATTERN = Pattern.compile(FILENAME_PREFIX + "((\\d+)(" + SEPARATOR + "\\d+)?)" + FILENAME_EXTENSION);
     private static final String COMPRESSION_PARAMETERS_KEY = "compressionParameters";
     private static final String COMPRESSION_CLASS_KEY = "compressionClass";
+    private static final String TABLE_KEY = "table";
 
     public static final int VERSION_12 = 2;
     public static final int VERSION_20 = 3;
@@ -69,12 +71,22 @@ public class CommitLogDescriptor
     final int version;
     public final long id;
     public final ParameterizedClass compression;
+    /**
+     * The id of the table the segment is dedicated to, or null if it is shared by all tables.
+     */
+    public final UUID table;
 
     public CommitLogDescriptor(int version, long id, ParameterizedClass compression)
+    {
+        this(version, id, compression, null);
+    }
+
+    public CommitLogDescriptor(int version, long id, ParameterizedClass compression, UUID table)
     {
         this.version = version;
         this.id = id;
         this.compression = compression;
+        this.table = table;
     }
 
     public CommitLogDescriptor(long id, ParameterizedClass compression)
@@ -82,6 +94,11 @@ public class CommitLogDescriptor
         this(current_version, id, compression);
     }
 
+    public CommitLogDescriptor(long id, ParameterizedClass compression, UUID table)
+    {
+        this(current_version, id, compression, table);
+    }
+
     public static void writeHeader(ByteBuffer out, CommitLogDescriptor descriptor)
     {
         CRC32 crc = new CRC32();
@@ -114,6 +131,9 @@ public class CommitLogDescriptor
             params.put(COMPRESSION_PARAMETERS_KEY, compression.parameters);
             params.put(COMPRESSION_CLASS_KEY, compression.class_name);
         }
+        // readers that don't know of dedicated segments ignore the key
+        if (descriptor.table != null)
+            params.put(TABLE_KEY, descriptor.table.toString());
         return JSONValue.toJSONString(params);
     }
 
@@ -154,11 +174,21 @@ public class CommitLogDescriptor
         checkcrc.update(parametersBytes, 0, parametersBytes.length);
         int crc = input.readInt();
         if (crc == (int) checkcrc.getValue())
-            return new CommitLogDescriptor(version, id,
-                    parseCompression((Map<?, ?>) JSONValue.parse(new String(parametersBytes, StandardCharsets.UTF_8))));
+        {
+            Map<?, ?> params = (Map<?, ?>) JSONValue.parse(new String(parametersBytes, StandardCharsets.UTF_8));
+            return new CommitLogDescriptor(version, id, parseCompression(params), parseTable(params));
+        }
         return null;
     }
 
+    private static UUID parseTable(Map<?, ?> params)
+    {
+        if (params == null)
+            return null;
+        String table = (String) params.get(TABLE_KEY);
+        return table == null ? null : UUID.fromString(table);
+    }
+
     @SuppressWarnings("unchecked")
     private static ParameterizedClass parseCompression(Map<?, ?> params)
     {
@@ -230,7 +260,7 @@ public class CommitLogDescriptor
 
     public String toString()
     {
-        return "(" + version + "," + id + (compression != null ? "," + compression : "") + ")";
+        return "(" + version + "," + id + (compression != null ? "," + compression : "") + (table != null ? "," + table : "") + ")";
     }
 
     public boolean equals(Object that)
@@ -245,7 +275,7 @@ public class CommitLogDescriptor
 
     public boolean equals(CommitLogDescriptor that)
     {
-        return equalsIgnoringCompression(that) && Objects.equal(this.compression, that.compression);
+        return equalsIgnoringCompression(that) && Objects.equal(this.compression, that.compression) && Objects.equal(this.table, that.table);
     }
 
 }
@@ -25,7 +25,12 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.CRC32;
 
@@ -38,9 +43,11 @@ import com.google.common.collect.Ordering;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.apache.cassandra.concurrent.DebuggableThreadPoolExecutor;
 import org.apache.cassandra.concurrent.Stage;
 import org.apache.cassandra.concurrent.StageManager;
 import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.config.Schema;
 import org.apache.cassandra.db.*;
 import org.apache.cassandra.db.rows.SerializationHelper;
@@ -55,6 +62,7 @@ import org.apache.cassandra.io.util.ChannelProxy;
 import org.apache.cassandra.io.util.DataInputBuffer;
 import org.apache.cassandra.io.util.FileDataInput;
 import org.apache.cassandra.io.util.RandomAccessReader;
+import org.apache.cassandra.metrics.CommitLogMetrics;
 import org.apache.cassandra.utils.FBUtilities;
 import org.apache.cassandra.utils.JVMStabilityInspector;
 import org.apache.cassandra.utils.WrappedRunnable;
@@ -68,10 +76,11 @@ public class CommitLogReplayer
     private static final Logger logger = LoggerFactory.getLogger(CommitLogReplayer.class);
     private static final int MAX_OUTSTANDING_REPLAY_COUNT = Integer.getInteger("cassandra.commitlog_max_outstanding_replay_count", 1024);
     private static final int LEGACY_END_OF_SEGMENT_MARKER = 0;
+    private static final long PROGRESS_LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
 
     private final Set<Keyspace> keyspacesRecovered;
     private final List<Future<?>> futures;
-    private final Map<UUID, AtomicInteger> invalidMutations;
+    private final ConcurrentMap<UUID, AtomicInteger> invalidMutations;
     private final AtomicInteger replayedCount;
     private final Map<UUID, ReplayPosition> cfPositions;
     private final ReplayPosition globalPosition;
@@ -81,6 +90,11 @@ public class CommitLogReplayer
 
     private final ReplayFilter replayFilter;
     private final CommitLogArchiver archiver;
+    private final CommitLogMetrics metrics;
+
+    // the mutations read by the replayer of a single segment, when replaying segments concurrently (see
+    // recoverConcurrently()); they are then applied by the replayer of all segments, in order
+    private final List<ReadMutation> readMutations;
 
     CommitLogReplayer(CommitLog commitLog, ReplayPosition globalPosition, Map<UUID, ReplayPosition> cfPositions, ReplayFilter replayFilter)
     {
@@ -88,7 +102,7 @@ public class CommitLogReplayer
         this.futures = new ArrayList<Future<?>>();
         this.buffer = new byte[4096];
         this.uncompressedBuffer = new byte[4096];
-        this.invalidMutations = new HashMap<UUID, AtomicInteger>();
+        this.invalidMutations = new ConcurrentHashMap<UUID, AtomicInteger>();
         // count the number of replayed mutation. We don't really care about atomicity, but we need it to be a reference.
         this.replayedCount = new AtomicInteger();
         this.checksum = new CRC32();
@@ -96,6 +110,28 @@ public class CommitLogReplayer
         this.globalPosition = globalPosition;
         this.replayFilter = replayFilter;
         this.archiver = commitLog.archiver;
+        this.metrics = commitLog.metrics;
+        this.readMutations = null;
+    }
+
+    /**
+     * A replayer reading a single segment with its own buffers, for the given replayer to apply its mutations.
+     */
+    private CommitLogReplayer(CommitLogReplayer parent)
+    {
+        this.keyspacesRecovered = parent.keyspacesRecovered;
+        this.futures = parent.futures;
+        this.buffer = new byte[4096];
+        this.uncompressedBuffer = new byte[4096];
+        this.invalidMutations = parent.invalidMutations;
+        this.replayedCount = parent.replayedCount;
+        this.checksum = new CRC32();
+        this.cfPositions = parent.cfPositions;
+        this.globalPosition = parent.globalPosition;
+        this.replayFilter = parent.replayFilter;
+        this.archiver = parent.archiver;
+        this.metrics = parent.metrics;
+        this.readMutations = new ArrayList<>();
     }
 
     public static CommitLogReplayer construct(CommitLog commitLog)
@@ -145,9 +181,79 @@ public class CommitLogReplayer
 
     public void recover(File[] clogs) throws IOException
     {
+        ReplayProgress progress = new ReplayProgress(clogs);
         int i;
         for (i = 0; i < clogs.length; ++i)
+        {
             recover(clogs[i], i + 1 == clogs.length);
+            progress.segmentReplayed(clogs[i]);
+        }
+    }
+
+    /**
+     * Replays the segments like recover(File[]), but reads them (checksums, decompresses and deserializes their
+     * mutations) on parallelism threads, while the segments are applied one after the other. The mutations of each
+     * partition are applied in the order of the commit log, by the same one of a set of single threaded stages.
+     * At most parallelism segments, counting the one being applied, are read or held in memory at once.
+     */
+    public void recoverConcurrently(File[] clogs, int parallelism) throws IOException
+    {
+        ReplayProgress progress = new ReplayProgress(clogs);
+        ExecutorService readers = DebuggableThreadPoolExecutor.createWithFixedPoolSize("CommitLogReplayReader", parallelism);
+        ExecutorService[] appliers = new ExecutorService[DatabaseDescriptor.getConcurrentWriters()];
+        for (int i = 0; i < appliers.length; i++)
+            appliers[i] = DebuggableThreadPoolExecutor.createWithFixedPoolSize("CommitLogReplayApplier:" + i, 1);
+
+        try
+        {
+            Deque<Future<List<ReadMutation>>> reads = new ArrayDeque<>();
+            int nextRead = 0;
+            for (int i = 0; i < clogs.length; i++)
+            {
+                for (; nextRead < clogs.length && nextRead < i + parallelism; nextRead++)
+                {
+                    final File file = clogs[nextRead];
+                    final boolean tolerateTruncation = nextRead + 1 == clogs.length;
+                    reads.add(readers.submit(() -> {
+                        CommitLogReplayer segmentReplayer = new CommitLogReplayer(this);
+                        segmentReplayer.recover(file, tolerateTruncation);
+                        return segmentReplayer.readMutations;
+                    }));
+                }
+
+                for (ReadMutation read : waitForRead(reads.poll()))
+                {
+                    int hash = 31 * read.mutation.getKeyspaceName().hashCode() + read.mutation.key().hashCode();
+                    submit(appliers[(hash & Integer.MAX_VALUE) % appliers.length], replayTask(read.mutation, read.entryLocation, read.desc));
+                }
+                progress.segmentReplayed(clogs[i]);
+            }
+        }
+        finally
+        {
+            // the appliers complete the mutations submitted, that blockForWrites() waits for
+            readers.shutdownNow();
+            for (ExecutorService applier : appliers)
+                applier.shutdown();
+        }
+    }
+
+    private static List<ReadMutation> waitForRead(Future<List<ReadMutation>> read) throws IOException
+    {
+        try
+        {
+            return read.get();
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+        catch (InterruptedException e)
+        {
+            throw new AssertionError(e);
+        }
     }
 
     public int blockForWrites()
@@ -420,6 +526,17 @@ public class CommitLogReplayer
             logger.trace("skipping replay of fully-flushed {}", file);
             return true;
         }
+
+        // a segment dedicated to a table only needs replaying if that table isn't flushed past it
+        if (desc.table != null)
+        {
+            ReplayPosition rp = cfPositions.get(desc.table);
+            if (rp == null || rp.segment > desc.id)
+            {
+                logger.debug("skipping replay of {}, dedicated to table {} which is flushed past it or dropped", file, desc.table);
+                return true;
+            }
+        }
         return false;
     }
 
@@ -516,7 +633,21 @@ public class CommitLogReplayer
     void replayMutation(byte[] inputBuffer, int size,
             final long entryLocation, final CommitLogDescriptor desc) throws IOException
     {
+        Mutation mutation = deserializeMutation(inputBuffer, size, desc);
+        if (mutation == null)
+            return;
+
+        if (readMutations != null)
+            readMutations.add(new ReadMutation(mutation, entryLocation, desc));
+        else
+            submit(StageManager.getStage(Stage.MUTATION), replayTask(mutation, entryLocation, desc));
+    }
 
+    /**
+     * @return the mutation of a commit log entry, or null if it can't be replayed
+     */
+    private Mutation deserializeMutation(byte[] inputBuffer, int size, CommitLogDescriptor desc) throws IOException
+    {
         final Mutation mutation;
         try (RebufferingInputStream bufIn = new DataInputBuffer(inputBuffer, 0, size))
         {
@@ -530,16 +661,17 @@ public class CommitLogReplayer
         catch (UnknownColumnFamilyException ex)
         {
             if (ex.cfId == null)
-                return;
+                return null;
             AtomicInteger i = invalidMutations.get(ex.cfId);
             if (i == null)
             {
-                i = new AtomicInteger(1);
-                invalidMutations.put(ex.cfId, i);
+                i = new AtomicInteger();
+                AtomicInteger existing = invalidMutations.putIfAbsent(ex.cfId, i);
+                if (existing != null)
+                    i = existing;
             }
-            else
-                i.incrementAndGet();
-            return;
+            i.incrementAndGet();
+            return null;
         }
         catch (Throwable t)
         {
@@ -558,13 +690,17 @@ public class CommitLogReplayer
                               "Exception follows: %s",
                               f.getAbsolutePath(),
                               t);
-            return;
+            return null;
         }
 
         if (logger.isTraceEnabled())
             logger.trace("replaying mutation for {}.{}: {}", mutation.getKeyspaceName(), mutation.key(), "{" + StringUtils.join(mutation.getPartitionUpdates().iterator(), ", ") + "}");
+        return mutation;
+    }
 
-        Runnable runnable = new WrappedRunnable()
+    private Runnable replayTask(final Mutation mutation, final long entryLocation, final CommitLogDescriptor desc)
+    {
+        return new WrappedRunnable()
         {
             public void runMayThrow() throws IOException
             {
@@ -603,10 +739,15 @@ public class CommitLogReplayer
                     assert !newMutation.isEmpty();
                     Keyspace.open(newMutation.getKeyspaceName()).applyFromCommitLog(newMutation);
                     keyspacesRecovered.add(keyspace);
+                    metrics.replayedMutations.mark();
                 }
             }
         };
-        futures.add(StageManager.getStage(Stage.MUTATION).submit(runnable));
+    }
+
+    private void submit(ExecutorService stage, Runnable task)
+    {
+        futures.add(stage.submit(task));
         if (futures.size() > MAX_OUTSTANDING_REPLAY_COUNT)
         {
             FBUtilities.waitOnFutures(futures);
@@ -614,6 +755,64 @@ public class CommitLogReplayer
         }
     }
 
+    private static final class ReadMutation
+    {
+        private final Mutation mutation;
+        private final long entryLocation;
+        private final CommitLogDescriptor desc;
+
+        private ReadMutation(Mutation mutation, long entryLocation, CommitLogDescriptor desc)
+        {
+            this.mutation = mutation;
+            this.entryLocation = entryLocation;
+            this.desc = desc;
+        }
+    }
+
+    /**
+     * Logs the progress and the throughput of the replay every PROGRESS_LOG_INTERVAL_NANOS, and once complete.
+     */
+    private class ReplayProgress
+    {
+        private final int totalSegments;
+        private final long totalBytes;
+        private final long startNanos = System.nanoTime();
+        private long lastLogNanos = startNanos;
+        private int segments;
+        private long bytes;
+
+        private ReplayProgress(File[] clogs)
+        {
+            totalSegments = clogs.length;
+            long total = 0;
+            for (File clog : clogs)
+                total += clog.length();
+            totalBytes = total;
+        }
+
+        private void segmentReplayed(File clog)
+        {
+            long length = clog.length();
+            segments++;
+            bytes += length;
+            metrics.replayedBytes.mark(length);
+
+            long now = System.nanoTime();
+            if (segments < totalSegments && now - lastLogNanos < PROGRESS_LOG_INTERVAL_NANOS)
+                return;
+
+            lastLogNanos = now;
+            double seconds = Math.max(now - startNanos, 1) / 1e9;
+            logger.info("Replayed {} of {} commit log segments ({} of {} MB) at {} MB/s, {} mutations/s",
+                        segments,
+                        totalSegments,
+                        bytes >> 20,
+                        totalBytes >> 20,
+                        String.format("%.1f", bytes / seconds / (1 << 20)),
+                        String.format("%.0f", replayedCount.get() / seconds));
+        }
+    }
+
     protected boolean pointInTimeExceeded(Mutation fm)
     {
         long restoreTarget = archiver.restorePointInTime;
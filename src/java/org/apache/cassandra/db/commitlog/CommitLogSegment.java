@@ -25,13 +25,11 @@ import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.zip.CRC32;
 
 import com.codahale.metrics.Timer;
@@ -46,6 +44,7 @@ import org.apache.cassandra.db.partitions.PartitionUpdate;
 import org.apache.cassandra.io.FSWriteError;
 import org.apache.cassandra.io.util.FileUtils;
 import org.apache.cassandra.utils.CLibrary;
+import org.apache.cassandra.utils.FBUtilities;
 import org.apache.cassandra.utils.concurrent.OpOrder;
 import org.apache.cassandra.utils.concurrent.WaitQueue;
 
@@ -95,11 +94,8 @@ public abstract class CommitLogSegment
     // a signal for writers to wait on to confirm the log message they provided has been written to disk
     private final WaitQueue syncComplete = new WaitQueue();
 
-    // a map of Cf->dirty position; this is used to permit marking Cfs clean whilst the log is still in use
-    private final NonBlockingHashMap<UUID, AtomicInteger> cfDirty = new NonBlockingHashMap<>(1024);
-
-    // a map of Cf->clean position; this is used to permit marking Cfs clean whilst the log is still in use
-    private final ConcurrentHashMap<UUID, AtomicInteger> cfClean = new ConcurrentHashMap<>();
+    // a map of Cf->dirty and clean positions; this is used to permit marking Cfs clean whilst the log is still in use
+    private final NonBlockingHashMap<UUID, CfMarks> cfMarks = new NonBlockingHashMap<>(1024);
 
     public final long id;
 
@@ -110,11 +106,15 @@ public abstract class CommitLogSegment
     ByteBuffer buffer;
 
     final CommitLog commitLog;
+    // the manager of the set of segments this one belongs to, that accounts for its size
+    final CommitLogSegmentManager manager;
     public final CommitLogDescriptor descriptor;
 
-    static CommitLogSegment createSegment(CommitLog commitLog)
+    static CommitLogSegment createSegment(CommitLog commitLog, CommitLogSegmentManager manager)
     {
-        return commitLog.compressor != null ? new CompressedSegment(commitLog) : new MemoryMappedSegment(commitLog);
+        if (commitLog.compressor != null)
+            return new CompressedSegment(commitLog, manager);
+        return DatabaseDescriptor.getCommitLogDirectIO() ? new DirectIOSegment(commitLog, manager) : new MemoryMappedSegment(commitLog, manager);
     }
 
     static long getNextId()
@@ -127,11 +127,12 @@ public abstract class CommitLogSegment
      *
      * @param filePath  if not null, recycles the existing file by renaming it and truncating it to CommitLog.SEGMENT_SIZE.
      */
-    CommitLogSegment(CommitLog commitLog)
+    CommitLogSegment(CommitLog commitLog, CommitLogSegmentManager manager)
     {
         this.commitLog = commitLog;
+        this.manager = manager;
         id = getNextId();
-        descriptor = new CommitLogDescriptor(id, commitLog.compressorClass);
+        descriptor = new CommitLogDescriptor(id, commitLog.compressorClass, manager.table);
         logFile = new File(commitLog.location, descriptor.fileName());
 
         try
@@ -308,7 +309,7 @@ public abstract class CommitLogSegment
         close();
         if (deleteFile)
             FileUtils.deleteWithConfirm(logFile);
-        commitLog.allocator.addSize(-onDiskSize());
+        manager.addSize(-onDiskSize());
     }
 
     /**
@@ -395,7 +396,17 @@ public abstract class CommitLogSegment
     void markDirty(Mutation mutation, int allocatedPosition)
     {
         for (PartitionUpdate update : mutation.getPartitionUpdates())
-            ensureAtleast(cfDirty, update.metadata().cfId, allocatedPosition);
+        {
+            UUID cfId = update.metadata().cfId;
+            CfMarks marks = cfMarks.get(cfId);
+            if (marks == null)
+            {
+                CfMarks existing = cfMarks.putIfAbsent(cfId, marks = new CfMarks());
+                if (existing != null)
+                    marks = existing;
+            }
+            marks.markDirty(allocatedPosition);
+        }
     }
 
     /**
@@ -406,78 +417,27 @@ public abstract class CommitLogSegment
      * @param cfId    the column family ID that is now clean
      * @param context the optional clean offset
      */
-    public synchronized void markClean(UUID cfId, ReplayPosition context)
+    public void markClean(UUID cfId, ReplayPosition context)
     {
-        if (!cfDirty.containsKey(cfId))
+        CfMarks marks = cfMarks.get(cfId);
+        if (marks == null)
             return;
         if (context.segment == id)
-            markClean(cfId, context.position);
+            marks.markClean(context.position);
         else if (context.segment > id)
-            markClean(cfId, Integer.MAX_VALUE);
-    }
-
-    private void markClean(UUID cfId, int position)
-    {
-        ensureAtleast(cfClean, cfId, position);
-        removeCleanFromDirty();
-    }
-
-    private static void ensureAtleast(ConcurrentMap<UUID, AtomicInteger> map, UUID cfId, int value)
-    {
-        AtomicInteger i = map.get(cfId);
-        if (i == null)
-        {
-            AtomicInteger i2 = map.putIfAbsent(cfId, i = new AtomicInteger());
-            if (i2 != null)
-                i = i2;
-        }
-        while (true)
-        {
-            int cur = i.get();
-            if (cur > value)
-                break;
-            if (i.compareAndSet(cur, value))
-                break;
-        }
-    }
-
-    private void removeCleanFromDirty()
-    {
-        // if we're still allocating from this segment, don't touch anything since it can't be done thread-safely
-        if (isStillAllocating())
-            return;
-
-        Iterator<Map.Entry<UUID, AtomicInteger>> iter = cfClean.entrySet().iterator();
-        while (iter.hasNext())
-        {
-            Map.Entry<UUID, AtomicInteger> clean = iter.next();
-            UUID cfId = clean.getKey();
-            AtomicInteger cleanPos = clean.getValue();
-            AtomicInteger dirtyPos = cfDirty.get(cfId);
-            if (dirtyPos != null && dirtyPos.intValue() <= cleanPos.intValue())
-            {
-                cfDirty.remove(cfId);
-                iter.remove();
-            }
-        }
+            marks.markClean(Integer.MAX_VALUE);
     }
 
     /**
      * @return a collection of dirty CFIDs for this segment file.
      */
-    public synchronized Collection<UUID> getDirtyCFIDs()
+    public Collection<UUID> getDirtyCFIDs()
     {
-        if (cfClean.isEmpty() || cfDirty.isEmpty())
-            return cfDirty.keySet();
-
-        List<UUID> r = new ArrayList<>(cfDirty.size());
-        for (Map.Entry<UUID, AtomicInteger> dirty : cfDirty.entrySet())
+        List<UUID> r = new ArrayList<>(cfMarks.size());
+        for (Map.Entry<UUID, CfMarks> marks : cfMarks.entrySet())
         {
-            UUID cfId = dirty.getKey();
-            AtomicInteger dirtyPos = dirty.getValue();
-            AtomicInteger cleanPos = cfClean.get(cfId);
-            if (cleanPos == null || cleanPos.intValue() < dirtyPos.intValue())
-                r.add(dirty.getKey());
+            if (!marks.getValue().isClean())
+                r.add(marks.getKey());
         }
         return r;
     }
@@ -485,15 +445,19 @@ public abstract class CommitLogSegment
     /**
      * @return true if this segment is unused and safe to recycle or delete
      */
-    public synchronized boolean isUnused()
+    public boolean isUnused()
     {
         // if room to allocate, we're still in use as the active allocatingFrom,
-        // so we don't want to race with updates to cfClean with removeCleanFromDirty
+        // so newer writes may still mark Cfs dirty after we checked them
         if (isStillAllocating())
             return false;
 
-        removeCleanFromDirty();
-        return cfDirty.isEmpty();
+        for (CfMarks marks : cfMarks.values())
+        {
+            if (!marks.isClean())
+                return false;
+        }
+        return true;
     }
 
     /**
@@ -532,6 +496,58 @@ public abstract class CommitLogSegment
         return "CommitLogSegment(" + getPath() + ')';
     }
 
+    /**
+     * The highest positions a Cf was written at and marked clean at in the segment; the Cf is clean once the latter
+     * reaches the former. The written position is updated by every write, so is striped over a few cache lines
+     * picked by thread, for the writers of the same Cf not to contend on it: it is the highest of the stripes.
+     */
+    static final class CfMarks
+    {
+        private static final int STRIPES = Math.min(16, Integer.highestOneBit(FBUtilities.getAvailableProcessors() * 2 - 1));
+        // ints between stripes, for them to be on different cache lines
+        private static final int STRIDE = 16;
+
+        private final AtomicIntegerArray dirty = new AtomicIntegerArray(STRIPES * STRIDE);
+        private final AtomicInteger clean = new AtomicInteger();
+
+        void markDirty(int position)
+        {
+            int stripe = ((int) Thread.currentThread().getId() & (STRIPES - 1)) * STRIDE;
+            ensureAtLeast(dirty, stripe, position);
+        }
+
+        void markClean(int position)
+        {
+            while (true)
+            {
+                int cur = clean.get();
+                if (cur >= position || clean.compareAndSet(cur, position))
+                    return;
+            }
+        }
+
+        boolean isClean()
+        {
+            int cleanPosition = clean.get();
+            for (int i = 0; i < STRIPES * STRIDE; i += STRIDE)
+            {
+                if (dirty.get(i) > cleanPosition)
+                    return false;
+            }
+            return true;
+        }
+
+        private static void ensureAtLeast(AtomicIntegerArray array, int index, int value)
+        {
+            while (true)
+            {
+                int cur = array.get(index);
+                if (cur >= value || array.compareAndSet(index, cur, value))
+                    return;
+            }
+        }
+    }
+
     public static class CommitLogSegmentFileComparator implements Comparator<File>
     {
         public int compare(File f, File f2)
@@ -573,6 +589,11 @@ public abstract class CommitLogSegment
             return buffer;
         }
 
+        int size()
+        {
+            return buffer.limit() - position;
+        }
+
         // markWritten() MUST be called once we are done with the segment or the CL will never flush
         // but must not be called more than once
         void markWritten()
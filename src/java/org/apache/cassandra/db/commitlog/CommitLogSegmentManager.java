@@ -94,9 +94,20 @@ public class CommitLogSegmentManager
     private volatile boolean run = true;
     private final CommitLog commitLog;
 
+    /**
+     * The id of the table the segments are dedicated to, or null if they are shared by all the other tables.
+     */
+    final UUID table;
+
     CommitLogSegmentManager(final CommitLog commitLog)
+    {
+        this(commitLog, null);
+    }
+
+    CommitLogSegmentManager(final CommitLog commitLog, UUID table)
     {
         this.commitLog = commitLog;
+        this.table = table;
     }
 
     void start()
@@ -118,7 +129,7 @@ public class CommitLogSegmentManager
                             {
                                 logger.trace("No segments in reserve; creating a fresh one");
                                 // TODO : some error handling in case we fail to create a new segment
-                                availableSegments.add(CommitLogSegment.createSegment(commitLog));
+                                availableSegments.add(CommitLogSegment.createSegment(commitLog, CommitLogSegmentManager.this));
                                 hasAvailableSegments.signalAll();
                             }
 
@@ -167,7 +178,7 @@ public class CommitLogSegmentManager
 
         run = true;
 
-        managerThread = new Thread(runnable, "COMMIT-LOG-ALLOCATOR");
+        managerThread = new Thread(runnable, table == null ? "COMMIT-LOG-ALLOCATOR" : "COMMIT-LOG-ALLOCATOR:" + table);
         managerThread.start();
     }
 
@@ -285,6 +296,9 @@ public class CommitLogSegmentManager
     void forceRecycleAll(Iterable<UUID> droppedCfs)
     {
         List<CommitLogSegment> segmentsToRecycle = new ArrayList<>(activeSegments);
+        // a set of dedicated segments may not have been written to yet
+        if (segmentsToRecycle.isEmpty())
+            return;
         CommitLogSegment last = segmentsToRecycle.get(segmentsToRecycle.size() - 1);
         advanceAllocatingFrom(last);
 
@@ -522,6 +536,32 @@ public class CommitLogSegmentManager
         }
     }
 
+    /**
+     * Stops the manager of the segments dedicated to a dropped table, and deletes them. Nothing may be written to the
+     * table anymore, so forceRecycleAll() must have left all of them unused.
+     */
+    void shutdownAndDiscard()
+    {
+        createReserveSegments = false;
+        shutdown();
+        Uninterruptibles.joinUninterruptibly(managerThread);
+
+        // the thread may have stopped before discarding the last recycled segments
+        Runnable task;
+        while ((task = segmentManagementTasks.poll()) != null)
+            task.run();
+
+        for (CommitLogSegment segment : activeSegments)
+            segment.discard(true);
+        activeSegments.clear();
+
+        for (CommitLogSegment segment : availableSegments)
+            segment.discard(true);
+        availableSegments.clear();
+
+        allocatingFrom = null;
+    }
+
     /**
      * Initiates the shutdown process for the management thread.
      */
@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.commitlog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.io.FSWriteError;
+import org.apache.cassandra.io.util.FileUtils;
+import org.apache.cassandra.utils.CLibrary;
+import org.apache.cassandra.utils.SyncUtil;
+import org.apache.cassandra.utils.memory.MemoryUtil;
+
+/*
+ * Direct I/O segment. Provides a sector-aligned off-heap buffer for the mutation threads. On sync writes the sectors
+ * of the buffer covering the synced section to the file opened with O_DIRECT, bypassing the page cache, and fdatasyncs
+ * it. The file has the same layout as a memory-mapped segment's, except it only grows as it is written, so it is
+ * replayed the same way.
+ * Falls back to writing through the channel if the file can't be opened with O_DIRECT (without JNA, or on a file
+ * system that doesn't support it).
+ */
+public class DirectIOSegment extends CommitLogSegment
+{
+    private static final Logger logger = LoggerFactory.getLogger(DirectIOSegment.class);
+
+    /**
+     * The alignment of the writes, a multiple of the sector size of all devices: that of 512 bytes and 4KB drives.
+     */
+    static final int ALIGNMENT = 4096;
+
+    private static volatile boolean directIOAvailable = true;
+
+    private final int directFd;
+    private final long address;
+
+    volatile long lastWrittenPos = 0;
+
+    /**
+     * Constructs a new segment file.
+     */
+    DirectIOSegment(CommitLog commitLog, CommitLogSegmentManager manager)
+    {
+        super(commitLog, manager);
+        directFd = directIOAvailable ? CLibrary.tryOpenDirect(logFile.getPath()) : -1;
+        if (directFd < 0 && directIOAvailable)
+        {
+            directIOAvailable = false;
+            logger.warn("Unable to open commit log segments with O_DIRECT, writing them through the page cache instead");
+        }
+        address = MemoryUtil.getAddress(buffer);
+
+        // mark the initial sync marker as uninitialised, and write it with the header
+        int firstSync = buffer.position();
+        buffer.putInt(firstSync + 0, 0);
+        buffer.putInt(firstSync + 4, 0);
+        try
+        {
+            flush(0, alignUp(firstSync + SYNC_MARKER_SIZE));
+        }
+        catch (IOException e)
+        {
+            throw new FSWriteError(e, getPath());
+        }
+    }
+
+    ByteBuffer createBuffer(CommitLog commitLog)
+    {
+        // the buffer is the aligned slice of a larger one, that is referenced as its attachment
+        int size = DatabaseDescriptor.getCommitLogSegmentSize();
+        ByteBuffer allocated = ByteBuffer.allocateDirect(size + ALIGNMENT);
+        int offset = (int) (-MemoryUtil.getAddress(allocated) & (ALIGNMENT - 1));
+        allocated.limit(offset + size).position(offset);
+        return allocated.slice();
+    }
+
+    @Override
+    void write(int startMarker, int nextMarker)
+    {
+        // if there's room in the discard section to write an empty header,
+        // zero out the next sync marker so replayer can cleanly exit
+        if (nextMarker <= buffer.capacity() - SYNC_MARKER_SIZE)
+        {
+            buffer.putInt(nextMarker, 0);
+            buffer.putInt(nextMarker + 4, 0);
+        }
+
+        // write previous sync marker to point to next sync marker
+        // we don't chain the crcs here to ensure this method is idempotent if it fails
+        writeSyncMarker(buffer, startMarker, startMarker, nextMarker);
+
+        // The sectors written may include mutations being written after nextMarker, which is harmless: the zeroed
+        // marker ends the replay before them, and they are written again by the next sync.
+        try
+        {
+            flush(alignDown(startMarker), Math.min(alignUp(nextMarker + SYNC_MARKER_SIZE), buffer.capacity()));
+        }
+        catch (IOException e)
+        {
+            throw new FSWriteError(e, getPath());
+        }
+    }
+
+    private void flush(int start, int end) throws IOException
+    {
+        if (directFd >= 0)
+        {
+            CLibrary.pwriteFully(directFd, address + start, end - start, start);
+            SyncUtil.datasync(directFd);
+        }
+        else
+        {
+            ByteBuffer section = buffer.duplicate();
+            section.limit(end).position(start);
+            while (section.hasRemaining())
+                channel.write(section, section.position());
+            SyncUtil.force(channel, false);
+            CLibrary.trySkipCache(fd, start, end - start, getPath());
+        }
+
+        // Only one thread can be here at a given time.
+        // Protected by synchronization on CommitLogSegment.sync().
+        if (end > lastWrittenPos)
+        {
+            manager.addSize(end - lastWrittenPos);
+            lastWrittenPos = end;
+        }
+    }
+
+    private static int alignDown(int position)
+    {
+        return position & -ALIGNMENT;
+    }
+
+    private static int alignUp(int position)
+    {
+        return (position + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    @Override
+    public long onDiskSize()
+    {
+        return lastWrittenPos;
+    }
+
+    @Override
+    protected void internalClose()
+    {
+        CLibrary.tryCloseFD(directFd);
+        FileUtils.clean((ByteBuffer) MemoryUtil.getAttachment(buffer));
+        super.internalClose();
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.commitlog;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+
+/**
+ * Like batch mode, writes wait for their data to be synced, but instead of syncing as soon as there is a write, the
+ * writes arriving meanwhile are grouped in a single sync, made either once commitlog_sync_group_window_in_ms have
+ * passed since the previous one, or as soon as commitlog_sync_group_threshold_in_kb are waiting for it.
+ */
+class GroupCommitLogService extends AbstractCommitLogService
+{
+    private final long syncThreshold = DatabaseDescriptor.getCommitLogSyncGroupThreshold();
+
+    // bytes written since the last sync began
+    private final AtomicLong unsyncedBytes = new AtomicLong(0);
+
+    public GroupCommitLogService(CommitLog commitLog)
+    {
+        // the window may be a fraction of a millisecond
+        super(commitLog, "GROUP-COMMIT-LOG-WRITER", (long) (DatabaseDescriptor.getCommitLogSyncGroupWindow() * 1e6), TimeUnit.NANOSECONDS);
+    }
+
+    protected void maybeWaitForSync(CommitLogSegment.Allocation alloc)
+    {
+        pending.incrementAndGet();
+        // only the write crossing the threshold brings the next sync forward
+        long size = alloc.size();
+        long unsynced = unsyncedBytes.addAndGet(size);
+        if (unsynced >= syncThreshold && unsynced - size < syncThreshold)
+            haveWork.release();
+        alloc.awaitDiskSync(commitLog.metrics.waitingOnCommit);
+        pending.decrementAndGet();
+    }
+
+    @Override
+    protected void beforeSync()
+    {
+        unsyncedBytes.set(0);
+    }
+}
@@ -59,6 +59,7 @@ import org.apache.cassandra.io.sstable.format.SSTableWriter;
 import org.apache.cassandra.io.sstable.metadata.MetadataCollector;
 import org.apache.cassandra.io.util.FileUtils;
 import org.apache.cassandra.metrics.CompactionMetrics;
+import org.apache.cassandra.repair.ValidationTreeStore;
 import org.apache.cassandra.repair.Validator;
 import org.apache.cassandra.service.ActiveRepairService;
 import org.apache.cassandra.service.StorageService;
@@ -111,6 +112,7 @@ public class CompactionManager implements CompactionManagerMBean
 
     private final CompactionExecutor executor = new CompactionExecutor();
     private final CompactionExecutor validationExecutor = new ValidationExecutor();
+    private final CompactionExecutor subrangeExecutor = new SubrangeExecutor();
     private final static CompactionExecutor cacheCleanupExecutor = new CacheCleanupExecutor();
 
     private final CompactionMetrics metrics = new CompactionMetrics(executor, validationExecutor);
@@ -662,6 +664,16 @@ public class CompactionManager implements CompactionManagerMBean
         return validationExecutor.submit(callable);
     }
 
+    /**
+     * Runs the compaction of one token range of a compaction split in several ranges (see compaction_subranges).
+     * These run on their own executor rather than the compaction one: the task waiting for them occupies a compaction
+     * thread already, and they must not queue behind it or behind the tasks it is holding back.
+     */
+    public <T> Future<T> submitSubrange(Callable<T> subrange)
+    {
+        return subrangeExecutor.submit(subrange);
+    }
+
     /* Used in tests. */
     public void disableAutoCompaction()
     {
@@ -1058,26 +1070,33 @@ public class CompactionManager implements CompactionManagerMBean
             }
             // determine tree depth from number of partitions, but cap at 20 to prevent large tree.
             int depth = numPartitions > 0 ? (int) Math.min(Math.floor(Math.log(numPartitions)), 20) : 0;
-            MerkleTrees tree = new MerkleTrees(cfs.getPartitioner());
-            tree.addMerkleTrees((int) Math.pow(2, depth), validator.desc.ranges);
+            int maxsize = (int) Math.pow(2, depth);
 
             long start = System.nanoTime();
-            try (AbstractCompactionStrategy.ScannerList scanners = cfs.getCompactionStrategyManager().getScanners(sstables, validator.desc.ranges);
-                 ValidationCompactionController controller = new ValidationCompactionController(cfs, gcBefore);
-                 CompactionIterator ci = new ValidationCompactionIterator(scanners.scanners, controller, nowInSec, metrics))
+            MerkleTrees tree = ValidationTreeStore.load(cfs, validator, sstables, maxsize, gcBefore);
+            try
             {
-                // validate the CF as we iterate over it
-                validator.prepare(cfs, tree);
-                while (ci.hasNext())
+                if (tree != null)
                 {
-                    if (ci.isStopRequested())
-                        throw new CompactionInterruptedException(ci.getCompactionInfo());
-                    try (UnfilteredRowIterator partition = ci.next())
-                    {
-                        validator.add(partition);
-                    }
+                    logger.debug("Sstables unchanged since the last validation of {}, reusing its trees", validator.desc);
+                    validator.prepareValidated(tree);
+                    validator.complete();
+                }
+                else
+                {
+                    tree = new MerkleTrees(cfs.getPartitioner());
+                    tree.addMerkleTrees(maxsize, validator.desc.ranges);
+                    validator.prepare(cfs, tree);
+
+                    List<List<Range<Token>>> segments = validator.segments(DatabaseDescriptor.getValidationSubranges());
+                    if (segments.size() > 1)
+                        validateSegments(cfs, validator, sstables, segments, gcBefore, nowInSec);
+                    else
+                        validate(cfs, validator, sstables, gcBefore, nowInSec);
+                    validator.complete();
+
+                    ValidationTreeStore.save(cfs, validator, sstables, maxsize, gcBefore, tree);
                 }
-                validator.complete();
             }
             finally
             {
@@ -1106,6 +1125,123 @@ public class CompactionManager implements CompactionManagerMBean
         }
     }
 
+    private void validate(ColumnFamilyStore cfs, Validator validator, Refs<SSTableReader> sstables, int gcBefore, int nowInSec)
+    {
+        try (AbstractCompactionStrategy.ScannerList scanners = cfs.getCompactionStrategyManager().getScanners(sstables, validator.desc.ranges);
+             ValidationCompactionController controller = new ValidationCompactionController(cfs, gcBefore);
+             CompactionIterator ci = new ValidationCompactionIterator(scanners.scanners, controller, nowInSec, metrics))
+        {
+            // validate the CF as we iterate over it
+            while (ci.hasNext())
+            {
+                if (ci.isStopRequested())
+                    throw new CompactionInterruptedException(ci.getCompactionInfo());
+                try (UnfilteredRowIterator partition = ci.next())
+                {
+                    validator.add(partition);
+                }
+            }
+        }
+    }
+
+    /**
+     * Validates the given segments of the trees (see validation_subranges) concurrently, the first one on the
+     * calling thread and the others on the subrange executor, like the subranges of a compaction.
+     */
+    private void validateSegments(ColumnFamilyStore cfs, Validator validator, Refs<SSTableReader> sstables, List<List<Range<Token>>> ranges, int gcBefore, int nowInSec)
+    {
+        List<ValidationSegment> segments = new ArrayList<>(ranges.size());
+        for (List<Range<Token>> segmentRanges : ranges)
+            segments.add(new ValidationSegment(cfs, validator, sstables, segmentRanges, gcBefore, nowInSec));
+
+        List<Future<?>> futures = new ArrayList<>(segments.size() - 1);
+        for (ValidationSegment segment : segments.subList(1, segments.size()))
+            futures.add(submitSubrange(segment));
+
+        Throwable fail = null;
+        try
+        {
+            segments.get(0).call();
+        }
+        catch (Throwable t)
+        {
+            fail = t;
+        }
+
+        for (Future<?> future : futures)
+        {
+            if (fail != null)
+            {
+                // don't bother finishing the other segments
+                for (ValidationSegment segment : segments)
+                    segment.stop();
+            }
+
+            try
+            {
+                future.get();
+            }
+            catch (ExecutionException e)
+            {
+                fail = Throwables.merge(fail, e.getCause());
+            }
+            catch (Throwable t)
+            {
+                fail = Throwables.merge(fail, t);
+            }
+        }
+        Throwables.maybeFail(fail);
+    }
+
+    /**
+     * The validation of one segment of the trees, adding its partitions to leaves no other segment touches.
+     */
+    private class ValidationSegment implements Callable<Void>
+    {
+        private final ColumnFamilyStore cfs;
+        private final Validator validator;
+        private final Refs<SSTableReader> sstables;
+        private final List<Range<Token>> ranges;
+        private final int gcBefore;
+        private final int nowInSec;
+
+        private volatile boolean stopped;
+
+        private ValidationSegment(ColumnFamilyStore cfs, Validator validator, Refs<SSTableReader> sstables, List<Range<Token>> ranges, int gcBefore, int nowInSec)
+        {
+            this.cfs = cfs;
+            this.validator = validator;
+            this.sstables = sstables;
+            this.ranges = ranges;
+            this.gcBefore = gcBefore;
+            this.nowInSec = nowInSec;
+        }
+
+        public Void call()
+        {
+            try (AbstractCompactionStrategy.ScannerList scanners = cfs.getCompactionStrategyManager().getScanners(sstables, ranges);
+                 ValidationCompactionController controller = new ValidationCompactionController(cfs, gcBefore);
+                 CompactionIterator ci = new ValidationCompactionIterator(scanners.scanners, controller, nowInSec, metrics))
+            {
+                while (ci.hasNext())
+                {
+                    if (stopped || ci.isStopRequested())
+                        throw new CompactionInterruptedException(ci.getCompactionInfo());
+                    try (UnfilteredRowIterator partition = ci.next())
+                    {
+                        validator.addConcurrently(partition);
+                    }
+                }
+            }
+            return null;
+        }
+
+        private void stop()
+        {
+            stopped = true;
+        }
+    }
+
     /**
      * Splits up an sstable into two new sstables. The first of the new tables will store repaired ranges, the second
      * will store the non-repaired ranges. Once anticompation is completed, the original sstable is marked as compacted
@@ -1433,6 +1569,14 @@ public class CompactionManager implements CompactionManagerMBean
         }
     }
 
+    private static class SubrangeExecutor extends CompactionExecutor
+    {
+        public SubrangeExecutor()
+        {
+            super(1, Integer.MAX_VALUE, "CompactionSubrangeExecutor", new SynchronousQueue<Runnable>());
+        }
+    }
+
     private static class CacheCleanupExecutor extends CompactionExecutor
     {
         public CacheCleanupExecutor()
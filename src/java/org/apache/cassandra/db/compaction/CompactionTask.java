@@ -17,13 +17,21 @@
  */
 package org.apache.cassandra.db.compaction;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
@@ -41,8 +49,12 @@ import org.apache.cassandra.db.ColumnFamilyStore;
 import org.apache.cassandra.db.SystemKeyspace;
 import org.apache.cassandra.db.compaction.CompactionManager.CompactionExecutorStatsCollector;
 import org.apache.cassandra.db.lifecycle.LifecycleTransaction;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
 import org.apache.cassandra.service.ActiveRepairService;
 import org.apache.cassandra.utils.FBUtilities;
+import org.apache.cassandra.utils.Throwables;
 import org.apache.cassandra.utils.concurrent.Refs;
 
 public class CompactionTask extends AbstractCompactionTask
@@ -160,44 +172,64 @@ public class CompactionTask extends AbstractCompactionTask
             // to both ifile and dfile and SSTR will throw deletion errors on Windows if it tries to delete before scanner is closed.
             // See CASSANDRA-8019 and CASSANDRA-8399
             int nowInSec = FBUtilities.nowInSeconds();
-            try (Refs<SSTableReader> refs = Refs.ref(actuallyCompact);
-                 AbstractCompactionStrategy.ScannerList scanners = strategy.getScanners(actuallyCompact);
-                 CompactionIterator ci = new CompactionIterator(compactionType, scanners.scanners, controller, nowInSec, taskId))
+            List<Range<Token>> ranges = splitRanges(actuallyCompact, expectedWriteSize);
+            if (ranges.size() > 1)
             {
-                if (collector != null)
-                    collector.beginCompaction(ci);
-                long lastCheckObsoletion = start;
-
-                if (!controller.cfs.getCompactionStrategyManager().isActive)
-                    throw new CompactionInterruptedException(ci.getCompactionInfo());
-
-                try (CompactionAwareWriter writer = getCompactionAwareWriter(cfs, getDirectories(), transaction, actuallyCompact))
+                logger.debug("Compacting ({}) in {} token ranges concurrently: {}", taskId, ranges.size(), ranges);
+                List<Subrange> subranges = new ArrayList<>(ranges.size());
+                try (Refs<SSTableReader> refs = Refs.ref(actuallyCompact))
                 {
-                    estimatedKeys = writer.estimatedKeys();
-                    while (ci.hasNext())
+                    for (Range<Token> range : ranges)
                     {
-                        if (ci.isStopRequested())
-                            throw new CompactionInterruptedException(ci.getCompactionInfo());
-
-                        if (writer.append(ci.next()))
-                            totalKeysWritten++;
-
-                        if (System.nanoTime() - lastCheckObsoletion > TimeUnit.MINUTES.toNanos(1L))
-                        {
-                            controller.maybeRefreshOverlaps();
-                            lastCheckObsoletion = System.nanoTime();
-                        }
+                        // the controller tracks the overlapping sstables in key order, so every range needs its own
+                        CompactionController rangeController = subranges.isEmpty() ? controller : getCompactionController(transaction.originals());
+                        subranges.add(new Subrange(range, strategy, rangeController, actuallyCompact, nowInSec, taskId));
                     }
-
-                    // point of no return
-                    newSStables = writer.finish();
+                    newSStables = compactSubranges(subranges);
                 }
                 finally
+                {
+                    Throwable accumulate = null;
+                    for (Subrange subrange : subranges)
+                        accumulate = subrange.close(accumulate, subrange.controller != controller);
+                    Throwables.maybeFail(accumulate);
+                }
+
+                mergedRowCounts = new long[0];
+                for (Subrange subrange : subranges)
+                {
+                    totalKeysWritten += subrange.keysWritten;
+                    mergedRowCounts = mergeRowCounts(mergedRowCounts, subrange.mergedRowCounts);
+                }
+                estimatedKeys = subranges.get(0).writer.estimatedKeys();
+            }
+            else
+            {
+                try (Refs<SSTableReader> refs = Refs.ref(actuallyCompact);
+                     AbstractCompactionStrategy.ScannerList scanners = strategy.getScanners(actuallyCompact);
+                     CompactionIterator ci = new CompactionIterator(compactionType, scanners.scanners, controller, nowInSec, taskId))
                 {
                     if (collector != null)
-                        collector.finishCompaction(ci);
+                        collector.beginCompaction(ci);
 
-                    mergedRowCounts = ci.getMergedRowCounts();
+                    if (!controller.cfs.getCompactionStrategyManager().isActive)
+                        throw new CompactionInterruptedException(ci.getCompactionInfo());
+
+                    try (CompactionAwareWriter writer = getCompactionAwareWriter(cfs, getDirectories(), transaction, actuallyCompact))
+                    {
+                        estimatedKeys = writer.estimatedKeys();
+                        totalKeysWritten = write(ci, controller, writer);
+
+                        // point of no return
+                        newSStables = writer.finish();
+                    }
+                    finally
+                    {
+                        if (collector != null)
+                            collector.finishCompaction(ci);
+
+                        mergedRowCounts = ci.getMergedRowCounts();
+                    }
                 }
             }
 
@@ -224,6 +256,262 @@ public class CompactionTask extends AbstractCompactionTask
         }
     }
 
+    /**
+     * Writes all the partitions of the compaction iterator, without finishing the writer.
+     * @return the number of partitions written
+     */
+    private long write(CompactionIterator ci, CompactionController controller, CompactionAwareWriter writer)
+    {
+        long keysWritten = 0;
+        long lastCheckObsoletion = System.nanoTime();
+        while (ci.hasNext())
+        {
+            if (ci.isStopRequested())
+                throw new CompactionInterruptedException(ci.getCompactionInfo());
+
+            if (writer.append(ci.next()))
+                keysWritten++;
+
+            if (System.nanoTime() - lastCheckObsoletion > TimeUnit.MINUTES.toNanos(1L))
+            {
+                controller.maybeRefreshOverlaps();
+                lastCheckObsoletion = System.nanoTime();
+            }
+        }
+        return keysWritten;
+    }
+
+    /**
+     * Splits the token span of the sstables to compact in compaction_subranges disjoint ranges of the ring, to be
+     * compacted concurrently.
+     * @return the ranges, which together cover the whole ring, or a single null range if the compaction should not
+     * be split: because it is too small, is not a regular online compaction, or its writer has to see all the data
+     * (see {@link #allowSubranges()}), or because the partitioner can't split token ranges.
+     */
+    @VisibleForTesting
+    List<Range<Token>> splitRanges(Set<SSTableReader> sstables, long expectedWriteSize)
+    {
+        int parts = DatabaseDescriptor.getCompactionSubranges();
+        if (parts <= 1
+            || offline
+            || compactionType != OperationType.COMPACTION
+            || !allowSubranges()
+            || expectedWriteSize < parts * DatabaseDescriptor.getCompactionSubrangeMinSize()
+            || sstables.isEmpty())
+            return Collections.singletonList(null);
+
+        Token first = null, last = null;
+        for (SSTableReader sstable : sstables)
+        {
+            if (first == null || sstable.first.getToken().compareTo(first) < 0)
+                first = sstable.first.getToken();
+            if (last == null || sstable.last.getToken().compareTo(last) > 0)
+                last = sstable.last.getToken();
+        }
+        if (first.compareTo(last) >= 0)
+            return Collections.singletonList(null);
+
+        IPartitioner partitioner = cfs.getPartitioner();
+        List<Token> boundaries = new ArrayList<>(parts - 1);
+        try
+        {
+            split(partitioner, first, last, parts, boundaries);
+        }
+        catch (UnsupportedOperationException e)
+        {
+            // LocalPartitioner can't compute midpoints
+            return Collections.singletonList(null);
+        }
+
+        // the first and last ranges extend to the ends of the ring, and small spans could give duplicate boundaries
+        Token minimum = partitioner.getMinimumToken();
+        List<Range<Token>> ranges = new ArrayList<>(parts);
+        Token left = minimum;
+        for (Token boundary : boundaries)
+        {
+            if (boundary.compareTo(left) > 0)
+            {
+                ranges.add(new Range<>(left, boundary));
+                left = boundary;
+            }
+        }
+        ranges.add(new Range<>(left, minimum));
+        return ranges;
+    }
+
+    private static void split(IPartitioner partitioner, Token left, Token right, int parts, List<Token> boundaries)
+    {
+        if (parts <= 1)
+            return;
+
+        Token midpoint = partitioner.midpoint(left, right);
+        split(partitioner, left, midpoint, parts / 2, boundaries);
+        boundaries.add(midpoint);
+        split(partitioner, midpoint, right, parts - parts / 2, boundaries);
+    }
+
+    /**
+     * Whether the sstables written by this task may be split by token range, and the ranges written concurrently by
+     * several writers. Tasks whose writer lays out its output based on the total amount of data written, like major
+     * leveled compactions, should not.
+     */
+    protected boolean allowSubranges()
+    {
+        return true;
+    }
+
+    /**
+     * Compacts the given ranges concurrently, the first one on the calling thread, and once all are written commits
+     * their sstables together with the transaction. Every range is prepared before the transaction, so that all the
+     * new sstables are added to the live set before the originals are removed from it.
+     * On failure, the caller must abort the writers; the transaction is aborted when the task is closed.
+     */
+    private Collection<SSTableReader> compactSubranges(List<Subrange> subranges)
+    {
+        List<Future<?>> futures = new ArrayList<>(subranges.size() - 1);
+        for (Subrange subrange : subranges.subList(1, subranges.size()))
+            futures.add(CompactionManager.instance.submitSubrange(subrange));
+
+        Throwable fail = null;
+        try
+        {
+            subranges.get(0).call();
+        }
+        catch (Throwable t)
+        {
+            fail = t;
+        }
+
+        for (Future<?> future : futures)
+        {
+            if (fail != null)
+            {
+                // don't bother finishing the other ranges
+                for (Subrange subrange : subranges)
+                    subrange.stop();
+            }
+
+            try
+            {
+                future.get();
+            }
+            catch (ExecutionException e)
+            {
+                fail = Throwables.merge(fail, e.getCause());
+            }
+            catch (Throwable t)
+            {
+                fail = Throwables.merge(fail, t);
+            }
+        }
+        Throwables.maybeFail(fail);
+
+        // point of no return
+        List<SSTableReader> newSSTables = new ArrayList<>();
+        for (Subrange subrange : subranges)
+        {
+            subrange.writer.prepareToCommit();
+            newSSTables.addAll(subrange.writer.finished());
+        }
+        if (!keepOriginals)
+            transaction.obsoleteOriginals();
+        transaction.prepareToCommit();
+
+        Throwable accumulate = null;
+        for (Subrange subrange : subranges)
+            accumulate = subrange.writer.commit(accumulate);
+        accumulate = transaction.commit(accumulate);
+        Throwables.maybeFail(accumulate);
+        return newSSTables;
+    }
+
+    private static long[] mergeRowCounts(long[] left, long[] right)
+    {
+        long[] merged = Arrays.copyOf(left, Math.max(left.length, right.length));
+        for (int i = 0; i < right.length; i++)
+            merged[i] += right[i];
+        return merged;
+    }
+
+    /**
+     * The compaction of one of the token ranges a compaction is split in, into its own writer sharing the transaction
+     * of the task.
+     */
+    private class Subrange implements Callable<Void>
+    {
+        private final Range<Token> range;
+        private final CompactionStrategyManager strategy;
+        private final CompactionController controller;
+        private final Set<SSTableReader> sstables;
+        private final int nowInSec;
+        private final UUID taskId;
+        private final CompactionAwareWriter writer;
+
+        private volatile CompactionIterator ci;
+        private volatile boolean stopped;
+        private long keysWritten;
+        private long[] mergedRowCounts = new long[0];
+
+        private Subrange(Range<Token> range,
+                         CompactionStrategyManager strategy,
+                         CompactionController controller,
+                         Set<SSTableReader> sstables,
+                         int nowInSec,
+                         UUID taskId)
+        {
+            this.range = range;
+            this.strategy = strategy;
+            this.controller = controller;
+            this.sstables = sstables;
+            this.nowInSec = nowInSec;
+            this.taskId = taskId;
+            this.writer = getCompactionAwareWriter(cfs, getDirectories(), transaction, sstables).shareTransaction();
+        }
+
+        public Void call()
+        {
+            try (AbstractCompactionStrategy.ScannerList scanners = strategy.getScanners(sstables, Collections.singleton(range));
+                 CompactionIterator ci = new CompactionIterator(compactionType, scanners.scanners, controller, nowInSec, taskId))
+            {
+                this.ci = ci;
+                if (collector != null)
+                    collector.beginCompaction(ci);
+
+                try
+                {
+                    if (stopped || !controller.cfs.getCompactionStrategyManager().isActive)
+                        throw new CompactionInterruptedException(ci.getCompactionInfo());
+
+                    keysWritten = write(ci, controller, writer);
+                }
+                finally
+                {
+                    if (collector != null)
+                        collector.finishCompaction(ci);
+
+                    mergedRowCounts = ci.getMergedRowCounts();
+                }
+            }
+            return null;
+        }
+
+        private void stop()
+        {
+            stopped = true;
+            CompactionIterator ci = this.ci;
+            if (ci != null)
+                ci.stop();
+        }
+
+        private Throwable close(Throwable accumulate, boolean closeController)
+        {
+            accumulate = Throwables.close(accumulate, Collections.singleton(writer));
+            if (closeController)
+                accumulate = Throwables.close(accumulate, Collections.singleton(controller));
+            return accumulate;
+        }
+    }
+
     @Override
     public CompactionAwareWriter getCompactionAwareWriter(ColumnFamilyStore cfs,
                                                           Directories directories,
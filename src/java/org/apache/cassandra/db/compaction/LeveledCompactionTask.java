@@ -52,6 +52,13 @@ public class LeveledCompactionTask extends CompactionTask
         return new MaxSSTableSizeWriter(cfs, directories, txn, nonExpiredSSTables, maxSSTableBytes, getLevel(), false, false);
     }
 
+    @Override
+    protected boolean allowSubranges()
+    {
+        // a major compaction fills the levels in turn, based on how much it has written
+        return !majorCompaction;
+    }
+
     @Override
     protected boolean partialCompactionsAcceptable()
     {
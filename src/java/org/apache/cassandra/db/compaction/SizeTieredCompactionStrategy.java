@@ -355,5 +355,12 @@ public class SizeTieredCompactionStrategy extends AbstractCompactionStrategy
         {
             return new SplittingSizeTieredCompactionWriter(cfs, directories, txn, nonExpiredSSTables);
         }
+
+        @Override
+        protected boolean allowSubranges()
+        {
+            // the output is split in sstables of decreasing sizes, which must cover the whole ring
+            return false;
+        }
     }
 }
@@ -95,9 +95,27 @@ public abstract class CompactionAwareWriter extends Transactional.AbstractTransa
     public Collection<SSTableReader> finish()
     {
         super.finish();
+        return finished();
+    }
+
+    /**
+     * @return the written sstables, once this writer is prepared to commit
+     */
+    public Collection<SSTableReader> finished()
+    {
         return sstableWriter.finished();
     }
 
+    /**
+     * Makes this writer one of several writing disjoint token ranges of the same compaction concurrently, see
+     * {@link SSTableRewriter#shareTransaction()}. Must be called before the first append.
+     */
+    public CompactionAwareWriter shareTransaction()
+    {
+        sstableWriter.shareTransaction();
+        return this;
+    }
+
     /**
      * estimated number of keys we should write
      */
@@ -138,8 +138,9 @@ class LogTransaction extends Transactional.AbstractTransactional implements Tran
 
     /**
      * Track a reader as new.
+     * Synchronized, as the writers of a compaction split into token ranges create their sstables concurrently.
      **/
-    void trackNew(SSTable table)
+    synchronized void trackNew(SSTable table)
     {
         data.add(Type.ADD, table);
     }
@@ -147,7 +148,7 @@ class LogTransaction extends Transactional.AbstractTransactional implements Tran
     /**
      * Stop tracking a reader as new.
      */
-    void untrackNew(SSTable table)
+    synchronized void untrackNew(SSTable table)
     {
         data.remove(Type.ADD, table);
     }
@@ -195,7 +195,7 @@ public class Tracker
     public void reset()
     {
         view.set(new View(
-                         !isDummy() ? ImmutableList.of(new Memtable(cfstore)) : Collections.<Memtable>emptyList(),
+                         !isDummy() ? ImmutableList.of(cfstore.createMemtable()) : Collections.<Memtable>emptyList(),
                          ImmutableList.<Memtable>of(),
                          Collections.<SSTableReader, SSTableReader>emptyMap(),
                          Collections.<SSTableReader, SSTableReader>emptyMap(),
@@ -314,7 +314,7 @@ public class Tracker
      */
     public Memtable switchMemtable(boolean truncating)
     {
-        Memtable newMemtable = new Memtable(cfstore);
+        Memtable newMemtable = cfstore.createMemtable();
         Pair<View, View> result = apply(View.switchMemtable(newMemtable));
         if (truncating)
             notifyRenewed(newMemtable);
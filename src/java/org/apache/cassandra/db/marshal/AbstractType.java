@@ -37,8 +37,10 @@ import org.apache.cassandra.exceptions.SyntaxException;
 import org.apache.cassandra.serializers.TypeSerializer;
 import org.apache.cassandra.serializers.MarshalException;
 
+import org.apache.cassandra.utils.ByteComparable;
 import org.apache.cassandra.utils.FastByteOperations;
 import org.github.jamm.Unmetered;
+import org.apache.cassandra.io.util.DataOutputBuffer;
 import org.apache.cassandra.io.util.DataOutputPlus;
 import org.apache.cassandra.io.util.DataInputPlus;
 import org.apache.cassandra.io.util.FileUtils;
@@ -402,6 +404,54 @@ public abstract class AbstractType<T> implements Comparator<ByteBuffer>
             ByteBufferUtil.skipWithVIntLength(in);
     }
 
+    /**
+     * Whether the values of this type have a byte-comparable representation, see {@link #writeComparableBytes}.
+     */
+    public boolean isByteComparable()
+    {
+        return isByteOrderComparable;
+    }
+
+    /**
+     * Writes a byte-comparable representation of the given value: the representations of two values compare as
+     * unsigned bytes (see {@link ByteComparable#compare}) the way {@link #compare} compares the values themselves.
+     * Empty values are written as nothing, and the representations of non-empty values are prefix-free, so that they
+     * can be concatenated to represent composite values (see {@link ByteComparable#writeComponent}).
+     *
+     * Must be overridden by all types whose values are not compared by their unsigned bytes and that support it.
+     */
+    public void writeComparableBytes(ByteBuffer value, DataOutputPlus out) throws IOException
+    {
+        if (!isByteOrderComparable)
+            throw new UnsupportedOperationException(getClass().getSimpleName() + " has no byte-comparable representation");
+
+        if (!value.hasRemaining())
+            return;
+
+        // fixed-length values are prefix-free already
+        if (valueLengthIfFixed() >= 0)
+            out.write(value);
+        else
+            ByteComparable.writeEscaped(value, out);
+    }
+
+    /**
+     * @return the byte-comparable representation of the given value, see {@link #writeComparableBytes}
+     */
+    public ByteBuffer asComparableBytes(ByteBuffer value)
+    {
+        try (DataOutputBuffer out = new DataOutputBuffer(value.remaining() + 2))
+        {
+            writeComparableBytes(value, out);
+            return out.buffer();
+        }
+        catch (IOException e)
+        {
+            // writing to a DataOutputBuffer does not throw
+            throw new AssertionError(e);
+        }
+    }
+
     /**
      * Checks whether this type or any of the types this type contains references the given type.
      */
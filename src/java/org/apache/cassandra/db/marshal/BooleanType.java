@@ -17,11 +17,13 @@
  */
 package org.apache.cassandra.db.marshal;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 
 import org.apache.cassandra.cql3.CQL3Type;
 import org.apache.cassandra.cql3.Constants;
 import org.apache.cassandra.cql3.Term;
+import org.apache.cassandra.io.util.DataOutputPlus;
 import org.apache.cassandra.serializers.TypeSerializer;
 import org.apache.cassandra.serializers.BooleanSerializer;
 import org.apache.cassandra.serializers.MarshalException;
@@ -55,6 +57,19 @@ public class BooleanType extends AbstractType<Boolean>
         return b2 == 0 ? 1 : 0;
     }
 
+    @Override
+    public boolean isByteComparable()
+    {
+        return true;
+    }
+
+    @Override
+    public void writeComparableBytes(ByteBuffer value, DataOutputPlus out) throws IOException
+    {
+        if (value.hasRemaining())
+            out.writeByte(value.get(value.position()) == 0 ? 0 : 1);
+    }
+
     public ByteBuffer fromString(String source) throws MarshalException
     {
 
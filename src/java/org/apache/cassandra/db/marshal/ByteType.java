@@ -17,15 +17,18 @@
  */
 package org.apache.cassandra.db.marshal;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 
 import org.apache.cassandra.cql3.CQL3Type;
 import org.apache.cassandra.cql3.Constants;
 import org.apache.cassandra.cql3.Term;
+import org.apache.cassandra.io.util.DataOutputPlus;
 import org.apache.cassandra.serializers.ByteSerializer;
 import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.serializers.TypeSerializer;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.ByteComparable;
 
 public class ByteType extends AbstractType<Byte>
 {
@@ -41,6 +44,19 @@ public class ByteType extends AbstractType<Byte>
         return o1.get(o1.position()) - o2.get(o2.position());
     }
 
+    @Override
+    public boolean isByteComparable()
+    {
+        return true;
+    }
+
+    @Override
+    public void writeComparableBytes(ByteBuffer value, DataOutputPlus out) throws IOException
+    {
+        if (value.hasRemaining())
+            ByteComparable.writeSigned(value, out);
+    }
+
     public ByteBuffer fromString(String source) throws MarshalException
     {
         // Return an empty ByteBuffer for an empty string.
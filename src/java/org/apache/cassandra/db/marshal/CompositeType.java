@@ -33,8 +33,10 @@ import org.apache.cassandra.cql3.ColumnIdentifier;
 import org.apache.cassandra.cql3.Operator;
 import org.apache.cassandra.io.util.DataOutputBuffer;
 import org.apache.cassandra.io.util.DataOutputBufferFixed;
+import org.apache.cassandra.io.util.DataOutputPlus;
 import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.ByteComparable;
 
 /*
  * The encoding of a CompositeType column name should be:
@@ -150,6 +152,35 @@ public class CompositeType extends AbstractCompositeType
         return getComparator(i, bb1);
     }
 
+    @Override
+    public boolean isByteComparable()
+    {
+        for (AbstractType<?> type : types)
+        {
+            if (!type.isByteComparable())
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void writeComparableBytes(ByteBuffer value, DataOutputPlus out) throws IOException
+    {
+        if (!value.hasRemaining())
+            return;
+
+        // static names sort first, then every component is followed by its end-of-component byte, which is compared
+        // as a signed byte
+        ByteBuffer input = value.duplicate();
+        out.writeByte(readStatic(input) ? 0 : 1);
+        for (int i = 0; input.hasRemaining(); i++)
+        {
+            ByteComparable.writeComponent(getComparator(i, input), ByteBufferUtil.readBytesWithShortLength(input), out);
+            out.writeByte(input.get() ^ 0x80);
+        }
+        out.writeByte(ByteComparable.TERMINATOR);
+    }
+
     protected AbstractType<?> getAndAppendComparator(int i, ByteBuffer bb, StringBuilder sb)
     {
         return types.get(i);
@@ -17,16 +17,19 @@
  */
 package org.apache.cassandra.db.marshal;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.nio.ByteBuffer;
 
 import org.apache.cassandra.cql3.CQL3Type;
 import org.apache.cassandra.cql3.Constants;
 import org.apache.cassandra.cql3.Term;
+import org.apache.cassandra.io.util.DataOutputPlus;
 import org.apache.cassandra.serializers.TypeSerializer;
 import org.apache.cassandra.serializers.DecimalSerializer;
 import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.ByteComparable;
 
 public class DecimalType extends AbstractType<BigDecimal>
 {
@@ -47,6 +50,40 @@ public class DecimalType extends AbstractType<BigDecimal>
         return compose(o1).compareTo(compose(o2));
     }
 
+    @Override
+    public boolean isByteComparable()
+    {
+        return true;
+    }
+
+    @Override
+    public void writeComparableBytes(ByteBuffer value, DataOutputPlus out) throws IOException
+    {
+        if (!value.hasRemaining())
+            return;
+
+        BigDecimal decimal = compose(value);
+        int signum = decimal.signum();
+        if (signum == 0)
+        {
+            out.writeByte(0x80);
+            return;
+        }
+
+        // Numerically equal values compare equal whatever their scale, so trailing zeros are dropped. The value is
+        // then written as its sign, the exponent e and the digits d1..dn (d1 != 0) of 0.d1..dn * 10^e, with the
+        // bytes of negative values inverted so that greater magnitudes sort first.
+        decimal = decimal.stripTrailingZeros();
+        String digits = decimal.unscaledValue().abs().toString();
+        long exponent = (long) digits.length() - decimal.scale();
+        int mask = signum > 0 ? 0 : 0xFF;
+        out.writeByte(signum > 0 ? 0xC0 : 0x40);
+        ByteComparable.writeSigned(signum > 0 ? exponent : ~exponent, out);
+        for (int i = 0; i < digits.length(); i++)
+            out.writeByte(digits.charAt(i) ^ mask);
+        out.writeByte(mask);
+    }
+
     public ByteBuffer fromString(String source) throws MarshalException
     {
         // Return an empty ByteBuffer for an empty string.
@@ -17,11 +17,13 @@
  */
 package org.apache.cassandra.db.marshal;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 
 import org.apache.cassandra.cql3.CQL3Type;
 import org.apache.cassandra.cql3.Constants;
 import org.apache.cassandra.cql3.Term;
+import org.apache.cassandra.io.util.DataOutputPlus;
 import org.apache.cassandra.serializers.TypeSerializer;
 import org.apache.cassandra.serializers.DoubleSerializer;
 import org.apache.cassandra.serializers.MarshalException;
@@ -46,6 +48,23 @@ public class DoubleType extends AbstractType<Double>
         return compose(o1).compareTo(compose(o2));
     }
 
+    @Override
+    public boolean isByteComparable()
+    {
+        return true;
+    }
+
+    @Override
+    public void writeComparableBytes(ByteBuffer value, DataOutputPlus out) throws IOException
+    {
+        if (!value.hasRemaining())
+            return;
+
+        // flipping every bit of negative values and the sign bit of the others gives the order of Double.compareTo
+        long bits = Double.doubleToLongBits(value.getDouble(value.position()));
+        out.writeLong(bits < 0 ? ~bits : bits ^ Long.MIN_VALUE);
+    }
+
     public ByteBuffer fromString(String source) throws MarshalException
     {
       // Return an empty ByteBuffer for an empty string.
@@ -17,10 +17,12 @@
  */
 package org.apache.cassandra.db.marshal;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 
 import org.apache.cassandra.cql3.Constants;
 import org.apache.cassandra.cql3.Term;
+import org.apache.cassandra.io.util.DataOutputPlus;
 import org.apache.cassandra.serializers.TypeSerializer;
 import org.apache.cassandra.serializers.EmptySerializer;
 import org.apache.cassandra.serializers.MarshalException;
@@ -41,6 +43,18 @@ public class EmptyType extends AbstractType<Void>
         return 0;
     }
 
+    @Override
+    public boolean isByteComparable()
+    {
+        return true;
+    }
+
+    @Override
+    public void writeComparableBytes(ByteBuffer value, DataOutputPlus out) throws IOException
+    {
+        // all values are empty
+    }
+
     public String getString(ByteBuffer bytes)
     {
         return "";
@@ -17,11 +17,13 @@
  */
 package org.apache.cassandra.db.marshal;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 
 import org.apache.cassandra.cql3.CQL3Type;
 import org.apache.cassandra.cql3.Constants;
 import org.apache.cassandra.cql3.Term;
+import org.apache.cassandra.io.util.DataOutputPlus;
 import org.apache.cassandra.serializers.TypeSerializer;
 import org.apache.cassandra.serializers.FloatSerializer;
 import org.apache.cassandra.serializers.MarshalException;
@@ -47,6 +49,23 @@ public class FloatType extends AbstractType<Float>
         return compose(o1).compareTo(compose(o2));
     }
 
+    @Override
+    public boolean isByteComparable()
+    {
+        return true;
+    }
+
+    @Override
+    public void writeComparableBytes(ByteBuffer value, DataOutputPlus out) throws IOException
+    {
+        if (!value.hasRemaining())
+            return;
+
+        // flipping every bit of negative values and the sign bit of the others gives the order of Float.compareTo
+        int bits = Float.floatToIntBits(value.getFloat(value.position()));
+        out.writeInt(bits < 0 ? ~bits : bits ^ Integer.MIN_VALUE);
+    }
+
     public ByteBuffer fromString(String source) throws MarshalException
     {
       // Return an empty ByteBuffer for an empty string.
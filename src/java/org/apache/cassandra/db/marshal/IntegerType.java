@@ -17,12 +17,14 @@
  */
 package org.apache.cassandra.db.marshal;
 
+import java.io.IOException;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
 
 import org.apache.cassandra.cql3.CQL3Type;
 import org.apache.cassandra.cql3.Constants;
 import org.apache.cassandra.cql3.Term;
+import org.apache.cassandra.io.util.DataOutputPlus;
 import org.apache.cassandra.serializers.TypeSerializer;
 import org.apache.cassandra.serializers.IntegerSerializer;
 import org.apache.cassandra.serializers.MarshalException;
@@ -129,6 +131,29 @@ public final class IntegerType extends AbstractType<BigInteger>
         return 0;
     }
 
+    @Override
+    public boolean isByteComparable()
+    {
+        return true;
+    }
+
+    @Override
+    public void writeComparableBytes(ByteBuffer value, DataOutputPlus out) throws IOException
+    {
+        if (!value.hasRemaining())
+            return;
+
+        // compare() ignores sign padding, so only the significant bytes are written, preceded by their count: among
+        // non-negative values more bytes mean a greater value, among negative ones a smaller value
+        int start = findMostSignificantByte(value);
+        int length = value.remaining() - start;
+        boolean negative = value.get(value.position() + start) < 0;
+        out.writeInt(negative ? Integer.MAX_VALUE - length : length ^ Integer.MIN_VALUE);
+        ByteBuffer significant = value.duplicate();
+        significant.position(value.position() + start);
+        out.write(significant);
+    }
+
     public ByteBuffer fromString(String source) throws MarshalException
     {
         // Return an empty ByteBuffer for an empty string.
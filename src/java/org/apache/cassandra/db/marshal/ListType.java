@@ -17,6 +17,7 @@
  */
 package org.apache.cassandra.db.marshal;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.*;
 
@@ -26,9 +27,11 @@ import org.apache.cassandra.cql3.Term;
 import org.apache.cassandra.db.rows.Cell;
 import org.apache.cassandra.exceptions.ConfigurationException;
 import org.apache.cassandra.exceptions.SyntaxException;
+import org.apache.cassandra.io.util.DataOutputPlus;
 import org.apache.cassandra.serializers.CollectionSerializer;
 import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.serializers.ListSerializer;
+import org.apache.cassandra.utils.ByteComparable;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -159,6 +162,30 @@ public class ListType<T> extends CollectionType<List<T>>
         return size1 == size2 ? 0 : (size1 < size2 ? -1 : 1);
     }
 
+    @Override
+    public boolean isByteComparable()
+    {
+        return elements.isByteComparable();
+    }
+
+    @Override
+    public void writeComparableBytes(ByteBuffer value, DataOutputPlus out) throws IOException
+    {
+        writeComparableListOrSet(elements, value, out);
+    }
+
+    static void writeComparableListOrSet(AbstractType<?> elementsComparator, ByteBuffer value, DataOutputPlus out) throws IOException
+    {
+        if (!value.hasRemaining())
+            return;
+
+        ByteBuffer input = value.duplicate();
+        int size = CollectionSerializer.readCollectionSize(input, 3);
+        for (int i = 0; i < size; i++)
+            ByteComparable.writeComponent(elementsComparator, CollectionSerializer.readValue(input, 3), out);
+        out.writeByte(ByteComparable.TERMINATOR);
+    }
+
     @Override
     public String toString(boolean ignoreFreezing)
     {
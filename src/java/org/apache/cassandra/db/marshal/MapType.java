@@ -17,6 +17,7 @@
  */
 package org.apache.cassandra.db.marshal;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.*;
 
@@ -26,10 +27,12 @@ import org.apache.cassandra.cql3.Term;
 import org.apache.cassandra.db.rows.Cell;
 import org.apache.cassandra.exceptions.ConfigurationException;
 import org.apache.cassandra.exceptions.SyntaxException;
+import org.apache.cassandra.io.util.DataOutputPlus;
 import org.apache.cassandra.serializers.CollectionSerializer;
 import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.serializers.MapSerializer;
 import org.apache.cassandra.transport.Server;
+import org.apache.cassandra.utils.ByteComparable;
 import org.apache.cassandra.utils.Pair;
 
 public class MapType<K, V> extends CollectionType<Map<K, V>>
@@ -167,6 +170,29 @@ public class MapType<K, V> extends CollectionType<Map<K, V>>
         return size1 == size2 ? 0 : (size1 < size2 ? -1 : 1);
     }
 
+    @Override
+    public boolean isByteComparable()
+    {
+        return keys.isByteComparable() && values.isByteComparable();
+    }
+
+    @Override
+    public void writeComparableBytes(ByteBuffer value, DataOutputPlus out) throws IOException
+    {
+        if (!value.hasRemaining())
+            return;
+
+        ByteBuffer input = value.duplicate();
+        int protocolVersion = Server.VERSION_3;
+        int size = CollectionSerializer.readCollectionSize(input, protocolVersion);
+        for (int i = 0; i < size; i++)
+        {
+            ByteComparable.writeComponent(keys, CollectionSerializer.readValue(input, protocolVersion), out);
+            ByteComparable.writeComponent(values, CollectionSerializer.readValue(input, protocolVersion), out);
+        }
+        out.writeByte(ByteComparable.TERMINATOR);
+    }
+
     @Override
     public MapSerializer<K, V> getSerializer()
     {
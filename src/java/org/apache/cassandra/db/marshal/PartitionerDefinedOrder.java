@@ -17,16 +17,19 @@
  */
 package org.apache.cassandra.db.marshal;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Iterator;
 
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.cql3.Term;
 import org.apache.cassandra.db.PartitionPosition;
+import org.apache.cassandra.io.util.DataOutputPlus;
 import org.apache.cassandra.serializers.TypeSerializer;
 import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.dht.IPartitioner;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.ByteComparable;
 import org.apache.cassandra.utils.FBUtilities;
 
 /** for sorting columns representing row keys in the row ordering as determined by a partitioner.
@@ -93,6 +96,20 @@ public class PartitionerDefinedOrder extends AbstractType<ByteBuffer>
         return PartitionPosition.ForKey.get(o1, partitioner).compareTo(PartitionPosition.ForKey.get(o2, partitioner));
     }
 
+    @Override
+    public boolean isByteComparable()
+    {
+        return partitioner.getMinimumToken().isByteComparable();
+    }
+
+    @Override
+    public void writeComparableBytes(ByteBuffer value, DataOutputPlus out) throws IOException
+    {
+        // empty values are the minimum bound, which sorts before any other position
+        if (value.hasRemaining())
+            partitioner.decorateKey(value).writeComparableBytes(out);
+    }
+
     @Override
     public void validate(ByteBuffer bytes) throws MarshalException
     {
@@ -17,6 +17,7 @@
  */
 package org.apache.cassandra.db.marshal;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
@@ -26,8 +27,10 @@ import org.apache.cassandra.cql3.CQL3Type;
 import org.apache.cassandra.cql3.Term;
 import org.apache.cassandra.exceptions.ConfigurationException;
 import org.apache.cassandra.exceptions.SyntaxException;
+import org.apache.cassandra.io.util.DataOutputPlus;
 import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.serializers.TypeSerializer;
+import org.apache.cassandra.utils.ByteComparable;
 
 //用于create table语句的CLUSTERING ORDER BY中某个字段为DESC的情况
 public class ReversedType<T> extends AbstractType<T>
@@ -83,6 +86,20 @@ public class ReversedType<T> extends AbstractType<T>
         return baseType.compare(o2, o1);
     }
 
+    @Override
+    public boolean isByteComparable()
+    {
+        return baseType.isByteComparable();
+    }
+
+    @Override
+    public void writeComparableBytes(ByteBuffer value, DataOutputPlus out) throws IOException
+    {
+        // empty values still sort first, as in compareCustom
+        if (value.hasRemaining())
+            ByteComparable.writeInverted(baseType.asComparableBytes(value), out);
+    }
+
     @Override
     public int compareForCQL(ByteBuffer v1, ByteBuffer v2)
     {
@@ -17,6 +17,7 @@
  */
 package org.apache.cassandra.db.marshal;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -28,8 +29,10 @@ import com.google.common.base.Objects;
 import org.apache.cassandra.cql3.*;
 import org.apache.cassandra.exceptions.ConfigurationException;
 import org.apache.cassandra.exceptions.SyntaxException;
+import org.apache.cassandra.io.util.DataOutputPlus;
 import org.apache.cassandra.serializers.*;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.ByteComparable;
 
 /**
  * This is essentially like a CompositeType, but it's not primarily meant for comparison, just
@@ -120,6 +123,32 @@ public class TupleType extends AbstractType<ByteBuffer>
         return 1;
     }
 
+    @Override
+    public boolean isByteComparable()
+    {
+        for (AbstractType<?> type : types)
+        {
+            if (!type.isByteComparable())
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void writeComparableBytes(ByteBuffer value, DataOutputPlus out) throws IOException
+    {
+        if (!value.hasRemaining())
+            return;
+
+        ByteBuffer input = value.duplicate();
+        for (int i = 0; input.hasRemaining(); i++)
+        {
+            int size = input.getInt();
+            ByteComparable.writeComponent(types.get(i), size < 0 ? null : ByteBufferUtil.readBytes(input, size), out);
+        }
+        out.writeByte(ByteComparable.TERMINATOR);
+    }
+
     @Override
     public void validate(ByteBuffer bytes) throws MarshalException
     {
@@ -17,6 +17,7 @@
  */
 package org.apache.cassandra.db.marshal;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.UUID;
 import java.util.regex.Pattern;
@@ -26,6 +27,7 @@ import com.google.common.primitives.UnsignedLongs;
 import org.apache.cassandra.cql3.CQL3Type;
 import org.apache.cassandra.cql3.Constants;
 import org.apache.cassandra.cql3.Term;
+import org.apache.cassandra.io.util.DataOutputPlus;
 import org.apache.cassandra.serializers.TypeSerializer;
 import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.serializers.UUIDSerializer;
@@ -101,6 +103,27 @@ public class UUIDType extends AbstractType<UUID>
         return UnsignedLongs.compare(b1.getLong(s1 + 8), b2.getLong(s2 + 8));
     }
 
+    @Override
+    public boolean isByteComparable()
+    {
+        return true;
+    }
+
+    @Override
+    public void writeComparableBytes(ByteBuffer value, DataOutputPlus out) throws IOException
+    {
+        if (!value.hasRemaining())
+            return;
+
+        // the version first, then either the timestamp of time-based UUIDs or the unsigned most significant bits,
+        // and the unsigned least significant bits
+        long msb = value.getLong(value.position());
+        int version = (int) ((msb >>> 12) & 0xf);
+        out.writeByte(version);
+        out.writeLong(version == 1 ? TimeUUIDType.reorderTimestampBytes(msb) : msb);
+        out.writeLong(value.getLong(value.position() + 8));
+    }
+
     @Override
     public boolean isValueCompatibleWithInternal(AbstractType<?> otherType)
     {
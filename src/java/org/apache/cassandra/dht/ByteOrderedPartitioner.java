@@ -24,8 +24,10 @@ import org.apache.cassandra.db.DecoratedKey;
 import org.apache.cassandra.db.marshal.AbstractType;
 import org.apache.cassandra.db.marshal.BytesType;
 import org.apache.cassandra.exceptions.ConfigurationException;
+import org.apache.cassandra.io.util.DataOutputPlus;
 import org.apache.cassandra.service.StorageService;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.ByteComparable;
 import org.apache.cassandra.utils.FBUtilities;
 import org.apache.cassandra.utils.Hex;
 import org.apache.cassandra.utils.ObjectSizes;
@@ -33,6 +35,7 @@ import org.apache.cassandra.utils.Pair;
 
 import org.apache.commons.lang3.ArrayUtils;
 
+import java.io.IOException;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
@@ -117,6 +120,18 @@ public class ByteOrderedPartitioner implements IPartitioner
             return token;
         }
 
+        @Override
+        public boolean isByteComparable()
+        {
+            return true;
+        }
+
+        @Override
+        public void writeComparableBytes(DataOutputPlus out) throws IOException
+        {
+            ByteComparable.writeEscaped(ByteBuffer.wrap(token), out);
+        }
+
         @Override
         public double size(Token next)
         {
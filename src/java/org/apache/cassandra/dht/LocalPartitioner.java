@@ -17,6 +17,7 @@
  */
 package org.apache.cassandra.dht;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.List;
@@ -25,7 +26,9 @@ import java.util.Map;
 import org.apache.cassandra.db.DecoratedKey;
 import org.apache.cassandra.db.CachedHashDecoratedKey;
 import org.apache.cassandra.db.marshal.AbstractType;
+import org.apache.cassandra.io.util.DataOutputPlus;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.ByteComparable;
 import org.apache.cassandra.utils.ObjectSizes;
 
 public class LocalPartitioner implements IPartitioner
@@ -139,6 +142,19 @@ public class LocalPartitioner implements IPartitioner
             return comparator.compare(token, ((LocalToken) o).token);
         }
 
+        @Override
+        public boolean isByteComparable()
+        {
+            return comparator.isByteComparable();
+        }
+
+        @Override
+        public void writeComparableBytes(DataOutputPlus out) throws IOException
+        {
+            // the minimum token is empty, which the header keeps prefix-free
+            ByteComparable.writeComponent(comparator, token, out);
+        }
+
         @Override
         public int hashCode()
         {
@@ -17,6 +17,7 @@
  */
 package org.apache.cassandra.dht;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
@@ -29,7 +30,9 @@ import org.apache.cassandra.db.marshal.AbstractType;
 import org.apache.cassandra.db.marshal.PartitionerDefinedOrder;
 import org.apache.cassandra.db.marshal.LongType;
 import org.apache.cassandra.exceptions.ConfigurationException;
+import org.apache.cassandra.io.util.DataOutputPlus;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.ByteComparable;
 import org.apache.cassandra.utils.MurmurHash;
 import org.apache.cassandra.utils.ObjectSizes;
 
@@ -140,6 +143,18 @@ public class Murmur3Partitioner implements IPartitioner
             return token;
         }
 
+        @Override
+        public boolean isByteComparable()
+        {
+            return true;
+        }
+
+        @Override
+        public void writeComparableBytes(DataOutputPlus out) throws IOException
+        {
+            ByteComparable.writeSigned(token, out);
+        }
+
         @Override
         public double size(Token next)
         {
@@ -17,6 +17,7 @@
  */
 package org.apache.cassandra.dht;
 
+import java.io.IOException;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.nio.charset.CharacterCodingException;
@@ -29,8 +30,10 @@ import org.apache.cassandra.db.marshal.AbstractType;
 import org.apache.cassandra.db.marshal.UTF8Type;
 import org.apache.cassandra.exceptions.ConfigurationException;
 import org.apache.cassandra.gms.VersionedValue;
+import org.apache.cassandra.io.util.DataOutputPlus;
 import org.apache.cassandra.service.StorageService;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.ByteComparable;
 import org.apache.cassandra.utils.FBUtilities;
 import org.apache.cassandra.utils.ObjectSizes;
 import org.apache.cassandra.utils.Pair;
@@ -183,6 +186,23 @@ public class OrderPreservingPartitioner implements IPartitioner
         {
             return EMPTY_SIZE + ObjectSizes.sizeOf(token);
         }
+
+        @Override
+        public boolean isByteComparable()
+        {
+            return true;
+        }
+
+        @Override
+        public void writeComparableBytes(DataOutputPlus out) throws IOException
+        {
+            // strings compare by their UTF-16 chars
+            ByteBuffer chars = ByteBuffer.allocate(token.length() * 2);
+            for (int i = 0; i < token.length(); i++)
+                chars.putChar(token.charAt(i));
+            chars.flip();
+            ByteComparable.writeEscaped(chars, out);
+        }
     }
 
     public StringToken getToken(ByteBuffer key)
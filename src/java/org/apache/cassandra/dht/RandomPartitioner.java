@@ -17,6 +17,7 @@
  */
 package org.apache.cassandra.dht;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
@@ -30,7 +31,9 @@ import org.apache.cassandra.db.DecoratedKey;
 import org.apache.cassandra.db.marshal.AbstractType;
 import org.apache.cassandra.db.marshal.IntegerType;
 import org.apache.cassandra.db.marshal.PartitionerDefinedOrder;
+import org.apache.cassandra.io.util.DataOutputPlus;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.ByteComparable;
 import org.apache.cassandra.utils.FBUtilities;
 import org.apache.cassandra.utils.GuidGenerator;
 import org.apache.cassandra.utils.ObjectSizes;
@@ -154,6 +157,28 @@ public class RandomPartitioner implements IPartitioner
         {
             return HEAP_SIZE;
         }
+
+        @Override
+        public boolean isByteComparable()
+        {
+            return true;
+        }
+
+        @Override
+        public void writeComparableBytes(DataOutputPlus out) throws IOException
+        {
+            // tokens are in [0, 2^127], only the minimum token is negative
+            if (token.signum() < 0)
+            {
+                out.writeByte(0);
+                return;
+            }
+
+            out.writeByte(1);
+            byte[] bytes = token.toByteArray();
+            for (int i = 16; i > 0; i--)
+                out.writeByte(i <= bytes.length ? bytes[bytes.length - i] : 0);
+        }
     }
 
     public BigIntegerToken getToken(ByteBuffer key)
@@ -88,6 +88,23 @@ public abstract class Token implements RingPosition<Token>, Serializable
      */
     abstract public Token increaseSlightly();
 
+    /**
+     * Whether this token has a byte-comparable representation, see {@link #writeComparableBytes}.
+     */
+    public boolean isByteComparable()
+    {
+        return false;
+    }
+
+    /**
+     * Writes a prefix-free byte-comparable representation of this token: the representations of two tokens of the
+     * same partitioner compare as unsigned bytes the way the tokens themselves compare.
+     */
+    public void writeComparableBytes(DataOutputPlus out) throws IOException
+    {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " has no byte-comparable representation");
+    }
+
     public Token getToken()
     {
         return this;
@@ -34,9 +34,9 @@ public enum ApplicationState
     HOST_ID,
     TOKENS,
     RPC_READY,
+    STREAM_VERSION,
+    REPAIR_ROW_HASHES,
     // pad to allow adding new states to existing cluster
-    X1,
-    X2,
     X3,
     X4,
     X5,
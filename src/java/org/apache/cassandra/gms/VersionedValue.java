@@ -26,6 +26,7 @@ import static java.nio.charset.StandardCharsets.ISO_8859_1;
 
 import com.google.common.collect.Iterables;
 
+import org.apache.cassandra.config.Config;
 import org.apache.cassandra.db.TypeSizes;
 import org.apache.cassandra.dht.IPartitioner;
 import org.apache.cassandra.dht.Token;
@@ -33,6 +34,7 @@ import org.apache.cassandra.io.IVersionedSerializer;
 import org.apache.cassandra.io.util.DataInputPlus;
 import org.apache.cassandra.io.util.DataOutputPlus;
 import org.apache.cassandra.net.MessagingService;
+import org.apache.cassandra.streaming.messages.StreamMessage;
 import org.apache.cassandra.utils.FBUtilities;
 import org.apache.commons.lang3.StringUtils;
 
@@ -247,6 +249,16 @@ public class VersionedValue implements Comparable<VersionedValue>
             return new VersionedValue(String.valueOf(MessagingService.current_version));
         }
 
+        public VersionedValue streamVersion()
+        {
+            return new VersionedValue(String.valueOf(StreamMessage.CURRENT_VERSION));
+        }
+
+        public VersionedValue repairRowHashes()
+        {
+            return new VersionedValue(StringUtils.join(Config.RepairRowHash.values(), ','));
+        }
+
         public VersionedValue internalIP(String private_ip)
         {
             return new VersionedValue(private_ip);
@@ -25,6 +25,7 @@ import java.util.function.Supplier;
 
 import com.google.common.primitives.Ints;
 
+import org.apache.cassandra.cache.ChunkCache;
 import org.apache.cassandra.io.FSReadError;
 import org.apache.cassandra.io.sstable.CorruptSSTableException;
 import org.apache.cassandra.io.util.*;
@@ -48,10 +49,14 @@ public class CompressedRandomAccessReader extends RandomAccessReader
     private ByteBuffer checksumBytes;
     private final Supplier<Double> crcCheckChanceSupplier;
 
+    // the cache of decompressed chunks, or null if this reader does not use it
+    private final ChunkCache chunkCache;
+
     protected CompressedRandomAccessReader(Builder builder)
     {
         super(builder);
         this.metadata = builder.metadata;
+        this.chunkCache = builder.chunkCache;
         this.checksum = metadata.checksumType.newInstance();
         crcCheckChanceSupplier = builder.crcCheckChanceSupplier;
 
@@ -93,6 +98,11 @@ public class CompressedRandomAccessReader extends RandomAccessReader
             assert position < metadata.dataLength;
 
             CompressionMetadata.Chunk chunk = metadata.chunkFor(position);
+            if (readCached(chunk))
+            {
+                positionBuffer(position);
+                return;
+            }
 
             if (compressed.capacity() < chunk.length)
             {
@@ -136,13 +146,8 @@ public class CompressedRandomAccessReader extends RandomAccessReader
                 checksum.reset();
             }
 
-            // buffer offset is always aligned
-            bufferOffset = position & ~(buffer.capacity() - 1);
-            buffer.position((int) (position - bufferOffset));
-            // the length() can be provided at construction time, to override the true (uncompressed) length of the file;
-            // this is permitted to occur within a compressed segment, so we truncate validBufferBytes if we cross the imposed length
-            if (bufferOffset + buffer.limit() > length())
-                buffer.limit((int)(length() - bufferOffset));
+            cache(chunk);
+            positionBuffer(position);
         }
         catch (CorruptBlockException e)
         {
@@ -163,6 +168,11 @@ public class CompressedRandomAccessReader extends RandomAccessReader
             assert position < metadata.dataLength;
 
             CompressionMetadata.Chunk chunk = metadata.chunkFor(position);
+            if (readCached(chunk))
+            {
+                positionBuffer(position);
+                return;
+            }
 
             MmappedRegions.Region region = regions.floor(chunk.offset);
             long segmentOffset = region.bottom();
@@ -200,13 +210,8 @@ public class CompressedRandomAccessReader extends RandomAccessReader
                 checksum.reset();
             }
 
-            // buffer offset is always aligned
-            bufferOffset = position & ~(buffer.capacity() - 1);
-            buffer.position((int) (position - bufferOffset));
-            // the length() can be provided at construction time, to override the true (uncompressed) length of the file;
-            // this is permitted to occur within a compressed segment, so we truncate validBufferBytes if we cross the imposed length
-            if (bufferOffset + buffer.limit() > length())
-                buffer.limit((int)(length() - bufferOffset));
+            cache(chunk);
+            positionBuffer(position);
         }
         catch (CorruptBlockException e)
         {
@@ -215,6 +220,28 @@ public class CompressedRandomAccessReader extends RandomAccessReader
 
     }
 
+    private void positionBuffer(long position)
+    {
+        // buffer offset is always aligned
+        bufferOffset = position & ~(buffer.capacity() - 1);
+        buffer.position((int) (position - bufferOffset));
+        // the length() can be provided at construction time, to override the true (uncompressed) length of the file;
+        // this is permitted to occur within a compressed segment, so we truncate validBufferBytes if we cross the imposed length
+        if (bufferOffset + buffer.limit() > length())
+            buffer.limit((int)(length() - bufferOffset));
+    }
+
+    private boolean readCached(CompressionMetadata.Chunk chunk)
+    {
+        return chunkCache != null && chunkCache.read(getPath(), chunk.offset, buffer);
+    }
+
+    private void cache(CompressionMetadata.Chunk chunk)
+    {
+        if (chunkCache != null)
+            chunkCache.put(getPath(), chunk.offset, buffer);
+    }
+
     private int checksum(CompressionMetadata.Chunk chunk) throws IOException
     {
         long position = chunk.offset + chunk.length;
@@ -240,6 +267,7 @@ public class CompressedRandomAccessReader extends RandomAccessReader
     {
         private final CompressionMetadata metadata;
         private final Supplier<Double> crcCheckChanceSupplier;
+        private final ChunkCache chunkCache;
 
         public Builder(ICompressedFile file)
         {
@@ -247,6 +275,7 @@ public class CompressedRandomAccessReader extends RandomAccessReader
             this.metadata = applyMetadata(file.getMetadata());
             this.regions = file.regions();
             this.crcCheckChanceSupplier = file.getCrcCheckChanceSupplier();
+            this.chunkCache = ChunkCache.instance;
         }
 
         public Builder(ChannelProxy channel, CompressionMetadata metadata)
@@ -254,6 +283,7 @@ public class CompressedRandomAccessReader extends RandomAccessReader
             super(channel);
             this.metadata = applyMetadata(metadata);
             this.crcCheckChanceSupplier = (() -> 1.0); //100% crc_check_chance
+            this.chunkCache = null;
         }
 
         private CompressionMetadata applyMetadata(CompressionMetadata metadata)
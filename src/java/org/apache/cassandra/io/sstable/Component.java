@@ -55,6 +55,8 @@ public class Component
         CRC("CRC.db"),
         // holds SSTable Index Summary (sampling of Index component)
         SUMMARY("Summary.db"),
+        // byte-comparable trie mapping every partition key to its entry in the Index component
+        PARTITION_INDEX("Partitions.db"),
         // table of contents, stores the list of all components for the sstable
         TOC("TOC.txt"),
         // custom component, used by e.g. custom compaction strategy
@@ -95,6 +97,7 @@ public class Component
     public final static Component DIGEST_SHA1 = new Component(Type.DIGEST, digestSha1);
     public final static Component CRC = new Component(Type.CRC);
     public final static Component SUMMARY = new Component(Type.SUMMARY);
+    public final static Component PARTITION_INDEX = new Component(Type.PARTITION_INDEX);
     public final static Component TOC = new Component(Type.TOC);
 
     public static Component digestFor(ChecksumType checksumType)
@@ -144,6 +147,14 @@ public class Component
      * TODO move descriptor into Component field
      */
     //上面的注释是错的，不是<ksname>/<cfname>是<ksname>-<cfname>
+    /**
+     * @return the component of the given name, as listed in the TOC
+     */
+    public static Component parse(String name)
+    {
+        return new Component(Type.fromRepresentation(name), name);
+    }
+
     //文件名的格式是: "<ksname>-<cfname>-[tmp-][<version>-]<gen>-<component>"
     //例如:
     //directory = my-test-data\cluster\node1\data\system\schema_triggers
@@ -185,6 +196,7 @@ public class Component
                                     break;
             case CRC:               component = Component.CRC;                          break;
             case SUMMARY:           component = Component.SUMMARY;                      break;
+            case PARTITION_INDEX:   component = Component.PARTITION_INDEX;              break;
             case TOC:               component = Component.TOC;                          break;
             case CUSTOM:            component = new Component(Type.CUSTOM, path.right); break;
             default:
@@ -86,6 +86,84 @@ public final class IndexHelper
         return startIdx + (index < 0 ? -index - (reversed ? 2 : 1) : index);
     }
 
+    /**
+     * Same as {@link #indexFor(ClusteringPrefix, List, ClusteringComparator, boolean, int)}, but searching the
+     * IndexInfo provided by {@code indexes}, so that only the blocks visited by the binary search are read.
+     */
+    public static int indexFor(ClusteringPrefix name, IndexInfoRetriever indexes, ClusteringComparator comparator, boolean reversed, int lastIndex) throws IOException
+    {
+        int low = 0;
+        int high = indexes.size() - 1;
+        if (reversed)
+        {
+            if (lastIndex < indexes.size() - 1)
+                high = lastIndex;
+        }
+        else
+        {
+            if (lastIndex > 0)
+                low = lastIndex;
+        }
+
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            IndexInfo info = indexes.get(mid);
+            int cmp = comparator.compare(reversed ? info.firstName : info.lastName, name);
+            if (cmp < 0)
+                low = mid + 1;
+            else if (cmp > 0)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return reversed ? low - 1 : low;
+    }
+
+    /**
+     * Gives access to the IndexInfo of a partition, whether they are held on heap or read on demand from
+     * the partition index file.
+     */
+    public interface IndexInfoRetriever extends Closeable
+    {
+        /**
+         * @return the number of IndexInfo of the partition.
+         */
+        int size();
+
+        /**
+         * @return the {@code i}th IndexInfo of the partition.
+         */
+        IndexInfo get(int i) throws IOException;
+    }
+
+    /**
+     * An {@code IndexInfoRetriever} over IndexInfo that have already been deserialized.
+     */
+    public static class ListIndexInfoRetriever implements IndexInfoRetriever
+    {
+        private final List<IndexInfo> indexes;
+
+        public ListIndexInfoRetriever(List<IndexInfo> indexes)
+        {
+            this.indexes = indexes;
+        }
+
+        public int size()
+        {
+            return indexes.size();
+        }
+
+        public IndexInfo get(int i)
+        {
+            return indexes.get(i);
+        }
+
+        public void close()
+        {
+        }
+    }
+
     public static class IndexInfo
     {
         private static final long EMPTY_SIZE = ObjectSizes.measure(new IndexInfo(null, null, 0, 0, null));
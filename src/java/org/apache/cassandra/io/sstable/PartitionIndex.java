@@ -0,0 +1,316 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.sstable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.PartitionPosition;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.io.util.DataOutputBuffer;
+import org.apache.cassandra.io.util.RandomAccessReader;
+import org.apache.cassandra.io.util.SegmentedFile;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.concurrent.WrappedSharedCloseable;
+
+/*
+ * Layout of the partition index (Partitions.db):
+ *
+ * The file holds a trie over the byte-comparable encoding of the partition keys of an sstable (see encode()),
+ * followed by a footer. Only the shortest prefix distinguishing each key from its neighbours is stored, and the
+ * leaf of every prefix holds the position of the key's entry in the primary index (Index.db).
+ *
+ * Nodes are written bottom-up, so children always precede their parent:
+ *  - a leaf is a type byte n in [0, 8] followed by its n byte big-endian payload;
+ *  - an inner node is a type byte NODE | n, a byte holding its child count minus one, the sorted transition bytes
+ *    and, for every transition, the distance back to the child in n bytes.
+ *
+ * The footer holds the first and last keys (with short length) followed by the position of the first key, the
+ * position of the root node (-1 for an empty sstable) and the number of keys, as three longs.
+ */
+//取代IndexSummary: 不需要采样、不需要常驻内存，通过trie查找时最多只需要再读Index.db中的两个条目
+public class PartitionIndex extends WrappedSharedCloseable
+{
+    static final int NODE = 0x10;
+    private static final int FOOTER_SIZE = 24;
+
+    private static final int MIN_BOUND = 0x20;
+    private static final int ROW_KEY = 0x40;
+    private static final int MAX_BOUND = 0x60;
+
+    private final SegmentedFile file;
+    private final long root;
+    private final long keyCount;
+    private final ByteBuffer firstKey;
+    private final ByteBuffer lastKey;
+
+    private PartitionIndex(SegmentedFile file, long root, long keyCount, ByteBuffer firstKey, ByteBuffer lastKey)
+    {
+        super(file);
+        this.file = file;
+        this.root = root;
+        this.keyCount = keyCount;
+        this.firstKey = firstKey;
+        this.lastKey = lastKey;
+    }
+
+    private PartitionIndex(PartitionIndex copy)
+    {
+        super(copy);
+        this.file = copy.file;
+        this.root = copy.root;
+        this.keyCount = copy.keyCount;
+        this.firstKey = copy.firstKey;
+        this.lastKey = copy.lastKey;
+    }
+
+    public PartitionIndex sharedCopy()
+    {
+        return new PartitionIndex(this);
+    }
+
+    public static PartitionIndex load(Descriptor descriptor) throws IOException
+    {
+        SegmentedFile file;
+        try (SegmentedFile.Builder builder = SegmentedFile.getBuilder(DatabaseDescriptor.getIndexAccessMode(), false))
+        {
+            file = builder.buildPartitionIndex(descriptor);
+        }
+
+        try (RandomAccessReader in = file.createReader())
+        {
+            in.seek(file.length - FOOTER_SIZE);
+            long keysPosition = in.readLong();
+            long root = in.readLong();
+            long keyCount = in.readLong();
+            ByteBuffer firstKey = null, lastKey = null;
+            if (keyCount > 0)
+            {
+                in.seek(keysPosition);
+                firstKey = ByteBufferUtil.readWithShortLength(in);
+                lastKey = ByteBufferUtil.readWithShortLength(in);
+            }
+            return new PartitionIndex(file, root, keyCount, firstKey, lastKey);
+        }
+        catch (Throwable t)
+        {
+            file.close();
+            throw t;
+        }
+    }
+
+    /**
+     * @return the number of partitions in the sstable
+     */
+    public long size()
+    {
+        return keyCount;
+    }
+
+    public ByteBuffer firstKey()
+    {
+        return firstKey;
+    }
+
+    public ByteBuffer lastKey()
+    {
+        return lastKey;
+    }
+
+    /**
+     * @return the position in the primary index of the only entry that can match the given key, or -1 if no key of
+     * the sstable shares its distinguishing prefix. The caller must still compare the key of the entry.
+     */
+    public long exactCandidate(DecoratedKey key)
+    {
+        if (root < 0)
+            return -1;
+
+        byte[] bytes = encode(key);
+        try (RandomAccessReader in = file.createReader())
+        {
+            long position = root;
+            for (int depth = 0; ; depth++)
+            {
+                in.seek(position);
+                int type = in.readUnsignedByte();
+                if (type < NODE)
+                    return readSized(in, type);
+                if (depth >= bytes.length)
+                    return -1;
+
+                int count = in.readUnsignedByte() + 1;
+                int index = search(in, count, bytes[depth] & 0xFF);
+                if (index < 0)
+                    return -1;
+                position = child(in, position, type, count, index);
+            }
+        }
+        catch (IOException e)
+        {
+            throw new CorruptSSTableException(e, file.path());
+        }
+    }
+
+    /**
+     * @return the position in the primary index from which a forward scan reaches the first key greater than or
+     * equal to the given position after reading at most one smaller entry, or -1 if every key is smaller.
+     */
+    public long ceiling(PartitionPosition key)
+    {
+        if (root < 0)
+            return -1;
+
+        byte[] bytes = encode(key);
+        // the nodes on the path and the transition taken from each of them, to find the next branch on a mismatch
+        long[] nodes = new long[bytes.length];
+        int[] taken = new int[bytes.length];
+        try (RandomAccessReader in = file.createReader())
+        {
+            long position = root;
+            int depth = 0;
+            while (true)
+            {
+                in.seek(position);
+                int type = in.readUnsignedByte();
+                if (type < NODE)
+                    return readSized(in, type);
+
+                int count = in.readUnsignedByte() + 1;
+                if (depth >= bytes.length)
+                    return leftmost(in, position);
+
+                int index = search(in, count, bytes[depth] & 0xFF);
+                if (index >= 0)
+                {
+                    nodes[depth] = position;
+                    taken[depth] = index;
+                    position = child(in, position, type, count, index);
+                    depth++;
+                    continue;
+                }
+
+                // everything below the first greater transition is greater than the key
+                int next = -index - 1;
+                while (next >= count)
+                {
+                    if (--depth < 0)
+                        return -1;
+                    position = nodes[depth];
+                    in.seek(position);
+                    type = in.readUnsignedByte();
+                    count = in.readUnsignedByte() + 1;
+                    next = taken[depth] + 1;
+                }
+                return leftmost(in, child(in, position, type, count, next));
+            }
+        }
+        catch (IOException e)
+        {
+            throw new CorruptSSTableException(e, file.path());
+        }
+    }
+
+    private static long leftmost(RandomAccessReader in, long position) throws IOException
+    {
+        while (true)
+        {
+            in.seek(position);
+            int type = in.readUnsignedByte();
+            if (type < NODE)
+                return readSized(in, type);
+            int count = in.readUnsignedByte() + 1;
+            position = child(in, position, type, count, 0);
+        }
+    }
+
+    /**
+     * Binary search of the transitions of the node the reader is positioned at, right after the count byte.
+     * @return the index of the transition, or (-(insertion point) - 1) if there is none for this byte
+     */
+    private static int search(RandomAccessReader in, int count, int value) throws IOException
+    {
+        long start = in.getFilePointer();
+        int low = 0, high = count - 1;
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            in.seek(start + mid);
+            int transition = in.readUnsignedByte();
+            if (transition < value)
+                low = mid + 1;
+            else if (transition > value)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -(low + 1);
+    }
+
+    private static long child(RandomAccessReader in, long position, int type, int count, int index) throws IOException
+    {
+        int size = type & ~NODE;
+        in.seek(position + 2 + count + index * size);
+        return position - readSized(in, size);
+    }
+
+    private static long readSized(RandomAccessReader in, int size) throws IOException
+    {
+        long value = 0;
+        for (int i = 0; i < size; i++)
+            value = (value << 8) | in.readUnsignedByte();
+        return value;
+    }
+
+    /**
+     * @return the number of bytes needed to store the given non-negative value
+     */
+    static int sizeOf(long value)
+    {
+        return (64 - Long.numberOfLeadingZeros(value) + 7) / 8;
+    }
+
+    /**
+     * @return whether the tokens of the given partitioner have a byte-comparable encoding, which the partition
+     * index relies on
+     */
+    public static boolean supports(IPartitioner partitioner)
+    {
+        return partitioner.getMinimumToken().isByteComparable();
+    }
+
+    /**
+     * Encodes a partition position so that the unsigned lexicographic order of the encoded bytes matches the
+     * order of the positions. No encoded position is a prefix of another one.
+     */
+    static byte[] encode(PartitionPosition position)
+    {
+        try (DataOutputBuffer out = new DataOutputBuffer(32))
+        {
+            position.writeComparableBytes(out);
+            return out.toByteArray();
+        }
+        catch (IOException e)
+        {
+            // writing to a DataOutputBuffer does not throw
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.sstable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.io.util.SequentialWriter;
+import org.apache.cassandra.utils.ByteBufferUtil;
+
+/**
+ * Writes the partition index trie (see {@link PartitionIndex}) of an sstable.
+ *
+ * Keys must be added in increasing order. Only the shortest prefix of each key that distinguishes it from its
+ * neighbours is stored, so a key is added to the trie once its successor is known. Nodes are written bottom-up
+ * as soon as the last key below them has been added, which keeps only the path of the last key in memory.
+ */
+public class PartitionIndexBuilder
+{
+    private final SequentialWriter writer;
+
+    // the key waiting for its successor before its distinguishing prefix can be added to the trie
+    private byte[] pendingKey;
+    private long pendingPosition;
+    private int pendingCommonPrefix;
+
+    // the prefix that was last added to the trie, and the nodes on its path that still accept children
+    private byte[] path;
+    private int pathLength;
+    private long pathPosition;
+    private final List<Node> nodes = new ArrayList<>();
+
+    private DecoratedKey firstKey;
+    private DecoratedKey lastKey;
+    private long keyCount;
+    private boolean complete;
+
+    public PartitionIndexBuilder(SequentialWriter writer)
+    {
+        this.writer = writer;
+    }
+
+    /**
+     * Adds a partition key, which must be greater than any key added before, and the position of its entry in
+     * the primary index.
+     */
+    public void addEntry(DecoratedKey key, long indexPosition) throws IOException
+    {
+        assert !complete;
+        byte[] encoded = PartitionIndex.encode(key);
+        if (pendingKey != null)
+        {
+            int common = commonPrefix(pendingKey, pendingKey.length, encoded, encoded.length);
+            assert common < pendingKey.length && common < encoded.length : "Keys must be added in increasing order";
+            add(pendingKey, Math.max(pendingCommonPrefix, common) + 1, pendingPosition);
+            pendingCommonPrefix = common;
+        }
+        else
+        {
+            firstKey = key;
+        }
+        pendingKey = encoded;
+        pendingPosition = indexPosition;
+        lastKey = key;
+        keyCount++;
+    }
+
+    public long keyCount()
+    {
+        return keyCount;
+    }
+
+    /**
+     * Writes the nodes that are still pending and the footer of the trie. Calling this more than once has no effect.
+     */
+    public void complete() throws IOException
+    {
+        if (complete)
+            return;
+        complete = true;
+
+        long root = -1;
+        if (pendingKey != null)
+        {
+            add(pendingKey, pendingCommonPrefix + 1, pendingPosition);
+            root = closeNodes(-1);
+        }
+
+        long keysPosition = writer.position();
+        if (keyCount > 0)
+        {
+            ByteBufferUtil.writeWithShortLength(firstKey.getKey(), writer);
+            ByteBufferUtil.writeWithShortLength(lastKey.getKey(), writer);
+        }
+        writer.writeLong(keysPosition);
+        writer.writeLong(root);
+        writer.writeLong(keyCount);
+    }
+
+    private void add(byte[] key, int length, long position) throws IOException
+    {
+        if (path == null)
+        {
+            openNodes(0, length);
+        }
+        else
+        {
+            int common = commonPrefix(path, pathLength, key, length);
+            nodes.get(common).add(path[common], closeNodes(common));
+            openNodes(common + 1, length);
+        }
+        path = key;
+        pathLength = length;
+        pathPosition = position;
+    }
+
+    /**
+     * Writes the leaf of the last added prefix and the nodes of its path that are deeper than {@code depth}.
+     * @return the position of the shallowest node written
+     */
+    private long closeNodes(int depth) throws IOException
+    {
+        long child = writeLeaf(pathPosition);
+        for (int i = pathLength - 1; i > depth; i--)
+        {
+            Node node = nodes.get(i);
+            node.add(path[i], child);
+            child = writeNode(node);
+        }
+        return child;
+    }
+
+    private void openNodes(int from, int length)
+    {
+        for (int i = from; i < length; i++)
+        {
+            if (i < nodes.size())
+                nodes.get(i).count = 0;
+            else
+                nodes.add(new Node());
+        }
+    }
+
+    private long writeLeaf(long payload) throws IOException
+    {
+        long position = writer.position();
+        int size = PartitionIndex.sizeOf(payload);
+        writer.writeByte(size);
+        writeSized(payload, size);
+        return position;
+    }
+
+    private long writeNode(Node node) throws IOException
+    {
+        long position = writer.position();
+        // children are written in order, so the first one is the furthest away
+        int size = Math.max(1, PartitionIndex.sizeOf(position - node.children[0]));
+        writer.writeByte(PartitionIndex.NODE | size);
+        writer.writeByte(node.count - 1);
+        writer.write(node.transitions, 0, node.count);
+        for (int i = 0; i < node.count; i++)
+            writeSized(position - node.children[i], size);
+        return position;
+    }
+
+    private void writeSized(long value, int size) throws IOException
+    {
+        for (int i = size - 1; i >= 0; i--)
+            writer.writeByte((int) (value >>> (i * 8)));
+    }
+
+    private static int commonPrefix(byte[] left, int leftLength, byte[] right, int rightLength)
+    {
+        int length = Math.min(leftLength, rightLength);
+        for (int i = 0; i < length; i++)
+        {
+            if (left[i] != right[i])
+                return i;
+        }
+        return length;
+    }
+
+    private static final class Node
+    {
+        final byte[] transitions = new byte[256];
+        final long[] children = new long[256];
+        int count;
+
+        void add(byte transition, long child)
+        {
+            assert count == 0 || transitions[count - 1] != transition;
+            transitions[count] = transition;
+            children[count] = child;
+            count++;
+        }
+    }
+}
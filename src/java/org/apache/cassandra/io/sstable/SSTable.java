@@ -25,6 +25,7 @@ import java.util.concurrent.CopyOnWriteArraySet;
 
 import com.google.common.base.Predicates;
 import com.google.common.collect.Collections2;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 import com.google.common.io.Files;
 import org.slf4j.Logger;
@@ -160,6 +161,11 @@ public abstract class SSTable
         return descriptor.ksname;
     }
 
+    public Set<Component> getComponents()
+    {
+        return ImmutableSet.copyOf(components);
+    }
+
     public List<String> getAllFilePaths()
     {
         List<String> ret = new ArrayList<>();
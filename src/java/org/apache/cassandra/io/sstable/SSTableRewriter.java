@@ -55,7 +55,7 @@ public class SSTableRewriter extends Transactional.AbstractTransactional impleme
     public static boolean disableEarlyOpeningForTests = false;
 
     private final ColumnFamilyStore cfs;
-    private final long preemptiveOpenInterval;
+    private long preemptiveOpenInterval;
     private final long maxAge;
     private long repairedAt = -1;
     // the set of final readers we will expose on commit
@@ -68,6 +68,7 @@ public class SSTableRewriter extends Transactional.AbstractTransactional impleme
     private final List<SSTableWriter> writers = new ArrayList<>();
     private final boolean isOffline; // true for operations that are performed without Cassandra running (prevents updates of Tracker)
     private boolean keepOriginals; // true if we do not want to obsolete the originals
+    private boolean sharedTransaction; // true if other rewriters write to the transaction, which the caller prepares and commits
 
     private SSTableWriter writer;
     private Map<DecoratedKey, RowIndexEntry> cachedKeys = new HashMap<>();
@@ -104,6 +105,20 @@ public class SSTableRewriter extends Transactional.AbstractTransactional impleme
         return this;
     }
 
+    /**
+     * Makes this rewriter one of several writing to the same transaction concurrently, over disjoint token ranges.
+     * The new sstables are then not opened early, and preparing, committing or aborting this rewriter leaves the
+     * transaction alone: once all the rewriters are prepared, the caller obsoletes the originals if needed, and
+     * prepares and commits the transaction itself. Must be called before switching to the first writer.
+     */
+    public SSTableRewriter shareTransaction()
+    {
+        assert writers.isEmpty();
+        sharedTransaction = true;
+        preemptiveOpenInterval = Long.MAX_VALUE;
+        return this;
+    }
+
     private static long calculateOpenInterval(boolean shouldOpenEarly)
     {
         long interval = DatabaseDescriptor.getSSTablePreempiveOpenIntervalInMB() * (1L << 20);
@@ -187,7 +202,8 @@ public class SSTableRewriter extends Transactional.AbstractTransactional impleme
         for (SSTableWriter writer : writers)
             accumulate = writer.abort(accumulate);
         // abort the lifecycle transaction
-        accumulate = transaction.abort(accumulate);
+        if (!sharedTransaction)
+            accumulate = transaction.abort(accumulate);
         return accumulate;
     }
 
@@ -196,7 +212,8 @@ public class SSTableRewriter extends Transactional.AbstractTransactional impleme
         for (SSTableWriter writer : writers)
             accumulate = writer.commit(accumulate);
 
-        accumulate = transaction.commit(accumulate);
+        if (!sharedTransaction)
+            accumulate = transaction.commit(accumulate);
         return accumulate;
     }
 
@@ -366,6 +383,9 @@ public class SSTableRewriter extends Transactional.AbstractTransactional impleme
         if (throwLate)
             throw new RuntimeException("exception thrown after all sstables finished, for testing");
 
+        if (sharedTransaction)
+            return;
+
         if (!keepOriginals)
             transaction.obsoleteOriginals();
 
@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.sstable;
+
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Checksum;
+
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.db.commitlog.ReplayPosition;
+import org.apache.cassandra.db.lifecycle.LifecycleTransaction;
+import org.apache.cassandra.db.rows.UnfilteredRowIterator;
+import org.apache.cassandra.io.FSReadError;
+import org.apache.cassandra.io.FSWriteError;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.io.sstable.metadata.IMetadataSerializer;
+import org.apache.cassandra.io.sstable.metadata.MetadataType;
+import org.apache.cassandra.io.sstable.metadata.StatsMetadata;
+import org.apache.cassandra.utils.concurrent.Transactional;
+
+/**
+ * Writes an sstable received as the verbatim copy of all the component files of a remote sstable, rather than
+ * partition by partition: every component is copied straight from the stream to disk, and the sstable is only opened
+ * once they are all written. Nothing is deserialized, and no index or filter is rebuilt.
+ */
+public class SSTableZeroCopyWriter extends SSTable implements SSTableMultiWriter
+{
+    private final int sstableLevel;
+    private final TransactionalProxy txnProxy = new TransactionalProxy();
+
+    private long repairedAt;
+    private long bytesWritten;
+    private boolean openResult;
+    private SSTableReader finalReader;
+
+    public SSTableZeroCopyWriter(Descriptor descriptor,
+                                 CFMetaData metadata,
+                                 Set<Component> components,
+                                 long repairedAt,
+                                 int sstableLevel,
+                                 LifecycleTransaction txn)
+    {
+        super(descriptor, components, metadata);
+        this.repairedAt = repairedAt;
+        this.sstableLevel = sstableLevel;
+        txn.trackNew(this); // must track before any files are created
+    }
+
+    /**
+     * Copies the given number of bytes of the channel to the file of the component, and syncs it.
+     */
+    public void writeComponent(Component component, ReadableByteChannel in, long size) throws IOException
+    {
+        assert components.contains(component) : component + " is not a component of " + descriptor;
+        File file = new File(descriptor.filenameFor(component));
+        try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE))
+        {
+            long written = 0;
+            while (written < size)
+            {
+                long transferred = out.transferFrom(in, written, size - written);
+                if (transferred <= 0)
+                    throw new EOFException(String.format("Stream ended after %d of the %d bytes of %s", written, size, file));
+                written += transferred;
+                bytesWritten += transferred;
+            }
+            out.force(true);
+        }
+    }
+
+    /**
+     * Computes the digest of the received data file, as the digest of the sender isn't streamed.
+     */
+    private void writeDigest()
+    {
+        File digestFile = new File(descriptor.filenameFor(descriptor.digestComponent));
+        Checksum checksum = descriptor.version.uncompressedChecksumType().newInstance();
+        try (CheckedInputStream in = new CheckedInputStream(new FileInputStream(descriptor.filenameFor(Component.DATA)), checksum))
+        {
+            byte[] chunk = new byte[64 * 1024];
+            while (in.read(chunk) >= 0)
+            {
+                // the checksum is updated as the file is read
+            }
+        }
+        catch (IOException e)
+        {
+            throw new FSReadError(e, getFilename());
+        }
+
+        try (BufferedWriter out = Files.newBufferedWriter(digestFile.toPath(), StandardCharsets.UTF_8))
+        {
+            out.write(String.valueOf(checksum.getValue()));
+        }
+        catch (IOException e)
+        {
+            throw new FSWriteError(e, digestFile);
+        }
+    }
+
+    public boolean append(UnfilteredRowIterator partition)
+    {
+        throw new UnsupportedOperationException("Received sstables are written by component");
+    }
+
+    public Collection<SSTableReader> finish(long repairedAt, long maxDataAge, boolean openResult)
+    {
+        if (repairedAt > -1)
+            this.repairedAt = repairedAt;
+        return finish(openResult);
+    }
+
+    public Collection<SSTableReader> finish(boolean openResult)
+    {
+        setOpenResult(openResult);
+        txnProxy.finish();
+        return finished();
+    }
+
+    public Collection<SSTableReader> finished()
+    {
+        return finalReader == null ? Collections.emptySet() : Collections.singleton(finalReader);
+    }
+
+    public SSTableMultiWriter setOpenResult(boolean openResult)
+    {
+        this.openResult = openResult;
+        return this;
+    }
+
+    public long getFilePointer()
+    {
+        return bytesWritten;
+    }
+
+    public UUID getCfId()
+    {
+        return metadata.cfId;
+    }
+
+    public Throwable commit(Throwable accumulate)
+    {
+        return txnProxy.commit(accumulate);
+    }
+
+    public Throwable abort(Throwable accumulate)
+    {
+        return txnProxy.abort(accumulate);
+    }
+
+    public void prepareToCommit()
+    {
+        txnProxy.prepareToCommit();
+    }
+
+    public void close()
+    {
+        txnProxy.close();
+    }
+
+    private class TransactionalProxy extends Transactional.AbstractTransactional
+    {
+        protected void doPrepare()
+        {
+            // the repair time and level are those of this node, which can differ from the sender's, and the sender's
+            // replay position says nothing of this node's commit log: kept, it could make replay skip unflushed writes
+            IMetadataSerializer serializer = descriptor.getMetadataSerializer();
+            try
+            {
+                StatsMetadata stats = (StatsMetadata) serializer.deserialize(descriptor, MetadataType.STATS);
+                if (stats.repairedAt != repairedAt)
+                    serializer.mutateRepairedAt(descriptor, repairedAt);
+                if (stats.sstableLevel != sstableLevel)
+                    serializer.mutateLevel(descriptor, sstableLevel);
+                if (!stats.replayPosition.equals(ReplayPosition.NONE))
+                    serializer.mutateReplayPosition(descriptor, ReplayPosition.NONE);
+            }
+            catch (IOException e)
+            {
+                throw new FSWriteError(e, descriptor.filenameFor(Component.STATS));
+            }
+
+            if (components.contains(descriptor.digestComponent))
+                writeDigest();
+
+            if (openResult)
+            {
+                try
+                {
+                    finalReader = SSTableReader.open(descriptor, components, metadata);
+                }
+                catch (IOException e)
+                {
+                    throw new FSReadError(e, getFilename());
+                }
+            }
+        }
+
+        protected Throwable doCommit(Throwable accumulate)
+        {
+            // the files are already complete and synced, and the transaction tracking them commits them
+            return accumulate;
+        }
+
+        protected Throwable doAbort(Throwable accumulate)
+        {
+            // the files are deleted when the transaction tracking them aborts
+            if (finalReader != null)
+                accumulate = finalReader.selfRef().ensureReleased(accumulate);
+            return accumulate;
+        }
+    }
+}
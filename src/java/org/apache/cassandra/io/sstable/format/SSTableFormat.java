@@ -22,7 +22,9 @@ import com.google.common.base.CharMatcher;
 import org.apache.cassandra.config.CFMetaData;
 import org.apache.cassandra.db.RowIndexEntry;
 import org.apache.cassandra.db.SerializationHeader;
+import org.apache.cassandra.dht.IPartitioner;
 import org.apache.cassandra.io.sstable.format.big.BigFormat;
+import org.apache.cassandra.io.sstable.format.trie.TrieFormat;
 
 /**
  * Provides the accessors to data on disk.
@@ -41,6 +43,11 @@ public interface SSTableFormat
 
     RowIndexEntry.IndexSerializer getIndexSerializer(CFMetaData cfm, Version version, SerializationHeader header);
 
+    /**
+     * @return whether sstables of this format can be written for tables using the given partitioner
+     */
+    boolean supports(IPartitioner partitioner);
+
     public static enum Type
     {
         //Used internally to refer to files with no
@@ -48,7 +55,10 @@ public interface SSTableFormat
         LEGACY("big", BigFormat.instance),
 
         //The original sstable format
-        BIG("big", BigFormat.instance);
+        BIG("big", BigFormat.instance),
+
+        //The original sstable format with a partition index trie instead of the index summary
+        TRIE("trie", TrieFormat.instance);
 
         public final SSTableFormat info;
         public final String name;
@@ -41,6 +41,7 @@ import com.clearspring.analytics.stream.cardinality.ICardinality;
 import org.apache.cassandra.cache.InstrumentingCache;
 import org.apache.cassandra.cache.KeyCacheKey;
 import org.apache.cassandra.concurrent.DebuggableThreadPoolExecutor;
+import org.apache.cassandra.concurrent.NamedThreadFactory;
 import org.apache.cassandra.concurrent.ScheduledExecutors;
 import org.apache.cassandra.config.CFMetaData;
 import org.apache.cassandra.config.DatabaseDescriptor;
@@ -135,7 +136,8 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
 {
     private static final Logger logger = LoggerFactory.getLogger(SSTableReader.class);
 
-    private static final ScheduledThreadPoolExecutor syncExecutor = new ScheduledThreadPoolExecutor(1);
+    // daemon threads, so that a process that opened sstables can exit without shutting this down
+    private static final ScheduledThreadPoolExecutor syncExecutor = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("read-hotness-tracker"));
     static
     {
         // Immediately remove readMeter sync task when cancelled.
@@ -195,6 +197,8 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
     protected SegmentedFile ifile;
     protected SegmentedFile dfile;
     protected IndexSummary indexSummary;
+    // replaces the index summary for formats that index partitions with a trie (see TrieFormat)
+    protected PartitionIndex partitionIndex;
     protected IFilter bf;
 
     protected final RowIndexEntry.IndexSerializer rowIndexEntrySerializer;
@@ -421,19 +425,26 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
                                              OpenReason.NORMAL,
                                              header.toHeader(metadata));
 
-        // special implementation of load to use non-pooled SegmentedFile builders
+        sstable.loadForBatch();
+        sstable.bf = FilterFactory.AlwaysPresent;
+        sstable.setup(false);
+        return sstable;
+    }
+
+    /**
+     * Special implementation of load to use non-pooled SegmentedFile builders, used by {@link #openForBatch}.
+     */
+    protected void loadForBatch() throws IOException
+    {
         try(SegmentedFile.Builder ibuilder = new BufferedSegmentedFile.Builder();
-            SegmentedFile.Builder dbuilder = sstable.compression
+            SegmentedFile.Builder dbuilder = compression
                 ? new CompressedSegmentedFile.Builder(null)
                 : new BufferedSegmentedFile.Builder())
         {
-            if (!sstable.loadSummary(ibuilder, dbuilder))
-                sstable.buildSummary(false, ibuilder, dbuilder, false, Downsampling.BASE_SAMPLING_LEVEL);
-            sstable.ifile = ibuilder.buildIndex(sstable.descriptor, sstable.indexSummary);
-            sstable.dfile = dbuilder.buildData(sstable.descriptor, statsMetadata);
-            sstable.bf = FilterFactory.AlwaysPresent;
-            sstable.setup(false);
-            return sstable;
+            if (!loadSummary(ibuilder, dbuilder))
+                buildSummary(false, ibuilder, dbuilder, false, Downsampling.BASE_SAMPLING_LEVEL);
+            ifile = ibuilder.buildIndex(descriptor, indexSummary);
+            dfile = dbuilder.buildData(descriptor, sstableMetadata);
         }
     }
 
@@ -579,7 +590,44 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
                                       OpenReason openReason,
                                       SerializationHeader header)
     {
-        assert desc != null && ifile != null && dfile != null && isummary != null && bf != null && sstableMetadata != null;
+        assert isummary != null;
+        return internalOpen(desc, components, metadata, ifile, dfile, isummary, null, bf, maxDataAge, sstableMetadata, openReason, header);
+    }
+
+    /**
+     * Open a RowIndexedReader that uses a partition index instead of an index summary, and which already has its
+     * state initialized (by SSTableWriter).
+     */
+    public static SSTableReader internalOpen(Descriptor desc,
+                                      Set<Component> components,
+                                      CFMetaData metadata,
+                                      SegmentedFile ifile,
+                                      SegmentedFile dfile,
+                                      PartitionIndex partitionIndex,
+                                      IFilter bf,
+                                      long maxDataAge,
+                                      StatsMetadata sstableMetadata,
+                                      OpenReason openReason,
+                                      SerializationHeader header)
+    {
+        assert partitionIndex != null;
+        return internalOpen(desc, components, metadata, ifile, dfile, null, partitionIndex, bf, maxDataAge, sstableMetadata, openReason, header);
+    }
+
+    private static SSTableReader internalOpen(Descriptor desc,
+                                      Set<Component> components,
+                                      CFMetaData metadata,
+                                      SegmentedFile ifile,
+                                      SegmentedFile dfile,
+                                      IndexSummary isummary,
+                                      PartitionIndex partitionIndex,
+                                      IFilter bf,
+                                      long maxDataAge,
+                                      StatsMetadata sstableMetadata,
+                                      OpenReason openReason,
+                                      SerializationHeader header)
+    {
+        assert desc != null && ifile != null && dfile != null && bf != null && sstableMetadata != null;
 
         SSTableReader reader = internalOpen(desc, components, metadata, maxDataAge, sstableMetadata, openReason, header);
 
@@ -587,6 +635,7 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
         reader.ifile = ifile;
         reader.dfile = dfile;
         reader.indexSummary = isummary;
+        reader.partitionIndex = partitionIndex;
         reader.setup(true);
 
         return reader;
@@ -701,7 +750,7 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
         {
             // bf is enabled and fp chance matches the currently configured value.
             load(false, true);
-            loadBloomFilter(descriptor.version.hasOldBfHashOrder());
+            loadBloomFilter(descriptor.version);
         }
     }
 
@@ -710,11 +759,11 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
      *
      * @throws IOException
      */
-    private void loadBloomFilter(boolean oldBfHashOrder) throws IOException
+    private void loadBloomFilter(Version version) throws IOException
     {
         try (DataInputStream stream = new DataInputStream(new BufferedInputStream(new FileInputStream(descriptor.filenameFor(Component.FILTER)))))
         {
-            bf = FilterFactory.deserialize(stream, true, oldBfHashOrder);
+            bf = FilterFactory.deserialize(stream, true, version.hasOldBfHashOrder(), version.hasBlockedBloomFilter());
         }
     }
 
@@ -723,7 +772,7 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
      * @param saveSummaryIfCreated for bulk loading purposes, if the summary was absent and needed to be built, you can
      *                             avoid persisting it to disk by setting this to false
      */
-    private void load(boolean recreateBloomFilter, boolean saveSummaryIfCreated) throws IOException
+    protected void load(boolean recreateBloomFilter, boolean saveSummaryIfCreated) throws IOException
     {
         try(SegmentedFile.Builder ibuilder = SegmentedFile.getBuilder(DatabaseDescriptor.getIndexAccessMode(), false);
             SegmentedFile.Builder dbuilder = SegmentedFile.getBuilder(DatabaseDescriptor.getDiskAccessMode(), compression))
@@ -814,7 +863,7 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
                     : estimateRowsFromIndex(primaryIndex); // statistics is supposed to be optional
 
             if (recreateBloomFilter)
-                bf = FilterFactory.getFilter(estimatedKeys, metadata.params.bloomFilterFpChance, true, descriptor.version.hasOldBfHashOrder());
+                bf = FilterFactory.getFilter(estimatedKeys, metadata.params.bloomFilterFpChance, true, descriptor.version.hasOldBfHashOrder(), descriptor.version.hasBlockedBloomFilter());
 
             try (IndexSummaryBuilder summaryBuilder = summaryLoaded ? null : new IndexSummaryBuilder(estimatedKeys, metadata.params.minIndexInterval, samplingLevel))
             {
@@ -1053,7 +1102,7 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
      */
     private SSTableReader cloneAndReplace(DecoratedKey newFirst, OpenReason reason)
     {
-        return cloneAndReplace(newFirst, reason, indexSummary.sharedCopy());
+        return cloneAndReplace(newFirst, reason, indexSummary != null ? indexSummary.sharedCopy() : null);
     }
 
     /**
@@ -1074,6 +1123,7 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
                                                  ifile != null ? ifile.sharedCopy() : null,
                                                  dfile.sharedCopy(),
                                                  newSummary,
+                                                 partitionIndex != null ? partitionIndex.sharedCopy() : null,
                                                  bf.sharedCopy(),
                                                  maxDataAge,
                                                  sstableMetadata,
@@ -1959,6 +2009,11 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
         return null;
     }
 
+    public SegmentedFile getIndexFile()
+    {
+        return ifile;
+    }
+
     public ChannelProxy getDataChannel()
     {
         return dfile.channel;
@@ -2074,7 +2129,10 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
         dfile.addTo(identities);
         ifile.addTo(identities);
         bf.addTo(identities);
-        indexSummary.addTo(identities);
+        if (indexSummary != null)
+            indexSummary.addTo(identities);
+        if (partitionIndex != null)
+            partitionIndex.addTo(identities);
 
     }
 
@@ -2093,6 +2151,7 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
         private final CFMetaData metadata;
         private IFilter bf;
         private IndexSummary summary;
+        private PartitionIndex partitionIndex;
 
         private SegmentedFile dfile;
         private SegmentedFile ifile;
@@ -2111,6 +2170,7 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
             this.setup = true;
             this.bf = reader.bf;
             this.summary = reader.indexSummary;
+            this.partitionIndex = reader.partitionIndex;
             this.dfile = reader.dfile;
             this.ifile = reader.ifile;
             // get a new reference to the shared descriptor-type tidy
@@ -2152,6 +2212,8 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
                         bf.close();
                     if (summary != null)
                         summary.close();
+                    if (partitionIndex != null)
+                        partitionIndex.close();
                     if (runOnClose != null)
                         runOnClose.run();
                     if (dfile != null)
@@ -2170,6 +2232,8 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
 
         void releaseSummary()
         {
+            if (summary == null)
+                return;
             summary.close();
             assert summary.isCleanedUp();
             summary = null;
@@ -18,6 +18,8 @@
 
 package org.apache.cassandra.io.sstable.format;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Map;
@@ -26,12 +28,18 @@ import java.util.Set;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Sets;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.config.Schema;
+import org.apache.cassandra.db.DecoratedKey;
 import org.apache.cassandra.db.RowIndexEntry;
 import org.apache.cassandra.db.SerializationHeader;
 import org.apache.cassandra.db.lifecycle.LifecycleTransaction;
-import org.apache.cassandra.db.rows.UnfilteredRowIterator;
+import org.apache.cassandra.db.rows.*;
+import org.apache.cassandra.io.FSWriteError;
 import org.apache.cassandra.io.sstable.Component;
 import org.apache.cassandra.io.sstable.Descriptor;
 import org.apache.cassandra.io.sstable.SSTable;
@@ -41,6 +49,7 @@ import org.apache.cassandra.io.sstable.metadata.MetadataComponent;
 import org.apache.cassandra.io.sstable.metadata.MetadataType;
 import org.apache.cassandra.io.sstable.metadata.StatsMetadata;
 import org.apache.cassandra.io.util.FileUtils;
+import org.apache.cassandra.io.util.SequentialWriter;
 import org.apache.cassandra.utils.concurrent.Transactional;
 
 /**
@@ -52,6 +61,8 @@ import org.apache.cassandra.utils.concurrent.Transactional;
 @SuppressWarnings("rawtypes")
 public abstract class SSTableWriter extends SSTable implements Transactional
 {
+    private static final Logger logger = LoggerFactory.getLogger(SSTableWriter.class);
+
     protected long repairedAt;
     protected long maxDataAge = -1;
     protected final long keyCount;
@@ -77,7 +88,18 @@ public abstract class SSTableWriter extends SSTable implements Transactional
                             MetadataCollector metadataCollector, 
                             SerializationHeader header)
     {
-        super(descriptor, components(metadata), metadata);
+        this(descriptor, components(metadata), keyCount, repairedAt, metadata, metadataCollector, header);
+    }
+
+    protected SSTableWriter(Descriptor descriptor,
+                            Set<Component> components,
+                            long keyCount,
+                            long repairedAt,
+                            CFMetaData metadata,
+                            MetadataCollector metadataCollector,
+                            SerializationHeader header)
+    {
+        super(descriptor, components, metadata);
         this.keyCount = keyCount;
         this.repairedAt = repairedAt;
         this.metadataCollector = metadataCollector;
@@ -126,7 +148,7 @@ public abstract class SSTableWriter extends SSTable implements Transactional
         return create(Descriptor.fromFilename(filename), keyCount, repairedAt, 0, header, txn);
     }
 
-    private static Set<Component> components(CFMetaData metadata)
+    protected static Set<Component> components(CFMetaData metadata)
     {
         //9个Component类型，要么选COMPRESSION_INFO要么选CRC
         Set<Component> components = new HashSet<Component>(Arrays.asList(Component.DATA,
@@ -266,6 +288,82 @@ public abstract class SSTableWriter extends SSTable implements Transactional
         return (StatsMetadata) finalizeMetadata().get(MetadataType.STATS);
     }
 
+    protected void maybeLogLargePartitionWarning(DecoratedKey key, long rowSize)
+    {
+        if (rowSize > DatabaseDescriptor.getCompactionLargePartitionWarningThreshold()) //默认是100M
+        {
+            String keyString = metadata.getKeyValidator().getString(key.getKey());
+            logger.warn("Writing large partition {}/{}:{} ({} bytes)", metadata.ksName, metadata.cfName, keyString, rowSize);
+        }
+    }
+
+    protected static class StatsCollector extends AlteringUnfilteredRowIterator
+    {
+        private final MetadataCollector collector;
+        private int cellCount;
+
+        public StatsCollector(UnfilteredRowIterator iter, MetadataCollector collector)
+        {
+            super(iter);
+            this.collector = collector;
+            collector.update(iter.partitionLevelDeletion());
+        }
+
+        @Override
+        protected Row computeNextStatic(Row row)
+        {
+            if (!row.isEmpty())
+                cellCount += Rows.collectStats(row, collector);
+            return row;
+        }
+
+        @Override
+        protected Row computeNext(Row row)
+        {
+            collector.updateClusteringValues(row.clustering());
+            cellCount += Rows.collectStats(row, collector);
+            return row;
+        }
+
+        @Override
+        protected RangeTombstoneMarker computeNext(RangeTombstoneMarker marker)
+        {
+            collector.updateClusteringValues(marker.clustering());
+            if (marker.isBoundary())
+            {
+                RangeTombstoneBoundaryMarker bm = (RangeTombstoneBoundaryMarker)marker;
+                collector.update(bm.endDeletionTime());
+                collector.update(bm.startDeletionTime());
+            }
+            else
+            {
+                collector.update(((RangeTombstoneBoundMarker)marker).deletionTime());
+            }
+            return marker;
+        }
+
+        @Override
+        public void close()
+        {
+            collector.addCellPerPartitionCount(cellCount);
+            super.close();
+        }
+    }
+
+    protected static void writeMetadata(Descriptor desc, Map<MetadataType, MetadataComponent> components)
+    {
+        File file = new File(desc.filenameFor(Component.STATS));
+        try (SequentialWriter out = SequentialWriter.open(file))
+        {
+            desc.getMetadataSerializer().serialize(components, out, desc.version);
+            out.setDescriptor(desc).finish();
+        }
+        catch (IOException e)
+        {
+            throw new FSWriteError(e, file.getPath());
+        }
+    }
+
     public static void rename(Descriptor tmpdesc, Descriptor newdesc, Set<Component> components)
     {
         //先重命名Data.db和Summary.db以外的文件，注意，在这一步可能没有生成Summary.db文件
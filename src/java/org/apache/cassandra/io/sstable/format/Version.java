@@ -66,6 +66,8 @@ public abstract class Version
 
     public abstract boolean hasOldBfHashOrder();
 
+    public abstract boolean hasBlockedBloomFilter();
+
     public abstract boolean hasCompactionAncestors();
 
     public abstract boolean hasBoundaries();
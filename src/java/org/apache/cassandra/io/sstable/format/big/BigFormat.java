@@ -23,6 +23,7 @@ import org.apache.cassandra.config.CFMetaData;
 import org.apache.cassandra.db.RowIndexEntry;
 import org.apache.cassandra.db.SerializationHeader;
 import org.apache.cassandra.db.lifecycle.LifecycleTransaction;
+import org.apache.cassandra.dht.IPartitioner;
 import org.apache.cassandra.io.sstable.Component;
 import org.apache.cassandra.io.sstable.Descriptor;
 import org.apache.cassandra.io.sstable.format.SSTableFormat;
@@ -80,6 +81,12 @@ public class BigFormat implements SSTableFormat
         return new RowIndexEntry.Serializer(metadata, version, header);
     }
 
+    @Override
+    public boolean supports(IPartitioner partitioner)
+    {
+        return true;
+    }
+
     static class WriterFactory extends SSTableWriter.Factory
     {
         @Override
@@ -112,7 +119,7 @@ public class BigFormat implements SSTableFormat
     // we always incremented the major version.
     static class BigVersion extends Version
     {
-        public static final String current_version = "ma";
+        public static final String current_version = "mb";
         public static final String earliest_supported_version = "jb";
 
         // jb (2.0.1): switch from crc32 to adler32 for compression checksums
@@ -124,6 +131,7 @@ public class BigFormat implements SSTableFormat
         // la (2.2.0): new file name format
         // ma (3.0.0): swap bf hash order
         //             store rows natively
+        // mb (3.2): blocked bloom filter
         //
         // NOTE: when adding a new version, please add that to LegacySSTableTest, too.
 
@@ -144,6 +152,11 @@ public class BigFormat implements SSTableFormat
          */
         private final boolean hasOldBfHashOrder;
 
+        /**
+         * the bits of each key in the bloom filter are in the same cache line, see BlockedBloomFilter
+         */
+        private final boolean hasBlockedBloomFilter;
+
         /**
          * CASSANDRA-7066: compaction ancerstors are no longer used and have been removed.
          */
@@ -175,6 +188,7 @@ public class BigFormat implements SSTableFormat
             newFileName = version.compareTo("la") >= 0;
 
             hasOldBfHashOrder = version.compareTo("ma") < 0;
+            hasBlockedBloomFilter = version.compareTo("mb") >= 0;
             hasCompactionAncestors = version.compareTo("ma") < 0;
             storeRows = version.compareTo("ma") >= 0;
             correspondingMessagingVersion = storeRows
@@ -232,6 +246,12 @@ public class BigFormat implements SSTableFormat
             return hasOldBfHashOrder;
         }
 
+        @Override
+        public boolean hasBlockedBloomFilter()
+        {
+            return hasBlockedBloomFilter;
+        }
+
         @Override
         public boolean hasCompactionAncestors()
         {
@@ -167,68 +167,6 @@ public class BigTableWriter extends SSTableWriter
         }
     }
 
-    private void maybeLogLargePartitionWarning(DecoratedKey key, long rowSize)
-    {
-        if (rowSize > DatabaseDescriptor.getCompactionLargePartitionWarningThreshold()) //默认是100M
-        {
-            String keyString = metadata.getKeyValidator().getString(key.getKey());
-            logger.warn("Writing large partition {}/{}:{} ({} bytes)", metadata.ksName, metadata.cfName, keyString, rowSize);
-        }
-    }
-
-    private static class StatsCollector extends AlteringUnfilteredRowIterator
-    {
-        private final MetadataCollector collector;
-        private int cellCount;
-
-        StatsCollector(UnfilteredRowIterator iter, MetadataCollector collector)
-        {
-            super(iter);
-            this.collector = collector;
-            collector.update(iter.partitionLevelDeletion());
-        }
-
-        @Override
-        protected Row computeNextStatic(Row row)
-        {
-            if (!row.isEmpty())
-                cellCount += Rows.collectStats(row, collector);
-            return row;
-        }
-
-        @Override
-        protected Row computeNext(Row row)
-        {
-            collector.updateClusteringValues(row.clustering());
-            cellCount += Rows.collectStats(row, collector);
-            return row;
-        }
-
-        @Override
-        protected RangeTombstoneMarker computeNext(RangeTombstoneMarker marker)
-        {
-            collector.updateClusteringValues(marker.clustering());
-            if (marker.isBoundary())
-            {
-                RangeTombstoneBoundaryMarker bm = (RangeTombstoneBoundaryMarker)marker;
-                collector.update(bm.endDeletionTime());
-                collector.update(bm.startDeletionTime());
-            }
-            else
-            {
-                collector.update(((RangeTombstoneBoundMarker)marker).deletionTime());
-            }
-            return marker;
-        }
-
-        @Override
-        public void close()
-        {
-            collector.addCellPerPartitionCount(cellCount);
-            super.close();
-        }
-    }
-
     @SuppressWarnings("resource")
     public SSTableReader openEarly()
     {
@@ -340,20 +278,6 @@ public class BigTableWriter extends SSTableWriter
         }
     }
 
-    private static void writeMetadata(Descriptor desc, Map<MetadataType, MetadataComponent> components)
-    {
-        File file = new File(desc.filenameFor(Component.STATS));
-        try (SequentialWriter out = SequentialWriter.open(file))
-        {
-            desc.getMetadataSerializer().serialize(components, out, desc.version);
-            out.setDescriptor(desc).finish();
-        }
-        catch (IOException e)
-        {
-            throw new FSWriteError(e, file.getPath());
-        }
-    }
-
     //如果dataFile是压缩后的文件，getOnDiskFilePointer跟getFilePointer是不一样的，否则一样
     //见org.apache.cassandra.io.compress.CompressedSequentialWriter.getOnDiskFilePointer()
     public long getFilePointer()
@@ -382,7 +306,7 @@ public class BigTableWriter extends SSTableWriter
             indexFile = SequentialWriter.open(new File(descriptor.filenameFor(Component.PRIMARY_INDEX))); //这一步生成Index.db文件
             builder = SegmentedFile.getBuilder(DatabaseDescriptor.getIndexAccessMode(), false);
             summary = new IndexSummaryBuilder(keyCount, metadata.params.minIndexInterval, Downsampling.BASE_SAMPLING_LEVEL);
-            bf = FilterFactory.getFilter(keyCount, metadata.params.bloomFilterFpChance, true, descriptor.version.hasOldBfHashOrder());
+            bf = FilterFactory.getFilter(keyCount, metadata.params.bloomFilterFpChance, true, descriptor.version.hasOldBfHashOrder(), descriptor.version.hasBlockedBloomFilter());
             // register listeners to be alerted when the data files are flushed
             indexFile.setPostFlushListener(new Runnable()
             {
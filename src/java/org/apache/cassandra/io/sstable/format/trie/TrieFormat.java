@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.sstable.format.trie;
+
+import java.util.Set;
+
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.db.RowIndexEntry;
+import org.apache.cassandra.db.SerializationHeader;
+import org.apache.cassandra.db.lifecycle.LifecycleTransaction;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.io.sstable.Component;
+import org.apache.cassandra.io.sstable.Descriptor;
+import org.apache.cassandra.io.sstable.PartitionIndex;
+import org.apache.cassandra.io.sstable.format.SSTableFormat;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.io.sstable.format.SSTableWriter;
+import org.apache.cassandra.io.sstable.format.Version;
+import org.apache.cassandra.io.sstable.metadata.MetadataCollector;
+import org.apache.cassandra.io.sstable.metadata.StatsMetadata;
+import org.apache.cassandra.net.MessagingService;
+import org.apache.cassandra.utils.ChecksumType;
+
+/**
+ * Bigtable format where the index summary is replaced by an on-disk trie over the partition keys (see
+ * {@link PartitionIndex}). Data, primary index and bloom filter are the same as in the big format.
+ */
+@SuppressWarnings({ "rawtypes"})
+public class TrieFormat implements SSTableFormat
+{
+    public static final TrieFormat instance = new TrieFormat();
+    public static final Version latestVersion = new TrieVersion(TrieVersion.current_version);
+    private static final SSTableReader.Factory readerFactory = new ReaderFactory();
+    private static final SSTableWriter.Factory writerFactory = new WriterFactory();
+
+    private TrieFormat()
+    {
+
+    }
+
+    @Override
+    public Version getLatestVersion()
+    {
+        return latestVersion;
+    }
+
+    @Override
+    public Version getVersion(String version)
+    {
+        return new TrieVersion(version);
+    }
+
+    @Override
+    public SSTableWriter.Factory getWriterFactory()
+    {
+        return writerFactory;
+    }
+
+    @Override
+    public SSTableReader.Factory getReaderFactory()
+    {
+        return readerFactory;
+    }
+
+    @Override
+    public RowIndexEntry.IndexSerializer getIndexSerializer(CFMetaData metadata, Version version, SerializationHeader header)
+    {
+        return new RowIndexEntry.Serializer(metadata, version, header);
+    }
+
+    @Override
+    public boolean supports(IPartitioner partitioner)
+    {
+        return PartitionIndex.supports(partitioner);
+    }
+
+    static class WriterFactory extends SSTableWriter.Factory
+    {
+        @Override
+        public SSTableWriter open(Descriptor descriptor,
+                                  long keyCount,
+                                  long repairedAt,
+                                  CFMetaData metadata,
+                                  MetadataCollector metadataCollector,
+                                  SerializationHeader header,
+                                  LifecycleTransaction txn)
+        {
+            return new TrieTableWriter(descriptor, keyCount, repairedAt, metadata, metadataCollector, header, txn);
+        }
+    }
+
+    static class ReaderFactory extends SSTableReader.Factory
+    {
+        @Override
+        public SSTableReader open(Descriptor descriptor, Set<Component> components, CFMetaData metadata, Long maxDataAge, StatsMetadata sstableMetadata, SSTableReader.OpenReason openReason, SerializationHeader header)
+        {
+            return new TrieTableReader(descriptor, components, metadata, maxDataAge, sstableMetadata, openReason, header);
+        }
+    }
+
+    // aa (3.2): the data and primary index of big version ma, with a partition index instead of an index summary
+    // ab (3.2): blocked bloom filter
+    static class TrieVersion extends Version
+    {
+        public static final String current_version = "ab";
+        public static final String earliest_supported_version = "aa";
+
+        private final boolean isLatestVersion;
+        private final boolean hasBlockedBloomFilter;
+
+        TrieVersion(String version)
+        {
+            super(instance, version);
+            isLatestVersion = version.compareTo(current_version) == 0;
+            hasBlockedBloomFilter = version.compareTo("ab") >= 0;
+        }
+
+        @Override
+        public boolean isLatestVersion()
+        {
+            return isLatestVersion;
+        }
+
+        // there is no index summary to resample
+        @Override
+        public boolean hasSamplingLevel()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean hasNewStatsFile()
+        {
+            return true;
+        }
+
+        @Override
+        public ChecksumType compressedChecksumType()
+        {
+            return ChecksumType.CRC32;
+        }
+
+        @Override
+        public ChecksumType uncompressedChecksumType()
+        {
+            return ChecksumType.CRC32;
+        }
+
+        @Override
+        public boolean hasRepairedAt()
+        {
+            return true;
+        }
+
+        @Override
+        public boolean tracksLegacyCounterShards()
+        {
+            return true;
+        }
+
+        @Override
+        public boolean hasOldBfHashOrder()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean hasBlockedBloomFilter()
+        {
+            return hasBlockedBloomFilter;
+        }
+
+        @Override
+        public boolean hasCompactionAncestors()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean hasNewFileName()
+        {
+            return true;
+        }
+
+        @Override
+        public boolean storeRows()
+        {
+            return true;
+        }
+
+        @Override
+        public int correspondingMessagingVersion()
+        {
+            return MessagingService.VERSION_30;
+        }
+
+        @Override
+        public boolean hasBoundaries()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean isCompatible()
+        {
+            return version.compareTo(earliest_supported_version) >= 0 && version.charAt(0) <= current_version.charAt(0);
+        }
+
+        @Override
+        public boolean isCompatibleForStreaming()
+        {
+            return isCompatible() && version.charAt(0) == current_version.charAt(0);
+        }
+    }
+}
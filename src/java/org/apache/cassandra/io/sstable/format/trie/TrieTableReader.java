@@ -0,0 +1,442 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.sstable.format.trie;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import com.google.common.util.concurrent.RateLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.cache.KeyCacheKey;
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.*;
+import org.apache.cassandra.db.columniterator.SSTableIterator;
+import org.apache.cassandra.db.columniterator.SSTableReversedIterator;
+import org.apache.cassandra.db.filter.ColumnFilter;
+import org.apache.cassandra.db.rows.SliceableUnfilteredRowIterator;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.io.sstable.*;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.io.sstable.format.big.BigTableScanner;
+import org.apache.cassandra.io.sstable.metadata.StatsMetadata;
+import org.apache.cassandra.io.util.*;
+import org.apache.cassandra.tracing.Tracing;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.FilterFactory;
+
+import static org.apache.cassandra.io.sstable.Downsampling.BASE_SAMPLING_LEVEL;
+
+/**
+ * Reads sstables of the trie format. Partitions are located through the on-disk {@link PartitionIndex} rather than
+ * an index summary, which leaves at most two primary index entries to read for a lookup, and nothing to hold in
+ * memory apart from the bloom filter.
+ */
+@SuppressWarnings("rawtypes")
+public class TrieTableReader extends SSTableReader
+{
+    private static final Logger logger = LoggerFactory.getLogger(TrieTableReader.class);
+
+    TrieTableReader(Descriptor desc, Set<Component> components, CFMetaData metadata, Long maxDataAge, StatsMetadata sstableMetadata, OpenReason openReason, SerializationHeader header)
+    {
+        super(desc, components, metadata, maxDataAge, sstableMetadata, openReason, header);
+    }
+
+    public SliceableUnfilteredRowIterator iterator(DecoratedKey key, ColumnFilter selectedColumns, boolean reversed, boolean isForThrift)
+    {
+        return reversed
+             ? new SSTableReversedIterator(this, key, selectedColumns, isForThrift)
+             : new SSTableIterator(this, key, selectedColumns, isForThrift);
+    }
+
+    public SliceableUnfilteredRowIterator iterator(FileDataInput file, DecoratedKey key, RowIndexEntry indexEntry, ColumnFilter selectedColumns, boolean reversed, boolean isForThrift)
+    {
+        return reversed
+             ? new SSTableReversedIterator(this, file, key, indexEntry, selectedColumns, isForThrift)
+             : new SSTableIterator(this, file, key, indexEntry, selectedColumns, isForThrift);
+    }
+
+    public ISSTableScanner getScanner(ColumnFilter columns, DataRange dataRange, RateLimiter limiter, boolean isForThrift)
+    {
+        return BigTableScanner.getScanner(this, columns, dataRange, limiter, isForThrift);
+    }
+
+    public ISSTableScanner getScanner(RateLimiter limiter)
+    {
+        return BigTableScanner.getScanner(this, limiter);
+    }
+
+    public ISSTableScanner getScanner(Collection<Range<Token>> ranges, RateLimiter limiter)
+    {
+        return BigTableScanner.getScanner(this, ranges, limiter);
+    }
+
+    protected RowIndexEntry getPosition(PartitionPosition key, Operator op, boolean updateCacheAndStats, boolean permitMatchPastLast)
+    {
+        if (op == Operator.EQ)
+        {
+            assert key instanceof DecoratedKey; // EQ only make sense if the key is a valid row key
+            if (!bf.isPresent((DecoratedKey)key))
+            {
+                Tracing.trace("Bloom filter allows skipping sstable {}", descriptor.generation);
+                return null;
+            }
+        }
+
+        // next, the key cache (only make sense for valid row key)
+        if ((op == Operator.EQ || op == Operator.GE) && (key instanceof DecoratedKey))
+        {
+            DecoratedKey decoratedKey = (DecoratedKey)key;
+            KeyCacheKey cacheKey = new KeyCacheKey(metadata.ksAndCFName, descriptor, decoratedKey.getKey());
+            RowIndexEntry cachedPosition = getCachedPosition(cacheKey, updateCacheAndStats);
+            if (cachedPosition != null)
+            {
+                Tracing.trace("Key cache hit for sstable {}", descriptor.generation);
+                return cachedPosition;
+            }
+        }
+
+        // check the smallest and greatest keys in the sstable to see if it can't be present
+        boolean skip = false;
+        if (key.compareTo(first) < 0)
+        {
+            if (op == Operator.EQ)
+                skip = true;
+            else
+                key = first;
+
+            op = Operator.EQ;
+        }
+        else
+        {
+            int l = last.compareTo(key);
+            // l <= 0  => we may be looking past the end of the file; we then narrow our behaviour to:
+            //             1) skipping if strictly greater for GE and EQ;
+            //             2) skipping if equal and searching GT, and we aren't permitting matching past last
+            skip = l <= 0 && (l < 0 || (!permitMatchPastLast && op == Operator.GT));
+        }
+        if (skip)
+        {
+            if (op == Operator.EQ && updateCacheAndStats)
+                bloomFilterTracker.addFalsePositive();
+            Tracing.trace("Check against min and max keys allows skipping sstable {}", descriptor.generation);
+            return null;
+        }
+
+        if (ifile == null)
+            return null;
+
+        // an exact match can only be the entry the trie leads to, while the first key matching GE or GT is at most
+        // two entries after the ceiling position
+        long indexPosition = op == Operator.EQ
+                           ? partitionIndex.exactCandidate((DecoratedKey) key)
+                           : partitionIndex.ceiling(key);
+
+        if (indexPosition >= 0)
+        {
+            String path = null;
+            try (FileDataInput in = ifile.createReader(indexPosition))
+            {
+                path = in.getPath();
+                while (!in.isEOF())
+                {
+                    ByteBuffer indexKey = ByteBufferUtil.readWithShortLength(in);
+
+                    boolean opSatisfied; // did we find an appropriate position for the op requested
+                    boolean exactMatch; // is the current position an exact match for the key, suitable for caching
+
+                    if (op == Operator.EQ)
+                    {
+                        opSatisfied = exactMatch = indexKey.equals(((DecoratedKey) key).getKey());
+                        if (!opSatisfied)
+                            break;
+                    }
+                    else
+                    {
+                        DecoratedKey indexDecoratedKey = decorateKey(indexKey);
+                        int comparison = indexDecoratedKey.compareTo(key);
+                        int v = op.apply(comparison);
+                        opSatisfied = (v == 0);
+                        exactMatch = (comparison == 0);
+                        if (v < 0)
+                        {
+                            Tracing.trace("Partition index lookup allows skipping sstable {}", descriptor.generation);
+                            return null;
+                        }
+                    }
+
+                    if (opSatisfied)
+                    {
+                        // read data position from index entry
+                        RowIndexEntry indexEntry = rowIndexEntrySerializer.deserialize(in);
+                        if (exactMatch && updateCacheAndStats)
+                        {
+                            assert key instanceof DecoratedKey; // key can be == to the index key only if it's a true row key
+                            cacheKey((DecoratedKey) key, indexEntry);
+                        }
+                        if (op == Operator.EQ && updateCacheAndStats)
+                            bloomFilterTracker.addTruePositive();
+                        Tracing.trace("Partition index with {} entries found for sstable {}", indexEntry.columnsCount(), descriptor.generation);
+                        return indexEntry;
+                    }
+
+                    RowIndexEntry.Serializer.skip(in, descriptor.version);
+                }
+            }
+            catch (IOException e)
+            {
+                markSuspect();
+                throw new CorruptSSTableException(e, path);
+            }
+        }
+
+        if (op == Operator.EQ && updateCacheAndStats)
+            bloomFilterTracker.addFalsePositive();
+        Tracing.trace("Partition index lookup complete (bloom filter false positive) for sstable {}", descriptor.generation);
+        return null;
+    }
+
+    @Override
+    public long getIndexScanPosition(PartitionPosition key)
+    {
+        if (openReason == OpenReason.MOVED_START && key.compareTo(first) < 0)
+            key = first;
+
+        long position = partitionIndex.ceiling(key);
+        return position < 0 ? ifile.length : position;
+    }
+
+    @Override
+    public long estimatedKeys()
+    {
+        return partitionIndex.size();
+    }
+
+    /**
+     * Estimates the number of keys from the share of the primary index covered by the ranges.
+     */
+    @Override
+    public long estimatedKeysForRanges(Collection<Range<Token>> ranges)
+    {
+        long indexLength = ifile.length;
+        if (indexLength == 0)
+            return 1;
+
+        long coveredLength = 0;
+        for (Range<Token> range : Range.normalize(ranges))
+        {
+            long left = getIndexScanPosition(range.left.maxKeyBound());
+            long right = range.right.isMinimum() ? indexLength : getIndexScanPosition(range.right.maxKeyBound());
+            coveredLength += Math.max(0, right - left);
+        }
+        return Math.max(1, partitionIndex.size() * coveredLength / indexLength);
+    }
+
+    /**
+     * Samples every min_index_interval-th key of the given range from the primary index.
+     */
+    @Override
+    public Iterable<DecoratedKey> getKeySamples(Range<Token> range)
+    {
+        List<DecoratedKey> samples = new ArrayList<>();
+        int interval = metadata.params.minIndexInterval;
+        String path = null;
+        for (Range<Token> unwrapped : range.unwrap())
+        {
+            PartitionPosition right = unwrapped.right.maxKeyBound();
+            boolean toEnd = unwrapped.right.isMinimum();
+            try (FileDataInput in = ifile.createReader(getIndexScanPosition(unwrapped.left.maxKeyBound())))
+            {
+                path = in.getPath();
+                int i = 0;
+                while (!in.isEOF())
+                {
+                    DecoratedKey key = decorateKey(ByteBufferUtil.readWithShortLength(in));
+                    RowIndexEntry.Serializer.skip(in, descriptor.version);
+                    if (!toEnd && key.compareTo(right) > 0)
+                        break;
+                    if (unwrapped.contains(key.getToken()) && i++ % interval == 0)
+                        samples.add(key);
+                }
+            }
+            catch (IOException e)
+            {
+                markSuspect();
+                throw new CorruptSSTableException(e, path);
+            }
+        }
+        return samples;
+    }
+
+    @Override
+    public int getIndexSummarySize()
+    {
+        return (int) Math.min(Integer.MAX_VALUE, partitionIndex.size());
+    }
+
+    @Override
+    public int getMaxIndexSummarySize()
+    {
+        return getIndexSummarySize();
+    }
+
+    @Override
+    public byte[] getIndexSummaryKey(int index)
+    {
+        throw new UnsupportedOperationException("SSTables of the trie format have no index summary");
+    }
+
+    @Override
+    public int getIndexSummarySamplingLevel()
+    {
+        return BASE_SAMPLING_LEVEL;
+    }
+
+    @Override
+    public long getIndexSummaryOffHeapSize()
+    {
+        return 0;
+    }
+
+    @Override
+    public int getMinIndexInterval()
+    {
+        return 1;
+    }
+
+    @Override
+    public double getEffectiveIndexInterval()
+    {
+        return 1;
+    }
+
+    /**
+     * Opens the primary and partition indexes and the data file, rebuilding the partition index from the primary
+     * index if it is missing.
+     */
+    @Override
+    protected void load(boolean recreateBloomFilter, boolean savePartitionIndexIfCreated) throws IOException
+    {
+        try(SegmentedFile.Builder ibuilder = SegmentedFile.getBuilder(DatabaseDescriptor.getIndexAccessMode(), false);
+            SegmentedFile.Builder dbuilder = SegmentedFile.getBuilder(DatabaseDescriptor.getDiskAccessMode(), compression))
+        {
+            loadPartitionIndex(recreateBloomFilter);
+            if (components.contains(Component.PRIMARY_INDEX))
+                ifile = ibuilder.buildIndex(descriptor, partitionIndex.size());
+            dfile = dbuilder.buildData(descriptor, sstableMetadata);
+        }
+        catch (Throwable t)
+        { // Because the tidier has not been set-up yet in SSTableReader.open(), we must release the files in case of error
+            if (ifile != null)
+            {
+                ifile.close();
+                ifile = null;
+            }
+
+            if (dfile != null)
+            {
+                dfile.close();
+                dfile = null;
+            }
+
+            if (partitionIndex != null)
+            {
+                partitionIndex.close();
+                partitionIndex = null;
+            }
+
+            throw t;
+        }
+    }
+
+    @Override
+    protected void loadForBatch() throws IOException
+    {
+        try(SegmentedFile.Builder ibuilder = new BufferedSegmentedFile.Builder();
+            SegmentedFile.Builder dbuilder = compression
+                ? new CompressedSegmentedFile.Builder(null)
+                : new BufferedSegmentedFile.Builder())
+        {
+            loadPartitionIndex(false);
+            ifile = ibuilder.buildIndex(descriptor, partitionIndex.size());
+            dfile = dbuilder.buildData(descriptor, sstableMetadata);
+        }
+    }
+
+    private void loadPartitionIndex(boolean recreateBloomFilter) throws IOException
+    {
+        if (!components.contains(Component.PRIMARY_INDEX))
+            return;
+
+        File partitionIndexFile = new File(descriptor.filenameFor(Component.PARTITION_INDEX));
+        boolean rebuild = !partitionIndexFile.exists();
+        if (rebuild || recreateBloomFilter)
+            scanPrimaryIndex(recreateBloomFilter, rebuild);
+
+        partitionIndex = PartitionIndex.load(descriptor);
+        first = getMinimalKey(decorateKey(partitionIndex.firstKey()));
+        last = getMinimalKey(decorateKey(partitionIndex.lastKey()));
+    }
+
+    /**
+     * Reads through Index.db to recreate the bloom filter and/or the partition index.
+     */
+    private void scanPrimaryIndex(boolean recreateBloomFilter, boolean rebuildPartitionIndex) throws IOException
+    {
+        if (rebuildPartitionIndex)
+            logger.info("Rebuilding missing partition index of {}", descriptor);
+
+        try (RandomAccessReader primaryIndex = RandomAccessReader.open(new File(descriptor.filenameFor(Component.PRIMARY_INDEX)));
+             SequentialWriter writer = rebuildPartitionIndex ? SequentialWriter.open(new File(descriptor.filenameFor(Component.PARTITION_INDEX))) : null)
+        {
+            long indexSize = primaryIndex.length();
+            long histogramCount = sstableMetadata.estimatedPartitionSize.count();
+            long estimatedKeys = histogramCount > 0 && !sstableMetadata.estimatedPartitionSize.isOverflowed()
+                    ? histogramCount
+                    : estimateRowsFromIndex(primaryIndex); // statistics is supposed to be optional
+
+            if (recreateBloomFilter)
+                bf = FilterFactory.getFilter(estimatedKeys, metadata.params.bloomFilterFpChance, true, descriptor.version.hasOldBfHashOrder(), descriptor.version.hasBlockedBloomFilter());
+
+            PartitionIndexBuilder builder = rebuildPartitionIndex ? new PartitionIndexBuilder(writer) : null;
+            long indexPosition;
+            while ((indexPosition = primaryIndex.getFilePointer()) != indexSize)
+            {
+                DecoratedKey key = decorateKey(ByteBufferUtil.readWithShortLength(primaryIndex));
+                RowIndexEntry.Serializer.skip(primaryIndex, descriptor.version);
+
+                if (recreateBloomFilter)
+                    bf.add(key);
+                if (rebuildPartitionIndex)
+                    builder.addEntry(key, indexPosition);
+            }
+
+            if (rebuildPartitionIndex)
+            {
+                builder.complete();
+                writer.setDescriptor(descriptor).finish();
+                components.add(Component.PARTITION_INDEX);
+            }
+        }
+    }
+}
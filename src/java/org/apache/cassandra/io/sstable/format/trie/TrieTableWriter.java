@@ -0,0 +1,417 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.sstable.format.trie;
+
+import java.io.*;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.*;
+import org.apache.cassandra.db.lifecycle.LifecycleTransaction;
+import org.apache.cassandra.db.rows.UnfilteredRowIterator;
+import org.apache.cassandra.io.FSReadError;
+import org.apache.cassandra.io.FSWriteError;
+import org.apache.cassandra.io.compress.CompressedSequentialWriter;
+import org.apache.cassandra.io.sstable.*;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.io.sstable.format.SSTableWriter;
+import org.apache.cassandra.io.sstable.metadata.MetadataCollector;
+import org.apache.cassandra.io.sstable.metadata.MetadataComponent;
+import org.apache.cassandra.io.sstable.metadata.MetadataType;
+import org.apache.cassandra.io.sstable.metadata.StatsMetadata;
+import org.apache.cassandra.io.util.*;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.FBUtilities;
+import org.apache.cassandra.utils.FilterFactory;
+import org.apache.cassandra.utils.IFilter;
+import org.apache.cassandra.utils.SyncUtil;
+import org.apache.cassandra.utils.concurrent.Transactional;
+
+/**
+ * Writes sstables of the trie format: the data file, primary index and bloom filter are written as by
+ * {@link org.apache.cassandra.io.sstable.format.big.BigTableWriter}, but every primary index entry is also added
+ * to the partition index trie instead of being sampled into an index summary.
+ *
+ * The trie can only be completed once the last key is known, so sstables of this format can't be opened early.
+ */
+public class TrieTableWriter extends SSTableWriter
+{
+    private static final Logger logger = LoggerFactory.getLogger(TrieTableWriter.class);
+
+    private final IndexWriter iwriter;
+    private final SegmentedFile.Builder dbuilder;
+    private final SequentialWriter dataFile;
+    private DecoratedKey lastWrittenKey;
+    private FileMark dataMark;
+
+    public TrieTableWriter(Descriptor descriptor,
+                           long keyCount,
+                           long repairedAt,
+                           CFMetaData metadata,
+                           MetadataCollector metadataCollector,
+                           SerializationHeader header,
+                           LifecycleTransaction txn)
+    {
+        super(descriptor, components(metadata), keyCount, repairedAt, metadata, metadataCollector, header);
+        txn.trackNew(this); // must track before any files are created
+
+        if (compression)
+        {
+            dataFile = SequentialWriter.open(getFilename(),
+                                             descriptor.filenameFor(Component.COMPRESSION_INFO),
+                                             metadata.params.compression,
+                                             metadataCollector);
+            dbuilder = SegmentedFile.getCompressedBuilder((CompressedSequentialWriter) dataFile);
+        }
+        else
+        {
+            dataFile = SequentialWriter.open(new File(getFilename()), new File(descriptor.filenameFor(Component.CRC)));
+            dbuilder = SegmentedFile.getBuilder(DatabaseDescriptor.getDiskAccessMode(), false);
+        }
+        iwriter = new IndexWriter(keyCount);
+    }
+
+    protected static Set<Component> components(CFMetaData metadata)
+    {
+        Set<Component> components = SSTableWriter.components(metadata);
+        components.remove(Component.SUMMARY);
+        components.add(Component.PARTITION_INDEX);
+        return components;
+    }
+
+    public void mark()
+    {
+        dataMark = dataFile.mark();
+        iwriter.mark();
+    }
+
+    public void resetAndTruncate()
+    {
+        dataFile.resetAndTruncate(dataMark);
+        iwriter.resetAndTruncate();
+    }
+
+    /**
+     * Perform sanity checks on @param decoratedKey and @return the position in the data file before any data is written
+     */
+    private long beforeAppend(DecoratedKey decoratedKey)
+    {
+        assert decoratedKey != null : "Keys must not be null"; // empty keys ARE allowed b/c of indexed column values
+        if (lastWrittenKey != null && lastWrittenKey.compareTo(decoratedKey) >= 0)
+            throw new RuntimeException("Last written key " + lastWrittenKey + " >= current key " + decoratedKey + " writing into " + getFilename());
+        return (lastWrittenKey == null) ? 0 : dataFile.position();
+    }
+
+    private void afterAppend(DecoratedKey decoratedKey, long dataEnd, RowIndexEntry<?> index) throws IOException
+    {
+        metadataCollector.addKey(decoratedKey.getKey());
+        lastWrittenKey = decoratedKey;
+        last = lastWrittenKey;
+        if (first == null)
+            first = lastWrittenKey;
+
+        if (logger.isTraceEnabled())
+            logger.trace("wrote {} at {}", decoratedKey, dataEnd);
+        iwriter.append(decoratedKey, index);
+    }
+
+    public RowIndexEntry<?> append(UnfilteredRowIterator iterator)
+    {
+        DecoratedKey key = iterator.partitionKey();
+        if (key.getKey().remaining() > FBUtilities.MAX_UNSIGNED_SHORT)
+        {
+            logger.error("Key size {} exceeds maximum of {}, skipping row", key.getKey().remaining(), FBUtilities.MAX_UNSIGNED_SHORT);
+            return null;
+        }
+
+        if (iterator.isEmpty())
+            return null;
+
+        long startPosition = beforeAppend(key);
+
+        try (StatsCollector withStats = new StatsCollector(iterator, metadataCollector))
+        {
+            ColumnIndex index = ColumnIndex.writeAndBuildIndex(withStats, dataFile, header, descriptor.version);
+
+            RowIndexEntry<?> entry = RowIndexEntry.create(startPosition, iterator.partitionLevelDeletion(), index);
+
+            long endPosition = dataFile.position();
+            long rowSize = endPosition - startPosition;
+            maybeLogLargePartitionWarning(key, rowSize);
+            metadataCollector.addPartitionSizeInBytes(rowSize);
+            afterAppend(key, endPosition, entry);
+            return entry;
+        }
+        catch (IOException e)
+        {
+            throw new FSWriteError(e, dataFile.getPath());
+        }
+    }
+
+    // the partition index is only complete once the last key has been added
+    public SSTableReader openEarly()
+    {
+        return null;
+    }
+
+    public SSTableReader openFinalEarly()
+    {
+        // we must ensure the data is completely flushed to disk
+        dataFile.sync();
+        iwriter.indexFile.sync();
+        iwriter.completePartitionIndex();
+
+        return openFinal(descriptor, SSTableReader.OpenReason.EARLY);
+    }
+
+    @SuppressWarnings("resource")
+    private SSTableReader openFinal(Descriptor desc, SSTableReader.OpenReason openReason)
+    {
+        if (maxDataAge < 0)
+            maxDataAge = System.currentTimeMillis();
+
+        StatsMetadata stats = statsMetadata();
+        PartitionIndex partitionIndex = iwriter.openPartitionIndex(desc);
+        SegmentedFile ifile = iwriter.builder.buildIndex(desc, partitionIndex.size());
+        SegmentedFile dfile = dbuilder.buildData(desc, stats);
+        SSTableReader sstable = SSTableReader.internalOpen(desc,
+                                                           components,
+                                                           this.metadata,
+                                                           ifile,
+                                                           dfile,
+                                                           partitionIndex,
+                                                           iwriter.bf.sharedCopy(),
+                                                           maxDataAge,
+                                                           stats,
+                                                           openReason,
+                                                           header);
+        sstable.first = getMinimalKey(first);
+        sstable.last = getMinimalKey(last);
+
+        return sstable;
+    }
+
+    protected SSTableWriter.TransactionalProxy txnProxy()
+    {
+        return new TransactionalProxy();
+    }
+
+    class TransactionalProxy extends SSTableWriter.TransactionalProxy
+    {
+        // finalise our state on disk, including renaming
+        protected void doPrepare()
+        {
+            Map<MetadataType, MetadataComponent> metadataComponents = finalizeMetadata();
+
+            iwriter.prepareToCommit();
+
+            // write sstable statistics
+            dataFile.setDescriptor(descriptor).prepareToCommit();
+            writeMetadata(descriptor, metadataComponents);
+
+            // save the table of components
+            SSTable.appendTOC(descriptor, components);
+
+            if (openResult)
+                finalReader = openFinal(descriptor, SSTableReader.OpenReason.NORMAL);
+        }
+
+        protected Throwable doCommit(Throwable accumulate)
+        {
+            accumulate = dataFile.commit(accumulate);
+            accumulate = iwriter.commit(accumulate);
+            return accumulate;
+        }
+
+        @Override
+        protected Throwable doPostCleanup(Throwable accumulate)
+        {
+            accumulate = dbuilder.close(accumulate);
+            return accumulate;
+        }
+
+        protected Throwable doAbort(Throwable accumulate)
+        {
+            accumulate = iwriter.abort(accumulate);
+            accumulate = dataFile.abort(accumulate);
+            return accumulate;
+        }
+    }
+
+    public long getFilePointer()
+    {
+        return dataFile.position();
+    }
+
+    public long getOnDiskFilePointer()
+    {
+        return dataFile.getOnDiskFilePointer();
+    }
+
+    /**
+     * Encapsulates writing the primary index, partition index and filter for an SSTable. The state of this object
+     * is not valid until it has been closed.
+     */
+    class IndexWriter extends AbstractTransactional implements Transactional
+    {
+        private final SequentialWriter indexFile;
+        private final SequentialWriter partitionIndexFile;
+        private final PartitionIndexBuilder partitionIndex;
+        public final SegmentedFile.Builder builder;
+        public final IFilter bf;
+        private FileMark mark;
+
+        IndexWriter(long keyCount)
+        {
+            indexFile = SequentialWriter.open(new File(descriptor.filenameFor(Component.PRIMARY_INDEX)));
+            partitionIndexFile = SequentialWriter.open(new File(descriptor.filenameFor(Component.PARTITION_INDEX)));
+            partitionIndex = new PartitionIndexBuilder(partitionIndexFile);
+            builder = SegmentedFile.getBuilder(DatabaseDescriptor.getIndexAccessMode(), false);
+            bf = FilterFactory.getFilter(keyCount, metadata.params.bloomFilterFpChance, true, descriptor.version.hasOldBfHashOrder(), descriptor.version.hasBlockedBloomFilter());
+        }
+
+        @SuppressWarnings("unchecked")
+        public void append(DecoratedKey key, RowIndexEntry<?> indexEntry) throws IOException
+        {
+            bf.add(key);
+            long indexStart = indexFile.position();
+            try
+            {
+                ByteBufferUtil.writeWithShortLength(key.getKey(), indexFile);
+                rowIndexEntrySerializer.serialize(indexEntry, indexFile);
+            }
+            catch (IOException e)
+            {
+                throw new FSWriteError(e, indexFile.getPath());
+            }
+
+            if (logger.isTraceEnabled())
+                logger.trace("wrote index entry: {} at {}", indexEntry, indexStart);
+
+            try
+            {
+                partitionIndex.addEntry(key, indexStart);
+            }
+            catch (IOException e)
+            {
+                throw new FSWriteError(e, partitionIndexFile.getPath());
+            }
+        }
+
+        /**
+         * Writes the remaining nodes of the partition index and syncs it, so that it can be opened.
+         */
+        void completePartitionIndex()
+        {
+            try
+            {
+                partitionIndex.complete();
+            }
+            catch (IOException e)
+            {
+                throw new FSWriteError(e, partitionIndexFile.getPath());
+            }
+            partitionIndexFile.sync();
+        }
+
+        PartitionIndex openPartitionIndex(Descriptor desc)
+        {
+            try
+            {
+                return PartitionIndex.load(desc);
+            }
+            catch (IOException e)
+            {
+                throw new FSReadError(e, desc.filenameFor(Component.PARTITION_INDEX));
+            }
+        }
+
+        /**
+         * Closes the index and bloomfilter, making the public state of this writer valid for consumption.
+         */
+        void flushBf()
+        {
+            if (components.contains(Component.FILTER))
+            {
+                String path = descriptor.filenameFor(Component.FILTER);
+                try (FileOutputStream fos = new FileOutputStream(path);
+                     DataOutputStreamPlus stream = new BufferedDataOutputStreamPlus(fos))
+                {
+                    // bloom filter
+                    FilterFactory.serialize(bf, stream);
+                    stream.flush();
+                    SyncUtil.sync(fos);
+                }
+                catch (IOException e)
+                {
+                    throw new FSWriteError(e, path);
+                }
+            }
+        }
+
+        public void mark()
+        {
+            mark = indexFile.mark();
+        }
+
+        public void resetAndTruncate()
+        {
+            // we can't un-set the bloom filter addition, but extra keys in there are harmless.
+            // the partition index entry is added last in append, so if that worked we won't be trying to reset.
+            indexFile.resetAndTruncate(mark);
+        }
+
+        protected void doPrepare()
+        {
+            flushBf();
+
+            // truncate index file
+            long position = indexFile.position();
+            indexFile.setDescriptor(descriptor).prepareToCommit();
+            FileUtils.truncate(indexFile.getPath(), position);
+
+            completePartitionIndex();
+            partitionIndexFile.setDescriptor(descriptor).prepareToCommit();
+        }
+
+        protected Throwable doCommit(Throwable accumulate)
+        {
+            accumulate = indexFile.commit(accumulate);
+            return partitionIndexFile.commit(accumulate);
+        }
+
+        protected Throwable doAbort(Throwable accumulate)
+        {
+            accumulate = indexFile.abort(accumulate);
+            return partitionIndexFile.abort(accumulate);
+        }
+
+        @Override
+        protected Throwable doPostCleanup(Throwable accumulate)
+        {
+            accumulate = bf.close(accumulate);
+            accumulate = builder.close(accumulate);
+            return accumulate;
+        }
+    }
+}
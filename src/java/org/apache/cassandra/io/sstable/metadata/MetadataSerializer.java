@@ -25,6 +25,7 @@ import com.google.common.collect.Maps;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.apache.cassandra.db.commitlog.ReplayPosition;
 import org.apache.cassandra.io.sstable.Component;
 import org.apache.cassandra.io.sstable.Descriptor;
 import org.apache.cassandra.io.sstable.format.Version;
@@ -147,6 +148,15 @@ public class MetadataSerializer implements IMetadataSerializer
         rewriteSSTableMetadata(descriptor, currentComponents);
     }
 
+    public void mutateReplayPosition(Descriptor descriptor, ReplayPosition newReplayPosition) throws IOException
+    {
+        logger.trace("Mutating {} to replay position {}", descriptor.filenameFor(Component.STATS), newReplayPosition);
+        Map<MetadataType, MetadataComponent> currentComponents = deserialize(descriptor, EnumSet.allOf(MetadataType.class));
+        StatsMetadata stats = (StatsMetadata) currentComponents.remove(MetadataType.STATS);
+        currentComponents.put(MetadataType.STATS, stats.mutateReplayPosition(newReplayPosition));
+        rewriteSSTableMetadata(descriptor, currentComponents);
+    }
+
     private void rewriteSSTableMetadata(Descriptor descriptor, Map<MetadataType, MetadataComponent> currentComponents) throws IOException
     {
         String filePath = descriptor.tmpFilenameFor(Component.STATS);
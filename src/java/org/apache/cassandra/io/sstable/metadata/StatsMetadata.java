@@ -171,6 +171,28 @@ public class StatsMetadata extends MetadataComponent
                                  totalRows);
     }
 
+    public StatsMetadata mutateReplayPosition(ReplayPosition newReplayPosition)
+    {
+        return new StatsMetadata(estimatedPartitionSize,
+                                 estimatedColumnCount,
+                                 newReplayPosition,
+                                 minTimestamp,
+                                 maxTimestamp,
+                                 minLocalDeletionTime,
+                                 maxLocalDeletionTime,
+                                 minTTL,
+                                 maxTTL,
+                                 compressionRatio,
+                                 estimatedTombstoneDropTime,
+                                 sstableLevel,
+                                 minClusteringValues,
+                                 maxClusteringValues,
+                                 hasLegacyCounterShards,
+                                 repairedAt,
+                                 totalColumnsSet,
+                                 totalRows);
+    }
+
     @Override
     public boolean equals(Object o)
     {
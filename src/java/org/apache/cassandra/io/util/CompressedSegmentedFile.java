@@ -22,6 +22,7 @@ import com.google.common.util.concurrent.RateLimiter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.cassandra.cache.ChunkCache;
 import org.apache.cassandra.config.Config;
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.io.compress.CompressedRandomAccessReader;
@@ -97,6 +98,7 @@ public class CompressedSegmentedFile extends SegmentedFile implements ICompresse
             }
 
             metadata.close();
+            ChunkCache.instance.invalidateFile(name());
 
             super.tidy();
         }
@@ -223,6 +223,18 @@ public abstract class SegmentedFile extends SharedCloseableImpl implements IChec
             return complete(desc.filenameFor(Component.PRIMARY_INDEX), bufferSize(desc, indexSummary), -1L);
         }
 
+        public SegmentedFile buildIndex(Descriptor desc, long keyCount)
+        {
+            File file = new File(desc.filenameFor(Component.PRIMARY_INDEX));
+            return complete(desc.filenameFor(Component.PRIMARY_INDEX), bufferSize(file.length() / Math.max(1, keyCount)), -1L);
+        }
+
+        public SegmentedFile buildPartitionIndex(Descriptor desc)
+        {
+            // the trie is walked node by node, so only read a page at a time
+            return complete(desc.filenameFor(Component.PARTITION_INDEX), RandomAccessReader.DEFAULT_BUFFER_SIZE, -1L);
+        }
+
         private static int bufferSize(StatsMetadata stats)
         {
             return bufferSize(stats.estimatedPartitionSize.percentile(DatabaseDescriptor.getDiskOptimizationEstimatePercentile()));
@@ -24,8 +24,9 @@ import java.net.UnknownHostException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
-import com.codahale.metrics.ExponentiallyDecayingReservoir;
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
 
@@ -33,16 +34,23 @@ import org.apache.cassandra.concurrent.ScheduledExecutors;
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.net.MessagingService;
 import org.apache.cassandra.service.StorageService;
+import org.apache.cassandra.utils.EstimatedHistogram;
 import org.apache.cassandra.utils.FBUtilities;
 
 
 /**
  * A dynamic snitch that sorts endpoints by latency with an adapted phi failure detector
+ *
+ * Each host is scored from an exponentially weighted moving average of the latencies of the read responses received
+ * from it and from the number of read requests it has not answered yet, which are both updated without locking as
+ * requests are sent and answered. Scoring an endpoint is thus a constant time lookup, and only the severities
+ * reported through gossip are refreshed on a timer.
  */
 public class DynamicEndpointSnitch extends AbstractEndpointSnitch implements ILatencySubscriber, DynamicEndpointSnitchMBean
 {
-    private static final double ALPHA = 0.75; // set to 0.75 to make EDS more biased to towards the newer values
-    private static final int WINDOW_SIZE = 100;
+    private static final double ALPHA = 0.25; // the weight of a new latency in the moving average of a host
+    // the minimum number of samples for the latency percentiles of a host to be used
+    private static final int MIN_LATENCY_SAMPLES = 10;
 
     private final int UPDATE_INTERVAL_IN_MS = DatabaseDescriptor.getDynamicUpdateInterval();
     private final int RESET_INTERVAL_IN_MS = DatabaseDescriptor.getDynamicResetInterval();
@@ -55,11 +63,50 @@ public class DynamicEndpointSnitch extends AbstractEndpointSnitch implements ILa
     private String mbeanName;
     private boolean registered = false;
 
-    private volatile HashMap<InetAddress, Double> scores = new HashMap<>();
-    private final ConcurrentHashMap<InetAddress, ExponentiallyDecayingReservoir> samples = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<InetAddress, Timing> timings = new ConcurrentHashMap<>();
 
     public final IEndpointSnitch subsnitch;
 
+    /**
+     * The latencies of the read requests to a host.
+     */
+    private static final class Timing
+    {
+        // the moving average, as the bits of a double, or -1 until a first latency is received
+        private final AtomicLong average = new AtomicLong(-1);
+        private final AtomicInteger inFlight = new AtomicInteger();
+        // for the percentiles used by speculative retries
+        private final EstimatedHistogram latencies = new EstimatedHistogram();
+        // "Severity" is basically a measure of compaction activity (CASSANDRA-3722), refreshed by updateSeverities
+        private volatile double severity;
+
+        private void update(long latency)
+        {
+            latencies.add(latency);
+            inFlight.getAndUpdate(n -> n > 0 ? n - 1 : 0);
+
+            while (true)
+            {
+                long current = average.get();
+                double next = current == -1 ? latency : Double.longBitsToDouble(current) + ALPHA * (latency - Double.longBitsToDouble(current));
+                if (average.compareAndSet(current, Double.doubleToRawLongBits(next)))
+                    return;
+            }
+        }
+
+        private double average()
+        {
+            long current = average.get();
+            return current == -1 ? 0 : Double.longBitsToDouble(current);
+        }
+
+        // lowest score (least amount of badness) wins
+        private double score()
+        {
+            return (1 + average()) * (1 + inFlight.get()) * (1 + severity);
+        }
+    }
+
     public DynamicEndpointSnitch(IEndpointSnitch snitch)
     {
         this(snitch, null);
@@ -74,7 +121,7 @@ public class DynamicEndpointSnitch extends AbstractEndpointSnitch implements ILa
         {
             public void run()
             {
-                updateScores();
+                updateSeverities();
             }
         };
         Runnable reset = new Runnable()
@@ -156,18 +203,35 @@ public class DynamicEndpointSnitch extends AbstractEndpointSnitch implements ILa
 
     private void sortByProximityWithScore(final InetAddress address, List<InetAddress> addresses)
     {
-        // Scores can change concurrently from a call to this method. But Collections.sort() expects
-        // its comparator to be "stable", that is 2 endpoint should compare the same way for the duration
-        // of the sort() call. As we copy the scores map on write, it is thus enough to alias the current
-        // version of it during this call.
-        final HashMap<InetAddress, Double> scores = this.scores;
-        Collections.sort(addresses, new Comparator<InetAddress>()
-        {
-            public int compare(InetAddress a1, InetAddress a2)
-            {
-                return compareEndpoints(address, a1, a2, scores);
-            }
+        if (addresses.size() < 2)
+            return;
+
+        // Scores can change concurrently from a call to this method. But Arrays.sort() expects its comparator
+        // to be "stable", that is 2 endpoint should compare the same way for the duration of the sort() call,
+        // so each endpoint is scored once beforehand.
+        ScoredEndpoint[] scored = new ScoredEndpoint[addresses.size()];
+        for (int i = 0; i < scored.length; i++)
+            scored[i] = new ScoredEndpoint(addresses.get(i), score(addresses.get(i)));
+
+        Arrays.sort(scored, (e1, e2) -> {
+            int cmp = Double.compare(e1.score, e2.score);
+            return cmp == 0 ? subsnitch.compareEndpoints(address, e1.endpoint, e2.endpoint) : cmp;
         });
+
+        for (int i = 0; i < scored.length; i++)
+            addresses.set(i, scored[i].endpoint);
+    }
+
+    private static final class ScoredEndpoint
+    {
+        private final InetAddress endpoint;
+        private final double score;
+
+        private ScoredEndpoint(InetAddress endpoint, double score)
+        {
+            this.endpoint = endpoint;
+            this.score = score;
+        }
     }
 
     private void sortByProximityWithBadness(final InetAddress address, List<InetAddress> addresses)
@@ -176,15 +240,13 @@ public class DynamicEndpointSnitch extends AbstractEndpointSnitch implements ILa
             return;
 
         subsnitch.sortByProximity(address, addresses);
-        HashMap<InetAddress, Double> scores = this.scores; // Make sure the score don't change in the middle of the loop below
-                                                           // (which wouldn't really matter here but its cleaner that way).
         ArrayList<Double> subsnitchOrderedScores = new ArrayList<>(addresses.size());
         for (InetAddress inet : addresses)
         {
-            Double score = scores.get(inet);
-            if (score == null)
+            Timing timing = timings.get(inet);
+            if (timing == null)
                 return;
-            subsnitchOrderedScores.add(score);
+            subsnitchOrderedScores.add(timing.score());
         }
 
         // Sort the scores and then compare them (positionally) to the scores in the subsnitch order.
@@ -204,30 +266,11 @@ public class DynamicEndpointSnitch extends AbstractEndpointSnitch implements ILa
         }
     }
 
-    // Compare endpoints given an immutable snapshot of the scores
-    private int compareEndpoints(InetAddress target, InetAddress a1, InetAddress a2, Map<InetAddress, Double> scores)
+    // hosts we haven't read from yet compare as the best ones
+    private double score(InetAddress endpoint)
     {
-        Double scored1 = scores.get(a1);
-        Double scored2 = scores.get(a2);
-        
-        if (scored1 == null)
-        {
-            scored1 = 0.0;
-            receiveTiming(a1, 0);
-        }
-
-        if (scored2 == null)
-        {
-            scored2 = 0.0;
-            receiveTiming(a2, 0);
-        }
-
-        if (scored1.equals(scored2))
-            return subsnitch.compareEndpoints(target, a1, a2);
-        if (scored1 < scored2)
-            return -1;
-        else
-            return 1;
+        Timing timing = timings.get(endpoint);
+        return timing == null ? 0.0 : timing.score();
     }
 
     public int compareEndpoints(InetAddress target, InetAddress a1, InetAddress a2)
@@ -240,18 +283,35 @@ public class DynamicEndpointSnitch extends AbstractEndpointSnitch implements ILa
 
     public void receiveTiming(InetAddress host, long latency) // this is cheap
     {
-        ExponentiallyDecayingReservoir sample = samples.get(host);
-        if (sample == null)
+        timing(host).update(latency);
+    }
+
+    @Override
+    public void requestSent(InetAddress host)
+    {
+        timing(host).inFlight.incrementAndGet();
+    }
+
+    @Override
+    public void requestFailed(InetAddress host)
+    {
+        timing(host).inFlight.getAndUpdate(n -> n > 0 ? n - 1 : 0);
+    }
+
+    private Timing timing(InetAddress host)
+    {
+        Timing timing = timings.get(host);
+        if (timing == null)
         {
-            ExponentiallyDecayingReservoir maybeNewSample = new ExponentiallyDecayingReservoir(WINDOW_SIZE, ALPHA);
-            sample = samples.putIfAbsent(host, maybeNewSample);
-            if (sample == null)
-                sample = maybeNewSample;
+            Timing maybeNewTiming = new Timing();
+            timing = timings.putIfAbsent(host, maybeNewTiming);
+            if (timing == null)
+                timing = maybeNewTiming;
         }
-        sample.update(latency);
+        return timing;
     }
 
-    private void updateScores() // this is expensive
+    private void updateSeverities()
     {
         if (!StorageService.instance.isInitialized()) 
             return;
@@ -264,36 +324,34 @@ public class DynamicEndpointSnitch extends AbstractEndpointSnitch implements ILa
             }
 
         }
-        double maxLatency = 1;
-        // We're going to weight the latency for each host against the worst one we see, to
-        // arrive at sort of a 'badness percentage' for them. First, find the worst for each:
-        HashMap<InetAddress, Double> newScores = new HashMap<>();
-        for (Map.Entry<InetAddress, ExponentiallyDecayingReservoir> entry : samples.entrySet())
-        {
-            double mean = entry.getValue().getSnapshot().getMedian();
-            if (mean > maxLatency)
-                maxLatency = mean;
-        }
-        // now make another pass to do the weighting based on the maximums we found before
-        for (Map.Entry<InetAddress, ExponentiallyDecayingReservoir> entry: samples.entrySet())
-        {
-            double score = entry.getValue().getSnapshot().getMedian() / maxLatency;
-            // finally, add the severity without any weighting, since hosts scale this relative to their own load and the size of the task causing the severity.
-            // "Severity" is basically a measure of compaction activity (CASSANDRA-3722).
-            score += StorageService.instance.getSeverity(entry.getKey());
-            // lowest score (least amount of badness) wins.
-            newScores.put(entry.getKey(), score);
-        }
-        scores = newScores;
+        for (Map.Entry<InetAddress, Timing> entry : timings.entrySet())
+            entry.getValue().severity = StorageService.instance.getSeverity(entry.getKey());
+    }
+
+    /**
+     * Returns the given quantile of the latencies received from a host since the last reset, or -1 if too few of them
+     * have been received.
+     */
+    public long getLatencyPercentileNanos(InetAddress host, double quantile)
+    {
+        Timing timing = timings.get(host);
+        if (timing == null || timing.latencies.count() < MIN_LATENCY_SAMPLES || timing.latencies.isOverflowed())
+            return -1;
+
+        // the latencies are sampled in milliseconds, truncated
+        return TimeUnit.MILLISECONDS.toNanos(timing.latencies.percentile(quantile) + 1);
     }
 
     private void reset()
     {
-       samples.clear();
+       timings.clear();
     }
 
     public Map<InetAddress, Double> getScores()
     {
+        HashMap<InetAddress, Double> scores = new HashMap<>();
+        for (Map.Entry<InetAddress, Timing> entry : timings.entrySet())
+            scores.put(entry.getKey(), entry.getValue().score());
         return scores;
     }
 
@@ -318,14 +376,10 @@ public class DynamicEndpointSnitch extends AbstractEndpointSnitch implements ILa
     public List<Double> dumpTimings(String hostname) throws UnknownHostException
     {
         InetAddress host = InetAddress.getByName(hostname);
-        ArrayList<Double> timings = new ArrayList<Double>();
-        ExponentiallyDecayingReservoir sample = samples.get(host);
-        if (sample != null)
-        {
-            for (double time: sample.getSnapshot().getValues())
-                timings.add(time);
-        }
-        return timings;
+        Timing timing = timings.get(host);
+        if (timing == null)
+            return Collections.emptyList();
+        return Arrays.asList(timing.average(), (double) timing.inFlight.get());
     }
 
     public void setSeverity(double severity)
@@ -363,10 +417,11 @@ public class DynamicEndpointSnitch extends AbstractEndpointSnitch implements ILa
         double maxScore = -1.0;
         for (InetAddress endpoint : endpoints)
         {
-            Double score = scores.get(endpoint);
-            if (score == null)
+            Timing timing = timings.get(endpoint);
+            if (timing == null)
                 continue;
 
+            double score = timing.score();
             if (score > maxScore)
                 maxScore = score;
         }
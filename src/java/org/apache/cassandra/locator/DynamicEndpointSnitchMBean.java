@@ -28,6 +28,10 @@ public interface DynamicEndpointSnitchMBean {
     public int getResetInterval();
     public double getBadnessThreshold();
     public String getSubsnitchClassName();
+    /**
+     * Returns the moving average of the read latencies of a host, in milliseconds, and its number of read requests
+     * in flight.
+     */
     public List<Double> dumpTimings(String hostname) throws UnknownHostException;
     /**
      * Use this if you want to specify a severity; it can be negative
@@ -22,4 +22,18 @@ import java.net.InetAddress;
 public interface ILatencySubscriber
 {
     public void receiveTiming(InetAddress address, long latency);
+
+    /**
+     * Called when a request whose latency will be reported is sent to the given address.
+     */
+    default void requestSent(InetAddress address)
+    {
+    }
+
+    /**
+     * Called when a request sent to the given address got a failure response, so no latency will be reported for it.
+     */
+    default void requestFailed(InetAddress address)
+    {
+    }
 }
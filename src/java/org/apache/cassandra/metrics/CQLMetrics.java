@@ -19,6 +19,7 @@ package org.apache.cassandra.metrics;
 
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.RatioGauge;
 import org.apache.cassandra.cql3.QueryProcessor;
 
@@ -31,15 +32,24 @@ public class CQLMetrics
     public final Counter regularStatementsExecuted;
     public final Counter preparedStatementsExecuted;
     public final Counter preparedStatementsEvicted;
+    public final Counter preparedStatementsReloaded;
+
+    public final Meter preparedStatementsHits;
+    public final Meter preparedStatementsMisses;
 
     public final Gauge<Integer> preparedStatementsCount;
     public final Gauge<Double> preparedStatementsRatio;
+    public final Gauge<Double> preparedStatementsHitRate;
 
     public CQLMetrics()
     {
         regularStatementsExecuted = Metrics.counter(factory.createMetricName("RegularStatementsExecuted"));
         preparedStatementsExecuted = Metrics.counter(factory.createMetricName("PreparedStatementsExecuted"));
         preparedStatementsEvicted = Metrics.counter(factory.createMetricName("PreparedStatementsEvicted"));
+        preparedStatementsReloaded = Metrics.counter(factory.createMetricName("PreparedStatementsReloaded"));
+
+        preparedStatementsHits = Metrics.meter(factory.createMetricName("PreparedStatementsHits"));
+        preparedStatementsMisses = Metrics.meter(factory.createMetricName("PreparedStatementsMisses"));
 
         preparedStatementsCount = Metrics.register(factory.createMetricName("PreparedStatementsCount"), new Gauge<Integer>()
         {
@@ -65,5 +75,13 @@ public class CQLMetrics
                 return regularStatementsExecuted.getCount() + preparedStatementsExecuted.getCount();
             }
         });
+        preparedStatementsHitRate = Metrics.register(factory.createMetricName("PreparedStatementsHitRate"), new RatioGauge()
+        {
+            public Ratio getRatio()
+            {
+                return Ratio.of(preparedStatementsHits.getFifteenMinuteRate(),
+                                preparedStatementsHits.getFifteenMinuteRate() + preparedStatementsMisses.getFifteenMinuteRate());
+            }
+        });
     }
 }
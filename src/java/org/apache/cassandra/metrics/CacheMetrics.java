@@ -22,12 +22,12 @@ import java.util.concurrent.atomic.AtomicLong;
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.RatioGauge;
-import org.apache.cassandra.cache.ICache;
+import org.apache.cassandra.cache.CacheSize;
 
 import static org.apache.cassandra.metrics.CassandraMetricsRegistry.Metrics;
 
 /**
- * Metrics for {@code ICache}.
+ * Metrics for {@code ICache} and the other caches measured by their {@code CacheSize}.
  */
 public class CacheMetrics
 {
@@ -35,6 +35,8 @@ public class CacheMetrics
     public final Gauge<Long> capacity;
     /** Total number of cache hits */
     public final Meter hits;
+    /** Total number of cache misses */
+    public final Meter misses;
     /** Total number of cache requests */
     public final Meter requests;
     /** all time cache hit rate */
@@ -50,15 +52,17 @@ public class CacheMetrics
     /** Total number of cache entries */
     public final Gauge<Integer> entries;
 
+    protected final MetricNameFactory factory;
+
     /**
      * Create metrics for given cache.
      *
      * @param type Type of Cache to identify metrics.
      * @param cache Cache to measure metrics
      */
-    public CacheMetrics(String type, final ICache cache)
+    public CacheMetrics(String type, final CacheSize cache)
     {
-        MetricNameFactory factory = new DefaultNameFactory("Cache", type);
+        factory = new DefaultNameFactory("Cache", type);
 
         capacity = Metrics.register(factory.createMetricName("Capacity"), new Gauge<Long>()
         {
@@ -68,6 +72,7 @@ public class CacheMetrics
             }
         });
         hits = Metrics.meter(factory.createMetricName("Hits"));
+        misses = Metrics.meter(factory.createMetricName("Misses"));
         requests = Metrics.meter(factory.createMetricName("Requests"));
         hitRate = Metrics.register(factory.createMetricName("HitRate"), new RatioGauge()
         {
@@ -20,7 +20,10 @@ package org.apache.cassandra.metrics;
 
 import java.util.concurrent.Callable;
 
+import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
 
 import static org.apache.cassandra.metrics.CassandraMetricsRegistry.Metrics;
 
@@ -30,9 +33,22 @@ public class ClientMetrics
     private static final MetricNameFactory factory = new DefaultNameFactory("Client");
     
     public static final ClientMetrics instance = new ClientMetrics();
+
+    /** Number of native protocol requests read from a connection at once and dispatched together, over all connections */
+    public final Histogram requestBatchSize;
+    /** Size in bytes of the native protocol requests read but not answered yet */
+    public final Counter inflightRequestBytes;
+    /** Number of native connections not reading because a limit on in-flight request bytes is exceeded */
+    public final Counter pausedConnections;
+    /** Requests answered with an OVERLOADED error because a limit on in-flight request bytes was exceeded */
+    public final Meter overloadedRequests;
     
     private ClientMetrics()
     {
+        requestBatchSize = Metrics.histogram(factory.createMetricName("requestBatchSize"));
+        inflightRequestBytes = Metrics.counter(factory.createMetricName("inflightRequestBytes"));
+        pausedConnections = Metrics.counter(factory.createMetricName("pausedConnections"));
+        overloadedRequests = Metrics.meter(factory.createMetricName("overloadedRequests"));
     }
 
     public void addCounter(String name, final Callable<Integer> provider)
@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.metrics;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+
+import static org.apache.cassandra.metrics.CassandraMetricsRegistry.Metrics;
+
+/**
+ * Metrics for range scans, recorded once per query by the coordinator.
+ */
+public class ClientRangeRequestMetrics extends ClientRequestMetrics
+{
+    /** Number of sub-range requests sent for a query */
+    public final Histogram subRangeRequests;
+    /** Maximum number of sub-range requests in flight at once for a query */
+    public final Histogram concurrency;
+    /** Number of live rows returned by a query, before the global limit is applied */
+    public final Histogram rows;
+    /** Number of times the client had to wait for a sub-range response that was already sent */
+    public final Meter stalls;
+
+    public ClientRangeRequestMetrics(String scope)
+    {
+        super(scope);
+        subRangeRequests = Metrics.histogram(factory.createMetricName("SubRangeRequests"));
+        concurrency = Metrics.histogram(factory.createMetricName("Concurrency"));
+        rows = Metrics.histogram(factory.createMetricName("Rows"));
+        stalls = Metrics.meter(factory.createMetricName("Stalls"));
+    }
+
+    public void release()
+    {
+        super.release();
+        Metrics.remove(factory.createMetricName("SubRangeRequests"));
+        Metrics.remove(factory.createMetricName("Concurrency"));
+        Metrics.remove(factory.createMetricName("Rows"));
+        Metrics.remove(factory.createMetricName("Stalls"));
+    }
+}
@@ -19,9 +19,11 @@ package org.apache.cassandra.metrics;
 
 
 import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.Timer;
 import org.apache.cassandra.db.commitlog.AbstractCommitLogService;
-import org.apache.cassandra.db.commitlog.CommitLogSegmentManager;
+import org.apache.cassandra.db.commitlog.CommitLog;
 
 import static org.apache.cassandra.metrics.CassandraMetricsRegistry.Metrics;
 
@@ -42,14 +44,26 @@ public class CommitLogMetrics
     public final Timer waitingOnSegmentAllocation;
     /** The time spent waiting on CL sync; for Periodic this is only occurs when the sync is lagging its sync interval */
     public final Timer waitingOnCommit;
+    /** Time spent syncing the commit log segments to disk, for each sync with new writes to sync */
+    public final Timer syncLatency;
+    /** Number of writes made durable by each sync */
+    public final Histogram syncGroupSize;
+    /** Size of the commit log segments replayed at startup */
+    public final Meter replayedBytes;
+    /** Mutations applied by the replay of the commit log at startup */
+    public final Meter replayedMutations;
     
     public CommitLogMetrics()
     {
         waitingOnSegmentAllocation = Metrics.timer(factory.createMetricName("WaitingOnSegmentAllocation"));
         waitingOnCommit = Metrics.timer(factory.createMetricName("WaitingOnCommit"));
+        syncLatency = Metrics.timer(factory.createMetricName("SyncLatency"));
+        syncGroupSize = Metrics.histogram(factory.createMetricName("SyncGroupSize"));
+        replayedBytes = Metrics.meter(factory.createMetricName("ReplayedBytes"));
+        replayedMutations = Metrics.meter(factory.createMetricName("ReplayedMutations"));
     }
 
-    public void attach(final AbstractCommitLogService service, final CommitLogSegmentManager allocator)
+    public void attach(final AbstractCommitLogService service, final CommitLog commitLog)
     {
         completedTasks = Metrics.register(factory.createMetricName("CompletedTasks"), new Gauge<Long>()
         {
@@ -69,7 +83,7 @@ public class CommitLogMetrics
         {
             public Long getValue()
             {
-                return allocator.onDiskSize();
+                return commitLog.getActiveOnDiskSize();
             }
         });
     }
@@ -26,6 +26,7 @@ import com.codahale.metrics.*;
 import com.codahale.metrics.Timer;
 import com.google.common.collect.Maps;
 import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.Directories;
 import org.apache.cassandra.db.Keyspace;
 import org.apache.cassandra.db.Memtable;
 import org.apache.cassandra.db.lifecycle.SSTableSet;
@@ -146,6 +147,11 @@ public class TableMetrics
 
     public final Counter speculativeRetries;
 
+    /** Bytes written by memtable flushes to each data directory of the table */
+    public final Map<Directories.DataDirectory, Meter> flushedBytesPerDataDirectory;
+    /** Flush throughput to each data directory of the table, in bytes per second over the last minute */
+    public final Map<Directories.DataDirectory, Gauge<Double>> flushThroughputPerDataDirectory;
+
     public final static LatencyMetrics globalReadLatency = new LatencyMetrics(globalFactory, globalAliasFactory, "Read");
     public final static LatencyMetrics globalWriteLatency = new LatencyMetrics(globalFactory, globalAliasFactory, "Write");
     public final static LatencyMetrics globalRangeLatency = new LatencyMetrics(globalFactory, globalAliasFactory, "Range");
@@ -644,6 +650,46 @@ public class TableMetrics
         casPrepare = new LatencyMetrics(factory, "CasPrepare", cfs.keyspace.metric.casPrepare);
         casPropose = new LatencyMetrics(factory, "CasPropose", cfs.keyspace.metric.casPropose);
         casCommit = new LatencyMetrics(factory, "CasCommit", cfs.keyspace.metric.casCommit);
+
+        Directories.DataDirectory[] dataDirectories = cfs.getDirectories().getDataDirectories();
+        flushedBytesPerDataDirectory = new HashMap<>(dataDirectories.length);
+        flushThroughputPerDataDirectory = new HashMap<>(dataDirectories.length);
+        for (int i = 0; i < dataDirectories.length; i++)
+        {
+            String name = flushedBytesMetricName(i);
+            Meter flushedBytes = Metrics.meter(factory.createMetricName(name), aliasFactory.createMetricName(name));
+            flushedBytesPerDataDirectory.put(dataDirectories[i], flushedBytes);
+            name = flushThroughputMetricName(i);
+            flushThroughputPerDataDirectory.put(dataDirectories[i], Metrics.register(factory.createMetricName(name),
+                                                                                     aliasFactory.createMetricName(name),
+                                                                                     new Gauge<Double>()
+                                                                                     {
+                                                                                         public Double getValue()
+                                                                                         {
+                                                                                             return flushedBytes.getOneMinuteRate();
+                                                                                         }
+                                                                                     }));
+        }
+    }
+
+    private static String flushedBytesMetricName(int dataDirectoryIndex)
+    {
+        return "FlushedBytesDataDirectory" + dataDirectoryIndex;
+    }
+
+    private static String flushThroughputMetricName(int dataDirectoryIndex)
+    {
+        return "FlushThroughputDataDirectory" + dataDirectoryIndex;
+    }
+
+    /**
+     * Records that a flush wrote {@code bytes} to {@code dataDirectory}.
+     */
+    public void updateFlushedBytes(Directories.DataDirectory dataDirectory, long bytes)
+    {
+        Meter meter = flushedBytesPerDataDirectory.get(dataDirectory);
+        if (meter != null)
+            meter.mark(bytes);
     }
 
     public void updateSSTableIterated(int count)
@@ -673,6 +719,11 @@ public class TableMetrics
         Metrics.remove(factory.createMetricName("CoordinatorReadLatency"), aliasFactory.createMetricName("CoordinatorReadLatency"));
         Metrics.remove(factory.createMetricName("CoordinatorScanLatency"), aliasFactory.createMetricName("CoordinatorScanLatency"));
         Metrics.remove(factory.createMetricName("WaitingOnFreeMemtableSpace"), aliasFactory.createMetricName("WaitingOnFreeMemtableSpace"));
+        for (int i = 0; i < flushedBytesPerDataDirectory.size(); i++)
+        {
+            Metrics.remove(factory.createMetricName(flushedBytesMetricName(i)), aliasFactory.createMetricName(flushedBytesMetricName(i)));
+            Metrics.remove(factory.createMetricName(flushThroughputMetricName(i)), aliasFactory.createMetricName(flushThroughputMetricName(i)));
+        }
     }
 
 
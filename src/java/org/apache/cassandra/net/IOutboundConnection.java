@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.net;
+
+/**
+ * A connection to a peer that delivers the messages enqueued to it in order.
+ *
+ * Implemented with a dedicated thread and blocking socket by {@link OutboundTcpConnection}, and on the
+ * shared internode event loops by {@link OutboundNettyConnection}. Both use the same handshake and framing.
+ */
+public interface IOutboundConnection
+{
+    public void start();
+
+    public void enqueue(MessageOut<?> message, int id);
+
+    /**
+     * Drops the pending messages and closes the connection. It will be reopened for the next message unless
+     * {@code destroy} is set.
+     */
+    public void closeSocket(boolean destroy);
+
+    /**
+     * Closes the connection once the messages enqueued so far are sent. It will be reopened for the next message.
+     */
+    public void softCloseSocket();
+
+    public int getTargetVersion();
+
+    public int getPendingMessages();
+
+    public long getCompletedMesssages();
+
+    public long getDroppedMessages();
+}
@@ -0,0 +1,292 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.net;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.List;
+import java.util.Set;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.jpountz.lz4.LZ4BlockInputStream;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.xxhash.XXHashFactory;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.UnknownColumnFamilyException;
+import org.apache.cassandra.io.util.DataInputBuffer;
+
+/**
+ * An incoming messaging connection handled on the shared internode event loops (see
+ * {@link MessagingService#eventLoopGroup()}) instead of a dedicated thread like {@link IncomingTcpConnection}.
+ *
+ * The accept thread reads the connection header and hands the socket over. We then reply with our version, read
+ * the version and address of the peer, and decode each message once all its bytes are received. The length of a
+ * message is found from its header without deserializing it, so a message is only deserialized once.
+ */
+public class IncomingNettyConnection extends ByteToMessageDecoder implements Closeable
+{
+    private static final Logger logger = LoggerFactory.getLogger(IncomingNettyConnection.class);
+
+    // the magic, the id and the timestamp preceding every message
+    private static final int MESSAGE_PREFIX_SIZE = 12;
+
+    private final Channel channel;
+    private final int version;
+    private final Set<Closeable> group;
+
+    private IncomingNettyConnection(Channel channel, int version, Set<Closeable> group)
+    {
+        this.channel = channel;
+        this.version = version;
+        this.group = group;
+    }
+
+    /**
+     * Registers an accepted messaging connection, whose header was already read, with the internode event loops.
+     */
+    static void register(Socket socket, int version, boolean compressed, Set<Closeable> group) throws IOException
+    {
+        if (DatabaseDescriptor.getInternodeRecvBufferSize() != null)
+        {
+            try
+            {
+                socket.setReceiveBufferSize(DatabaseDescriptor.getInternodeRecvBufferSize());
+            }
+            catch (SocketException se)
+            {
+                logger.warn("Failed to set receive buffer size on internode socket.", se);
+            }
+        }
+
+        NioSocketChannel channel = new NioSocketChannel(socket.getChannel());
+        IncomingNettyConnection connection = new IncomingNettyConnection(channel, version, group);
+        channel.pipeline().addLast("handshake", new Handshake(version, compressed));
+        channel.pipeline().addLast("messages", connection);
+        group.add(connection);
+        MessagingService.eventLoopGroup().register(channel);
+    }
+
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception
+    {
+        int length;
+        while ((length = messageLength(in)) >= 0)
+        {
+            DataInputBuffer input = new DataInputBuffer(in.readSlice(length).nioBuffer(), false);
+            MessagingService.validateMagic(input.readInt());
+            IncomingTcpConnection.receiveMessage(input, version);
+        }
+    }
+
+    /**
+     * @return the serialized length of the message at the reader index of the buffer, or -1 if the buffer doesn't
+     * hold it entirely. See {@link OutboundTcpConnection#writeMessage} and {@link MessageOut#serialize}.
+     */
+    static int messageLength(ByteBuf in)
+    {
+        int start = in.readerIndex();
+        long end = in.writerIndex();
+        long position = start + MESSAGE_PREFIX_SIZE;
+
+        // the address of the sender
+        if (position + 1 > end)
+            return -1;
+        position += 1 + in.getByte((int) position);
+
+        // the verb, then the parameters
+        if (position + 8 > end)
+            return -1;
+        int parameterCount = in.getInt((int) position + 4);
+        position += 8;
+        for (int i = 0; i < parameterCount; i++)
+        {
+            if (position + 2 > end)
+                return -1;
+            position += 2 + in.getUnsignedShort((int) position);
+            if (position + 4 > end)
+                return -1;
+            position += 4 + in.getInt((int) position);
+        }
+
+        // the payload
+        if (position + 4 > end)
+            return -1;
+        position += 4 + in.getInt((int) position);
+        return position > end ? -1 : (int) (position - start);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception
+    {
+        group.remove(this);
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause)
+    {
+        Throwable t = cause.getCause() != null ? cause.getCause() : cause;
+        if (t instanceof UnknownColumnFamilyException)
+            logger.warn("UnknownColumnFamilyException reading from socket; closing", t);
+        else
+            logger.trace("Exception reading from socket; closing", t);
+        ctx.close();
+    }
+
+    public void close()
+    {
+        channel.close();
+    }
+
+    /**
+     * Exchanges the versions with the peer, then hands the rest of the stream over to the next handler, through a
+     * {@link LZ4BlockDecoder} if the connection is compressed.
+     */
+    private static class Handshake extends ByteToMessageDecoder
+    {
+        private final int version;
+        private final boolean compressed;
+
+        Handshake(int version, boolean compressed)
+        {
+            this.version = version;
+            this.compressed = compressed;
+        }
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) throws Exception
+        {
+            // handshake (true) endpoint versions
+            // if this version is < the MS version the other node is trying
+            // to connect with, the other node will disconnect
+            ctx.writeAndFlush(ctx.alloc().buffer(4).writeInt(MessagingService.current_version));
+            super.channelActive(ctx);
+        }
+
+        protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception
+        {
+            // the version of the peer, then its address preceded by the length of the address
+            if (in.readableBytes() < 5 || in.readableBytes() < 5 + in.getByte(in.readerIndex() + 4))
+                return;
+
+            int maxVersion = in.readInt();
+            // outbound side will reconnect if necessary to upgrade version
+            assert version <= MessagingService.current_version;
+            InetAddress from = CompactEndpointSerializationHelper.deserialize(new ByteBufInputStream(in));
+            // record the (true) version of the endpoint
+            MessagingService.instance().setVersion(from, maxVersion);
+            logger.trace("Set version for {} to {} (will use {})", from, maxVersion, MessagingService.instance().getVersion(from));
+
+            // the bytes received after the handshake are passed on to the replacing handler
+            if (compressed)
+            {
+                logger.trace("Upgrading incoming connection to be compressed");
+                ctx.pipeline().replace(this, "decompressor", new LZ4BlockDecoder());
+            }
+            else
+            {
+                ctx.pipeline().remove(this);
+            }
+        }
+    }
+
+    /**
+     * Decompresses the blocks written by the {@link net.jpountz.lz4.LZ4BlockOutputStream} of the peer, one complete
+     * block at a time, so that decompressing never waits for more bytes.
+     */
+    private static class LZ4BlockDecoder extends ByteToMessageDecoder
+    {
+        // the magic, the token, then the compressed length, the decompressed length and the checksum of the block
+        private static final int HEADER_LENGTH = 21;
+        private static final int COMPRESSED_LENGTH_OFFSET = 9;
+        private static final int DECOMPRESSED_LENGTH_OFFSET = 13;
+
+        private final BlockInputStream block = new BlockInputStream();
+        private final LZ4BlockInputStream decompressed;
+
+        LZ4BlockDecoder()
+        {
+            decompressed = new LZ4BlockInputStream(block,
+                                                   LZ4Factory.fastestInstance().fastDecompressor(),
+                                                   XXHashFactory.fastestInstance().newStreamingHash32(OutboundTcpConnection.LZ4_HASH_SEED).asChecksum());
+        }
+
+        protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception
+        {
+            while (in.readableBytes() >= HEADER_LENGTH)
+            {
+                // the lengths are little-endian
+                int compressedLength = Integer.reverseBytes(in.getInt(in.readerIndex() + COMPRESSED_LENGTH_OFFSET));
+                int decompressedLength = Integer.reverseBytes(in.getInt(in.readerIndex() + DECOMPRESSED_LENGTH_OFFSET));
+                if (in.readableBytes() < HEADER_LENGTH + compressedLength)
+                    return;
+
+                block.buffer = in.readSlice(HEADER_LENGTH + compressedLength);
+                if (decompressedLength == 0)
+                    continue; // the end of the stream
+
+                ByteBuf buffer = ctx.alloc().heapBuffer(decompressedLength);
+                try
+                {
+                    while (buffer.writerIndex() < decompressedLength)
+                    {
+                        if (buffer.writeBytes(decompressed, decompressedLength - buffer.writerIndex()) < 0)
+                            throw new IOException("Stream is corrupted");
+                    }
+                }
+                catch (Throwable t)
+                {
+                    buffer.release();
+                    throw t;
+                }
+                out.add(buffer);
+            }
+        }
+    }
+
+    private static class BlockInputStream extends InputStream
+    {
+        private ByteBuf buffer;
+
+        public int read()
+        {
+            return buffer.isReadable() ? buffer.readUnsignedByte() : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len)
+        {
+            if (!buffer.isReadable())
+                return -1;
+            len = Math.min(len, buffer.readableBytes());
+            buffer.readBytes(b, off, len);
+            return len;
+        }
+    }
+}
@@ -178,7 +178,7 @@ public class IncomingTcpConnection extends Thread implements Closeable
     }
 
     //对应OutboundTcpConnection.writeInternal(MessageOut, int)
-    private InetAddress receiveMessage(DataInputPlus input, int version) throws IOException
+    static InetAddress receiveMessage(DataInputPlus input, int version) throws IOException
     {
         int id;
         if (version < MessagingService.VERSION_20)
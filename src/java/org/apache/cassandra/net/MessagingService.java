@@ -37,13 +37,17 @@ import com.google.common.base.Function;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
 import org.cliffc.high_scale_lib.NonBlockingHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.apache.cassandra.concurrent.NamedThreadFactory;
 import org.apache.cassandra.concurrent.ScheduledExecutors;
 import org.apache.cassandra.concurrent.Stage;
 import org.apache.cassandra.concurrent.StageManager;
 import org.apache.cassandra.concurrent.TracingAwareExecutorService;
+import org.apache.cassandra.config.Config;
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.config.EncryptionOptions.ServerEncryptionOptions;
 import org.apache.cassandra.db.*;
@@ -301,6 +305,9 @@ public final class MessagingService implements MessagingServiceMBean
     private static final int LOG_DROPPED_INTERVAL_IN_MS = 5000;
 
     private final List<SocketThread> socketThreads = Lists.newArrayList();
+
+    // the event loops of the netty internode connections, created on first use
+    private static volatile EventLoopGroup eventLoopGroup;
     private final SimpleCondition listenGate;
 
     /**
@@ -458,6 +465,15 @@ public final class MessagingService implements MessagingServiceMBean
             subscriber.receiveTiming(address, latency);
     }
 
+    public void maybeAddFailure(IAsyncCallback cb, InetAddress address)
+    {
+        if (cb.isLatencyForSnitch())
+        {
+            for (ILatencySubscriber subscriber : subscribers)
+                subscriber.requestFailed(address);
+        }
+    }
+
     /**
      * called from gossiper when it notices a node is not responding.
      */
@@ -551,6 +567,22 @@ public final class MessagingService implements MessagingServiceMBean
         return ss;
     }
 
+    /**
+     * @return the event loops shared by all the internode connections using netty
+     */
+    static EventLoopGroup eventLoopGroup()
+    {
+        if (eventLoopGroup == null)
+        {
+            synchronized (MessagingService.class)
+            {
+                if (eventLoopGroup == null)
+                    eventLoopGroup = new NioEventLoopGroup(0, new NamedThreadFactory("MessagingService-Netty"));
+            }
+        }
+        return eventLoopGroup;
+    }
+
     public void waitUntilListening()
     {
         try
@@ -594,7 +626,7 @@ public final class MessagingService implements MessagingServiceMBean
     }
 
 
-    public OutboundTcpConnection getConnection(InetAddress to, MessageOut msg)
+    public IOutboundConnection getConnection(InetAddress to, MessageOut msg)
     {
         return getConnectionPool(to).getConnection(msg);
     }
@@ -631,6 +663,11 @@ public final class MessagingService implements MessagingServiceMBean
         int messageId = nextId();
         CallbackInfo previous = callbacks.put(messageId, new CallbackInfo(to, cb, callbackDeserializers.get(message.verb), failureCallback), timeout);
         assert previous == null : String.format("Callback already exists for id %d! (%s)", messageId, previous);
+        if (cb.isLatencyForSnitch())
+        {
+            for (ILatencySubscriber subscriber : subscribers)
+                subscriber.requestSent(to);
+        }
         return messageId;
     }
 
@@ -754,7 +791,7 @@ public final class MessagingService implements MessagingServiceMBean
                 return;
 
         // get pooled connection (really, connection queue)
-        OutboundTcpConnection connection = getConnection(to, message);
+        IOutboundConnection connection = getConnection(to, message);
 
         // write it
         connection.enqueue(message, id);
@@ -1037,9 +1074,20 @@ public final class MessagingService implements MessagingServiceMBean
                     logger.trace("Connection version {} from {}", version, socket.getInetAddress());
                     socket.setSoTimeout(0);
 
+                    boolean compressed = MessagingService.getBits(header, 2, 1) == 1;
+                    // SSL sockets have no channel, and are only supported by the blocking implementation
+                    if (!isStream
+                        && DatabaseDescriptor.getInternodeTransport() == Config.InternodeTransport.netty
+                        && socket.getChannel() != null
+                        && version >= VERSION_21)
+                    {
+                        IncomingNettyConnection.register(socket, version, compressed, connections);
+                        continue;
+                    }
+
                     Thread thread = isStream
                                   ? new IncomingStreamingConnection(version, socket, connections)
-                                  : new IncomingTcpConnection(version, MessagingService.getBits(header, 2, 1) == 1, socket, connections);
+                                  : new IncomingTcpConnection(version, compressed, socket, connections);
                     thread.start();
                     connections.add((Closeable) thread);
                 }
@@ -0,0 +1,538 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.net;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Checksum;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.util.concurrent.ScheduledFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.jpountz.lz4.LZ4BlockOutputStream;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.xxhash.XXHashFactory;
+import org.apache.cassandra.config.Config;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.TypeSizes;
+import org.apache.cassandra.io.util.DataOutputBufferFixed;
+import org.apache.cassandra.io.util.DataOutputStreamPlus;
+import org.apache.cassandra.io.util.WrappedDataOutputStreamPlus;
+import org.apache.cassandra.utils.FBUtilities;
+import org.apache.cassandra.utils.JVMStabilityInspector;
+import org.apache.cassandra.utils.NanoTimeToCurrentTimeMillis;
+import org.xerial.snappy.SnappyOutputStream;
+
+import static org.apache.cassandra.net.OutboundTcpConnection.CLOSE_SENTINEL;
+import static org.apache.cassandra.net.OutboundTcpConnection.QueuedMessage;
+import static org.apache.cassandra.net.OutboundTcpConnection.RetriedQueuedMessage;
+
+/**
+ * A connection to a peer multiplexed on the shared internode event loops (see {@link MessagingService#eventLoopGroup()})
+ * instead of owning a thread like {@link OutboundTcpConnection}, with which it shares the handshake and the framing.
+ *
+ * Messages are queued by the sending threads and written by the event loop of the channel, which drains the queue
+ * and flushes once per batch. The queue is only drained while the channel is writable, so when the peer or the
+ * network can't keep up the messages wait here, where the droppable ones expire, instead of in netty's buffers.
+ */
+public class OutboundNettyConnection implements IOutboundConnection
+{
+    private static final Logger logger = LoggerFactory.getLogger(OutboundNettyConnection.class);
+
+    private static final int WRITE_BUFFER_HIGH_WATER_MARK = Integer.getInteger(Config.PROPERTY_PREFIX + "otc_high_water_mark", 1 << 20);
+    private static final int WRITE_BUFFER_LOW_WATER_MARK = Integer.getInteger(Config.PROPERTY_PREFIX + "otc_low_water_mark", 1 << 18);
+
+    private final OutboundTcpConnectionPool poolReference;
+
+    private final Queue<QueuedMessage> backlog = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger backlogSize = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicBoolean connecting = new AtomicBoolean();
+
+    // the connection messages are written to, once its handshake completed
+    private volatile Connection connection;
+    private volatile boolean isStopped = false;
+    private volatile int targetVersion = MessagingService.current_version;
+    private volatile long completed;
+    private final AtomicLong dropped = new AtomicLong();
+
+    public OutboundNettyConnection(OutboundTcpConnectionPool pool)
+    {
+        this.poolReference = pool;
+    }
+
+    public void start()
+    {
+        // connections are opened on demand
+    }
+
+    public void enqueue(MessageOut<?> message, int id)
+    {
+        if (backlogSize.get() > 1024)
+            expireMessages();
+
+        backlog.add(new QueuedMessage(message, id));
+        backlogSize.incrementAndGet();
+
+        Connection current = connection;
+        if (current != null)
+            scheduleFlush(current);
+        else
+            connect();
+    }
+
+    public void closeSocket(boolean destroy)
+    {
+        clearBacklog();
+        isStopped = destroy;
+        Connection current = connection;
+        if (current != null)
+            current.close();
+    }
+
+    public void softCloseSocket()
+    {
+        // a connection being opened will already use the latest version
+        Connection current = connection;
+        if (current != null)
+        {
+            backlog.add(new QueuedMessage(CLOSE_SENTINEL, -1));
+            backlogSize.incrementAndGet();
+            scheduleFlush(current);
+        }
+    }
+
+    public int getTargetVersion()
+    {
+        return targetVersion;
+    }
+
+    public int getPendingMessages()
+    {
+        return backlogSize.get();
+    }
+
+    public long getCompletedMesssages()
+    {
+        return completed;
+    }
+
+    public long getDroppedMessages()
+    {
+        return dropped.get();
+    }
+
+    private void scheduleFlush(final Connection current)
+    {
+        if (flushScheduled.compareAndSet(false, true))
+            current.channel.eventLoop().execute(() -> flush(current));
+    }
+
+    /**
+     * Writes the queued messages while the channel accepts them, then flushes them at once. Runs on the event loop
+     * of the channel.
+     */
+    private void flush(Connection current)
+    {
+        flushScheduled.set(false);
+        if (current != connection)
+            return;
+
+        boolean written = false;
+        QueuedMessage qm;
+        while (current.channel.isWritable() && (qm = backlog.poll()) != null)
+        {
+            backlogSize.decrementAndGet();
+            if (qm.message == CLOSE_SENTINEL)
+            {
+                if (written)
+                    current.flush();
+                current.close();
+                return;
+            }
+
+            if (qm.isTimedOut(TimeUnit.MILLISECONDS.toNanos(qm.message.getTimeout()), System.nanoTime()))
+            {
+                dropped.incrementAndGet();
+                continue;
+            }
+
+            try
+            {
+                current.write(qm);
+                written = true;
+                completed++;
+            }
+            catch (Exception e)
+            {
+                JVMStabilityInspector.inspectThrowable(e);
+                // the channel is still usable, as nothing was written for this message
+                logger.error("error writing to {}", poolReference.endPoint(), e);
+            }
+        }
+        if (written)
+            current.flush();
+    }
+
+    private void connect()
+    {
+        if (isStopped || !connecting.compareAndSet(false, true))
+            return;
+        connect(System.nanoTime());
+    }
+
+    private void connect(final long start)
+    {
+        InetAddress endpoint = poolReference.endPoint();
+        if (logger.isTraceEnabled())
+            logger.trace("attempting to connect to {}", endpoint);
+
+        int version = MessagingService.instance().getVersion(endpoint);
+        targetVersion = version;
+        Bootstrap bootstrap = new Bootstrap().group(MessagingService.eventLoopGroup())
+                                             .channel(NioSocketChannel.class)
+                                             .option(ChannelOption.SO_KEEPALIVE, true)
+                                             .option(ChannelOption.TCP_NODELAY, OutboundTcpConnection.isLocalDC(endpoint)
+                                                                                ? OutboundTcpConnection.INTRADC_TCP_NODELAY
+                                                                                : DatabaseDescriptor.getInterDCTcpNoDelay())
+                                             .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) DatabaseDescriptor.getRpcTimeout())
+                                             .option(ChannelOption.WRITE_BUFFER_HIGH_WATER_MARK, WRITE_BUFFER_HIGH_WATER_MARK)
+                                             .option(ChannelOption.WRITE_BUFFER_LOW_WATER_MARK, WRITE_BUFFER_LOW_WATER_MARK)
+                                             .handler(new Handshake(start, version));
+        if (DatabaseDescriptor.getInternodeSendBufferSize() != null)
+            bootstrap.option(ChannelOption.SO_SNDBUF, DatabaseDescriptor.getInternodeSendBufferSize());
+
+        bootstrap.connect(endpoint, DatabaseDescriptor.getStoragePort()).addListener((ChannelFutureListener) future -> {
+            if (!future.isSuccess())
+                retry(start, future.cause());
+        });
+    }
+
+    private void retry(long start, Throwable cause)
+    {
+        if (logger.isTraceEnabled())
+            logger.trace("unable to connect to {}", poolReference.endPoint(), cause);
+
+        if (!isStopped && System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(DatabaseDescriptor.getRpcTimeout()))
+        {
+            MessagingService.eventLoopGroup().schedule(() -> connect(start), OutboundTcpConnection.OPEN_RETRY_DELAY, TimeUnit.MILLISECONDS);
+            return;
+        }
+
+        // clear out the queue, else gossip messages back up.
+        clearBacklog();
+        connecting.set(false);
+    }
+
+    private void connected(Connection current, boolean upgrade)
+    {
+        connection = current;
+        connecting.set(false);
+        if (upgrade)
+            softCloseSocket();
+        scheduleFlush(current);
+    }
+
+    private void closed(Connection current)
+    {
+        if (connection != current)
+            return;
+
+        connection = null;
+        if (!isStopped && !backlog.isEmpty())
+            connect();
+    }
+
+    private void clearBacklog()
+    {
+        while (backlog.poll() != null)
+            backlogSize.decrementAndGet();
+    }
+
+    private void expireMessages()
+    {
+        Iterator<QueuedMessage> iter = backlog.iterator();
+        while (iter.hasNext())
+        {
+            QueuedMessage qm = iter.next();
+            if (!qm.droppable)
+                continue;
+            if (qm.timestampNanos >= System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(qm.message.getTimeout()))
+                return;
+            iter.remove();
+            backlogSize.decrementAndGet();
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Sends the connection header, waits for the version of the peer, and replaces itself with a {@link Connection}
+     * once the handshake is complete. The connection is retried if it is closed before.
+     */
+    private class Handshake extends ByteToMessageDecoder
+    {
+        private final long start;
+        private final int version;
+        private ScheduledFuture<?> timeout;
+        private boolean done;
+
+        Handshake(long start, int version)
+        {
+            this.start = start;
+            this.version = version;
+        }
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) throws Exception
+        {
+            ByteBuf header = ctx.alloc().buffer(8);
+            ByteBufOutputStream out = new ByteBufOutputStream(header);
+            out.writeInt(MessagingService.PROTOCOL_MAGIC);
+            OutboundTcpConnection.writeHeader(out, version, OutboundTcpConnection.shouldCompressConnection(poolReference.endPoint()));
+            ctx.writeAndFlush(header);
+
+            timeout = ctx.executor().schedule(() -> {
+                logger.info("Cannot handshake version with {}", poolReference.endPoint());
+                ctx.close();
+            }, OutboundTcpConnection.WAIT_FOR_VERSION_MAX_TIME, TimeUnit.MILLISECONDS);
+            super.channelActive(ctx);
+        }
+
+        protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception
+        {
+            if (done || in.readableBytes() < 4)
+                return;
+
+            done = true;
+            timeout.cancel(false);
+            InetAddress endpoint = poolReference.endPoint();
+            int maxTargetVersion = in.readInt();
+            MessagingService.instance().setVersion(endpoint, maxTargetVersion);
+            if (version > maxTargetVersion)
+            {
+                logger.trace("Target max version is {}; will reconnect with that version", maxTargetVersion);
+                ctx.close();
+                return;
+            }
+
+            boolean upgrade = version < maxTargetVersion && version < MessagingService.current_version;
+            if (upgrade)
+                logger.trace("Detected higher max version {} (using {}); will reconnect when queued messages are done",
+                             maxTargetVersion, version);
+
+            ByteBuf reply = ctx.alloc().buffer(4 + CompactEndpointSerializationHelper.serializedSize(FBUtilities.getBroadcastAddress()));
+            ByteBufOutputStream replyOut = new ByteBufOutputStream(reply);
+            replyOut.writeInt(MessagingService.current_version);
+            CompactEndpointSerializationHelper.serialize(FBUtilities.getBroadcastAddress(), replyOut);
+            ctx.write(reply);
+
+            Connection current = new Connection(ctx.channel(), version, OutboundTcpConnection.shouldCompressConnection(endpoint));
+            ctx.pipeline().replace(this, "connection", current);
+            connected(current, upgrade);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception
+        {
+            if (timeout != null)
+                timeout.cancel(false);
+            retry(start, null);
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause)
+        {
+            if (logger.isTraceEnabled())
+                logger.trace("error connecting to {}", poolReference.endPoint(), cause);
+            ctx.close();
+        }
+    }
+
+    /**
+     * An established connection. Only accessed from the event loop of its channel but for {@link #close()}.
+     */
+    private class Connection extends ChannelInboundHandlerAdapter
+    {
+        final Channel channel;
+        final int version;
+        // for compressed connections, the stream messages are written to before being sent as compressed blocks
+        final DataOutputStreamPlus compressed;
+
+        Connection(Channel channel, int version, boolean compress)
+        {
+            this.channel = channel;
+            this.version = version;
+            this.compressed = compress ? compressedStream(channel, version) : null;
+        }
+
+        void write(QueuedMessage qm) throws IOException
+        {
+            OutboundTcpConnection.traceSend(qm.message, poolReference.endPoint());
+
+            long timestampMillis = NanoTimeToCurrentTimeMillis.convert(qm.timestampNanos);
+            int idSize = version < MessagingService.VERSION_20 ? TypeSizes.sizeof(String.valueOf(qm.id)) : 4;
+            int size = 4 + idSize + 4 + qm.message.serializedSize(version);
+            ByteBuf buffer = channel.alloc().ioBuffer(size);
+            try
+            {
+                DataOutputBufferFixed out = new DataOutputBufferFixed(buffer.nioBuffer(0, size));
+                OutboundTcpConnection.writeMessage(out, qm.message, qm.id, timestampMillis, version);
+                buffer.writerIndex(out.getLength());
+            }
+            catch (Throwable t)
+            {
+                buffer.release();
+                throw t;
+            }
+
+            if (compressed != null)
+            {
+                try
+                {
+                    compressed.write(buffer.nioBuffer());
+                }
+                finally
+                {
+                    buffer.release();
+                }
+            }
+            else if (qm.shouldRetry())
+            {
+                // if the message was important, such as a repair acknowledgement, put it back on the queue
+                // to retry after re-connecting.  See CASSANDRA-5393
+                channel.write(buffer).addListener((ChannelFutureListener) future -> {
+                    if (!future.isSuccess())
+                    {
+                        backlog.add(new RetriedQueuedMessage(qm));
+                        backlogSize.incrementAndGet();
+                    }
+                });
+            }
+            else
+            {
+                channel.write(buffer, channel.voidPromise());
+            }
+        }
+
+        void flush()
+        {
+            if (compressed != null)
+            {
+                try
+                {
+                    compressed.flush();
+                }
+                catch (IOException e)
+                {
+                    logger.trace("error writing to {}", poolReference.endPoint(), e);
+                    close();
+                    return;
+                }
+            }
+            channel.flush();
+        }
+
+        void close()
+        {
+            channel.close();
+        }
+
+        @Override
+        public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception
+        {
+            if (channel.isWritable())
+                scheduleFlush(this);
+            super.channelWritabilityChanged(ctx);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception
+        {
+            closed(this);
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause)
+        {
+            if (logger.isTraceEnabled())
+                logger.trace("error writing to {}", poolReference.endPoint(), cause);
+            ctx.close();
+        }
+    }
+
+    private static DataOutputStreamPlus compressedStream(Channel channel, int version)
+    {
+        OutputStream out = new ChannelOutputStream(channel);
+        if (version < MessagingService.VERSION_21)
+            return new WrappedDataOutputStreamPlus(new SnappyOutputStream(out));
+
+        Checksum checksum = XXHashFactory.fastestInstance().newStreamingHash32(OutboundTcpConnection.LZ4_HASH_SEED).asChecksum();
+        return new WrappedDataOutputStreamPlus(new LZ4BlockOutputStream(out,
+                                                                        1 << 14,  // 16k block size
+                                                                        LZ4Factory.fastestInstance().fastCompressor(),
+                                                                        checksum,
+                                                                        true)); // no async flushing
+    }
+
+    /**
+     * Writes the compressed blocks to the channel, leaving the flushing to the caller.
+     */
+    private static class ChannelOutputStream extends OutputStream
+    {
+        private final Channel channel;
+
+        ChannelOutputStream(Channel channel)
+        {
+            this.channel = channel;
+        }
+
+        public void write(int b)
+        {
+            write(new byte[]{ (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len)
+        {
+            // the compressors reuse their buffer
+            channel.write(channel.alloc().buffer(len).writeBytes(b, off, len), channel.voidPromise());
+        }
+    }
+}
@@ -43,6 +43,7 @@ import net.jpountz.lz4.LZ4Compressor;
 import net.jpountz.lz4.LZ4Factory;
 import net.jpountz.xxhash.XXHashFactory;
 
+import org.apache.cassandra.io.util.DataOutputPlus;
 import org.apache.cassandra.io.util.DataOutputStreamPlus;
 import org.apache.cassandra.io.util.BufferedDataOutputStreamPlus;
 import org.apache.cassandra.io.util.WrappedDataOutputStreamPlus;
@@ -63,7 +64,7 @@ import com.google.common.util.concurrent.Uninterruptibles;
 
 //OutboundTcpConnection负责发消息，MessagingService.SocketThread.run()负责接收消息
 //此类的流程是通过enqueue方法加消息，然后在run()中轮循，最后写往指定的Socket
-public class OutboundTcpConnection extends Thread
+public class OutboundTcpConnection extends Thread implements IOutboundConnection
 {
     private static final Logger logger = LoggerFactory.getLogger(OutboundTcpConnection.class);
 
@@ -73,7 +74,7 @@ public class OutboundTcpConnection extends Thread
      * Enabled/disable TCP_NODELAY for intradc connections. Defaults to enabled.
      */
     private static final String INTRADC_TCP_NODELAY_PROPERTY = PREFIX + "otc_intradc_tcp_nodelay";
-    private static final boolean INTRADC_TCP_NODELAY = Boolean.valueOf(System.getProperty(INTRADC_TCP_NODELAY_PROPERTY, "true"));
+    static final boolean INTRADC_TCP_NODELAY = Boolean.valueOf(System.getProperty(INTRADC_TCP_NODELAY_PROPERTY, "true"));
 
     /*
      * Size of buffer in output stream
@@ -115,10 +116,10 @@ public class OutboundTcpConnection extends Thread
                     "Value provided for coalescing window must be greather than 0: " + coalescingWindow);
     }
 
-    private static final MessageOut CLOSE_SENTINEL = new MessageOut(MessagingService.Verb.INTERNAL_RESPONSE);
+    static final MessageOut CLOSE_SENTINEL = new MessageOut(MessagingService.Verb.INTERNAL_RESPONSE);
     private volatile boolean isStopped = false;
 
-    private static final int OPEN_RETRY_DELAY = 100; // ms between retries
+    static final int OPEN_RETRY_DELAY = 100; // ms between retries
     public static final int WAIT_FOR_VERSION_MAX_TIME = 5000;
     private static final int NO_VERSION = Integer.MIN_VALUE;
 
@@ -143,7 +144,7 @@ public class OutboundTcpConnection extends Thread
         cs = newCoalescingStrategy(pool.endPoint().getHostAddress());
     }
 
-    private static boolean isLocalDC(InetAddress targetHost)
+    static boolean isLocalDC(InetAddress targetHost)
     {
         String remoteDC = DatabaseDescriptor.getEndpointSnitch().getDatacenter(targetHost);
         String localDC = DatabaseDescriptor.getEndpointSnitch().getDatacenter(FBUtilities.getBroadcastAddress());
@@ -164,14 +165,14 @@ public class OutboundTcpConnection extends Thread
         }
     }
 
-    void closeSocket(boolean destroyThread)
+    public void closeSocket(boolean destroyThread)
     {
         backlog.clear();
         isStopped = destroyThread; // Exit loop to stop the thread
         enqueue(CLOSE_SENTINEL, -1);
     }
 
-    void softCloseSocket()
+    public void softCloseSocket()
     {
         enqueue(CLOSE_SENTINEL, -1);
     }
@@ -278,36 +279,22 @@ public class OutboundTcpConnection extends Thread
     }
 
     private boolean shouldCompressConnection()
+    {
+        return shouldCompressConnection(poolReference.endPoint());
+    }
+
+    static boolean shouldCompressConnection(InetAddress endpoint)
     {
         // assumes version >= 1.2
         return DatabaseDescriptor.internodeCompression() == Config.InternodeCompression.all
-               || (DatabaseDescriptor.internodeCompression() == Config.InternodeCompression.dc && !isLocalDC(poolReference.endPoint()));
+               || (DatabaseDescriptor.internodeCompression() == Config.InternodeCompression.dc && !isLocalDC(endpoint));
     }
 
     private void writeConnected(QueuedMessage qm, boolean flush)
     {
         try
         {
-            byte[] sessionBytes = qm.message.parameters.get(Tracing.TRACE_HEADER);
-            if (sessionBytes != null)
-            {
-                UUID sessionId = UUIDGen.getUUID(ByteBuffer.wrap(sessionBytes));
-                TraceState state = Tracing.instance.get(sessionId);
-                String message = String.format("Sending %s message to %s", qm.message.verb, poolReference.endPoint());
-                // session may have already finished; see CASSANDRA-5668
-                if (state == null)
-                {
-                    byte[] traceTypeBytes = qm.message.parameters.get(Tracing.TRACE_TYPE);
-                    Tracing.TraceType traceType = traceTypeBytes == null ? Tracing.TraceType.QUERY : Tracing.TraceType.deserialize(traceTypeBytes[0]);
-                    TraceState.mutateWithTracing(ByteBuffer.wrap(sessionBytes), message, -1, traceType.getTTL());
-                }
-                else
-                {
-                    state.trace(message);
-                    if (qm.message.verb == MessagingService.Verb.REQUEST_RESPONSE)
-                        Tracing.instance.doneWithNonLocalSession(state);
-                }
-            }
+            traceSend(qm.message, poolReference.endPoint());
 
             long timestampMillis = NanoTimeToCurrentTimeMillis.convert(qm.timestampNanos);
             writeInternal(qm.message, qm.id, timestampMillis);
@@ -346,8 +333,37 @@ public class OutboundTcpConnection extends Thread
         }
     }
 
+    static void traceSend(MessageOut<?> message, InetAddress to)
+    {
+        byte[] sessionBytes = message.parameters.get(Tracing.TRACE_HEADER);
+        if (sessionBytes == null)
+            return;
+
+        UUID sessionId = UUIDGen.getUUID(ByteBuffer.wrap(sessionBytes));
+        TraceState state = Tracing.instance.get(sessionId);
+        String traceMessage = String.format("Sending %s message to %s", message.verb, to);
+        // session may have already finished; see CASSANDRA-5668
+        if (state == null)
+        {
+            byte[] traceTypeBytes = message.parameters.get(Tracing.TRACE_TYPE);
+            Tracing.TraceType traceType = traceTypeBytes == null ? Tracing.TraceType.QUERY : Tracing.TraceType.deserialize(traceTypeBytes[0]);
+            TraceState.mutateWithTracing(ByteBuffer.wrap(sessionBytes), traceMessage, -1, traceType.getTTL());
+        }
+        else
+        {
+            state.trace(traceMessage);
+            if (message.verb == MessagingService.Verb.REQUEST_RESPONSE)
+                Tracing.instance.doneWithNonLocalSession(state);
+        }
+    }
+
     //对应IncomingTcpConnection.receiveMessage(DataInputStream, int)
     private void writeInternal(MessageOut message, int id, long timestamp) throws IOException
+    {
+        writeMessage(out, message, id, timestamp, targetVersion);
+    }
+
+    static void writeMessage(DataOutputPlus out, MessageOut message, int id, long timestamp, int targetVersion) throws IOException
     {
         out.writeInt(MessagingService.PROTOCOL_MAGIC);
 
@@ -362,7 +378,7 @@ public class OutboundTcpConnection extends Thread
         message.serialize(out, targetVersion);
     }
 
-    private static void writeHeader(DataOutput out, int version, boolean compressionEnabled) throws IOException
+    static void writeHeader(DataOutput out, int version, boolean compressionEnabled) throws IOException
     {
         // 2 bits: unused.  used to be "serializer type," which was always Binary
         // 1 bit: compression
@@ -569,7 +585,7 @@ public class OutboundTcpConnection extends Thread
     }
 
     /** messages that have not been retried yet */
-    private static class QueuedMessage implements Coalescable
+    static class QueuedMessage implements Coalescable
     {
         final MessageOut<?> message;
         final int id;
@@ -601,7 +617,7 @@ public class OutboundTcpConnection extends Thread
         }
     }
 
-    private static class RetriedQueuedMessage extends QueuedMessage
+    static class RetriedQueuedMessage extends QueuedMessage
     {
         RetriedQueuedMessage(QueuedMessage msg)
         {
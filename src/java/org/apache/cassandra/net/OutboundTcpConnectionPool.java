@@ -42,9 +42,9 @@ public class OutboundTcpConnectionPool
     // pointer for the real Address.
     private final InetAddress id;
     private final CountDownLatch started;
-    public final OutboundTcpConnection smallMessages;
-    public final OutboundTcpConnection largeMessages;
-    public final OutboundTcpConnection gossipMessages;
+    public final IOutboundConnection smallMessages;
+    public final IOutboundConnection largeMessages;
+    public final IOutboundConnection gossipMessages;
 
     // pointer to the reset Address.
     private InetAddress resetEndpoint;
@@ -72,16 +72,24 @@ public class OutboundTcpConnectionPool
         resetEndpoint = SystemKeyspace.getPreferredIP(remoteEp);
         started = new CountDownLatch(1);
 
-        smallMessages = new OutboundTcpConnection(this);
-        largeMessages = new OutboundTcpConnection(this);
-        gossipMessages = new OutboundTcpConnection(this);
+        smallMessages = newConnection();
+        largeMessages = newConnection();
+        gossipMessages = newConnection();
+    }
+
+    private IOutboundConnection newConnection()
+    {
+        // encrypted connections are only supported by the blocking implementation
+        if (DatabaseDescriptor.getInternodeTransport() == Config.InternodeTransport.netty && !isEncryptedChannel(id))
+            return new OutboundNettyConnection(this);
+        return new OutboundTcpConnection(this);
     }
 
     /**
      * returns the appropriate connection based on message type.
      * returns null if a connection could not be established.
      */
-    OutboundTcpConnection getConnection(MessageOut msg)
+    IOutboundConnection getConnection(MessageOut msg)
     {
         if (Stage.GOSSIP == msg.getStage())
             return gossipMessages;
@@ -92,13 +100,13 @@ public class OutboundTcpConnectionPool
 
     void reset()
     {
-        for (OutboundTcpConnection conn : new OutboundTcpConnection[] { smallMessages, largeMessages, gossipMessages })
+        for (IOutboundConnection conn : new IOutboundConnection[] { smallMessages, largeMessages, gossipMessages })
             conn.closeSocket(false);
     }
 
     public void resetToNewerVersion(int version)
     {
-        for (OutboundTcpConnection conn : new OutboundTcpConnection[] { smallMessages, largeMessages, gossipMessages })
+        for (IOutboundConnection conn : new IOutboundConnection[] { smallMessages, largeMessages, gossipMessages })
         {
             if (version > conn.getTargetVersion())
                 conn.softCloseSocket();
@@ -114,7 +122,7 @@ public class OutboundTcpConnectionPool
     {
         SystemKeyspace.updatePreferredIP(id, remoteEP);
         resetEndpoint = remoteEP;
-        for (OutboundTcpConnection conn : new OutboundTcpConnection[] { smallMessages, largeMessages, gossipMessages })
+        for (IOutboundConnection conn : new IOutboundConnection[] { smallMessages, largeMessages, gossipMessages })
             conn.softCloseSocket();
 
         // release previous metrics and create new one with reset address
@@ -44,6 +44,7 @@ public class ResponseVerbHandler implements IVerbHandler
         IAsyncCallback cb = callbackInfo.callback;
         if (message.isFailureResponse())
         {
+            MessagingService.instance().maybeAddFailure(cb, message.from);
             ((IAsyncCallbackWithFailure) cb).onFailure(message.from);
         }
         else
@@ -24,8 +24,10 @@ import com.google.common.util.concurrent.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.cassandra.config.Config;
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.db.Keyspace;
+import org.apache.cassandra.repair.messages.ValidationRequest;
 import org.apache.cassandra.tracing.Tracing;
 import org.apache.cassandra.utils.FBUtilities;
 import org.apache.cassandra.utils.Pair;
@@ -42,6 +44,8 @@ public class RepairJob extends AbstractFuture<RepairResult> implements Runnable
     private final RepairParallelism parallelismDegree;
     private final long repairedAt;
     private final ListeningExecutorService taskExecutor;
+    // the hash of the rows all the replicas validate with
+    private final Config.RepairRowHash rowHash;
 
     /**
      * Create repair job to run on specific columnfamily
@@ -56,6 +60,10 @@ public class RepairJob extends AbstractFuture<RepairResult> implements Runnable
         this.repairedAt = session.repairedAt;
         this.taskExecutor = session.taskExecutor;
         this.parallelismDegree = session.parallelismDegree;
+        this.rowHash = ValidationRequest.rowHashFor(session.endpoints);
+        if (rowHash != DatabaseDescriptor.getRepairRowHash())
+            logger.info("[repair #{}] validating {} with {} rather than {}, as not all of {} support it",
+                        session.getId(), columnFamily, rowHash, DatabaseDescriptor.getRepairRowHash(), session.endpoints);
     }
 
     /**
@@ -177,7 +185,7 @@ public class RepairJob extends AbstractFuture<RepairResult> implements Runnable
         List<ListenableFuture<TreeResponse>> tasks = new ArrayList<>(endpoints.size());
         for (InetAddress endpoint : endpoints)
         {
-            ValidationTask task = new ValidationTask(desc, endpoint, gcBefore);
+            ValidationTask task = new ValidationTask(desc, endpoint, gcBefore, rowHash);
             tasks.add(task);
             session.waitForValidation(Pair.create(desc, endpoint), task);
             taskExecutor.execute(task);
@@ -195,7 +203,7 @@ public class RepairJob extends AbstractFuture<RepairResult> implements Runnable
 
         Queue<InetAddress> requests = new LinkedList<>(endpoints);
         InetAddress address = requests.poll();
-        ValidationTask firstTask = new ValidationTask(desc, address, gcBefore);
+        ValidationTask firstTask = new ValidationTask(desc, address, gcBefore, rowHash);
         logger.info("Validating {}", address);
         session.waitForValidation(Pair.create(desc, address), firstTask);
         tasks.add(firstTask);
@@ -203,7 +211,7 @@ public class RepairJob extends AbstractFuture<RepairResult> implements Runnable
         while (requests.size() > 0)
         {
             final InetAddress nextAddress = requests.poll();
-            final ValidationTask nextTask = new ValidationTask(desc, nextAddress, gcBefore);
+            final ValidationTask nextTask = new ValidationTask(desc, nextAddress, gcBefore, rowHash);
             tasks.add(nextTask);
             Futures.addCallback(currentTask, new FutureCallback<TreeResponse>()
             {
@@ -249,7 +257,7 @@ public class RepairJob extends AbstractFuture<RepairResult> implements Runnable
         {
             Queue<InetAddress> requests = entry.getValue();
             InetAddress address = requests.poll();
-            ValidationTask firstTask = new ValidationTask(desc, address, gcBefore);
+            ValidationTask firstTask = new ValidationTask(desc, address, gcBefore, rowHash);
             logger.info("Validating {}", address);
             session.waitForValidation(Pair.create(desc, address), firstTask);
             tasks.add(firstTask);
@@ -257,7 +265,7 @@ public class RepairJob extends AbstractFuture<RepairResult> implements Runnable
             while (requests.size() > 0)
             {
                 final InetAddress nextAddress = requests.poll();
-                final ValidationTask nextTask = new ValidationTask(desc, nextAddress, gcBefore);
+                final ValidationTask nextTask = new ValidationTask(desc, nextAddress, gcBefore, rowHash);
                 tasks.add(nextTask);
                 Futures.addCallback(currentTask, new FutureCallback<TreeResponse>()
                 {
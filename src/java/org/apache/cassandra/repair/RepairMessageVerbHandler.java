@@ -109,12 +109,13 @@ public class RepairMessageVerbHandler implements IVerbHandler<RepairMessage>
                     break;
 
                 case VALIDATION_REQUEST:
+                case ROW_HASH_VALIDATION_REQUEST:
                     ValidationRequest validationRequest = (ValidationRequest) message.payload;
                     logger.debug("Validating {}", validationRequest);
                     // trigger read-only compaction
                     ColumnFamilyStore store = Keyspace.open(desc.keyspace).getColumnFamilyStore(desc.columnFamily);
 
-                    Validator validator = new Validator(desc, message.from, validationRequest.gcBefore);
+                    Validator validator = new Validator(desc, message.from, validationRequest.gcBefore, validationRequest.rowHash);
                     CompactionManager.instance.submitValidation(store, validator);
                     break;
 
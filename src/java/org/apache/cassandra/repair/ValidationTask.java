@@ -22,6 +22,7 @@ import java.util.Map;
 
 import com.google.common.util.concurrent.AbstractFuture;
 
+import org.apache.cassandra.config.Config;
 import org.apache.cassandra.dht.Range;
 import org.apache.cassandra.dht.Token;
 import org.apache.cassandra.exceptions.RepairException;
@@ -39,12 +40,14 @@ public class ValidationTask extends AbstractFuture<TreeResponse> implements Runn
     private final RepairJobDesc desc;
     private final InetAddress endpoint;
     private final int gcBefore;
+    private final Config.RepairRowHash rowHash;
 
-    public ValidationTask(RepairJobDesc desc, InetAddress endpoint, int gcBefore)
+    public ValidationTask(RepairJobDesc desc, InetAddress endpoint, int gcBefore, Config.RepairRowHash rowHash)
     {
         this.desc = desc;
         this.endpoint = endpoint;
         this.gcBefore = gcBefore;
+        this.rowHash = rowHash;
     }
 
     /**
@@ -52,7 +55,17 @@ public class ValidationTask extends AbstractFuture<TreeResponse> implements Runn
      */
     public void run()
     {
-        ValidationRequest request = new ValidationRequest(desc, gcBefore);
+        ValidationRequest request;
+        if (ValidationRequest.rowHashesOf(endpoint) == null)
+        {
+            // the node only validates with sha256, which the row hash was chosen to be
+            assert rowHash == Config.RepairRowHash.sha256 : rowHash;
+            request = new ValidationRequest(desc, gcBefore);
+        }
+        else
+        {
+            request = new ValidationRequest(desc, gcBefore, rowHash);
+        }
         MessagingService.instance().sendOneWay(request.createMessage(), endpoint);
     }
 
@@ -0,0 +1,257 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.repair;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.dht.AbstractBounds;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.io.FSWriteError;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.io.util.ChecksummedRandomAccessReader;
+import org.apache.cassandra.io.util.FileUtils;
+import org.apache.cassandra.io.util.RandomAccessReader;
+import org.apache.cassandra.io.util.SequentialWriter;
+import org.apache.cassandra.net.MessagingService;
+import org.apache.cassandra.utils.MerkleTrees;
+
+/**
+ * Persists the merkle trees built by validations (see persist_validation_trees), so that validating the same ranges
+ * of a table whose sstables haven't changed since returns the persisted trees instead of reading all the sstables
+ * again.
+ *
+ * The trees of each table and set of ranges are kept in their own file of the validation directory of the saved
+ * caches, along with what they were built from: the sstables, the tree size and the row hash. Since trees are only
+ * persisted, and reused, when no data of the sstables is purgeable or can expire, they don't depend on the gcBefore
+ * or the time of the validation either. A file that doesn't match is simply overwritten by the next validation.
+ */
+public final class ValidationTreeStore
+{
+    private static final Logger logger = LoggerFactory.getLogger(ValidationTreeStore.class);
+
+    private static final int CURRENT_VERSION = MessagingService.current_version;
+
+    private ValidationTreeStore()
+    {
+    }
+
+    /**
+     * @return the trees persisted for the validation of the given sstables, or null if there are none matching them
+     */
+    public static MerkleTrees load(ColumnFamilyStore cfs, Validator validator, Collection<SSTableReader> sstables, int maxsize, int gcBefore)
+    {
+        if (!DatabaseDescriptor.getPersistValidationTrees() || mayPurge(sstables, gcBefore))
+            return null;
+
+        File dataPath = dataPath(cfs, validator.desc.ranges);
+        File crcPath = crcPath(dataPath);
+        if (!dataPath.exists() || !crcPath.exists())
+            return null;
+
+        try (RandomAccessReader in = new ChecksummedRandomAccessReader.Builder(dataPath, crcPath).build())
+        {
+            if (in.readInt() != CURRENT_VERSION
+                || !in.readUTF().equals(validator.rowHashAlgorithm.name())
+                || in.readInt() != maxsize)
+                return null;
+
+            List<Range<Token>> ranges = sorted(validator.desc.ranges);
+            int rangeCount = in.readInt();
+            if (rangeCount != ranges.size())
+                return null;
+            for (Range<Token> range : ranges)
+            {
+                if (!range.equals(AbstractBounds.tokenSerializer.deserialize(in, cfs.getPartitioner(), CURRENT_VERSION)))
+                    return null;
+            }
+
+            List<SSTableId> ids = ids(sstables);
+            int sstableCount = in.readInt();
+            if (sstableCount != ids.size())
+                return null;
+            for (SSTableId id : ids)
+            {
+                if (!id.equals(SSTableId.deserialize(in)))
+                    return null;
+            }
+
+            return MerkleTrees.serializer.deserialize(in, CURRENT_VERSION);
+        }
+        catch (Throwable t)
+        {
+            logger.warn("Failed to read the validation trees persisted in {}, validating again", dataPath, t);
+            FileUtils.deleteWithConfirm(dataPath);
+            FileUtils.deleteWithConfirm(crcPath);
+            return null;
+        }
+    }
+
+    /**
+     * Persists trees just validated from the given sstables, if enabled and if the trees don't depend on the gcBefore
+     * or the time of the validation.
+     */
+    public static void save(ColumnFamilyStore cfs, Validator validator, Collection<SSTableReader> sstables, int maxsize, int gcBefore, MerkleTrees trees)
+    {
+        if (!DatabaseDescriptor.getPersistValidationTrees() || mayPurge(sstables, gcBefore))
+            return;
+
+        File dataPath = dataPath(cfs, validator.desc.ranges);
+        File crcPath = crcPath(dataPath);
+        FileUtils.createDirectory(dataPath.getParentFile());
+        File tmpDataPath = FileUtils.createTempFile(dataPath.getName(), null, dataPath.getParentFile());
+        File tmpCrcPath = FileUtils.createTempFile(crcPath.getName(), null, crcPath.getParentFile());
+
+        try (SequentialWriter out = SequentialWriter.open(tmpDataPath, tmpCrcPath).finishOnClose())
+        {
+            out.writeInt(CURRENT_VERSION);
+            out.writeUTF(validator.rowHashAlgorithm.name());
+            out.writeInt(maxsize);
+
+            List<Range<Token>> ranges = sorted(validator.desc.ranges);
+            out.writeInt(ranges.size());
+            for (Range<Token> range : ranges)
+                AbstractBounds.tokenSerializer.serialize(range, out, CURRENT_VERSION);
+
+            List<SSTableId> ids = ids(sstables);
+            out.writeInt(ids.size());
+            for (SSTableId id : ids)
+                id.serialize(out);
+
+            MerkleTrees.serializer.serialize(trees, out, CURRENT_VERSION);
+        }
+        catch (IOException e)
+        {
+            throw new FSWriteError(e, tmpDataPath);
+        }
+
+        FileUtils.renameWithConfirm(tmpDataPath, dataPath);
+        FileUtils.renameWithConfirm(tmpCrcPath, crcPath);
+        logger.debug("Persisted the validation trees of {} in {}", validator.desc, dataPath);
+    }
+
+    /**
+     * Whether some data of the sstables could be purged by a validation with the given gcBefore, or has a TTL and
+     * would be validated as a tombstone once expired, which would make the trees depend on when they are built.
+     */
+    private static boolean mayPurge(Collection<SSTableReader> sstables, int gcBefore)
+    {
+        for (SSTableReader sstable : sstables)
+        {
+            if (sstable.getMinLocalDeletionTime() < gcBefore || sstable.getSSTableMetadata().maxTTL > 0)
+                return true;
+        }
+        return false;
+    }
+
+    private static File dataPath(ColumnFamilyStore cfs, Collection<Range<Token>> ranges)
+    {
+        // the ranges are checked against those in the file, the name only has to tell most sets apart
+        UUID rangesId = UUID.nameUUIDFromBytes(sorted(ranges).toString().getBytes(StandardCharsets.UTF_8));
+        String name = cfs.keyspace.getName() + '-' + cfs.name + '-' + cfs.metadata.cfId + '-' + rangesId + "-Trees.db";
+        return new File(new File(DatabaseDescriptor.getSavedCachesLocation(), "validation"), name);
+    }
+
+    private static File crcPath(File dataPath)
+    {
+        return new File(dataPath.getParentFile(), dataPath.getName().replace(".db", ".crc"));
+    }
+
+    private static List<Range<Token>> sorted(Collection<Range<Token>> ranges)
+    {
+        List<Range<Token>> sorted = new ArrayList<>(ranges);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    private static List<SSTableId> ids(Collection<SSTableReader> sstables)
+    {
+        List<SSTableId> ids = new ArrayList<>(sstables.size());
+        for (SSTableReader sstable : sstables)
+            ids.add(new SSTableId(sstable));
+        Collections.sort(ids);
+        return ids;
+    }
+
+    /**
+     * Identifies the content of an sstable: generations are unique within a table, but may be reused after it has
+     * been truncated and the node restarted.
+     */
+    private static final class SSTableId implements Comparable<SSTableId>
+    {
+        private final int generation;
+        private final long onDiskLength;
+        private final long maxTimestamp;
+
+        private SSTableId(int generation, long onDiskLength, long maxTimestamp)
+        {
+            this.generation = generation;
+            this.onDiskLength = onDiskLength;
+            this.maxTimestamp = maxTimestamp;
+        }
+
+        private SSTableId(SSTableReader sstable)
+        {
+            this(sstable.descriptor.generation, sstable.onDiskLength(), sstable.getMaxTimestamp());
+        }
+
+        private void serialize(SequentialWriter out) throws IOException
+        {
+            out.writeInt(generation);
+            out.writeLong(onDiskLength);
+            out.writeLong(maxTimestamp);
+        }
+
+        private static SSTableId deserialize(RandomAccessReader in) throws IOException
+        {
+            return new SSTableId(in.readInt(), in.readLong(), in.readLong());
+        }
+
+        public int compareTo(SSTableId other)
+        {
+            return Integer.compare(generation, other.generation);
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof SSTableId))
+                return false;
+            SSTableId that = (SSTableId) o;
+            return generation == that.generation && onDiskLength == that.onDiskLength && maxTimestamp == that.maxTimestamp;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return generation;
+        }
+    }
+}
@@ -21,7 +21,9 @@ import java.net.InetAddress;
 import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.google.common.annotations.VisibleForTesting;
 
@@ -29,6 +31,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.cassandra.concurrent.Stage;
 import org.apache.cassandra.concurrent.StageManager;
+import org.apache.cassandra.config.Config;
+import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.db.ColumnFamilyStore;
 import org.apache.cassandra.db.DecoratedKey;
 import org.apache.cassandra.db.rows.UnfilteredRowIterator;
@@ -42,6 +46,7 @@ import org.apache.cassandra.utils.FBUtilities;
 import org.apache.cassandra.utils.MerkleTree;
 import org.apache.cassandra.utils.MerkleTree.RowHash;
 import org.apache.cassandra.utils.MerkleTrees;
+import org.apache.cassandra.utils.Murmur3Digest;
 
 /**
  * Handles the building of a merkle tree for a column family.
@@ -50,6 +55,10 @@ import org.apache.cassandra.utils.MerkleTrees;
  * 1. prepare() - Initialize tree with samples.
  * 2. add() - 0 or more times, to add hashes to the tree.
  * 3. complete() - Enqueues any operations that were blocked waiting for a valid tree.
+ *
+ * The partitions can also be added concurrently, split in {@link #segments(int)} that don't share any leaf of the
+ * tree, with {@link #addConcurrently(UnfilteredRowIterator)}. Or the validation can be skipped altogether when
+ * the trees built by a previous validation are still valid, with {@link #prepareValidated(MerkleTrees)}.
  */
 public class Validator implements Runnable
 {
@@ -58,9 +67,11 @@ public class Validator implements Runnable
     public final RepairJobDesc desc;
     public final InetAddress initiator;
     public final int gcBefore;
+    // the digest of the rows, which must be the same on all replicas: the one chosen by the initiator
+    public final Config.RepairRowHash rowHashAlgorithm;
 
     // null when all rows with the min token have been consumed
-    private long validated;
+    private final AtomicLong validated = new AtomicLong();
     private MerkleTrees trees;
     // current range being updated
     private MerkleTree.TreeRange range;
@@ -70,11 +81,16 @@ public class Validator implements Runnable
     private DecoratedKey lastKey;
 
     public Validator(RepairJobDesc desc, InetAddress initiator, int gcBefore)
+    {
+        this(desc, initiator, gcBefore, DatabaseDescriptor.getRepairRowHash());
+    }
+
+    public Validator(RepairJobDesc desc, InetAddress initiator, int gcBefore, Config.RepairRowHash rowHashAlgorithm)
     {
         this.desc = desc;
         this.initiator = initiator;
         this.gcBefore = gcBefore;
-        validated = 0;
+        this.rowHashAlgorithm = rowHashAlgorithm;
         range = null;
         ranges = null;
     }
@@ -122,6 +138,62 @@ public class Validator implements Runnable
         ranges = tree.invalids();
     }
 
+    /**
+     * Prepares this validator with trees that have been fully validated already, for {@link #complete()} to send
+     * them as they are.
+     */
+    public void prepareValidated(MerkleTrees validated)
+    {
+        this.trees = validated;
+        ranges = validated.invalids();
+    }
+
+    /**
+     * Splits the leaves of the prepared trees in at most {@code count} segments of consecutive leaves, which can be
+     * validated concurrently since they don't share any leaf.
+     *
+     * @return the token ranges covered by the leaves of each segment
+     */
+    public List<List<Range<Token>>> segments(int count)
+    {
+        assert ranges != null : "Validator was not prepared()";
+
+        long leavesPerSegment = (trees.size() + count - 1) / count;
+        List<List<Range<Token>>> segments = new ArrayList<>(count);
+        List<Range<Token>> segment = new ArrayList<>();
+        long leaves = 0;
+        for (Map.Entry<Range<Token>, MerkleTree> entry : trees)
+        {
+            MerkleTree.TreeRange first = null;
+            for (MerkleTree.TreeRange leaf : entry.getValue().invalids())
+            {
+                // the leaf wrapping around the ring, if any, is returned both first and last
+                if (leaf == first)
+                    break;
+                if (first == null)
+                    first = leaf;
+
+                if (leaves == leavesPerSegment)
+                {
+                    segments.add(segment);
+                    segment = new ArrayList<>();
+                    leaves = 0;
+                }
+
+                // consecutive leaves are scanned as a single range
+                Range<Token> last = segment.isEmpty() ? null : segment.get(segment.size() - 1);
+                if (last != null && last.right.equals(leaf.left))
+                    segment.set(segment.size() - 1, new Range<>(last.left, leaf.right));
+                else
+                    segment.add(new Range<>(leaf.left, leaf.right));
+                leaves++;
+            }
+        }
+        if (!segment.isEmpty())
+            segments.add(segment);
+        return segments;
+    }
+
     /**
      * Called (in order) for every row present in the CF.
      * Hashes the row, and adds it to the tree being built.
@@ -155,6 +227,21 @@ public class Validator implements Runnable
         }
     }
 
+    /**
+     * Hashes the partition, and adds it to the leaf of the tree containing its token. Unlike with
+     * {@link #add(UnfilteredRowIterator)}, partitions may be added in any order and by several threads, as long as
+     * the partitions of a given {@link #segments(int) segment} are all added by the same thread.
+     */
+    public void addConcurrently(UnfilteredRowIterator partition)
+    {
+        Token token = partition.partitionKey().getToken();
+        assert Range.isInRanges(token, desc.ranges) : token + " is not contained in " + desc.ranges;
+
+        RowHash rowHash = rowHash(partition);
+        if (rowHash != null)
+            trees.get(token).addHash(rowHash);
+    }
+
     public boolean findCorrectRange(Token t)
     {
         while (!range.contains(t) && ranges.hasNext())
@@ -206,9 +293,8 @@ public class Validator implements Runnable
 
     private MerkleTree.RowHash rowHash(UnfilteredRowIterator partition)
     {
-        validated++;
-        // MerkleTree uses XOR internally, so we want lots of output bits here
-        CountingDigest digest = new CountingDigest(FBUtilities.newMessageDigest("SHA-256"));
+        validated.incrementAndGet();
+        CountingDigest digest = new CountingDigest(newRowDigest());
         UnfilteredRowIterators.digest(partition, digest, MessagingService.current_version);
         // only return new hash for merkle tree in case digest was updated - see CASSANDRA-8979
         return digest.count > 0
@@ -216,6 +302,19 @@ public class Validator implements Runnable
              : null;
     }
 
+    private MessageDigest newRowDigest()
+    {
+        switch (rowHashAlgorithm)
+        {
+            case murmur3:
+                // much cheaper, and still 128 bits
+                return new Murmur3Digest();
+            default:
+                // MerkleTree uses XOR internally, so we want lots of output bits here
+                return FBUtilities.newMessageDigest("SHA-256");
+        }
+    }
+
     /**
      * Registers the newly created tree for rendezvous in Stage.ANTIENTROPY.
      */
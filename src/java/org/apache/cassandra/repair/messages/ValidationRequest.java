@@ -18,27 +18,96 @@
 package org.apache.cassandra.repair.messages;
 
 import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
 
+import org.apache.cassandra.config.Config;
+import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.db.TypeSizes;
+import org.apache.cassandra.gms.ApplicationState;
+import org.apache.cassandra.gms.EndpointState;
+import org.apache.cassandra.gms.Gossiper;
+import org.apache.cassandra.gms.VersionedValue;
 import org.apache.cassandra.io.util.DataInputPlus;
 import org.apache.cassandra.io.util.DataOutputPlus;
 import org.apache.cassandra.repair.RepairJobDesc;
+import org.apache.cassandra.utils.FBUtilities;
 
 /**
  * ValidationRequest
  *
+ * The request carries the hash the replicas validate the rows with, chosen by the initiator for all of them, except
+ * for the nodes that don't gossip the hashes they support: they are sent the former request, and hash with sha256.
+ *
  * @since 2.0
  */
 public class ValidationRequest extends RepairMessage
 {
-    public static MessageSerializer serializer = new ValidationRequestSerializer();
+    public static MessageSerializer serializer = new ValidationRequestSerializer(false);
+    public static MessageSerializer rowHashSerializer = new ValidationRequestSerializer(true);
 
     public final int gcBefore;
+    public final Config.RepairRowHash rowHash;
 
     public ValidationRequest(RepairJobDesc desc, int gcBefore)
     {
         super(Type.VALIDATION_REQUEST, desc);
         this.gcBefore = gcBefore;
+        this.rowHash = Config.RepairRowHash.sha256;
+    }
+
+    public ValidationRequest(RepairJobDesc desc, int gcBefore, Config.RepairRowHash rowHash)
+    {
+        super(Type.ROW_HASH_VALIDATION_REQUEST, desc);
+        this.gcBefore = gcBefore;
+        this.rowHash = rowHash;
+    }
+
+    /**
+     * @return the row hashes the given node can validate with, or null if it doesn't gossip them, and only knows of
+     * the requests without a row hash
+     */
+    public static Set<Config.RepairRowHash> rowHashesOf(InetAddress endpoint)
+    {
+        if (endpoint.equals(FBUtilities.getBroadcastAddress()))
+            return EnumSet.allOf(Config.RepairRowHash.class);
+
+        EndpointState state = Gossiper.instance.getEndpointStateForEndpoint(endpoint);
+        VersionedValue value = state == null ? null : state.getApplicationState(ApplicationState.REPAIR_ROW_HASHES);
+        if (value == null)
+            return null;
+
+        Set<Config.RepairRowHash> rowHashes = EnumSet.noneOf(Config.RepairRowHash.class);
+        for (String name : value.value.split(","))
+        {
+            try
+            {
+                rowHashes.add(Config.RepairRowHash.valueOf(name));
+            }
+            catch (IllegalArgumentException e)
+            {
+                // a hash added by a later version
+            }
+        }
+        return rowHashes;
+    }
+
+    /**
+     * @return the row hash the given replicas are to validate with: the repair_row_hash of this node if they all
+     * support it, or else sha256, which all nodes do
+     */
+    public static Config.RepairRowHash rowHashFor(Collection<InetAddress> endpoints)
+    {
+        Config.RepairRowHash rowHash = DatabaseDescriptor.getRepairRowHash();
+        for (InetAddress endpoint : endpoints)
+        {
+            Set<Config.RepairRowHash> supported = rowHashesOf(endpoint);
+            if (supported == null || !supported.contains(rowHash))
+                return Config.RepairRowHash.sha256;
+        }
+        return rowHash;
     }
 
     @Override
@@ -46,6 +115,7 @@ public class ValidationRequest extends RepairMessage
     {
         return "ValidationRequest{" +
                 "gcBefore=" + gcBefore +
+                ", rowHash=" + rowHash +
                 "} " + super.toString();
     }
 
@@ -56,33 +126,47 @@ public class ValidationRequest extends RepairMessage
         if (o == null || getClass() != o.getClass()) return false;
 
         ValidationRequest that = (ValidationRequest) o;
-        return gcBefore == that.gcBefore;
+        return gcBefore == that.gcBefore && messageType == that.messageType && rowHash == that.rowHash;
     }
 
     @Override
     public int hashCode()
     {
-        return gcBefore;
+        return 31 * gcBefore + rowHash.hashCode();
     }
 
     public static class ValidationRequestSerializer implements MessageSerializer<ValidationRequest>
     {
+        private final boolean withRowHash;
+
+        private ValidationRequestSerializer(boolean withRowHash)
+        {
+            this.withRowHash = withRowHash;
+        }
+
         public void serialize(ValidationRequest message, DataOutputPlus out, int version) throws IOException
         {
             RepairJobDesc.serializer.serialize(message.desc, out, version);
             out.writeInt(message.gcBefore);
+            if (withRowHash)
+                out.writeUTF(message.rowHash.name());
         }
 
         public ValidationRequest deserialize(DataInputPlus dis, int version) throws IOException
         {
             RepairJobDesc desc = RepairJobDesc.serializer.deserialize(dis, version);
-            return new ValidationRequest(desc, dis.readInt());
+            int gcBefore = dis.readInt();
+            if (!withRowHash)
+                return new ValidationRequest(desc, gcBefore);
+            return new ValidationRequest(desc, gcBefore, Config.RepairRowHash.valueOf(dis.readUTF()));
         }
 
         public long serializedSize(ValidationRequest message, int version)
         {
             long size = RepairJobDesc.serializer.serializedSize(message.desc, version);
             size += TypeSizes.sizeof(message.gcBefore);
+            if (withRowHash)
+                size += TypeSizes.sizeof(message.rowHash.name());
             return size;
         }
     }
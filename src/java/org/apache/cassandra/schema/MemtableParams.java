@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.schema;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableMap;
+
+import org.apache.cassandra.db.MemtableFactory;
+import org.apache.cassandra.db.SkipListMemtableFactory;
+import org.apache.cassandra.exceptions.ConfigurationException;
+import org.apache.cassandra.utils.FBUtilities;
+
+import static java.lang.String.format;
+
+// CQL: {'class' : 'SkipListMemtableFactory'|'HashMemtableFactory'|<fully qualified class name>, <factory options>}
+public final class MemtableParams
+{
+    public enum Option
+    {
+        CLASS;
+
+        @Override
+        public String toString()
+        {
+            return name().toLowerCase();
+        }
+    }
+
+    public static final MemtableParams DEFAULT = new MemtableParams(SkipListMemtableFactory.class, ImmutableMap.of());
+
+    private final Class<? extends MemtableFactory> klass;
+    private final ImmutableMap<String, String> options;
+
+    // created on first use, as building the factory of a table is only needed on the nodes that store it
+    private volatile MemtableFactory factory;
+
+    private MemtableParams(Class<? extends MemtableFactory> klass, Map<String, String> options)
+    {
+        this.klass = klass;
+        this.options = ImmutableMap.copyOf(options);
+    }
+
+    public static MemtableParams create(Class<? extends MemtableFactory> klass, Map<String, String> options)
+    {
+        return new MemtableParams(klass, options);
+    }
+
+    public void validate()
+    {
+        factory();
+    }
+
+    public Class<? extends MemtableFactory> klass()
+    {
+        return klass;
+    }
+
+    /**
+     * All factory options - excluding 'class'.
+     */
+    public Map<String, String> options()
+    {
+        return options;
+    }
+
+    public MemtableFactory factory()
+    {
+        MemtableFactory result = factory;
+        if (result == null)
+            factory = result = createFactory();
+        return result;
+    }
+
+    private MemtableFactory createFactory()
+    {
+        try
+        {
+            return klass.getConstructor(Map.class).newInstance(options);
+        }
+        catch (NoSuchMethodException e)
+        {
+            throw new ConfigurationException(format("Memtable factory %s does not have a public constructor taking a Map of options", klass.getName()));
+        }
+        catch (InvocationTargetException e)
+        {
+            if (e.getTargetException() instanceof ConfigurationException)
+                throw (ConfigurationException) e.getTargetException();
+
+            throw new ConfigurationException(format("Cannot create memtable factory %s: %s", klass.getName(), e.getTargetException().getMessage()),
+                                             e);
+        }
+        catch (InstantiationException | IllegalAccessException e)
+        {
+            throw new ConfigurationException(format("Cannot create memtable factory %s: %s", klass.getName(), e.getMessage()), e);
+        }
+    }
+
+    public static MemtableParams fromMap(Map<String, String> map)
+    {
+        Map<String, String> options = new HashMap<>(map);
+
+        String className = options.remove(Option.CLASS.toString());
+        if (className == null)
+        {
+            throw new ConfigurationException(format("Missing sub-option '%s' for the '%s' option",
+                                                    Option.CLASS,
+                                                    TableParams.Option.MEMTABLE));
+        }
+
+        return create(classFromName(className), options);
+    }
+
+    private static Class<? extends MemtableFactory> classFromName(String name)
+    {
+        String className = name.contains(".")
+                         ? name
+                         : "org.apache.cassandra.db." + name;
+        Class<MemtableFactory> factoryClass = FBUtilities.classForName(className, "memtable factory");
+
+        if (!MemtableFactory.class.isAssignableFrom(factoryClass))
+        {
+            throw new ConfigurationException(format("Memtable factory class %s does not implement MemtableFactory",
+                                                    className));
+        }
+
+        return factoryClass;
+    }
+
+    public Map<String, String> asMap()
+    {
+        Map<String, String> map = new HashMap<>(options);
+        map.put(Option.CLASS.toString(), klass.getName());
+        return map;
+    }
+
+    @Override
+    public String toString()
+    {
+        return MoreObjects.toStringHelper(this)
+                          .add("class", klass.getName())
+                          .add("options", options)
+                          .toString();
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o)
+            return true;
+
+        if (!(o instanceof MemtableParams))
+            return false;
+
+        MemtableParams mp = (MemtableParams) o;
+
+        return klass.equals(mp.klass) && options.equals(mp.options);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(klass, options);
+    }
+}
@@ -108,6 +108,7 @@ public final class SchemaKeyspace
                 + "gc_grace_seconds int,"
                 + "id uuid,"
                 + "max_index_interval int,"
+                + "memtable frozen<map<text, text>>,"
                 + "memtable_flush_period_in_ms int,"
                 + "min_index_interval int,"
                 + "read_repair_chance double,"
@@ -171,6 +172,7 @@ public final class SchemaKeyspace
                 + "id uuid,"
                 + "include_all_columns boolean,"
                 + "max_index_interval int,"
+                + "memtable frozen<map<text, text>>,"
                 + "memtable_flush_period_in_ms int,"
                 + "min_index_interval int,"
                 + "read_repair_chance double,"
@@ -918,6 +920,22 @@ public final class SchemaKeyspace
              .frozenMap("compaction", params.compaction.asMap())
              .frozenMap("compression", params.compression.asMap())
              .frozenMap("extensions", params.extensions);
+
+        // only written when set, so that the schema of the other tables (and its digest) is the same as on older nodes
+        if (!params.memtable.equals(MemtableParams.DEFAULT))
+            adder.frozenMap("memtable", params.memtable.asMap());
+    }
+
+    private static void maybeDropMemtableFromSchemaMutation(CFMetaData schemaTable,
+                                                            String name,
+                                                            TableParams oldParams,
+                                                            TableParams newParams,
+                                                            long timestamp,
+                                                            Mutation mutation)
+    {
+        // reverting to the default memtable doesn't write it, so the previous one has to be removed
+        if (!oldParams.memtable.equals(MemtableParams.DEFAULT) && newParams.memtable.equals(MemtableParams.DEFAULT))
+            new RowUpdateBuilder(schemaTable, timestamp, mutation).clustering(name).delete("memtable").build();
     }
 
     public static Mutation makeUpdateTableMutation(KeyspaceMetadata keyspace,
@@ -929,6 +947,7 @@ public final class SchemaKeyspace
         Mutation mutation = makeCreateKeyspaceMutation(keyspace.name, keyspace.params, timestamp);
 
         addTableToSchemaMutation(newTable, timestamp, false, mutation);
+        maybeDropMemtableFromSchemaMutation(Tables, newTable.cfName, oldTable.params, newTable.params, timestamp, mutation);
 
         MapDifference<ByteBuffer, ColumnDefinition> columnDiff = Maps.difference(oldTable.getColumnMetadata(),
                                                                                  newTable.getColumnMetadata());
@@ -1158,6 +1177,9 @@ public final class SchemaKeyspace
                .crcCheckChance(row.getDouble("crc_check_chance"))
                .speculativeRetry(SpeculativeRetryParam.fromString(row.getString("speculative_retry")));
 
+        if (row.has("memtable"))
+            builder.memtable(MemtableParams.fromMap(row.getFrozenTextMap("memtable")));
+
         if (row.has("extensions"))
             builder.extensions(row.getFrozenMap("extensions", UTF8Type.instance, BytesType.instance));
 
@@ -1356,6 +1378,7 @@ public final class SchemaKeyspace
         Mutation mutation = makeCreateKeyspaceMutation(keyspace.name, keyspace.params, timestamp);
 
         addViewToSchemaMutation(newView, timestamp, false, mutation);
+        maybeDropMemtableFromSchemaMutation(Views, newView.viewName, oldView.metadata.params, newView.metadata.params, timestamp, mutation);
 
         MapDifference<ByteBuffer, ColumnDefinition> columnDiff = Maps.difference(oldView.metadata.getColumnMetadata(),
                                                                                  newView.metadata.getColumnMetadata());
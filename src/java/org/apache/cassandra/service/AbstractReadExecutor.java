@@ -20,14 +20,18 @@ package org.apache.cassandra.service;
 import java.net.InetAddress;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.cassandra.concurrent.ScheduledExecutors;
 import org.apache.cassandra.concurrent.Stage;
 import org.apache.cassandra.concurrent.StageManager;
+import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.config.ReadRepairDecision;
 import org.apache.cassandra.db.ColumnFamilyStore;
 import org.apache.cassandra.db.ConsistencyLevel;
@@ -38,6 +42,8 @@ import org.apache.cassandra.db.partitions.PartitionIterator;
 import org.apache.cassandra.exceptions.ReadFailureException;
 import org.apache.cassandra.exceptions.ReadTimeoutException;
 import org.apache.cassandra.exceptions.UnavailableException;
+import org.apache.cassandra.locator.DynamicEndpointSnitch;
+import org.apache.cassandra.locator.IEndpointSnitch;
 import org.apache.cassandra.metrics.ReadRepairMetrics;
 import org.apache.cassandra.net.MessageOut;
 import org.apache.cassandra.net.MessagingService;
@@ -126,6 +132,15 @@ public abstract class AbstractReadExecutor
      */
     public abstract void maybeTryAdditionalReplicas();
 
+    /**
+     * Non-blocking variant of maybeTryAdditionalReplicas: schedules the additional requests to be performed
+     * if the original ones have not been answered by the time maybeTryAdditionalReplicas would stop waiting.
+     */
+    public void scheduleAdditionalReplicas()
+    {
+        // no-op
+    }
+
     /**
      * Get the replicas involved in the [finished] request.
      *
@@ -147,6 +162,34 @@ public abstract class AbstractReadExecutor
         return handler.get();
     }
 
+    /**
+     * Returns how long to wait for the given replicas before speculating on an extra one: the speculative retry
+     * percentile of the table's coordinator read latency or, with speculative_retry_per_replica, the highest
+     * percentile of the latencies sampled by the dynamic snitch for the replicas.
+     */
+    static long speculationDelayNanos(ColumnFamilyStore cfs, Iterable<InetAddress> replicas)
+    {
+        SpeculativeRetryParam retry = cfs.metadata.params.speculativeRetry;
+        IEndpointSnitch snitch = DatabaseDescriptor.getEndpointSnitch();
+        if (retry.kind() != SpeculativeRetryParam.Kind.PERCENTILE
+            || !DatabaseDescriptor.getSpeculativeRetryPerReplica()
+            || !(snitch instanceof DynamicEndpointSnitch))
+            return cfs.sampleLatencyNanos;
+
+        long delay = 0;
+        for (InetAddress replica : replicas)
+        {
+            // local reads are not sampled by the snitch
+            long latency = StorageProxy.canDoLocalRequest(replica)
+                         ? -1
+                         : ((DynamicEndpointSnitch) snitch).getLatencyPercentileNanos(replica, retry.threshold());
+            if (latency < 0)
+                return cfs.sampleLatencyNanos;
+            delay = Math.max(delay, latency);
+        }
+        return delay;
+    }
+
     /**
      * @return an executor appropriate for the configured speculative read policy
      */
@@ -273,27 +316,46 @@ public abstract class AbstractReadExecutor
 
         public void maybeTryAdditionalReplicas()
         {
+            long delay = speculationDelayNanos(cfs, targetReplicas.subList(0, targetReplicas.size() - 1));
             // no latency information, or we're overloaded
-            if (cfs.sampleLatencyNanos > TimeUnit.MILLISECONDS.toNanos(command.getTimeout()))
+            if (delay > TimeUnit.MILLISECONDS.toNanos(command.getTimeout()))
                 return;
 
-            if (!handler.await(cfs.sampleLatencyNanos, TimeUnit.NANOSECONDS))
-            {
-                // Could be waiting on the data, or on enough digests.
-                ReadCommand retryCommand = command;
-                if (handler.resolver.isDataPresent())
-                    retryCommand = command.copy().setIsDigestQuery(true);
-
-                InetAddress extraReplica = Iterables.getLast(targetReplicas);
-                if (traceState != null)
-                    traceState.trace("speculating read retry on {}", extraReplica);
-                logger.trace("speculating read retry on {}", extraReplica);
-                int version = MessagingService.instance().getVersion(extraReplica);
-                MessagingService.instance().sendRRWithFailure(retryCommand.createMessage(version), extraReplica, handler);
-                speculated = true;
-
-                cfs.metric.speculativeRetries.inc();
-            }
+            if (!handler.await(delay, TimeUnit.NANOSECONDS))
+                speculate();
+        }
+
+        @Override
+        public void scheduleAdditionalReplicas()
+        {
+            long delay = speculationDelayNanos(cfs, targetReplicas.subList(0, targetReplicas.size() - 1));
+            // no latency information, or we're overloaded
+            if (delay > TimeUnit.MILLISECONDS.toNanos(command.getTimeout()))
+                return;
+
+            final ScheduledFuture<?> speculation = ScheduledExecutors.scheduledTasks.schedule(() -> {
+                if (!handler.isDone())
+                    speculate();
+            }, delay, TimeUnit.NANOSECONDS);
+            handler.completion().addListener(() -> speculation.cancel(false), MoreExecutors.directExecutor());
+        }
+
+        private void speculate()
+        {
+            // Could be waiting on the data, or on enough digests.
+            ReadCommand retryCommand = command;
+            if (handler.resolver.isDataPresent())
+                retryCommand = command.copy().setIsDigestQuery(true);
+
+            InetAddress extraReplica = Iterables.getLast(targetReplicas);
+            if (traceState != null)
+                traceState.trace("speculating read retry on {}", extraReplica);
+            logger.trace("speculating read retry on {}", extraReplica);
+            int version = MessagingService.instance().getVersion(extraReplica);
+            MessagingService.instance().sendRRWithFailure(retryCommand.createMessage(version), extraReplica, handler);
+            speculated = true;
+
+            cfs.metric.speculativeRetries.inc();
         }
 
         public Collection<InetAddress> getContactedReplicas()
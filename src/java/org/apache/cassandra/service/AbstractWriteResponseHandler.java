@@ -19,13 +19,18 @@ package org.apache.cassandra.service;
 
 import java.net.InetAddress;
 import java.util.Collection;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.cassandra.concurrent.ScheduledExecutors;
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.db.ConsistencyLevel;
 import org.apache.cassandra.db.Keyspace;
@@ -41,6 +46,7 @@ public abstract class AbstractWriteResponseHandler<T> implements IAsyncCallbackW
     protected static final Logger logger = LoggerFactory.getLogger( AbstractWriteResponseHandler.class );
 
     private final SimpleCondition condition = new SimpleCondition();
+    private final SettableFuture<Void> completion = SettableFuture.create();
     protected final Keyspace keyspace;
     protected final long start;
     protected final Collection<InetAddress> naturalEndpoints;
@@ -51,6 +57,9 @@ public abstract class AbstractWriteResponseHandler<T> implements IAsyncCallbackW
     private static final AtomicIntegerFieldUpdater<AbstractWriteResponseHandler> failuresUpdater
         = AtomicIntegerFieldUpdater.newUpdater(AbstractWriteResponseHandler.class, "failures");
     private volatile int failures = 0;
+    private static final AtomicIntegerFieldUpdater<AbstractWriteResponseHandler> timeoutScheduledUpdater
+        = AtomicIntegerFieldUpdater.newUpdater(AbstractWriteResponseHandler.class, "timeoutScheduled");
+    private volatile int timeoutScheduled = 0;
 
     /**
      * @param callback A callback to be called when the write is successful.
@@ -71,16 +80,35 @@ public abstract class AbstractWriteResponseHandler<T> implements IAsyncCallbackW
         this.writeType = writeType;
     }
 
-    public void get() throws WriteTimeoutException, WriteFailureException
+    private long requestTimeout()
     {
         long requestTimeout = writeType == WriteType.COUNTER
                             ? DatabaseDescriptor.getCounterWriteRpcTimeout()
                             : DatabaseDescriptor.getWriteRpcTimeout();
                             
                             requestTimeout=2000;
+        return requestTimeout;
+    }
 
+    /**
+     * @return a future completed once get() no longer blocks: when enough acks have been received, the write has
+     * failed, or it has timed out. The first call schedules the completion on timeout.
+     */
+    public ListenableFuture<Void> completion()
+    {
+        if (timeoutScheduledUpdater.compareAndSet(this, 0, 1))
+        {
+            long timeout = TimeUnit.MILLISECONDS.toNanos(requestTimeout()) - (System.nanoTime() - start);
+            final ScheduledFuture<?> onTimeout = ScheduledExecutors.scheduledTasks.schedule(() -> completion.set(null), timeout, TimeUnit.NANOSECONDS);
+            completion.addListener(() -> onTimeout.cancel(false), MoreExecutors.directExecutor());
+        }
+        return completion;
+    }
+
+    public void get() throws WriteTimeoutException, WriteFailureException
+    {
         //超时时间把调用构造函数开始直到调用get前的这段时间也算在内
-        long timeout = TimeUnit.MILLISECONDS.toNanos(requestTimeout) - (System.nanoTime() - start);
+        long timeout = TimeUnit.MILLISECONDS.toNanos(requestTimeout()) - (System.nanoTime() - start);
 
         boolean success;
         try
@@ -152,6 +180,7 @@ public abstract class AbstractWriteResponseHandler<T> implements IAsyncCallbackW
     protected void signal()
     {
         condition.signalAll();
+        completion.set(null);
         if (callback != null)
             callback.run();
     }
@@ -21,6 +21,8 @@ package org.apache.cassandra.service;
 import java.net.InetAddress;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
+import com.google.common.util.concurrent.ListenableFuture;
+
 import org.apache.cassandra.exceptions.WriteFailureException;
 import org.apache.cassandra.exceptions.WriteTimeoutException;
 import org.apache.cassandra.net.MessageIn;
@@ -73,6 +75,11 @@ public class BatchlogResponseHandler<T> extends AbstractWriteResponseHandler<T>
         wrapped.get();
     }
 
+    public ListenableFuture<Void> completion()
+    {
+        return wrapped.completion();
+    }
+
     protected int totalBlockFor()
     {
         return wrapped.totalBlockFor();
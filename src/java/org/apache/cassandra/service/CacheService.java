@@ -88,6 +88,8 @@ public class CacheService implements CacheServiceMBean
     public final AutoSavingCache<KeyCacheKey, RowIndexEntry> keyCache;
     public final AutoSavingCache<RowCacheKey, IRowCacheEntry> rowCache;
     public final AutoSavingCache<CounterCacheKey, ClockAndCount> counterCache;
+    // not saved, its entries are only valid as long as the sstables they come from are opened
+    public final ChunkCache chunkCache = ChunkCache.instance;
 
     private CacheService()
     {
@@ -313,6 +315,11 @@ public class CacheService implements CacheServiceMBean
         counterCache.clear();
     }
 
+    public void invalidateChunkCache()
+    {
+        chunkCache.clear();
+    }
+
 
 
 
@@ -341,6 +348,14 @@ public class CacheService implements CacheServiceMBean
         counterCache.setCapacity(capacity * 1024 * 1024);
     }
 
+    public void setChunkCacheCapacityInMB(long capacity)
+    {
+        if (capacity < 0)
+            throw new RuntimeException("capacity should not be negative.");
+
+        chunkCache.setCapacity(capacity * 1024 * 1024);
+    }
+
     public void saveCaches() throws ExecutionException, InterruptedException
     {
         List<Future<?>> futures = new ArrayList<>(3);
@@ -456,7 +471,9 @@ public class CacheService implements CacheServiceMBean
         public void serialize(KeyCacheKey key, DataOutputPlus out, ColumnFamilyStore cfs) throws IOException
         {
             RowIndexEntry entry = CacheService.instance.keyCache.getInternal(key);
-            if (entry == null)
+            // Entries that don't hold their column index on heap can't be serialized without the index file,
+            // and they are cheap to get back on a read anyway.
+            if (entry == null || !entry.indexOnHeap())
                 return;
 
             out.write(cfs.metadata.ksAndCFBytes);
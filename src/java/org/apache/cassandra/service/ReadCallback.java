@@ -20,13 +20,18 @@ package org.apache.cassandra.service;
 import java.net.InetAddress;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.cassandra.concurrent.ScheduledExecutors;
 import org.apache.cassandra.concurrent.Stage;
 import org.apache.cassandra.concurrent.StageManager;
 import org.apache.cassandra.config.DatabaseDescriptor;
@@ -52,6 +57,7 @@ public class ReadCallback implements IAsyncCallbackWithFailure<ReadResponse>
 
     public final ResponseResolver resolver;
     private final SimpleCondition condition = new SimpleCondition();
+    private final SettableFuture<Void> completion = SettableFuture.create();
     private final long start;
     final int blockfor;
     final List<InetAddress> endpoints;
@@ -64,6 +70,9 @@ public class ReadCallback implements IAsyncCallbackWithFailure<ReadResponse>
     private static final AtomicIntegerFieldUpdater<ReadCallback> failuresUpdater
             = AtomicIntegerFieldUpdater.newUpdater(ReadCallback.class, "failures");
     private volatile int failures = 0;
+    private static final AtomicIntegerFieldUpdater<ReadCallback> timeoutScheduledUpdater
+            = AtomicIntegerFieldUpdater.newUpdater(ReadCallback.class, "timeoutScheduled");
+    private volatile int timeoutScheduled = 0;
 
     private final Keyspace keyspace; // TODO push this into ConsistencyLevel?
 
@@ -89,13 +98,43 @@ public class ReadCallback implements IAsyncCallbackWithFailure<ReadResponse>
         this.resolver = resolver;
         this.start = System.nanoTime();
         this.endpoints = endpoints;
-        // we don't support read repair (or rapid read protection) for range scans yet (CASSANDRA-6897)
-        assert !(command instanceof PartitionRangeReadCommand) || blockfor >= endpoints.size();
+        // we don't support read repair for range scans yet (CASSANDRA-6897), so they only ever query the replicas
+        // needed, plus one to speculate on with speculative_range_reads
+        assert !(command instanceof PartitionRangeReadCommand) || blockfor + 1 >= endpoints.size();
 
         if (logger.isTraceEnabled())
             logger.trace(String.format("Blockfor is %s; setting up requests to %s", blockfor, StringUtils.join(this.endpoints, ",")));
     }
 
+    /**
+     * @return whether enough responses have been received (or the request has failed) for get() not to block
+     */
+    public boolean isDone()
+    {
+        return condition.isSignaled();
+    }
+
+    /**
+     * @return a future completed once get() no longer blocks: when enough responses have been received, the request
+     * has failed, or it has timed out. The first call schedules the completion on timeout.
+     */
+    public ListenableFuture<Void> completion()
+    {
+        if (timeoutScheduledUpdater.compareAndSet(this, 0, 1))
+        {
+            long timeout = TimeUnit.MILLISECONDS.toNanos(command.getTimeout()) - (System.nanoTime() - start);
+            final ScheduledFuture<?> onTimeout = ScheduledExecutors.scheduledTasks.schedule(() -> completion.set(null), timeout, TimeUnit.NANOSECONDS);
+            completion.addListener(() -> onTimeout.cancel(false), MoreExecutors.directExecutor());
+        }
+        return completion;
+    }
+
+    private void signal()
+    {
+        condition.signalAll();
+        completion.set(null);
+    }
+
     public boolean await(long timePastStart, TimeUnit unit)
     {
         long time = unit.toNanos(timePastStart) - (System.nanoTime() - start);
@@ -156,10 +195,11 @@ public class ReadCallback implements IAsyncCallbackWithFailure<ReadResponse>
               : received;
         if (n >= blockfor && resolver.isDataPresent())
         {
-            condition.signalAll();
+            signal();
             // kick off a background digest comparison if this is a result that (may have) arrived after
-            // the original resolve that get() kicks off as soon as the condition is signaled
-            if (blockfor < endpoints.size() && n == endpoints.size())
+            // the original resolve that get() kicks off as soon as the condition is signaled. Not for range scans,
+            // which only query more replicas than needed to speculate, as they don't support read repair (CASSANDRA-6897)
+            if (blockfor < endpoints.size() && n == endpoints.size() && !(command instanceof PartitionRangeReadCommand))
             {
                 TraceState traceState = Tracing.instance.get();
                 if (traceState != null)
@@ -256,6 +296,6 @@ public class ReadCallback implements IAsyncCallbackWithFailure<ReadResponse>
               : failures;
 
         if (blockfor + n > endpoints.size())
-            condition.signalAll();
+            signal();
     }
 }
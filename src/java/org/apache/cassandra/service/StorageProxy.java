@@ -28,9 +28,15 @@ import java.util.concurrent.atomic.AtomicLong;
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
 
+import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.cache.CacheLoader;
 import com.google.common.collect.*;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.Uninterruptibles;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -39,6 +45,7 @@ import org.slf4j.LoggerFactory;
 import org.apache.cassandra.batchlog.Batch;
 import org.apache.cassandra.batchlog.BatchlogManager;
 import org.apache.cassandra.batchlog.LegacyBatchlogMigrator;
+import org.apache.cassandra.concurrent.ScheduledExecutors;
 import org.apache.cassandra.concurrent.Stage;
 import org.apache.cassandra.concurrent.StageManager;
 import org.apache.cassandra.config.CFMetaData;
@@ -61,6 +68,7 @@ import org.apache.cassandra.io.util.DataOutputBuffer;
 import org.apache.cassandra.locator.*;
 import org.apache.cassandra.metrics.*;
 import org.apache.cassandra.net.*;
+import org.apache.cassandra.schema.SpeculativeRetryParam;
 import org.apache.cassandra.service.paxos.Commit;
 import org.apache.cassandra.service.paxos.PrepareCallback;
 import org.apache.cassandra.service.paxos.ProposeCallback;
@@ -91,7 +99,7 @@ public class StorageProxy implements StorageProxyMBean
         }
     };
     private static final ClientRequestMetrics readMetrics = new ClientRequestMetrics("Read");
-    private static final ClientRequestMetrics rangeMetrics = new ClientRequestMetrics("RangeSlice");
+    private static final ClientRangeRequestMetrics rangeMetrics = new ClientRangeRequestMetrics("RangeSlice");
     private static final ClientRequestMetrics writeMetrics = new ClientRequestMetrics("Write");
     private static final CASClientRequestMetrics casWriteMetrics = new CASClientRequestMetrics("CASWrite");
     private static final CASClientRequestMetrics casReadMetrics = new CASClientRequestMetrics("CASRead");
@@ -546,25 +554,12 @@ public class StorageProxy implements StorageProxyMBean
     throws UnavailableException, OverloadedException, WriteTimeoutException, WriteFailureException
     {
         Tracing.trace("Determining replicas for mutation");
-        final String localDataCenter = DatabaseDescriptor.getEndpointSnitch().getDatacenter(FBUtilities.getBroadcastAddress());
 
         long startTime = System.nanoTime();
-        List<AbstractWriteResponseHandler<IMutation>> responseHandlers = new ArrayList<>(mutations.size());
 
         try
         {
-            for (IMutation mutation : mutations)
-            {
-                if (mutation instanceof CounterMutation)
-                {
-                    responseHandlers.add(mutateCounter((CounterMutation)mutation, localDataCenter));
-                }
-                else
-                {
-                    WriteType wt = mutations.size() <= 1 ? WriteType.SIMPLE : WriteType.UNLOGGED_BATCH;
-                    responseHandlers.add(performWrite(mutation, consistency_level, localDataCenter, standardWritePerformer, null, wt));
-                }
-            }
+            List<AbstractWriteResponseHandler<IMutation>> responseHandlers = performWrites(mutations, consistency_level);
 
             // wait for writes.  throws TimeoutException if necessary
             for (AbstractWriteResponseHandler<IMutation> responseHandler : responseHandlers)
@@ -580,19 +575,7 @@ public class StorageProxy implements StorageProxyMBean
             }
             else
             {
-                if (ex instanceof WriteFailureException)
-                {
-                    writeMetrics.failures.mark();
-                    WriteFailureException fe = (WriteFailureException)ex;
-                    Tracing.trace("Write failure; received {} of {} required replies, failed {} requests",
-                                  fe.received, fe.blockFor, fe.failures);
-                }
-                else
-                {
-                    writeMetrics.timeouts.mark();
-                    WriteTimeoutException te = (WriteTimeoutException)ex;
-                    Tracing.trace("Write timeout; received {} of {} required replies", te.received, te.blockFor);
-                }
+                markWriteTimeoutOrFailure(ex);
                 throw ex;
             }
         }
@@ -614,6 +597,113 @@ public class StorageProxy implements StorageProxyMBean
         }
     }
 
+    /**
+     * Non-blocking variant of {@link #mutate}: the mutations are sent the same way, but instead of waiting for the
+     * replicas, the returned future completes once they have acknowledged the writes, or fails with the
+     * WriteTimeoutException or WriteFailureException mutate would have thrown.
+     * Unavailable and overloaded errors are detected before anything is sent and are still thrown directly.
+     */
+    public static ListenableFuture<Void> mutateAsync(final Collection<? extends IMutation> mutations, final ConsistencyLevel consistency_level)
+    throws UnavailableException, OverloadedException
+    {
+        Tracing.trace("Determining replicas for mutation");
+
+        final long startTime = System.nanoTime();
+        final List<AbstractWriteResponseHandler<IMutation>> responseHandlers;
+        try
+        {
+            responseHandlers = performWrites(mutations, consistency_level);
+        }
+        catch (UnavailableException e)
+        {
+            writeMetrics.unavailables.mark();
+            writeMetrics.addNano(System.nanoTime() - startTime);
+            Tracing.trace("Unavailable");
+            throw e;
+        }
+        catch (OverloadedException e)
+        {
+            writeMetrics.unavailables.mark();
+            writeMetrics.addNano(System.nanoTime() - startTime);
+            Tracing.trace("Overloaded");
+            throw e;
+        }
+
+        List<ListenableFuture<Void>> completions = new ArrayList<>(responseHandlers.size());
+        for (AbstractWriteResponseHandler<IMutation> responseHandler : responseHandlers)
+            completions.add(responseHandler.completion());
+
+        return Futures.transform(Futures.allAsList(completions), new AsyncFunction<List<Void>, Void>()
+        {
+            public ListenableFuture<Void> apply(List<Void> ignored) throws Exception
+            {
+                try
+                {
+                    // all the handlers are done, so this doesn't block
+                    for (AbstractWriteResponseHandler<IMutation> responseHandler : responseHandlers)
+                        responseHandler.get();
+                }
+                catch (WriteTimeoutException|WriteFailureException ex)
+                {
+                    if (consistency_level != ConsistencyLevel.ANY)
+                    {
+                        markWriteTimeoutOrFailure(ex);
+                        throw ex;
+                    }
+                    hintMutations(mutations);
+                }
+                finally
+                {
+                    writeMetrics.addNano(System.nanoTime() - startTime);
+                }
+                return Futures.immediateFuture(null);
+            }
+        });
+    }
+
+    /**
+     * Sends the mutations to their replicas (or applies them locally) without waiting for the responses.
+     *
+     * @return the handlers tracking the responses, one per mutation
+     */
+    private static List<AbstractWriteResponseHandler<IMutation>> performWrites(Collection<? extends IMutation> mutations, ConsistencyLevel consistency_level)
+    throws UnavailableException, OverloadedException
+    {
+        final String localDataCenter = DatabaseDescriptor.getEndpointSnitch().getDatacenter(FBUtilities.getBroadcastAddress());
+
+        List<AbstractWriteResponseHandler<IMutation>> responseHandlers = new ArrayList<>(mutations.size());
+        for (IMutation mutation : mutations)
+        {
+            if (mutation instanceof CounterMutation)
+            {
+                responseHandlers.add(mutateCounter((CounterMutation)mutation, localDataCenter));
+            }
+            else
+            {
+                WriteType wt = mutations.size() <= 1 ? WriteType.SIMPLE : WriteType.UNLOGGED_BATCH;
+                responseHandlers.add(performWrite(mutation, consistency_level, localDataCenter, standardWritePerformer, null, wt));
+            }
+        }
+        return responseHandlers;
+    }
+
+    private static void markWriteTimeoutOrFailure(RequestExecutionException ex)
+    {
+        if (ex instanceof WriteFailureException)
+        {
+            writeMetrics.failures.mark();
+            WriteFailureException fe = (WriteFailureException)ex;
+            Tracing.trace("Write failure; received {} of {} required replies, failed {} requests",
+                          fe.received, fe.blockFor, fe.failures);
+        }
+        else
+        {
+            writeMetrics.timeouts.mark();
+            WriteTimeoutException te = (WriteTimeoutException)ex;
+            Tracing.trace("Write timeout; received {} of {} required replies", te.received, te.blockFor);
+        }
+    }
+
     /**
      * Hint all the mutations (except counters, which can't be safely retried).  This means
      * we'll re-hint any successful ones; doesn't seem worth it to track individual success
@@ -746,6 +836,29 @@ public class StorageProxy implements StorageProxyMBean
         }
     }
 
+    /**
+     * Non-blocking variant of {@link #mutateWithTriggers} for non-atomic mutations. Writes that go through the
+     * batchlog, because triggers augmented them or they update a materialized view, wait on the batchlog replicas
+     * in several steps and are still performed synchronously.
+     */
+    @SuppressWarnings("unchecked")
+    public static ListenableFuture<Void> mutateWithTriggersAsync(Collection<? extends IMutation> mutations,
+                                                                 ConsistencyLevel consistencyLevel)
+    throws WriteTimeoutException, WriteFailureException, UnavailableException, OverloadedException, InvalidRequestException
+    {
+        Collection<Mutation> augmented = TriggerExecutor.instance.execute(mutations);
+
+        boolean updatesView = Keyspace.open(mutations.iterator().next().getKeyspaceName())
+                              .viewManager
+                              .updatesAffectView(mutations, true);
+
+        if (augmented == null && !updatesView)
+            return mutateAsync(mutations, consistencyLevel);
+
+        mutateAtomically(augmented != null ? augmented : (Collection<Mutation>) mutations, consistencyLevel, updatesView);
+        return Futures.immediateFuture(null);
+    }
+
     /**
      * See mutate. Adds additional steps before and after writing a batch.
      * Before writing the batch (but after doing availability check against the FD for the row replicas):
@@ -1422,6 +1535,27 @@ public class StorageProxy implements StorageProxyMBean
              : readRegular(group, consistencyLevel);
     }
 
+    /**
+     * Non-blocking variant of {@link #read(SinglePartitionReadCommand.Group, ConsistencyLevel, ClientState)}: the
+     * returned future completes with the result once the replicas have answered, or fails with the exception read
+     * would have thrown. The future is completed by the thread handling the last response (or the timeout), so
+     * consumers that do more than trivial work on the result should use their own executor.
+     * Reads at SERIAL consistency go through paxos and are still performed synchronously.
+     */
+    public static ListenableFuture<PartitionIterator> readAsync(SinglePartitionReadCommand.Group group, ConsistencyLevel consistencyLevel, ClientState state)
+    throws UnavailableException, IsBootstrappingException, ReadFailureException, ReadTimeoutException, InvalidRequestException
+    {
+        if (StorageService.instance.isBootstrapMode() && !systemKeyspaceQuery(group.commands))
+        {
+            readMetrics.unavailables.mark();
+            throw new IsBootstrappingException();
+        }
+
+        return consistencyLevel.isSerialConsistency()
+             ? Futures.immediateFuture(readWithPaxos(group, consistencyLevel, state))
+             : readRegularAsync(group, consistencyLevel);
+    }
+
     private static PartitionIterator readWithPaxos(SinglePartitionReadCommand.Group group, ConsistencyLevel consistencyLevel, ClientState state)
     throws InvalidRequestException, UnavailableException, ReadFailureException, ReadTimeoutException
     {
@@ -1524,14 +1658,74 @@ public class StorageProxy implements StorageProxyMBean
         }
         finally
         {
-            long latency = System.nanoTime() - start;
-            readMetrics.addNano(latency);
-            // TODO avoid giving every command the same latency number.  Can fix this in CASSADRA-5329
-            for (ReadCommand command : group.commands)
-                Keyspace.openAndGetStore(command.metadata()).metric.coordinatorReadLatency.update(latency, TimeUnit.NANOSECONDS);
+            recordReadLatency(group, start);
         }
     }
 
+    private static ListenableFuture<PartitionIterator> readRegularAsync(final SinglePartitionReadCommand.Group group, ConsistencyLevel consistencyLevel)
+    throws UnavailableException
+    {
+        final long start = System.nanoTime();
+        int cmdCount = group.commands.size();
+
+        SinglePartitionReadLifecycle[] reads = new SinglePartitionReadLifecycle[cmdCount];
+        try
+        {
+            for (int i = 0; i < cmdCount; i++)
+                reads[i] = new SinglePartitionReadLifecycle(group.commands.get(i), consistencyLevel);
+        }
+        catch (UnavailableException e)
+        {
+            readMetrics.unavailables.mark();
+            recordReadLatency(group, start);
+            throw e;
+        }
+
+        List<ListenableFuture<PartitionIterator>> results = new ArrayList<>(cmdCount);
+        for (int i = 0; i < cmdCount; i++)
+            results.add(reads[i].executeAsync());
+
+        ListenableFuture<PartitionIterator> result = Futures.transform(Futures.allAsList(results), new Function<List<PartitionIterator>, PartitionIterator>()
+        {
+            public PartitionIterator apply(List<PartitionIterator> partitions)
+            {
+                PartitionIterator concatenated = PartitionIterators.concat(partitions);
+                // If we have more than one command, then despite each read command honoring the limit, the total result
+                // might not honor it and so we should enforce it
+                return group.commands.size() > 1
+                     ? group.limits().filter(concatenated, group.nowInSec())
+                     : concatenated;
+            }
+        });
+
+        Futures.addCallback(result, new FutureCallback<PartitionIterator>()
+        {
+            public void onSuccess(PartitionIterator partitions)
+            {
+                recordReadLatency(group, start);
+            }
+
+            public void onFailure(Throwable t)
+            {
+                if (t instanceof ReadTimeoutException)
+                    readMetrics.timeouts.mark();
+                else if (t instanceof ReadFailureException)
+                    readMetrics.failures.mark();
+                recordReadLatency(group, start);
+            }
+        });
+        return result;
+    }
+
+    private static void recordReadLatency(SinglePartitionReadCommand.Group group, long start)
+    {
+        long latency = System.nanoTime() - start;
+        readMetrics.addNano(latency);
+        // TODO avoid giving every command the same latency number.  Can fix this in CASSADRA-5329
+        for (ReadCommand command : group.commands)
+            Keyspace.openAndGetStore(command.metadata()).metric.coordinatorReadLatency.update(latency, TimeUnit.NANOSECONDS);
+    }
+
     /**
      * This function executes local and remote reads, and blocks for the results:
      *
@@ -1670,6 +1864,36 @@ public class StorageProxy implements StorageProxyMBean
             assert result != null;
             return result;
         }
+
+        /**
+         * Non-blocking equivalent of calling doInitialQueries, maybeTryAdditionalReplicas,
+         * awaitResultsAndRetryOnDigestMismatch and maybeAwaitFullDataRead in turn: the steps that would wait on
+         * the replicas are run once the corresponding handler has completed instead.
+         */
+        ListenableFuture<PartitionIterator> executeAsync()
+        {
+            doInitialQueries();
+            executor.scheduleAdditionalReplicas();
+
+            return Futures.transform(executor.handler.completion(), new AsyncFunction<Void, PartitionIterator>()
+            {
+                public ListenableFuture<PartitionIterator> apply(Void ignored) throws Exception
+                {
+                    awaitResultsAndRetryOnDigestMismatch();
+                    if (repairHandler == null)
+                        return Futures.immediateFuture(getResult());
+
+                    return Futures.transform(repairHandler.completion(), new AsyncFunction<Void, PartitionIterator>()
+                    {
+                        public ListenableFuture<PartitionIterator> apply(Void ignored) throws Exception
+                        {
+                            maybeAwaitFullDataRead();
+                            return Futures.immediateFuture(getResult());
+                        }
+                    });
+                }
+            });
+        }
     }
 
     static class LocalReadRunnable extends DroppableRunnable
@@ -1856,6 +2080,7 @@ public class StorageProxy implements StorageProxyMBean
     private static class SingleRangeResponse extends AbstractIterator<RowIterator> implements PartitionIterator
     {
         private final ReadCallback handler;
+        private final long sentAt = System.nanoTime();
         private PartitionIterator result;
 
         private SingleRangeResponse(ReadCallback handler)
@@ -1863,6 +2088,11 @@ public class StorageProxy implements StorageProxyMBean
             this.handler = handler;
         }
 
+        private boolean isReady()
+        {
+            return result != null || handler.isDone();
+        }
+
         private void waitForResponse() throws ReadTimeoutException
         {
             if (result != null)
@@ -1893,20 +2123,22 @@ public class StorageProxy implements StorageProxyMBean
 
     private static class RangeCommandIterator extends AbstractIterator<RowIterator> implements PartitionIterator
     {
-        private final Iterator<RangeForQuery> ranges;
+        final Iterator<RangeForQuery> ranges;
         private final int totalRangeCount;
-        private final PartitionRangeReadCommand command;
+        final PartitionRangeReadCommand command;
         private final Keyspace keyspace;
         private final ConsistencyLevel consistency;
 
         private final long startTime;
         private CountingPartitionIterator sentQueryIterator;
 
-        private int concurrencyFactor;
+        int concurrencyFactor;
         // The two following "metric" are maintained to improve the concurrencyFactor
         // when it was not good enough initially.
-        private int liveReturned;
-        private int rangesQueried;
+        int liveReturned;
+        int rangesQueried;
+        // the maximum number of concurrent requests, for the metrics
+        int maxInFlight;
 
         public RangeCommandIterator(RangeIterator ranges, PartitionRangeReadCommand command, int concurrencyFactor, Keyspace keyspace, ConsistencyLevel consistency)
         {
@@ -1961,16 +2193,28 @@ public class StorageProxy implements StorageProxyMBean
                          rowsPerRange, (int) remainingRows, concurrencyFactor);
         }
 
-        private SingleRangeResponse query(RangeForQuery toQuery)
+        SingleRangeResponse query(RangeForQuery toQuery)
         {
             PartitionRangeReadCommand rangeCommand = command.forSubRange(toQuery.range);
+            InetAddress extraReplica = DatabaseDescriptor.getSpeculativeRangeReads() ? extraReplica(toQuery) : null;
+            // only wait for the extra replica if the request to it is actually going to be sent, not to time out on
+            // it rather than fail fast when one of the replicas queried fails
+            long speculationDelay = extraReplica == null ? -1 : speculationDelayNanos(rangeCommand, toQuery.filteredEndpoints);
+            if (speculationDelay < 0)
+                extraReplica = null;
 
-            DataResolver resolver = new DataResolver(keyspace, rangeCommand, consistency, toQuery.filteredEndpoints.size());
+            DataResolver resolver = new DataResolver(keyspace, rangeCommand, consistency, toQuery.filteredEndpoints.size() + (extraReplica == null ? 0 : 1));
 
             int blockFor = consistency.blockFor(keyspace);
             int minResponses = Math.min(toQuery.filteredEndpoints.size(), blockFor);
             List<InetAddress> minimalEndpoints = toQuery.filteredEndpoints.subList(0, minResponses);
-            ReadCallback handler = new ReadCallback(resolver, consistency, rangeCommand, minimalEndpoints);
+            List<InetAddress> handlerEndpoints = minimalEndpoints;
+            if (extraReplica != null)
+            {
+                handlerEndpoints = new ArrayList<>(minimalEndpoints);
+                handlerEndpoints.add(extraReplica);
+            }
+            ReadCallback handler = new ReadCallback(resolver, consistency, rangeCommand, handlerEndpoints);
 
             handler.assureSufficientLiveNodes();
 
@@ -1988,9 +2232,71 @@ public class StorageProxy implements StorageProxyMBean
                 }
             }
 
+            if (extraReplica != null)
+                speculate(rangeCommand, handler, extraReplica, speculationDelay);
+
             return new SingleRangeResponse(handler);
         }
 
+        /**
+         * Returns the live replica to speculate on for a sub-range, if the table speculates and there is one. It is
+         * taken from the local data center for the consistency levels only counting the responses from there.
+         */
+        private InetAddress extraReplica(RangeForQuery toQuery)
+        {
+            if (command.metadata().params.speculativeRetry.equals(SpeculativeRetryParam.NONE))
+                return null;
+
+            for (InetAddress endpoint : toQuery.liveEndpoints)
+            {
+                if (!toQuery.filteredEndpoints.contains(endpoint) && (!consistency.isDatacenterLocal() || consistency.isLocal(endpoint)))
+                    return endpoint;
+            }
+            return null;
+        }
+
+        /**
+         * Returns how long to wait for the replicas queried before speculating on the extra replica: 0 if the table
+         * always speculates, or -1 if it won't, when there's no latency information or we're overloaded.
+         */
+        private long speculationDelayNanos(PartitionRangeReadCommand rangeCommand, List<InetAddress> replicas)
+        {
+            ColumnFamilyStore cfs = keyspace.getColumnFamilyStore(command.metadata().cfId);
+            if (cfs.metadata.params.speculativeRetry.equals(SpeculativeRetryParam.ALWAYS))
+                return 0;
+
+            long delay = AbstractReadExecutor.speculationDelayNanos(cfs, replicas);
+            return delay > TimeUnit.MILLISECONDS.toNanos(rangeCommand.getTimeout()) ? -1 : delay;
+        }
+
+        /**
+         * Sends the sub-range request to the extra replica right away if the table always speculates, or once the
+         * replicas queried haven't answered within the speculation delay otherwise.
+         */
+        private void speculate(PartitionRangeReadCommand rangeCommand, ReadCallback handler, InetAddress extraReplica, long delay)
+        {
+            ColumnFamilyStore cfs = keyspace.getColumnFamilyStore(command.metadata().cfId);
+            if (delay == 0)
+            {
+                sendSpeculativeRequest(cfs, rangeCommand, handler, extraReplica);
+                return;
+            }
+
+            ScheduledFuture<?> speculation = ScheduledExecutors.scheduledTasks.schedule(() -> {
+                if (!handler.isDone())
+                    sendSpeculativeRequest(cfs, rangeCommand, handler, extraReplica);
+            }, delay, TimeUnit.NANOSECONDS);
+            handler.completion().addListener(() -> speculation.cancel(false), MoreExecutors.directExecutor());
+        }
+
+        private static void sendSpeculativeRequest(ColumnFamilyStore cfs, PartitionRangeReadCommand rangeCommand, ReadCallback handler, InetAddress extraReplica)
+        {
+            logger.trace("speculating range read retry on {}", extraReplica);
+            MessageOut<ReadCommand> message = rangeCommand.createMessage(MessagingService.instance().getVersion(extraReplica));
+            MessagingService.instance().sendRRWithFailure(message, extraReplica, handler);
+            cfs.metric.speculativeRetries.inc();
+        }
+
         private CountingPartitionIterator sendNextRequests()
         {
             List<PartitionIterator> concurrentQueries = new ArrayList<>(concurrencyFactor);
@@ -2000,6 +2306,7 @@ public class StorageProxy implements StorageProxyMBean
                 ++rangesQueried;
             }
 
+            maxInFlight = Math.max(maxInFlight, concurrentQueries.size());
             Tracing.trace("Submitted {} concurrent range requests", concurrentQueries.size());
             // We want to count the results for the sake of updating the concurrency factor (see updateConcurrencyFactor) but we don't want to
             // enforce any particular limit at this point (this could break code than rely on postReconciliationProcessing), hence the DataLimits.NONE.
@@ -2011,17 +2318,146 @@ public class StorageProxy implements StorageProxyMBean
             try
             {
                 if (sentQueryIterator != null)
+                {
+                    liveReturned += sentQueryIterator.counter().counted();
                     sentQueryIterator.close();
+                }
             }
             finally
             {
                 long latency = System.nanoTime() - startTime;
                 rangeMetrics.addNano(latency);
+                rangeMetrics.subRangeRequests.update(rangesQueried);
+                rangeMetrics.concurrency.update(maxInFlight);
+                rangeMetrics.rows.update(liveReturned);
                 Keyspace.openAndGetStore(command.metadata()).metric.coordinatorScanLatency.update(latency, TimeUnit.NANOSECONDS);
             }
         }
     }
 
+    /**
+     * A {@link RangeCommandIterator} that keeps a window of sub-range requests in flight instead of sending them in
+     * batches: the following ranges are requested while the current one is consumed, so that their responses are
+     * ready by the time they are needed.
+     *
+     * The window grows whenever the consumer has to wait for a response, to the number of requests covering the
+     * latency of that response at the rate ranges have been consumed so far (so it doubles while ranges come back
+     * empty), and requests are only sent for as many ranges as needed to reach the limit at the observed number
+     * of rows per range.
+     */
+    private static class AdaptiveRangeCommandIterator extends RangeCommandIterator
+    {
+        private final int maxConcurrency;
+        private final Deque<SingleRangeResponse> inFlight = new ArrayDeque<>();
+        private CountingPartitionIterator current;
+
+        private int rangesConsumed;
+        private long consumingSince;
+        private long consumeNanos;
+
+        public AdaptiveRangeCommandIterator(RangeIterator ranges, PartitionRangeReadCommand command, int concurrencyFactor, int maxConcurrency, Keyspace keyspace, ConsistencyLevel consistency)
+        {
+            super(ranges, command, Math.min(concurrencyFactor, maxConcurrency), keyspace, consistency);
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        public RowIterator computeNext()
+        {
+            while (current == null || !current.hasNext())
+            {
+                if (current != null)
+                    finishCurrent();
+
+                sendRequests();
+                if (inFlight.isEmpty())
+                    return endOfData();
+
+                startNext();
+                sendRequests();
+            }
+            return current.next();
+        }
+
+        private void finishCurrent()
+        {
+            consumeNanos += System.nanoTime() - consumingSince;
+            liveReturned += current.counter().counted();
+            rangesConsumed++;
+            current.close();
+            current = null;
+        }
+
+        private void startNext()
+        {
+            SingleRangeResponse response = inFlight.poll();
+            boolean stalled = !response.isReady();
+            response.waitForResponse();
+
+            long now = System.nanoTime();
+            if (stalled)
+            {
+                rangeMetrics.stalls.mark();
+                growWindow(now - response.sentAt);
+            }
+            consumingSince = now;
+            current = new CountingPartitionIterator(response, DataLimits.NONE, command.nowInSec());
+        }
+
+        private void growWindow(long latency)
+        {
+            long consumeNanosPerRange = rangesConsumed == 0 ? 0 : consumeNanos / rangesConsumed;
+            long covering = consumeNanosPerRange == 0 ? 2L * concurrencyFactor : latency / consumeNanosPerRange + 1;
+            concurrencyFactor = (int) Math.min(maxConcurrency, Math.max(concurrencyFactor + 1, covering));
+            Tracing.trace("Waited {} us for a range response, now keeping up to {} range requests in flight",
+                          TimeUnit.NANOSECONDS.toMicros(latency), concurrencyFactor);
+        }
+
+        /**
+         * @return the number of ranges, including the current one and the ones in flight, expected to be needed to
+         * reach the limit at the number of rows per range observed so far
+         */
+        private int neededRanges()
+        {
+            if (liveReturned == 0)
+                return Integer.MAX_VALUE;
+
+            int remainingRows = command.limits().count() - liveReturned;
+            float rowsPerRange = (float) liveReturned / rangesConsumed;
+            return Math.max(1, (int) Math.ceil(remainingRows / rowsPerRange));
+        }
+
+        private void sendRequests()
+        {
+            int target = Math.min(concurrencyFactor, neededRanges());
+            int outstanding = inFlight.size() + (current == null ? 0 : 1);
+            while (outstanding < target && ranges.hasNext())
+            {
+                inFlight.add(query(ranges.next()));
+                ++rangesQueried;
+                ++outstanding;
+            }
+            maxInFlight = Math.max(maxInFlight, outstanding);
+        }
+
+        public void close()
+        {
+            try
+            {
+                if (current != null)
+                {
+                    liveReturned += current.counter().counted();
+                    current.close();
+                }
+                for (SingleRangeResponse response : inFlight)
+                    response.close();
+            }
+            finally
+            {
+                super.close();
+            }
+        }
+    }
+
     @SuppressWarnings("resource")
     public static PartitionIterator getRangeSlice(PartitionRangeReadCommand command, ConsistencyLevel consistencyLevel)
     throws UnavailableException, ReadFailureException, ReadTimeoutException
@@ -2045,7 +2481,10 @@ public class StorageProxy implements StorageProxyMBean
 
         // Note that in general, a RangeCommandIterator will honor the command limit for each range, but will not enforce it globally.
 
-        return command.limits().filter(command.postReconciliationProcessing(new RangeCommandIterator(ranges, command, concurrencyFactor, keyspace, consistencyLevel)), command.nowInSec());
+        RangeCommandIterator rangeCommandIterator = DatabaseDescriptor.getAdaptiveRangeReads()
+                                                  ? new AdaptiveRangeCommandIterator(ranges, command, concurrencyFactor, DatabaseDescriptor.getRangeReadMaxConcurrency(), keyspace, consistencyLevel)
+                                                  : new RangeCommandIterator(ranges, command, concurrencyFactor, keyspace, consistencyLevel);
+        return command.limits().filter(command.postReconciliationProcessing(rangeCommandIterator), command.nowInSec());
     }
 
     public Map<String, List<String>> getSchemaVersions()
@@ -2518,6 +2957,9 @@ public class StorageProxy implements StorageProxyMBean
     public Long getTruncateRpcTimeout() { return DatabaseDescriptor.getTruncateRpcTimeout(); }
     public void setTruncateRpcTimeout(Long timeoutInMillis) { DatabaseDescriptor.setTruncateRpcTimeout(timeoutInMillis); }
 
+    public boolean getAdaptiveRangeReads() { return DatabaseDescriptor.getAdaptiveRangeReads(); }
+    public void setAdaptiveRangeReads(boolean adaptive) { DatabaseDescriptor.setAdaptiveRangeReads(adaptive); }
+
     public Long getNativeTransportMaxConcurrentConnections() { return DatabaseDescriptor.getNativeTransportMaxConcurrentConnections(); }
     public void setNativeTransportMaxConcurrentConnections(Long nativeTransportMaxConcurrentConnections) { DatabaseDescriptor.setNativeTransportMaxConcurrentConnections(nativeTransportMaxConcurrentConnections); }
 
@@ -80,13 +80,15 @@ public class ConnectionHandler
     public void initiate() throws IOException
     {
         logger.debug("[Stream #{}] Sending stream init for incoming stream", session.planId());
+        // the peer only accepts the versions it knows of
+        int version = StreamMessage.versionFor(session.peer);
         Socket incomingSocket = session.createConnection();
-        incoming.start(incomingSocket, StreamMessage.CURRENT_VERSION);
+        incoming.start(incomingSocket, version);
         incoming.sendInitMessage(incomingSocket, true);
 
         logger.debug("[Stream #{}] Sending stream init for outgoing stream", session.planId());
         Socket outgoingSocket = session.createConnection();
-        outgoing.start(outgoingSocket, StreamMessage.CURRENT_VERSION);
+        outgoing.start(outgoingSocket, version);
         outgoing.sendInitMessage(outgoingSocket, false);
     }
 
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.streaming;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.base.Throwables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.io.sstable.Component;
+import org.apache.cassandra.io.sstable.SSTableMultiWriter;
+import org.apache.cassandra.io.sstable.SSTableZeroCopyWriter;
+import org.apache.cassandra.streaming.messages.FileMessageHeader;
+import org.apache.cassandra.utils.Pair;
+
+/**
+ * StreamReader receiving all the component files of an SSTable as they are (see {@link EntireSSTableStreamWriter}).
+ * They are written straight to disk: unlike partition by partition streaming, nothing is deserialized and the indexes
+ * and filters of the SSTable don't have to be rebuilt.
+ */
+public class EntireSSTableStreamReader extends StreamReader
+{
+    private static final Logger logger = LoggerFactory.getLogger(EntireSSTableStreamReader.class);
+
+    private final List<Pair<Component, Long>> components;
+
+    public EntireSSTableStreamReader(FileMessageHeader header, StreamSession session)
+    {
+        super(header, session);
+        assert header.isEntireSSTable();
+        this.components = header.components;
+    }
+
+    @Override
+    @SuppressWarnings("resource")
+    public SSTableMultiWriter read(ReadableByteChannel channel) throws IOException
+    {
+        logger.debug("reading entire sstable from {}, repairedAt = {}, level = {}", session.peer, repairedAt, sstableLevel);
+        long totalSize = totalSize();
+        // the files are kept as they are, so they must be in the version new sstables are written in
+        if (!inputVersion.isLatestVersion())
+            throw new IOException("Can't receive entire sstables of version " + inputVersion);
+
+        ColumnFamilyStore cfs = getColumnFamilyStore();
+        desc = createDescriptor(cfs, totalSize, format);
+        Set<Component> componentSet = new HashSet<>();
+        for (Pair<Component, Long> component : components)
+            componentSet.add(component.left);
+        // the digest isn't sent, and is computed again from the data received
+        if (desc.digestComponent != null)
+            componentSet.add(desc.digestComponent);
+        SSTableZeroCopyWriter writer = new SSTableZeroCopyWriter(desc, cfs.metadata, componentSet, repairedAt, sstableLevel, session.getTransaction(cfId));
+
+        try
+        {
+            for (Pair<Component, Long> component : components)
+            {
+                writer.writeComponent(component.left, channel, component.right);
+                session.progress(desc, ProgressInfo.Direction.IN, writer.getFilePointer(), totalSize);
+            }
+            return writer;
+        }
+        catch (Throwable e)
+        {
+            SSTableMultiWriter.abortOrDie(writer);
+
+            drain(Channels.newInputStream(channel), writer.getFilePointer());
+            if (e instanceof IOException)
+                throw (IOException) e;
+            else
+                throw Throwables.propagate(e);
+        }
+    }
+
+    @Override
+    protected long totalSize()
+    {
+        long size = 0;
+        for (Pair<Component, Long> component : components)
+            size += component.right;
+        return size;
+    }
+}
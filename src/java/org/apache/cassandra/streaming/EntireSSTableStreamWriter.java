@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.streaming;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.cassandra.io.sstable.Component;
+import org.apache.cassandra.io.sstable.Descriptor;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.io.util.ChannelProxy;
+import org.apache.cassandra.io.util.DataOutputStreamPlus;
+import org.apache.cassandra.streaming.compress.CompressedStreamWriter;
+import org.apache.cassandra.utils.Pair;
+
+/**
+ * StreamWriter sending all the component files of an SSTable as they are, which is possible when all its data is
+ * to be streamed. The files are transferred from the page cache to the socket without being copied through the
+ * JVM (sendfile), and the receiver doesn't have to rebuild the SSTable (see {@link EntireSSTableStreamReader}).
+ */
+public class EntireSSTableStreamWriter extends StreamWriter
+{
+    private final Descriptor links;
+    private final List<Pair<Component, Long>> components;
+
+    /**
+     * @param links the descriptor of the links to the components of the sstable to stream, taken when their lengths
+     * were, as the summary and the metadata of the sstable itself can be rewritten meanwhile
+     */
+    public EntireSSTableStreamWriter(SSTableReader sstable, Descriptor links, List<Pair<Component, Long>> components, StreamSession session)
+    {
+        super(sstable, Collections.emptyList(), session);
+        this.links = links;
+        this.components = components;
+    }
+
+    @Override
+    public void write(DataOutputStreamPlus out) throws IOException
+    {
+        long totalSize = totalSize();
+        long progress = 0L;
+        for (Pair<Component, Long> component : components)
+        {
+            try (ChannelProxy channel = new ChannelProxy(new File(links.filenameFor(component.left))))
+            {
+                long length = component.right;
+                if (channel.size() < length)
+                    throw new IOException(String.format("%s is smaller than the %d bytes announced", channel.filePath(), length));
+
+                long bytesTransferred = 0;
+                while (bytesTransferred < length)
+                {
+                    final long position = bytesTransferred;
+                    final int toTransfer = (int) Math.min(CompressedStreamWriter.CHUNK_SIZE, length - bytesTransferred);
+                    limiter.acquire(toTransfer);
+                    long lastWrite = out.applyToChannel((wbc) -> channel.transferTo(position, toTransfer, wbc));
+                    bytesTransferred += lastWrite;
+                    progress += lastWrite;
+                    session.progress(sstable.descriptor, ProgressInfo.Direction.OUT, progress, totalSize);
+                }
+            }
+        }
+    }
+
+    @Override
+    protected long totalSize()
+    {
+        long size = 0;
+        for (Pair<Component, Long> component : components)
+            size += component.right;
+        return size;
+    }
+}
@@ -90,14 +90,7 @@ public class StreamReader
         logger.debug("reading file from {}, repairedAt = {}, level = {}", session.peer, repairedAt, sstableLevel);
         long totalSize = totalSize();
 
-        Pair<String, String> kscf = Schema.instance.getCF(cfId);
-        if (kscf == null)
-        {
-            // schema was dropped during streaming
-            throw new IOException("CF " + cfId + " was dropped during streaming");
-        }
-        ColumnFamilyStore cfs = Keyspace.open(kscf.left).getColumnFamilyStore(kscf.right);
-
+        ColumnFamilyStore cfs = getColumnFamilyStore();
         SSTableMultiWriter writer = createWriter(cfs, totalSize, repairedAt, format);
 
         DataInputStream dis = new DataInputStream(new LZFInputStream(Channels.newInputStream(channel)));
@@ -125,14 +118,29 @@ public class StreamReader
         }
     }
 
-    protected SSTableMultiWriter createWriter(ColumnFamilyStore cfs, long totalSize, long repairedAt, SSTableFormat.Type format) throws IOException
+    protected ColumnFamilyStore getColumnFamilyStore() throws IOException
+    {
+        Pair<String, String> kscf = Schema.instance.getCF(cfId);
+        if (kscf == null)
+        {
+            // schema was dropped during streaming
+            throw new IOException("CF " + cfId + " was dropped during streaming");
+        }
+        return Keyspace.open(kscf.left).getColumnFamilyStore(kscf.right);
+    }
+
+    protected Descriptor createDescriptor(ColumnFamilyStore cfs, long totalSize, SSTableFormat.Type format) throws IOException
     {
         Directories.DataDirectory localDir = cfs.getDirectories().getWriteableLocation(totalSize);
         if (localDir == null)
             throw new IOException("Insufficient disk space to store " + totalSize + " bytes");
 
-        desc = Descriptor.fromFilename(cfs.getSSTablePath(cfs.getDirectories().getLocationForDisk(localDir), format));
+        return Descriptor.fromFilename(cfs.getSSTablePath(cfs.getDirectories().getLocationForDisk(localDir), format));
+    }
 
+    protected SSTableMultiWriter createWriter(ColumnFamilyStore cfs, long totalSize, long repairedAt, SSTableFormat.Type format) throws IOException
+    {
+        desc = createDescriptor(cfs, totalSize, format);
 
         return cfs.createSSTableMultiWriter(desc, estimatedKeys, repairedAt, sstableLevel, header.toHeader(cfs.metadata), session.getTransaction(cfId));
     }
@@ -17,6 +17,7 @@
  */
 package org.apache.cassandra.streaming;
 
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -25,9 +26,11 @@ import com.google.common.collect.Iterables;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.cassandra.cache.RowCacheKey;
 import org.apache.cassandra.concurrent.NamedThreadFactory;
 import org.apache.cassandra.config.Schema;
 import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.DecoratedKey;
 import org.apache.cassandra.db.Keyspace;
 import org.apache.cassandra.db.Mutation;
 import org.apache.cassandra.db.compaction.OperationType;
@@ -37,7 +40,9 @@ import org.apache.cassandra.db.rows.UnfilteredRowIterator;
 import org.apache.cassandra.db.view.View;
 import org.apache.cassandra.io.sstable.ISSTableScanner;
 import org.apache.cassandra.io.sstable.SSTableMultiWriter;
+import org.apache.cassandra.io.sstable.SSTableZeroCopyWriter;
 import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.service.CacheService;
 import org.apache.cassandra.utils.JVMStabilityInspector;
 import org.apache.cassandra.utils.Pair;
 import org.apache.cassandra.utils.concurrent.Refs;
@@ -133,14 +138,18 @@ public class StreamReceiveTask extends StreamTask
             try
             {
                 List<SSTableReader> readers = new ArrayList<>();
+                List<SSTableReader> entireSSTables = new ArrayList<>();
                 for (SSTableMultiWriter writer : task.sstables)
                 {
                     Collection<SSTableReader> newReaders = writer.finish(true);
                     readers.addAll(newReaders);
+                    if (writer instanceof SSTableZeroCopyWriter)
+                        entireSSTables.addAll(newReaders);
                     task.txn.update(newReaders, false);
                 }
 
                 task.sstables.clear();
+                invalidateCachedPartitions(cfs, entireSSTables);
 
                 try (Refs<SSTableReader> refs = Refs.ref(readers))
                 {
@@ -198,6 +207,34 @@ public class StreamReceiveTask extends StreamTask
         }
     }
 
+    /**
+     * Partitions streamed one by one are invalidated in the row cache as they are received, but those of entire
+     * sstables, which are received as files, have to be invalidated here.
+     */
+    private static void invalidateCachedPartitions(ColumnFamilyStore cfs, Collection<SSTableReader> sstables)
+    {
+        if (sstables.isEmpty() || !cfs.isRowCacheEnabled())
+            return;
+
+        Iterator<RowCacheKey> keys = CacheService.instance.rowCache.keyIterator();
+        while (keys.hasNext())
+        {
+            RowCacheKey key = keys.next();
+            if (!key.ksAndCFName.equals(cfs.metadata.ksAndCFName))
+                continue;
+
+            DecoratedKey decoratedKey = cfs.decorateKey(ByteBuffer.wrap(key.key));
+            for (SSTableReader sstable : sstables)
+            {
+                if (sstable.first.compareTo(decoratedKey) <= 0 && sstable.last.compareTo(decoratedKey) >= 0)
+                {
+                    cfs.invalidateCachedPartition(key);
+                    break;
+                }
+            }
+        }
+    }
+
     /**
      * Abort this task.
      * If the task already received all files and
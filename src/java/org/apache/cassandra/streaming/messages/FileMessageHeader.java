@@ -22,11 +22,11 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
-import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.db.SerializationHeader;
 import org.apache.cassandra.db.TypeSizes;
 import org.apache.cassandra.io.IVersionedSerializer;
 import org.apache.cassandra.io.compress.CompressionMetadata;
+import org.apache.cassandra.io.sstable.Component;
 import org.apache.cassandra.io.sstable.format.SSTableFormat;
 import org.apache.cassandra.io.util.DataInputPlus;
 import org.apache.cassandra.io.util.DataOutputPlus;
@@ -56,6 +56,8 @@ public class FileMessageHeader
     public final long repairedAt;
     public final int sstableLevel;
     public final SerializationHeader.Component header;
+    /** The component files and their sizes, if the whole sstable is sent as it is, or null */
+    public final List<Pair<Component, Long>> components;
 
     public FileMessageHeader(UUID cfId,
                              int sequenceNumber,
@@ -67,6 +69,21 @@ public class FileMessageHeader
                              long repairedAt,
                              int sstableLevel,
                              SerializationHeader.Component header)
+    {
+        this(cfId, sequenceNumber, version, format, estimatedKeys, sections, compressionInfo, repairedAt, sstableLevel, header, null);
+    }
+
+    public FileMessageHeader(UUID cfId,
+                             int sequenceNumber,
+                             Version version,
+                             SSTableFormat.Type format,
+                             long estimatedKeys,
+                             List<Pair<Long, Long>> sections,
+                             CompressionInfo compressionInfo,
+                             long repairedAt,
+                             int sstableLevel,
+                             SerializationHeader.Component header,
+                             List<Pair<Component, Long>> components)
     {
         this.cfId = cfId;
         this.sequenceNumber = sequenceNumber;
@@ -78,6 +95,15 @@ public class FileMessageHeader
         this.repairedAt = repairedAt;
         this.sstableLevel = sstableLevel;
         this.header = header;
+        this.components = components;
+    }
+
+    /**
+     * @return whether all the component files of the sstable are sent as they are, rather than sections of its data
+     */
+    public boolean isEntireSSTable()
+    {
+        return components != null;
     }
 
     /**
@@ -86,7 +112,12 @@ public class FileMessageHeader
     public long size()
     {
         long size = 0;
-        if (compressionInfo != null)
+        if (components != null)
+        {
+            for (Pair<Component, Long> component : components)
+                size += component.right;
+        }
+        else if (compressionInfo != null)
         {
             // calculate total length of transferring chunks
             for (CompressionMetadata.Chunk chunk : compressionInfo.chunks)
@@ -113,6 +144,7 @@ public class FileMessageHeader
         sb.append(", compressed?: ").append(compressionInfo != null);
         sb.append(", repairedAt: ").append(repairedAt);
         sb.append(", level: ").append(sstableLevel);
+        sb.append(", entire sstable: ").append(isEntireSSTable());
         sb.append(')');
         return sb.toString();
     }
@@ -162,17 +194,35 @@ public class FileMessageHeader
 
             if (version >= StreamMessage.VERSION_30)
                 SerializationHeader.serializer.serialize(header.version, header.header, out);
+
+            if (version < StreamMessage.VERSION_32 && header.isEntireSSTable())
+                throw new UnsupportedOperationException("Can't stream entire sstables to nodes < 3.2");
+
+            if (version >= StreamMessage.VERSION_32)
+            {
+                out.writeBoolean(header.isEntireSSTable());
+                if (header.isEntireSSTable())
+                {
+                    out.writeInt(header.components.size());
+                    for (Pair<Component, Long> component : header.components)
+                    {
+                        out.writeUTF(component.left.name);
+                        out.writeLong(component.right);
+                    }
+                }
+            }
         }
 
         public FileMessageHeader deserialize(DataInputPlus in, int version) throws IOException
         {
             UUID cfId = UUIDSerializer.serializer.deserialize(in, MessagingService.current_version);
             int sequenceNumber = in.readInt();
-            Version sstableVersion = DatabaseDescriptor.getSSTableFormat().info.getVersion(in.readUTF());
+            String sstableVersionString = in.readUTF();
 
             SSTableFormat.Type format = SSTableFormat.Type.LEGACY;
             if (version >= StreamMessage.VERSION_22)
                 format = SSTableFormat.Type.validate(in.readUTF());
+            Version sstableVersion = format.info.getVersion(sstableVersionString);
 
             long estimatedKeys = in.readLong();
             int count = in.readInt();
@@ -186,7 +236,16 @@ public class FileMessageHeader
                                                  ? SerializationHeader.serializer.deserialize(sstableVersion, in)
                                                  : null;
 
-            return new FileMessageHeader(cfId, sequenceNumber, sstableVersion, format, estimatedKeys, sections, compressionInfo, repairedAt, sstableLevel, header);
+            List<Pair<Component, Long>> components = null;
+            if (version >= StreamMessage.VERSION_32 && in.readBoolean())
+            {
+                int componentCount = in.readInt();
+                components = new ArrayList<>(componentCount);
+                for (int k = 0; k < componentCount; k++)
+                    components.add(Pair.create(Component.parse(in.readUTF()), in.readLong()));
+            }
+
+            return new FileMessageHeader(cfId, sequenceNumber, sstableVersion, format, estimatedKeys, sections, compressionInfo, repairedAt, sstableLevel, header, components);
         }
 
         public long serializedSize(FileMessageHeader header, int version)
@@ -207,11 +266,26 @@ public class FileMessageHeader
                 size += TypeSizes.sizeof(section.right);
             }
             size += CompressionInfo.serializer.serializedSize(header.compressionInfo, version);
+            size += TypeSizes.sizeof(header.repairedAt);
             size += TypeSizes.sizeof(header.sstableLevel);
 
             if (version >= StreamMessage.VERSION_30)
                 size += SerializationHeader.serializer.serializedSize(header.version, header.header);
 
+            if (version >= StreamMessage.VERSION_32)
+            {
+                size += TypeSizes.sizeof(header.isEntireSSTable());
+                if (header.isEntireSSTable())
+                {
+                    size += TypeSizes.sizeof(header.components.size());
+                    for (Pair<Component, Long> component : header.components)
+                    {
+                        size += TypeSizes.sizeof(component.left.name);
+                        size += TypeSizes.sizeof(component.right);
+                    }
+                }
+            }
+
             return size;
         }
     }
@@ -17,18 +17,29 @@
  */
 package org.apache.cassandra.streaming.messages;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.Directories;
+import org.apache.cassandra.io.FSWriteError;
 import org.apache.cassandra.io.compress.CompressionMetadata;
+import org.apache.cassandra.io.sstable.Component;
+import org.apache.cassandra.io.sstable.Descriptor;
 import org.apache.cassandra.io.sstable.format.SSTableReader;
 import org.apache.cassandra.io.util.DataOutputStreamPlus;
+import org.apache.cassandra.io.util.FileUtils;
+import org.apache.cassandra.streaming.EntireSSTableStreamWriter;
 import org.apache.cassandra.streaming.StreamSession;
 import org.apache.cassandra.streaming.StreamWriter;
 import org.apache.cassandra.streaming.compress.CompressedStreamWriter;
 import org.apache.cassandra.streaming.compress.CompressionInfo;
 import org.apache.cassandra.utils.Pair;
+import org.apache.cassandra.utils.UUIDGen;
 import org.apache.cassandra.utils.concurrent.Ref;
 
 /**
@@ -46,13 +57,15 @@ public class OutgoingFileMessage extends StreamMessage
         public void serialize(OutgoingFileMessage message, DataOutputStreamPlus out, int version, StreamSession session) throws IOException
         {
             message.serialize(out, version, session);
-            session.fileSent(message.header);
+            session.fileSent(message.headerFor(version));
         }
     };
 
     public final FileMessageHeader header;
     private final Ref<SSTableReader> ref;
     private final String filename;
+    // the links to the components of the sstable, when it is sent as it is
+    private final Descriptor links;
     private boolean completed = false;
 
     public OutgoingFileMessage(Ref<SSTableReader> ref, int sequenceNumber, long estimatedKeys, List<Pair<Long, Long>> sections, long repairedAt, boolean keepSSTableLevel)
@@ -62,8 +75,10 @@ public class OutgoingFileMessage extends StreamMessage
 
         SSTableReader sstable = ref.get();
         filename = sstable.getFilename();
+        links = canStreamEntireSSTable(sstable, sections) ? linkComponents(sstable) : null;
+        List<Pair<Component, Long>> components = links == null ? null : componentManifest(sstable, links);
         CompressionInfo compressionInfo = null;
-        if (sstable.compression)
+        if (sstable.compression && components == null)
         {
             CompressionMetadata meta = sstable.getCompressionMetadata();
             compressionInfo = new CompressionInfo(meta.getChunksForSections(sections), meta.parameters);
@@ -77,7 +92,56 @@ public class OutgoingFileMessage extends StreamMessage
                                             compressionInfo,
                                             repairedAt,
                                             keepSSTableLevel ? sstable.getSSTableLevel() : 0,
-                                            sstable.header == null ? null : sstable.header.toComponent());
+                                            sstable.header == null ? null : sstable.header.toComponent(),
+                                            components);
+    }
+
+    /**
+     * @return whether the sstable can be sent as it is: if all its data is to be streamed, and it is in the version
+     * the receiver would write it in anyway
+     */
+    private static boolean canStreamEntireSSTable(SSTableReader sstable, List<Pair<Long, Long>> sections)
+    {
+        return DatabaseDescriptor.streamEntireSSTables()
+               && sstable.descriptor.version.isLatestVersion()
+               && sections.size() == 1
+               && sections.get(0).left == 0
+               && sections.get(0).right == sstable.uncompressedLength();
+    }
+
+    /**
+     * Hard links the components of the sstable in an ephemeral snapshot, so that the files streamed later are the ones
+     * the manifest was built from: the summary and the metadata of the sstable are rewritten to new files, by the
+     * redistribution of the index summaries or an anticompaction, while the links keep pointing to the former ones.
+     */
+    private static Descriptor linkComponents(SSTableReader sstable)
+    {
+        Descriptor desc = sstable.descriptor;
+        File directory = Directories.getSnapshotDirectory(desc, "stream-" + UUIDGen.getTimeUUID());
+        try
+        {
+            // cleared on restart if the message is never completed
+            Files.createFile(Directories.getEphemeralSnapshotMarkerFile(directory).toPath());
+        }
+        catch (IOException e)
+        {
+            throw new FSWriteError(e, directory);
+        }
+        sstable.createLinks(directory.getPath());
+        return new Descriptor(desc.version, directory, desc.ksname, desc.cfname, desc.generation, desc.formatType, desc.digestComponent);
+    }
+
+    private static List<Pair<Component, Long>> componentManifest(SSTableReader sstable, Descriptor links)
+    {
+        List<Pair<Component, Long>> components = new ArrayList<>();
+        for (Component component : sstable.getComponents())
+        {
+            // the receiver rewrites the repair time and the level of the sstable, and computes the digest again
+            if (component.type == Component.Type.DIGEST)
+                continue;
+            components.add(Pair.create(component, new File(links.filenameFor(component)).length()));
+        }
+        return components;
     }
 
     public synchronized void serialize(DataOutputStreamPlus out, int version, StreamSession session) throws IOException
@@ -87,22 +151,55 @@ public class OutgoingFileMessage extends StreamMessage
             return;
         }
 
+        FileMessageHeader header = headerFor(version);
         FileMessageHeader.serializer.serialize(header, out, version);
 
         final SSTableReader reader = ref.get();
-        StreamWriter writer = header.compressionInfo == null ?
+        StreamWriter writer = header.isEntireSSTable() ?
+                                      new EntireSSTableStreamWriter(reader, links, header.components, session) :
+                              header.compressionInfo == null ?
                                       new StreamWriter(reader, header.sections, session) :
                                       new CompressedStreamWriter(reader, header.sections,
                                                                  header.compressionInfo, session);
         writer.write(out);
     }
 
+    /**
+     * @return the header of the file as sent in the given stream version: the nodes that can't receive entire
+     * sstables are sent their data as sections instead
+     */
+    public FileMessageHeader headerFor(int version)
+    {
+        if (!header.isEntireSSTable() || version >= StreamMessage.VERSION_32)
+            return header;
+
+        SSTableReader sstable = ref.get();
+        CompressionInfo compressionInfo = null;
+        if (sstable.compression)
+        {
+            CompressionMetadata meta = sstable.getCompressionMetadata();
+            compressionInfo = new CompressionInfo(meta.getChunksForSections(header.sections), meta.parameters);
+        }
+        return new FileMessageHeader(header.cfId,
+                                     header.sequenceNumber,
+                                     header.version,
+                                     header.format,
+                                     header.estimatedKeys,
+                                     header.sections,
+                                     compressionInfo,
+                                     header.repairedAt,
+                                     header.sstableLevel,
+                                     header.header);
+    }
+
     public synchronized void complete()
     {
         if (!completed)
         {
             completed = true;
             ref.release();
+            if (links != null)
+                FileUtils.deleteRecursive(links.directory);
         }
     }
 
@@ -18,12 +18,18 @@
 package org.apache.cassandra.streaming.messages;
 
 import java.io.IOException;
+import java.net.InetAddress;
 import java.net.SocketException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
 
+import org.apache.cassandra.gms.ApplicationState;
+import org.apache.cassandra.gms.EndpointState;
+import org.apache.cassandra.gms.Gossiper;
+import org.apache.cassandra.gms.VersionedValue;
 import org.apache.cassandra.io.util.DataOutputStreamPlus;
 import org.apache.cassandra.streaming.StreamSession;
+import org.apache.cassandra.utils.FBUtilities;
 
 /**
  * StreamMessage is an abstract base class that every messages in streaming protocol inherit.
@@ -36,7 +42,38 @@ public abstract class StreamMessage
     public static final int VERSION_20 = 2;
     public static final int VERSION_22 = 3;
     public static final int VERSION_30 = 4;
-    public static final int CURRENT_VERSION = VERSION_30;
+    public static final int VERSION_32 = 5;
+    public static final int CURRENT_VERSION = VERSION_32;
+    /** The oldest version streams are accepted in */
+    public static final int MIN_SUPPORTED_VERSION = VERSION_30;
+
+    public static boolean isSupported(int version)
+    {
+        return version >= MIN_SUPPORTED_VERSION && version <= CURRENT_VERSION;
+    }
+
+    /**
+     * @return the version to stream with the given peer in: the highest one it gossips it supports, or
+     * {@link #VERSION_30} for the nodes that don't gossip it, that only accept that version
+     */
+    public static int versionFor(InetAddress peer)
+    {
+        if (peer.equals(FBUtilities.getBroadcastAddress()))
+            return CURRENT_VERSION;
+
+        EndpointState state = Gossiper.instance.getEndpointStateForEndpoint(peer);
+        VersionedValue version = state == null ? null : state.getApplicationState(ApplicationState.STREAM_VERSION);
+        if (version == null)
+            return VERSION_30;
+        try
+        {
+            return Math.max(MIN_SUPPORTED_VERSION, Math.min(CURRENT_VERSION, Integer.parseInt(version.value)));
+        }
+        catch (NumberFormatException e)
+        {
+            return VERSION_30;
+        }
+    }
 
     public static void serialize(StreamMessage message, DataOutputStreamPlus out, int version, StreamSession session) throws IOException
     {
@@ -117,6 +117,17 @@ public class Info extends NodeToolCmd
                 probe.getCacheMetric("CounterCache", "HitRate"),
                 cacheService.getCounterCacheSavePeriodInSeconds());
 
+        // Chunk Cache: Hits, Misses, Evictions, RecentHitRate
+        System.out.printf("%-23s: entries %d, size %s, capacity %s, %d hits, %d misses, %d evictions, %.3f recent hit rate%n",
+                "Chunk Cache",
+                probe.getCacheMetric("ChunkCache", "Entries"),
+                FileUtils.stringifyFileSize((long) probe.getCacheMetric("ChunkCache", "Size")),
+                FileUtils.stringifyFileSize((long) probe.getCacheMetric("ChunkCache", "Capacity")),
+                probe.getCacheMetric("ChunkCache", "Hits"),
+                probe.getCacheMetric("ChunkCache", "Misses"),
+                probe.getCacheMetric("ChunkCache", "Evictions"),
+                probe.getCacheMetric("ChunkCache", "HitRate"));
+
         // check if node is already joined, before getting tokens, since it throws exception if not.
         if (probe.isJoined())
         {
@@ -29,6 +29,8 @@ import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -39,9 +41,14 @@ import io.netty.handler.codec.MessageToMessageEncoder;
 
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.metrics.ClientMetrics;
 import org.apache.cassandra.service.ClientWarn;
 import org.apache.cassandra.transport.messages.*;
 import org.apache.cassandra.service.QueryState;
@@ -214,6 +221,26 @@ public abstract class Message
 
         public abstract Response execute(QueryState queryState);
 
+        /**
+         * Executes the request without waiting on the replicas if it supports it. By default, this simply
+         * executes the request synchronously.
+         *
+         * @param executor the executor running the work that follows the replica responses
+         */
+        public ListenableFuture<Response> executeAsync(QueryState queryState, Executor executor)
+        {
+            return Futures.immediateFuture(execute(queryState));
+        }
+
+        /**
+         * Whether {@link #executeAsync} returns without waiting on the replicas, rather than executing the request
+         * synchronously. Only such requests are executed together when they are part of a {@link RequestBatch}.
+         */
+        public boolean executesAsync()
+        {
+            return false;
+        }
+
         public void setTracingRequested()
         {
             this.tracingRequested = true;
@@ -259,6 +286,14 @@ public abstract class Message
         {
             return warnings;
         }
+
+        /**
+         * Releases the buffers held until the response is encoded, when it won't be: encoding it failed, or its
+         * connection is closed. Responses are not reference counted, so netty doesn't release them itself.
+         */
+        public void discard()
+        {
+        }
     }
 
     //能同时用于server和client端，能同时处理请求和响应
@@ -406,11 +441,84 @@ public abstract class Message
             }
             catch (Throwable e)
             {
+                if (message instanceof Response)
+                    ((Response)message).discard();
                 throw ErrorMessage.wrap(e, message.getStreamId());
             }
         }
     }
 
+    /**
+     * The requests decoded from a single read of a connection, dispatched together.
+     */
+    private static final class RequestBatch
+    {
+        final List<Request> requests;
+
+        private RequestBatch(List<Request> requests)
+        {
+            this.requests = requests;
+        }
+    }
+
+    /**
+     * Groups the requests decoded from a single read of a connection (up to {@link #MAX_BATCH_SIZE}) so that the
+     * {@link Dispatcher} handles them in one task and their responses are flushed together. Server side only, and
+     * not sharable since it holds on to the pending requests of its connection.
+     * <p>
+     * The requests are only grouped when they are executed asynchronously. Of a batch, the dispatcher only executes
+     * together the requests that {@link Request#executesAsync() complete asynchronously}: each of the others is
+     * submitted as its own task, as it would otherwise wait for the replicas of the previous ones.
+     */
+    public static class RequestBatcher extends ChannelInboundHandlerAdapter
+    {
+        static final int MAX_BATCH_SIZE = 32;
+
+        private final List<Request> pending = new ArrayList<>();
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg)
+        {
+            if (!(msg instanceof Request) || !DatabaseDescriptor.getNativeTransportAsyncRequests())
+            {
+                fire(ctx);
+                ctx.fireChannelRead(msg);
+                return;
+            }
+
+            pending.add((Request)msg);
+            if (pending.size() >= MAX_BATCH_SIZE)
+                fire(ctx);
+        }
+
+        @Override
+        public void channelReadComplete(ChannelHandlerContext ctx)
+        {
+            fire(ctx);
+            ctx.fireChannelReadComplete();
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx)
+        {
+            fire(ctx);
+            ctx.fireChannelInactive();
+        }
+
+        private void fire(ChannelHandlerContext ctx)
+        {
+            if (pending.isEmpty())
+                return;
+
+            ClientMetrics.instance.requestBatchSize.update(pending.size());
+            if (pending.size() == 1)
+                ctx.fireChannelRead(pending.get(0));
+            else
+                ctx.fireChannelRead(new RequestBatch(new ArrayList<>(pending)));
+            pending.clear();
+        }
+    }
+
     //只用于server端，只能处理请求
     @ChannelHandler.Sharable
     public static class Dispatcher extends SimpleChannelInboundHandler<Request>
@@ -456,7 +564,10 @@ public abstract class Message
                 while ( null != (flush = queued.poll()) )
                 {
                     channels.add(flush.ctx);
-                    flush.ctx.write(flush.response, flush.ctx.voidPromise());
+                    if (flush.ctx.channel().isActive())
+                        flush.ctx.write(flush.response, flush.ctx.voidPromise());
+                    else if (flush.response instanceof Response)
+                        ((Response)flush.response).discard();
                     flushed.add(flush);
                     doneWork = true;
                 }
@@ -468,7 +579,10 @@ public abstract class Message
                     for (ChannelHandlerContext channel : channels)
                         channel.flush();
                     for (FlushItem item : flushed)
+                    {
+                        RequestBytesLimitHandler.release(item.ctx.channel(), item.sourceFrame);
                         item.sourceFrame.release();
+                    }
 
                     channels.clear();
                     flushed.clear();
@@ -501,8 +615,54 @@ public abstract class Message
             super(false);
         }
 
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception
+        {
+            if (msg instanceof RequestBatch)
+                dispatchBatch(ctx, ((RequestBatch)msg).requests);
+            else
+                super.channelRead(ctx, msg);
+        }
+
         @Override
         public void channelRead0(ChannelHandlerContext ctx, Request request)
+        {
+            FlushItem item = dispatch(ctx, request);
+            if (item != null)
+                flush(item);
+        }
+
+        private void dispatchBatch(ChannelHandlerContext ctx, List<Request> requests)
+        {
+            List<FlushItem> ready = new ArrayList<>(requests.size());
+            for (Request request : requests)
+            {
+                // executed synchronously, the request would hold up all the others of the batch on this thread
+                if (!request.executesAsync())
+                {
+                    ctx.executor().execute(() -> channelRead0(ctx, request));
+                    continue;
+                }
+
+                FlushItem item = dispatch(ctx, request);
+                if (item != null)
+                    ready.add(item);
+            }
+
+            // hand the responses of the batch over at once so they get written with a single flush
+            if (!ready.isEmpty())
+            {
+                Flusher flusher = flusher(ctx);
+                flusher.queued.addAll(ready);
+                flusher.start();
+            }
+        }
+
+        /**
+         * Executes the request and returns the response to write, or null if it will be flushed once the
+         * asynchronous execution completes.
+         */
+        private FlushItem dispatch(ChannelHandlerContext ctx, Request request)
         {
 
             final Response response;
@@ -518,18 +678,24 @@ public abstract class Message
                 QueryState qstate = connection.validateNewMessage(request.type, connection.getVersion(), request.getStreamId());
 
                 logger.trace("Received: {}, v={}", request, connection.getVersion());
+                if (DatabaseDescriptor.getNativeTransportAsyncRequests())
+                {
+                    // respond from the replica response callback rather than blocking this thread on it
+                    ListenableFuture<Response> future = request.executeAsync(qstate, ctx.executor());
+                    List<String> warnings = ClientWarn.getWarnings();
+                    if (future.isDone())
+                        return complete(ctx, request, connection, future, warnings);
+
+                    future.addListener(() -> flush(complete(ctx, request, connection, future, warnings)), ctx.executor());
+                    return null;
+                }
+
                 response = request.execute(qstate);
-                response.setStreamId(request.getStreamId());
-                response.setWarnings(ClientWarn.getWarnings());
-                response.attach(connection);
-                connection.applyStateTransition(request.type, response.type);
+                prepareResponse(request, connection, response, ClientWarn.getWarnings());
             }
             catch (Throwable t)
             {
-                JVMStabilityInspector.inspectThrowable(t);
-                UnexpectedChannelExceptionHandler handler = new UnexpectedChannelExceptionHandler(ctx.channel(), true);
-                flush(new FlushItem(ctx, ErrorMessage.fromException(t, handler).setStreamId(request.getStreamId()), request.getSourceFrame()));
-                return;
+                return errorResponse(ctx, request, t);
             }
             finally
             {
@@ -537,12 +703,51 @@ public abstract class Message
             }
 
             logger.trace("Responding: {}, v={}", response, connection.getVersion());
-            flush(new FlushItem(ctx, response, request.getSourceFrame()));
+            return new FlushItem(ctx, response, request.getSourceFrame());
+        }
+
+        private FlushItem complete(ChannelHandlerContext ctx, Request request, ServerConnection connection, ListenableFuture<Response> future, List<String> warnings)
+        {
+            Response response;
+            try
+            {
+                response = Uninterruptibles.getUninterruptibly(future);
+                prepareResponse(request, connection, response, warnings);
+            }
+            catch (Throwable t)
+            {
+                return errorResponse(ctx, request, t instanceof ExecutionException ? t.getCause() : t);
+            }
+
+            logger.trace("Responding: {}, v={}", response, connection.getVersion());
+            return new FlushItem(ctx, response, request.getSourceFrame());
+        }
+
+        private static void prepareResponse(Request request, ServerConnection connection, Response response, List<String> warnings)
+        {
+            response.setStreamId(request.getStreamId());
+            response.setWarnings(warnings);
+            response.attach(connection);
+            connection.applyStateTransition(request.type, response.type);
+        }
+
+        private static FlushItem errorResponse(ChannelHandlerContext ctx, Request request, Throwable t)
+        {
+            JVMStabilityInspector.inspectThrowable(t);
+            UnexpectedChannelExceptionHandler handler = new UnexpectedChannelExceptionHandler(ctx.channel(), true);
+            return new FlushItem(ctx, ErrorMessage.fromException(t, handler).setStreamId(request.getStreamId()), request.getSourceFrame());
+        }
+
+        private static void flush(FlushItem item)
+        {
+            Flusher flusher = flusher(item.ctx);
+            flusher.queued.add(item);
+            flusher.start();
         }
 
-        private void flush(FlushItem item)
+        private static Flusher flusher(ChannelHandlerContext ctx)
         {
-            EventLoop loop = item.ctx.channel().eventLoop();
+            EventLoop loop = ctx.channel().eventLoop();
             Flusher flusher = flusherLookup.get(loop);
             if (flusher == null)
             {
@@ -550,9 +755,7 @@ public abstract class Message
                 if (alt != null)
                     flusher = alt;
             }
-
-            flusher.queued.add(item);
-            flusher.start();
+            return flusher;
         }
 
         @Override
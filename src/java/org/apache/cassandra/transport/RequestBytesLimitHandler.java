@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.transport;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.AttributeKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.exceptions.OverloadedException;
+import org.apache.cassandra.metrics.ClientMetrics;
+import org.apache.cassandra.transport.messages.ErrorMessage;
+
+/**
+ * {@link ChannelInboundHandlerAdapter} implementation which limits the size in bytes of the requests read from
+ * clients and not answered yet, per connection, per client address and for all connections. While one of the limits
+ * is exceeded the connection stops reading, or answers new requests with OVERLOADED errors if
+ * native_transport_throw_on_overload is set.
+ *
+ * One instance is added to each channel, right after the message decoder. The bytes of a request are given back
+ * through {@link #release(Channel, Frame)} once its response has been flushed, which happens on the event loop of the
+ * channel like everything else here.
+ */
+final class RequestBytesLimitHandler extends ChannelInboundHandlerAdapter
+{
+    private static final Logger logger = LoggerFactory.getLogger(RequestBytesLimitHandler.class);
+
+    private static final AttributeKey<RequestBytesLimitHandler> attributeKey = AttributeKey.valueOf("REQUESTBYTESLIMIT");
+
+    private static final ConcurrentMap<InetAddress, Client> clients = new ConcurrentHashMap<>();
+    private static final AtomicLong globalBytes = new AtomicLong();
+
+    private static final class Client
+    {
+        final AtomicLong bytes = new AtomicLong();
+        int connections; // only updated from ConcurrentMap.compute
+    }
+
+    private Channel channel;
+    private InetAddress address;
+    private Client client;
+
+    // only accessed from the event loop of the channel
+    private long connectionBytes;
+    private boolean paused;
+    private boolean resumeScheduled;
+
+    static boolean isEnabled()
+    {
+        return DatabaseDescriptor.getNativeTransportMaxConcurrentRequestsInBytesPerConnection() > 0
+               || DatabaseDescriptor.getNativeTransportMaxConcurrentRequestsInBytesPerIp() > 0
+               || DatabaseDescriptor.getNativeTransportMaxConcurrentRequestsInBytes() > 0;
+    }
+
+    /**
+     * Gives back the bytes of a request once its response has been flushed.
+     */
+    static void release(Channel channel, Frame sourceFrame)
+    {
+        RequestBytesLimitHandler handler = channel.attr(attributeKey).get();
+        if (handler != null)
+            handler.release(sourceFrame.header.bodySizeInBytes);
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx)
+    {
+        channel = ctx.channel();
+        address = ((InetSocketAddress) channel.remoteAddress()).getAddress();
+        client = clients.compute(address, (a, c) -> {
+            if (c == null)
+                c = new Client();
+            c.connections++;
+            return c;
+        });
+        channel.attr(attributeKey).set(this);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg)
+    {
+        if (!(msg instanceof Message.Request))
+        {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+
+        Message.Request request = (Message.Request) msg;
+        long size = request.getSourceFrame().header.bodySizeInBytes;
+        acquire(size);
+        if (!isOverLimit())
+        {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+
+        if (DatabaseDescriptor.getNativeTransportThrowOnOverload())
+        {
+            release(size);
+            request.getSourceFrame().release();
+            ClientMetrics.instance.overloadedRequests.mark();
+            OverloadedException error = new OverloadedException("Too many in-flight request bytes for " + address);
+            ctx.writeAndFlush(ErrorMessage.fromException(error).setStreamId(request.getStreamId()));
+            return;
+        }
+
+        // the request is still processed, but nothing more is read from the connection until enough bytes are released
+        if (!paused)
+        {
+            logger.trace("Pausing connection {}: {} bytes in-flight on it, {} for its client, {} overall",
+                         channel, connectionBytes, client.bytes.get(), globalBytes.get());
+            paused = true;
+            channel.config().setAutoRead(false);
+            ClientMetrics.instance.pausedConnections.inc();
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx)
+    {
+        if (paused)
+        {
+            paused = false;
+            ClientMetrics.instance.pausedConnections.dec();
+        }
+        clients.computeIfPresent(address, (a, c) -> --c.connections == 0 ? null : c);
+        ctx.fireChannelInactive();
+    }
+
+    private void acquire(long size)
+    {
+        connectionBytes += size;
+        client.bytes.addAndGet(size);
+        globalBytes.addAndGet(size);
+        ClientMetrics.instance.inflightRequestBytes.inc(size);
+    }
+
+    private void release(long size)
+    {
+        connectionBytes -= size;
+        client.bytes.addAndGet(-size);
+        globalBytes.addAndGet(-size);
+        ClientMetrics.instance.inflightRequestBytes.dec(size);
+
+        if (paused)
+            maybeResume();
+    }
+
+    private void maybeResume()
+    {
+        if (!paused || !channel.isActive())
+            return;
+
+        if (isOverLimit())
+        {
+            // nothing of this connection is left to release, so check again once other connections had the chance to
+            if (connectionBytes == 0 && !resumeScheduled)
+            {
+                resumeScheduled = true;
+                channel.eventLoop().schedule(() -> {
+                    resumeScheduled = false;
+                    maybeResume();
+                }, 1, TimeUnit.MILLISECONDS);
+            }
+            return;
+        }
+
+        logger.trace("Resuming connection {}", channel);
+        paused = false;
+        channel.config().setAutoRead(true);
+        ClientMetrics.instance.pausedConnections.dec();
+    }
+
+    private boolean isOverLimit()
+    {
+        return isOverLimit(connectionBytes, DatabaseDescriptor.getNativeTransportMaxConcurrentRequestsInBytesPerConnection())
+               || isOverLimit(client.bytes.get(), DatabaseDescriptor.getNativeTransportMaxConcurrentRequestsInBytesPerIp())
+               || isOverLimit(globalBytes.get(), DatabaseDescriptor.getNativeTransportMaxConcurrentRequestsInBytes());
+    }
+
+    private static boolean isOverLimit(long bytes, long limit)
+    {
+        // Setting the limit to -1 disables it.
+        return limit > 0 && bytes > limit;
+    }
+}
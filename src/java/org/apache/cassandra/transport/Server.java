@@ -321,6 +321,12 @@ public class Server implements CassandraDaemon.Server
             pipeline.addLast("messageDecoder", messageDecoder);
             pipeline.addLast("messageEncoder", messageEncoder);
 
+            if (RequestBytesLimitHandler.isEnabled())
+                pipeline.addLast("requestBytesLimitHandler", new RequestBytesLimitHandler());
+
+            if (DatabaseDescriptor.getNativeTransportBatchRequests())
+                pipeline.addLast("requestBatcher", new Message.RequestBatcher());
+
             if (server.eventExecutorGroup != null)
                 pipeline.addLast(server.eventExecutorGroup, "executor", dispatcher);
             else
@@ -18,16 +18,21 @@
 package org.apache.cassandra.transport.messages;
 
 import java.util.UUID;
+import java.util.concurrent.Executor;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import io.netty.buffer.ByteBuf;
 import org.apache.cassandra.cql3.CQLStatement;
 import org.apache.cassandra.cql3.QueryHandler;
 import org.apache.cassandra.cql3.QueryOptions;
 import org.apache.cassandra.cql3.statements.ParsedStatement;
 import org.apache.cassandra.exceptions.PreparedQueryNotFoundException;
+import org.apache.cassandra.exceptions.RequestValidationException;
 import org.apache.cassandra.service.ClientState;
 import org.apache.cassandra.service.QueryState;
+import org.apache.cassandra.service.StorageService;
 import org.apache.cassandra.tracing.Tracing;
 import org.apache.cassandra.transport.*;
 import org.apache.cassandra.utils.JVMStabilityInspector;
@@ -90,11 +95,7 @@ public class ExecuteMessage extends Message.Request
         try
         {
             QueryHandler handler = ClientState.getCQLQueryHandler();
-            ParsedStatement.Prepared prepared = handler.getPrepared(statementId);
-            if (prepared == null)
-                throw new PreparedQueryNotFoundException(statementId);
-
-            options.prepare(prepared.boundNames);
+            ParsedStatement.Prepared prepared = getPrepared(handler);
             CQLStatement statement = prepared.statement;
 
             if (options.getPageSize() == 0)
@@ -126,9 +127,7 @@ public class ExecuteMessage extends Message.Request
             // Some custom QueryHandlers are interested by the bound names. We provide them this information
             // by wrapping the QueryOptions.
             QueryOptions queryOptions = QueryOptions.addColumnSpecifications(options, prepared.boundNames);
-            Message.Response response = handler.processPrepared(statement, state, queryOptions, getCustomPayload());
-            if (options.skipMetadata() && response instanceof ResultMessage.Rows)
-                ((ResultMessage.Rows)response).result.metadata.setSkipMetadata();
+            Message.Response response = toResponse(handler.processPrepared(statement, state, queryOptions, getCustomPayload()));
 
             if (tracingId != null)
                 response.setTracingId(tracingId);
@@ -137,8 +136,7 @@ public class ExecuteMessage extends Message.Request
         }
         catch (Exception e)
         {
-            JVMStabilityInspector.inspectThrowable(e);
-            return ErrorMessage.fromException(e);
+            return toError(e);
         }
         finally
         {
@@ -146,6 +144,73 @@ public class ExecuteMessage extends Message.Request
         }
     }
 
+    @Override
+    public ListenableFuture<Message.Response> executeAsync(QueryState state, Executor executor)
+    {
+        // a traced query keeps its tracing session on the request thread
+        if (isTracingRequested() || StorageService.instance.getTraceProbability() != 0)
+            return super.executeAsync(state, executor);
+
+        try
+        {
+            QueryHandler handler = ClientState.getCQLQueryHandler();
+            ParsedStatement.Prepared prepared = getPrepared(handler);
+
+            if (options.getPageSize() == 0)
+                throw new ProtocolException("The page size cannot be 0");
+
+            QueryOptions queryOptions = QueryOptions.addColumnSpecifications(options, prepared.boundNames);
+            ListenableFuture<ResultMessage> result = handler.processPreparedAsync(prepared.statement, state, queryOptions, getCustomPayload(), executor);
+            return Futures.withFallback(Futures.transform(result, this::toResponse),
+                                        t -> Futures.immediateFuture(toError(t)));
+        }
+        catch (Exception e)
+        {
+            return Futures.immediateFuture(toError(e));
+        }
+    }
+
+    @Override
+    public boolean executesAsync()
+    {
+        if (isTracingRequested() || StorageService.instance.getTraceProbability() != 0)
+            return false;
+
+        ParsedStatement.Prepared prepared = ClientState.getCQLQueryHandler().getPrepared(statementId);
+        try
+        {
+            return prepared != null && prepared.statement.executesAsync(QueryOptions.addColumnSpecifications(options, prepared.boundNames));
+        }
+        catch (RequestValidationException e)
+        {
+            // executed on its own, that responds with the error
+            return false;
+        }
+    }
+
+    private ParsedStatement.Prepared getPrepared(QueryHandler handler) throws PreparedQueryNotFoundException
+    {
+        ParsedStatement.Prepared prepared = handler.getPrepared(statementId);
+        if (prepared == null)
+            throw new PreparedQueryNotFoundException(statementId);
+
+        options.prepare(prepared.boundNames);
+        return prepared;
+    }
+
+    private Message.Response toResponse(ResultMessage response)
+    {
+        if (options.skipMetadata() && response instanceof ResultMessage.Rows)
+            ((ResultMessage.Rows)response).result.metadata.setSkipMetadata();
+        return response;
+    }
+
+    private static Message.Response toError(Throwable e)
+    {
+        JVMStabilityInspector.inspectThrowable(e);
+        return ErrorMessage.fromException(e);
+    }
+
     @Override
     public String toString()
     {
@@ -18,14 +18,18 @@
 package org.apache.cassandra.transport.messages;
 
 import java.util.UUID;
+import java.util.concurrent.Executor;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import io.netty.buffer.ByteBuf;
 import org.apache.cassandra.cql3.QueryOptions;
 import org.apache.cassandra.exceptions.RequestExecutionException;
 import org.apache.cassandra.exceptions.RequestValidationException;
 import org.apache.cassandra.service.ClientState;
 import org.apache.cassandra.service.QueryState;
+import org.apache.cassandra.service.StorageService;
 import org.apache.cassandra.tracing.Tracing;
 import org.apache.cassandra.transport.CBUtil;
 import org.apache.cassandra.transport.Message;
@@ -114,9 +118,7 @@ public class QueryMessage extends Message.Request
                 Tracing.instance.begin("Execute CQL3 query", state.getClientAddress(), builder.build());
             }
 
-            Message.Response response = ClientState.getCQLQueryHandler().process(query, state, options, getCustomPayload());
-            if (options.skipMetadata() && response instanceof ResultMessage.Rows)
-                ((ResultMessage.Rows)response).result.metadata.setSkipMetadata();
+            Message.Response response = toResponse(ClientState.getCQLQueryHandler().process(query, state, options, getCustomPayload()));
 
             if (tracingId != null)
                 response.setTracingId(tracingId);
@@ -125,10 +127,7 @@ public class QueryMessage extends Message.Request
         }
         catch (Exception e)
         {
-            JVMStabilityInspector.inspectThrowable(e);
-            if (!((e instanceof RequestValidationException) || (e instanceof RequestExecutionException)))
-                logger.error("Unexpected error during query", e);
-            return ErrorMessage.fromException(e);
+            return toError(e);
         }
         finally
         {
@@ -138,6 +137,43 @@ public class QueryMessage extends Message.Request
         }
     }
 
+    @Override
+    public ListenableFuture<Message.Response> executeAsync(QueryState state, Executor executor)
+    {
+        // a traced query keeps its tracing session on the request thread
+        if (isTracingRequested() || StorageService.instance.getTraceProbability() != 0)
+            return super.executeAsync(state, executor);
+
+        try
+        {
+            if (options.getPageSize() == 0)
+                throw new ProtocolException("The page size cannot be 0");
+
+            ListenableFuture<ResultMessage> result = ClientState.getCQLQueryHandler().processAsync(query, state, options, getCustomPayload(), executor);
+            return Futures.withFallback(Futures.transform(result, this::toResponse),
+                                        t -> Futures.immediateFuture(toError(t)));
+        }
+        catch (Exception e)
+        {
+            return Futures.immediateFuture(toError(e));
+        }
+    }
+
+    private Message.Response toResponse(ResultMessage response)
+    {
+        if (options.skipMetadata() && response instanceof ResultMessage.Rows)
+            ((ResultMessage.Rows)response).result.metadata.setSkipMetadata();
+        return response;
+    }
+
+    private static Message.Response toError(Throwable e)
+    {
+        JVMStabilityInspector.inspectThrowable(e);
+        if (!((e instanceof RequestValidationException) || (e instanceof RequestExecutionException)))
+            logger.error("Unexpected error during query", e);
+        return ErrorMessage.fromException(e);
+    }
+
     @Override
     public String toString()
     {
@@ -224,6 +224,12 @@ public abstract class ResultMessage extends Message.Response
             return result.toThriftResult();
         }
 
+        @Override
+        public void discard()
+        {
+            result.discard();
+        }
+
         @Override
         public String toString()
         {
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.utils;
+
+import org.apache.cassandra.utils.concurrent.Ref;
+import org.apache.cassandra.utils.concurrent.WrappedSharedCloseable;
+import org.apache.cassandra.utils.obs.IBitSet;
+
+/**
+ * A bloom filter split in blocks of 512 bits, the size of a cache line. All the bits of a key are in the block picked
+ * by the first half of its hash, so a lookup touches a single cache line instead of up to one per hash function,
+ * which matters when a read checks the filters of many sstables. The probes are derived from the second half of the
+ * hash with a fixed stride, so they do not depend on each other.
+ *
+ * As some blocks receive more keys than others, it needs slightly more bits per key than a standard bloom filter for
+ * the same false positive rate, see {@link BloomCalculations#computeBlockedBloomSpec}.
+ */
+public class BlockedBloomFilter extends WrappedSharedCloseable implements IFilter
+{
+    static final int BLOCK_BITS = 512;
+    // a probe is the top 9 bits of the probe hash
+    private static final int PROBE_SHIFT = Long.SIZE - Integer.numberOfTrailingZeros(BLOCK_BITS);
+
+    private static final ThreadLocal<long[]> reusableHash = new ThreadLocal<long[]>()
+    {
+        protected long[] initialValue()
+        {
+            return new long[2];
+        }
+    };
+
+    public final IBitSet bitset;
+    public final int hashCount;
+    private final long blockCount;
+
+    BlockedBloomFilter(int hashCount, IBitSet bitset)
+    {
+        super(bitset);
+        assert bitset.capacity() >= BLOCK_BITS && bitset.capacity() % BLOCK_BITS == 0 : bitset.capacity();
+        this.hashCount = hashCount;
+        this.bitset = bitset;
+        this.blockCount = bitset.capacity() / BLOCK_BITS;
+    }
+
+    private BlockedBloomFilter(BlockedBloomFilter copy)
+    {
+        super(copy);
+        this.hashCount = copy.hashCount;
+        this.bitset = copy.bitset;
+        this.blockCount = copy.blockCount;
+    }
+
+    /**
+     * @return the number of bits needed by a blocked filter of the given number of bits, rounded up to whole blocks
+     */
+    static long roundToBlocks(long numBits)
+    {
+        return Math.max(1, (numBits + BLOCK_BITS - 1) / BLOCK_BITS) * BLOCK_BITS;
+    }
+
+    public long serializedSize()
+    {
+        return BloomFilterSerializer.serializedSize(this);
+    }
+
+    public void add(FilterKey key)
+    {
+        long[] hash = hash(key);
+        long block = blockStart(hash[0]);
+        long probe = hash[1];
+        long stride = stride(hash[0]);
+        for (int i = 0; i < hashCount; i++)
+        {
+            bitset.set(block + (probe >>> PROBE_SHIFT));
+            probe += stride;
+        }
+    }
+
+    public final boolean isPresent(FilterKey key)
+    {
+        long[] hash = hash(key);
+        long block = blockStart(hash[0]);
+        long probe = hash[1];
+        long stride = stride(hash[0]);
+        for (int i = 0; i < hashCount; i++)
+        {
+            if (!bitset.get(block + (probe >>> PROBE_SHIFT)))
+                return false;
+            probe += stride;
+        }
+        return true;
+    }
+
+    private static long[] hash(FilterKey key)
+    {
+        long[] hash = reusableHash.get();
+        key.filterHash(hash);
+        return hash;
+    }
+
+    private long blockStart(long hash)
+    {
+        return Long.remainderUnsigned(hash, blockCount) * BLOCK_BITS;
+    }
+
+    // the low bits of the hash picked the block, so mix all of them in the stride; an odd stride
+    // also keeps the probes from cycling early
+    private static long stride(long hash)
+    {
+        return (hash * 0x9E3779B97F4A7C15L) | 1;
+    }
+
+    public void clear()
+    {
+        bitset.clear();
+    }
+
+    public IFilter sharedCopy()
+    {
+        return new BlockedBloomFilter(this);
+    }
+
+    @Override
+    public long offHeapSize()
+    {
+        return bitset.offHeapSize();
+    }
+
+    public String toString()
+    {
+        return "BlockedBloomFilter[hashCount=" + hashCount + ";capacity=" + bitset.capacity() + ']';
+    }
+
+    public void addTo(Ref.IdentityCollection identities)
+    {
+        super.addTo(identities);
+        bitset.addTo(identities);
+    }
+}
@@ -87,6 +87,39 @@ class BloomCalculations {
         }
     }
 
+    /**
+     * The false positive rates of a blocked filter (see {@link BlockedBloomFilter}) in the same layout as probs.
+     * A block receives a Poisson distributed number of elements, and the rate is the average over that
+     * distribution of the false positive rate of a block of that load.
+     */
+    static final double[][] blockedProbs = new double[33][];
+
+    static
+    {
+        int maxK = 16;
+        blockedProbs[0] = new double[]{ 1.0 };
+        blockedProbs[1] = new double[]{ 1.0, 1.0 };
+        for (int buckets = 2; buckets < blockedProbs.length; buckets++)
+        {
+            double[] prob = blockedProbs[buckets] = new double[maxK + 1];
+            prob[0] = 1.0;
+            double elementsPerBlock = (double) BlockedBloomFilter.BLOCK_BITS / buckets;
+            for (int k = 1; k <= maxK; k++)
+            {
+                double poisson = Math.exp(-elementsPerBlock);
+                double rate = 0;
+                for (int elements = 0; elements < 3 * elementsPerBlock + 100; elements++)
+                {
+                    if (elements > 0)
+                        poisson *= elementsPerBlock / elements;
+                    double setBit = 1 - Math.pow(1 - 1.0 / BlockedBloomFilter.BLOCK_BITS, k * elements);
+                    rate += poisson * Math.pow(setBit, k);
+                }
+                prob[k] = rate;
+            }
+        }
+    }
+
     /**
      * Given the number of buckets that can be used per element, return a
      * specification that minimizes the false positive rate.
@@ -167,6 +200,39 @@ class BloomCalculations {
         return new BloomSpecification(K, bucketsPerElement);
     }
 
+    /**
+     * Same as {@link #computeBloomSpec(int, double)} for a blocked filter, which needs a few more buckets per element
+     * to get the same false positive rate as a standard one, as some of its blocks receive more elements than others.
+     *
+     * @param maxFalsePosProb The maximum tolerable false positive rate.
+     * @return A Bloom Specification which would result in a false positive rate
+     * less than specified by the function call
+     * @throws UnsupportedOperationException if a filter satisfying the parameters cannot be met
+     */
+    public static BloomSpecification computeBlockedBloomSpec(double maxFalsePosProb)
+    {
+        for (int bucketsPerElement = minBuckets; bucketsPerElement < blockedProbs.length; bucketsPerElement++)
+        {
+            double[] prob = blockedProbs[bucketsPerElement];
+            int optK = minK;
+            for (int k = minK; k < prob.length; k++)
+            {
+                if (prob[k] < prob[optK])
+                    optK = k;
+            }
+            if (prob[optK] > maxFalsePosProb)
+                continue;
+
+            // use the smallest number of hashes that is good enough
+            int K = optK;
+            while (K > minK && prob[K - 1] <= maxFalsePosProb)
+                K--;
+            return new BloomSpecification(K, bucketsPerElement);
+        }
+        throw new UnsupportedOperationException(String.format("Unable to satisfy %s with %s buckets per element",
+                                                              maxFalsePosProb, blockedProbs.length - 1));
+    }
+
     /**
      * Calculates the maximum number of buckets per element that this implementation
      * can support.  Crucially, it will lower the bucket count if necessary to meet
@@ -38,6 +38,12 @@ final class BloomFilterSerializer
         bf.bitset.serialize(out);
     }
 
+    public static void serialize(BlockedBloomFilter bf, DataOutputPlus out) throws IOException
+    {
+        out.writeInt(bf.hashCount);
+        bf.bitset.serialize(out);
+    }
+
     public static BloomFilter deserialize(DataInput in, boolean oldBfHashOrder) throws IOException
     {
         return deserialize(in, false, oldBfHashOrder);
@@ -52,6 +58,19 @@ final class BloomFilterSerializer
         return new BloomFilter(hashes, bs, oldBfHashOrder);
     }
 
+    /**
+     * Blocked filters are serialized like the standard ones, which one a serialized filter is is implied by the
+     * version of the sstable it belongs to.
+     */
+    @SuppressWarnings("resource")
+    public static BlockedBloomFilter deserializeBlocked(DataInput in, boolean offheap) throws IOException
+    {
+        int hashes = in.readInt();
+        IBitSet bs = offheap ? OffHeapBitSet.deserialize(in) : OpenBitSet.deserialize(in);
+
+        return new BlockedBloomFilter(hashes, bs);
+    }
+
     /**
      * Calculates a serialized size of the given Bloom Filter
      * @param bf Bloom filter to calculate serialized size
@@ -65,4 +84,9 @@ final class BloomFilterSerializer
         size += bf.bitset.serializedSize();
         return size;
     }
+
+    public static long serializedSize(BlockedBloomFilter bf)
+    {
+        return TypeSizes.sizeof(bf.hashCount) + bf.bitset.serializedSize();
+    }
 }
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.apache.cassandra.db.marshal.AbstractType;
+import org.apache.cassandra.io.util.DataOutputPlus;
+
+/**
+ * Helpers for byte-comparable representations, i.e. representations of values whose unsigned lexicographic order
+ * (as given by {@link FastByteOperations#compareUnsigned}) is the order of the values they represent.
+ *
+ * The representations of non-empty values are prefix-free: no representation is a prefix of another one of the same
+ * type. Representations can thus be concatenated to represent sequences of values, as long as every value is
+ * preceded by a header byte telling whether it is null, empty or present (see {@link #writeComponent}). Sequences
+ * that must themselves be prefix-free are closed by {@link #TERMINATOR}, which sorts before any header so that a
+ * sequence sorts before the sequences it is a prefix of.
+ */
+public final class ByteComparable
+{
+    public static final int TERMINATOR = 0x20;
+    public static final int NULL_COMPONENT = 0x3E;
+    public static final int EMPTY_COMPONENT = 0x3F;
+    public static final int NEXT_COMPONENT = 0x40;
+
+    private ByteComparable()
+    {
+    }
+
+    public static int compare(ByteBuffer left, ByteBuffer right)
+    {
+        return FastByteOperations.compareUnsigned(left, right);
+    }
+
+    /**
+     * Writes a header byte for the given value, followed by its byte-comparable representation if it is neither
+     * null nor empty. Null values sort before empty ones, which sort before any other value.
+     */
+    public static void writeComponent(AbstractType<?> type, ByteBuffer value, DataOutputPlus out) throws IOException
+    {
+        if (value == null)
+        {
+            out.writeByte(NULL_COMPONENT);
+        }
+        else if (!value.hasRemaining())
+        {
+            out.writeByte(EMPTY_COMPONENT);
+        }
+        else
+        {
+            out.writeByte(NEXT_COMPONENT);
+            type.writeComparableBytes(value, out);
+        }
+    }
+
+    /**
+     * Writes the given bytes so that they compare as unsigned bytes but are prefix-free: zero bytes are escaped as
+     * 0x00 0xFF and the value is terminated with 0x00 0x00, which sorts before any escaped byte.
+     */
+    public static void writeEscaped(ByteBuffer bytes, DataOutputPlus out) throws IOException
+    {
+        int runStart = bytes.position();
+        for (int i = bytes.position(); i < bytes.limit(); i++)
+        {
+            if (bytes.get(i) != 0)
+                continue;
+
+            writeRange(bytes, runStart, i + 1, out);
+            out.writeByte(0xFF);
+            runStart = i + 1;
+        }
+        writeRange(bytes, runStart, bytes.limit(), out);
+        out.writeShort(0);
+    }
+
+    /**
+     * Writes fixed-length big-endian two's complement bytes so that they compare as signed numbers.
+     */
+    public static void writeSigned(ByteBuffer bytes, DataOutputPlus out) throws IOException
+    {
+        out.writeByte(bytes.get(bytes.position()) ^ 0x80);
+        writeRange(bytes, bytes.position() + 1, bytes.limit(), out);
+    }
+
+    public static void writeSigned(long value, DataOutputPlus out) throws IOException
+    {
+        out.writeLong(value ^ Long.MIN_VALUE);
+    }
+
+    /**
+     * Writes a byte-comparable representation with every byte inverted, which reverses the order of prefix-free
+     * representations and keeps them prefix-free.
+     */
+    public static void writeInverted(ByteBuffer representation, DataOutputPlus out) throws IOException
+    {
+        for (int i = representation.position(); i < representation.limit(); i++)
+            out.writeByte(~representation.get(i));
+    }
+
+    private static void writeRange(ByteBuffer bytes, int start, int end, DataOutputPlus out) throws IOException
+    {
+        if (start == end)
+            return;
+
+        ByteBuffer range = bytes.duplicate();
+        range.position(start).limit(end);
+        out.write(range);
+    }
+}
@@ -61,6 +61,7 @@ public final class CLibrary
     private static final int F_NOCACHE = 48; /* Mac OS X specific flag, turns cache on/off */
     private static final int O_DIRECT  = 040000; /* fcntl.h */
     private static final int O_RDONLY  = 00000000; /* fcntl.h */
+    private static final int O_WRONLY  = 00000001; /* fcntl.h */
 
     private static final int POSIX_FADV_NORMAL     = 0; /* fadvise.h */
     private static final int POSIX_FADV_RANDOM     = 1; /* fadvise.h */
@@ -106,6 +107,8 @@ public final class CLibrary
     private static native int posix_fadvise(int fd, long offset, int len, int flag) throws LastErrorException;
     private static native int open(String path, int flags) throws LastErrorException;
     private static native int fsync(int fd) throws LastErrorException;
+    private static native int fdatasync(int fd) throws LastErrorException;
+    private static native long pwrite(int fd, Pointer buf, long count, long offset) throws LastErrorException;
     private static native int close(int fd) throws LastErrorException;
     private static native Pointer strerror(int errnum) throws LastErrorException;
 
@@ -274,6 +277,72 @@ public final class CLibrary
         return fd;
     }
 
+    /**
+     * Opens a file for writing with O_DIRECT, bypassing the page cache: the buffers written to it, their offsets
+     * and lengths must all be aligned to the sector size of the device.
+     *
+     * @return the file descriptor, or -1 if JNA is unavailable or the file system doesn't support direct I/O
+     */
+    public static int tryOpenDirect(String path)
+    {
+        int fd = -1;
+
+        try
+        {
+            return open(path, O_WRONLY | O_DIRECT);
+        }
+        catch (UnsatisfiedLinkError e)
+        {
+            // JNA is unavailable just skipping Direct I/O
+        }
+        catch (RuntimeException e)
+        {
+            if (!(e instanceof LastErrorException))
+                throw e;
+
+            logger.warn(String.format("open(%s, O_WRONLY | O_DIRECT) failed, errno (%d).", path, errno(e)));
+        }
+
+        return fd;
+    }
+
+    /**
+     * Writes length bytes from the native memory at address to the file at offset, as many times as it takes
+     * pwrite() to write them all.
+     */
+    public static void pwriteFully(int fd, long address, long length, long offset) throws IOException
+    {
+        try
+        {
+            while (length > 0)
+            {
+                long written = pwrite(fd, new Pointer(address), length, offset);
+                address += written;
+                offset += written;
+                length -= written;
+            }
+        }
+        catch (LastErrorException e)
+        {
+            throw new IOException(String.format("pwrite(%d, %d) failed, errno (%d).", fd, offset, errno(e)), e);
+        }
+    }
+
+    /**
+     * Flushes the data written to the file, and the metadata needed to read it back, to the device.
+     */
+    public static void datasync(int fd) throws IOException
+    {
+        try
+        {
+            fdatasync(fd);
+        }
+        catch (LastErrorException e)
+        {
+            throw new IOException(String.format("fdatasync(%d) failed, errno (%d).", fd, errno(e)), e);
+        }
+    }
+
     public static void trySync(int fd)
     {
         if (fd == -1)
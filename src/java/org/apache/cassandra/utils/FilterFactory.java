@@ -37,12 +37,26 @@ public class FilterFactory
 
     public static void serialize(IFilter bf, DataOutputPlus output) throws IOException
     {
-        BloomFilterSerializer.serialize((BloomFilter) bf, output);
+        if (bf instanceof BlockedBloomFilter)
+            BloomFilterSerializer.serialize((BlockedBloomFilter) bf, output);
+        else
+            BloomFilterSerializer.serialize((BloomFilter) bf, output);
     }
 
     public static IFilter deserialize(DataInput input, boolean offheap, boolean oldBfHashOrder) throws IOException
     {
-        return BloomFilterSerializer.deserialize(input, offheap, oldBfHashOrder);
+        return deserialize(input, offheap, oldBfHashOrder, false);
+    }
+
+    /**
+     * @param blocked whether the filter was created as a blocked filter, which is not recorded in its serialized form
+     */
+    public static IFilter deserialize(DataInput input, boolean offheap, boolean oldBfHashOrder, boolean blocked) throws IOException
+    {
+        assert !(blocked && oldBfHashOrder);
+        return blocked
+             ? BloomFilterSerializer.deserializeBlocked(input, offheap)
+             : BloomFilterSerializer.deserialize(input, offheap, oldBfHashOrder);
     }
 
     /**
@@ -69,10 +83,26 @@ public class FilterFactory
      *         filter.
      */
     public static IFilter getFilter(long numElements, double maxFalsePosProbability, boolean offheap, boolean oldBfHashOrder)
+    {
+        return getFilter(numElements, maxFalsePosProbability, offheap, oldBfHashOrder, false);
+    }
+
+    /**
+     * @param blocked whether to create a {@link BlockedBloomFilter}, whose lookups only touch one cache line
+     * @return The smallest filter that can provide the given false positive probability rate for the given number
+     *         of elements.
+     */
+    public static IFilter getFilter(long numElements, double maxFalsePosProbability, boolean offheap, boolean oldBfHashOrder, boolean blocked)
     {
         assert maxFalsePosProbability <= 1.0 : "Invalid probability";
+        assert !(blocked && oldBfHashOrder);
         if (maxFalsePosProbability == 1.0)
             return new AlwaysPresentFilter();
+        if (blocked)
+        {
+            BloomCalculations.BloomSpecification spec = BloomCalculations.computeBlockedBloomSpec(maxFalsePosProbability);
+            return createBlockedFilter(spec.K, numElements, spec.bucketsPerElement, offheap);
+        }
         int bucketsPerElement = BloomCalculations.maxBucketsPerElement(numElements);
         BloomCalculations.BloomSpecification spec = BloomCalculations.computeBloomSpec(bucketsPerElement, maxFalsePosProbability);
         return createFilter(spec.K, numElements, spec.bucketsPerElement, offheap, oldBfHashOrder);
@@ -85,4 +115,12 @@ public class FilterFactory
         IBitSet bitset = offheap ? new OffHeapBitSet(numBits) : new OpenBitSet(numBits);
         return new BloomFilter(hash, bitset, oldBfHashOrder);
     }
+
+    @SuppressWarnings("resource")
+    private static IFilter createBlockedFilter(int hash, long numElements, int bucketsPer, boolean offheap)
+    {
+        long numBits = BlockedBloomFilter.roundToBlocks(numElements * bucketsPer);
+        IBitSet bitset = offheap ? new OffHeapBitSet(numBits) : new OpenBitSet(numBits);
+        return new BlockedBloomFilter(hash, bitset);
+    }
 }
@@ -316,7 +316,6 @@ public class MerkleTree implements Serializable
     }
 
     /**
-     * For testing purposes.
      * Gets the smallest range containing the token.
      */
     public TreeRange get(Token t)
@@ -125,7 +125,6 @@ public class MerkleTrees implements Iterable<Map.Entry<Range<Token>, MerkleTree>
      * @param t
      * @return
      */
-    @VisibleForTesting
     public MerkleTree.TreeRange get(Token t)
     {
         return getMerkleTree(t).get(t);
@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+
+/**
+ * A {@link MessageDigest} computing the 128 bits x64 variant of murmur3, the same as
+ * {@link MurmurHash#hash3_x64_128(ByteBuffer, int, int, long, long[])} with a seed of 0, but over data given in any
+ * number of updates: each 16 bytes block is mixed in as soon as it is complete, so nothing but the current block is
+ * buffered.
+ *
+ * This is not a cryptographic hash, and is only meant to compare data that isn't crafted to collide, like the row
+ * digests of repair validations (see repair_row_hash).
+ */
+public class Murmur3Digest extends MessageDigest
+{
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private final byte[] block = new byte[16];
+    private int blockLength;
+    private long length;
+    private long h1;
+    private long h2;
+
+    public Murmur3Digest()
+    {
+        super("murmur3");
+    }
+
+    @Override
+    protected int engineGetDigestLength()
+    {
+        return 16;
+    }
+
+    @Override
+    protected void engineUpdate(byte input)
+    {
+        block[blockLength++] = input;
+        length++;
+        if (blockLength == 16)
+            mixBlock();
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int len)
+    {
+        length += len;
+        int end = offset + len;
+        if (blockLength > 0)
+        {
+            int n = Math.min(16 - blockLength, len);
+            System.arraycopy(input, offset, block, blockLength, n);
+            blockLength += n;
+            offset += n;
+            if (blockLength < 16)
+                return;
+            mixBlock();
+        }
+
+        for (; offset + 16 <= end; offset += 16)
+            mix(getLong(input, offset), getLong(input, offset + 8));
+
+        blockLength = end - offset;
+        System.arraycopy(input, offset, block, 0, blockLength);
+    }
+
+    @Override
+    protected void engineUpdate(ByteBuffer input)
+    {
+        if (input.hasArray())
+        {
+            engineUpdate(input.array(), input.arrayOffset() + input.position(), input.remaining());
+            input.position(input.limit());
+            return;
+        }
+
+        while (input.hasRemaining())
+        {
+            if (blockLength == 0 && input.remaining() >= 16)
+            {
+                // blocks are read little endian, whatever the order of the buffer
+                long k1 = input.getLong(input.position());
+                long k2 = input.getLong(input.position() + 8);
+                if (input.order() == ByteOrder.BIG_ENDIAN)
+                {
+                    k1 = Long.reverseBytes(k1);
+                    k2 = Long.reverseBytes(k2);
+                }
+                mix(k1, k2);
+                input.position(input.position() + 16);
+                length += 16;
+            }
+            else
+            {
+                engineUpdate(input.get());
+            }
+        }
+    }
+
+    @Override
+    protected byte[] engineDigest()
+    {
+        long k1 = 0;
+        long k2 = 0;
+        // the tail bytes are sign extended, like MurmurHash does
+        switch (blockLength)
+        {
+            case 15: k2 ^= ((long) block[14]) << 48;
+            case 14: k2 ^= ((long) block[13]) << 40;
+            case 13: k2 ^= ((long) block[12]) << 32;
+            case 12: k2 ^= ((long) block[11]) << 24;
+            case 11: k2 ^= ((long) block[10]) << 16;
+            case 10: k2 ^= ((long) block[9]) << 8;
+            case  9: k2 ^= ((long) block[8]);
+                k2 *= C2; k2 = Long.rotateLeft(k2, 33); k2 *= C1; h2 ^= k2;
+
+            case  8: k1 ^= ((long) block[7]) << 56;
+            case  7: k1 ^= ((long) block[6]) << 48;
+            case  6: k1 ^= ((long) block[5]) << 40;
+            case  5: k1 ^= ((long) block[4]) << 32;
+            case  4: k1 ^= ((long) block[3]) << 24;
+            case  3: k1 ^= ((long) block[2]) << 16;
+            case  2: k1 ^= ((long) block[1]) << 8;
+            case  1: k1 ^= ((long) block[0]);
+                k1 *= C1; k1 = Long.rotateLeft(k1, 31); k1 *= C2; h1 ^= k1;
+        }
+
+        // MurmurHash takes an int length
+        h1 ^= (int) length;
+        h2 ^= (int) length;
+
+        h1 += h2;
+        h2 += h1;
+
+        h1 = MurmurHash.fmix(h1);
+        h2 = MurmurHash.fmix(h2);
+
+        h1 += h2;
+        h2 += h1;
+
+        byte[] digest = new byte[16];
+        putLong(digest, 0, h1);
+        putLong(digest, 8, h2);
+        engineReset();
+        return digest;
+    }
+
+    @Override
+    protected void engineReset()
+    {
+        blockLength = 0;
+        length = 0;
+        h1 = 0;
+        h2 = 0;
+    }
+
+    private void mixBlock()
+    {
+        mix(getLong(block, 0), getLong(block, 8));
+        blockLength = 0;
+    }
+
+    private void mix(long k1, long k2)
+    {
+        k1 *= C1; k1 = Long.rotateLeft(k1, 31); k1 *= C2; h1 ^= k1;
+
+        h1 = Long.rotateLeft(h1, 27); h1 += h2; h1 = h1 * 5 + 0x52dce729;
+
+        k2 *= C2; k2 = Long.rotateLeft(k2, 33); k2 *= C1; h2 ^= k2;
+
+        h2 = Long.rotateLeft(h2, 31); h2 += h1; h2 = h2 * 5 + 0x38495ab5;
+    }
+
+    private static long getLong(byte[] bytes, int offset)
+    {
+        return ((long) bytes[offset] & 0xff)
+               | ((long) bytes[offset + 1] & 0xff) << 8
+               | ((long) bytes[offset + 2] & 0xff) << 16
+               | ((long) bytes[offset + 3] & 0xff) << 24
+               | ((long) bytes[offset + 4] & 0xff) << 32
+               | ((long) bytes[offset + 5] & 0xff) << 40
+               | ((long) bytes[offset + 6] & 0xff) << 48
+               | ((long) bytes[offset + 7] & 0xff) << 56;
+    }
+
+    private static void putLong(byte[] bytes, int offset, long value)
+    {
+        for (int i = 0; i < 8; i++)
+            bytes[offset + i] = (byte) (value >>> (56 - 8 * i));
+    }
+}
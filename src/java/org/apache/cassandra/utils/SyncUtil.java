@@ -151,6 +151,14 @@ public class SyncUtil
         sync(fos.getFD());
     }
 
+    public static void datasync(int fd) throws IOException
+    {
+        if (SKIP_SYNC)
+            return;
+        else
+            CLibrary.datasync(fd);
+    }
+
     public static void trySync(int fd)
     {
         if (SKIP_SYNC)
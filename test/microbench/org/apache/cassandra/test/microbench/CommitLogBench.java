@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.test.microbench;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.cassandra.SchemaLoader;
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.config.Config;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.Mutation;
+import org.apache.cassandra.db.RowUpdateBuilder;
+import org.apache.cassandra.db.commitlog.CommitLog;
+import org.apache.cassandra.db.commitlog.ReplayPosition;
+import org.apache.cassandra.db.marshal.AsciiType;
+import org.apache.cassandra.db.marshal.BytesType;
+import org.apache.cassandra.schema.KeyspaceParams;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the throughput of appends to the commit log by 64 writers, spread over {@code tables} tables. The writes
+ * are acknowledged without waiting for them to be synced, so the benchmark measures the allocation of the entries
+ * and the tracking of the tables they make dirty, not the disk.
+ * <p>
+ * Run with {@code ant microbench -Dbenchmark.name=CommitLogBench}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1G")
+@Threads(64)
+@State(Scope.Benchmark)
+public class CommitLogBench
+{
+    private static final String KEYSPACE = "CommitLogBench";
+
+    @Param({"1", "16"})
+    int tables;
+
+    @Param({"64"})
+    int valueSize;
+
+    private CFMetaData[] metadata;
+    private final AtomicInteger writers = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        // before the commit log is started
+        DatabaseDescriptor.setCommitLogSync(Config.CommitLogSync.periodic);
+        DatabaseDescriptor.setCommitLogSyncPeriod(10000);
+
+        SchemaLoader.prepareServer();
+        metadata = new CFMetaData[tables];
+        for (int i = 0; i < tables; i++)
+            metadata[i] = SchemaLoader.standardCFMD(KEYSPACE, "Standard" + i, 0, AsciiType.instance, BytesType.instance);
+        SchemaLoader.createKeyspace(KEYSPACE, KeyspaceParams.simple(1), metadata);
+    }
+
+    /**
+     * Releases the segments filled during the iteration, as the writes never reach the memtables to be flushed.
+     */
+    @TearDown(Level.Iteration)
+    public void discardSegments()
+    {
+        for (CFMetaData table : metadata)
+        {
+            ReplayPosition context = CommitLog.instance.getContext(table.cfId);
+            CommitLog.instance.discardCompletedSegments(table.cfId, context);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Writer
+    {
+        Mutation mutation;
+
+        @Setup(Level.Trial)
+        public void setup(CommitLogBench bench)
+        {
+            int writer = bench.writers.getAndIncrement();
+            mutation = new RowUpdateBuilder(bench.metadata[writer % bench.tables], 0, "key" + writer)
+                       .clustering("c")
+                       .add("val", ByteBuffer.allocate(bench.valueSize))
+                       .build();
+        }
+    }
+
+    @Benchmark
+    public ReplayPosition add(Writer writer)
+    {
+        return CommitLog.instance.add(writer.mutation);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.test.microbench;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.cassandra.locator.DynamicEndpointSnitch;
+import org.apache.cassandra.locator.SimpleSnitch;
+import org.apache.cassandra.service.StorageService;
+import org.apache.cassandra.utils.FBUtilities;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures what the dynamic snitch costs a read in a cluster of {@code endpoints} hosts: ranking its replicas, then
+ * recording the request sent to the first one and its latency.
+ * <p>
+ * Run with {@code ant microbench -Dbenchmark.name=DynamicEndpointSnitchBench}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx512M")
+@Threads(4)
+@State(Scope.Benchmark)
+public class DynamicEndpointSnitchBench
+{
+    @Param({"1000"})
+    int endpoints;
+
+    // the replication factor
+    @Param({"3"})
+    int replicas;
+
+    private DynamicEndpointSnitch snitch;
+    private InetAddress self;
+    private InetAddress[] hosts;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception
+    {
+        StorageService.instance.unsafeInitialize();
+        SimpleSnitch subsnitch = new SimpleSnitch();
+        snitch = new DynamicEndpointSnitch(subsnitch, String.valueOf(subsnitch.hashCode()));
+        self = FBUtilities.getBroadcastAddress();
+
+        hosts = new InetAddress[endpoints];
+        for (int i = 0; i < endpoints; i++)
+        {
+            hosts[i] = InetAddress.getByAddress(new byte[]{ 127, 1, (byte) (i >> 8), (byte) i });
+            for (int j = 0; j < 100; j++)
+                snitch.receiveTiming(hosts[i], ThreadLocalRandom.current().nextInt(1, 20));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown()
+    {
+        snitch.unregisterMBean();
+    }
+
+    @Benchmark
+    public InetAddress read()
+    {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(endpoints);
+        List<InetAddress> replicaList = new ArrayList<>(replicas);
+        for (int i = 0; i < replicas; i++)
+            replicaList.add(hosts[(first + i) % endpoints]);
+
+        snitch.sortByProximity(self, replicaList);
+        InetAddress target = replicaList.get(0);
+        snitch.requestSent(target);
+        snitch.receiveTiming(target, random.nextInt(1, 20));
+        return target;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.test.microbench;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.db.*;
+import org.apache.cassandra.db.filter.ColumnFilter;
+import org.apache.cassandra.db.partitions.UnfilteredPartitionIterator;
+import org.apache.cassandra.db.rows.UnfilteredRowIterator;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the memtable implementations: writes, single partition lookups, full scans and flushes.
+ * <p>
+ * Run with {@code ant microbench -Dbenchmark.name=MemtableBench}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2G")
+@Threads(4)
+@State(Scope.Benchmark)
+public class MemtableBench extends CQLTester
+{
+    @Param({"SkipListMemtableFactory", "HashMemtableFactory"})
+    String memtableFactory;
+
+    // the number of partitions in the memtable for the get and scan benchmarks
+    @Param({"100000"})
+    int partitions;
+
+    private ColumnFamilyStore cfs;
+    private CFMetaData metadata;
+    private Keyspace keyspace;
+    private DecoratedKey[] keys;
+
+    @Setup(Level.Trial)
+    public void setup() throws Throwable
+    {
+        CQLTester.setUpClass();
+        CQLTester.prepareServer(true);
+        beforeTest();
+
+        createTable("CREATE TABLE %s (k bigint, c int, v blob, PRIMARY KEY (k, c))"
+                    + " WITH memtable = {'class': '" + memtableFactory + "'}"
+                    + " AND compaction = {'class': 'SizeTieredCompactionStrategy', 'enabled': 'false'}");
+        cfs = getCurrentColumnFamilyStore();
+        metadata = cfs.metadata;
+        keyspace = cfs.keyspace;
+
+        keys = new DecoratedKey[partitions];
+        for (int i = 0; i < partitions; i++)
+        {
+            keys[i] = metadata.decorateKey(ByteBufferUtil.bytes((long) i));
+            write(i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws Throwable
+    {
+        afterTest();
+    }
+
+    private void write(long key)
+    {
+        Mutation mutation = new RowUpdateBuilder(metadata, System.currentTimeMillis(), key)
+                            .clustering(ThreadLocalRandom.current().nextInt(4))
+                            .add("v", ByteBuffer.allocate(64))
+                            .build();
+        keyspace.apply(mutation, false);
+    }
+
+    @Benchmark
+    public void put()
+    {
+        write(ThreadLocalRandom.current().nextLong());
+    }
+
+    @Benchmark
+    public Object get()
+    {
+        DecoratedKey key = keys[ThreadLocalRandom.current().nextInt(partitions)];
+        return cfs.getTracker().getView().getCurrentMemtable().getPartition(key);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void scan(Blackhole bh)
+    {
+        Memtable memtable = cfs.getTracker().getView().getCurrentMemtable();
+        try (UnfilteredPartitionIterator iter = memtable.makePartitionIterator(ColumnFilter.all(metadata), DataRange.allData(metadata.partitioner), false))
+        {
+            while (iter.hasNext())
+            {
+                try (UnfilteredRowIterator partition = iter.next())
+                {
+                    bh.consume(partition.partitionKey());
+                }
+            }
+        }
+    }
+
+    /**
+     * Flushes a memtable filled with {@code partitions} partitions. Each invocation refills the memtable first,
+     * which isn't measured.
+     */
+    @State(Scope.Thread)
+    public static class FlushState
+    {
+        @Setup(Level.Invocation)
+        public void fill(MemtableBench bench)
+        {
+            if (!bench.cfs.getTracker().getView().getCurrentMemtable().isClean())
+                return;
+
+            for (int i = 0; i < bench.partitions; i++)
+                bench.write(i);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Measurement(iterations = 20)
+    public void flush(FlushState state)
+    {
+        cfs.forceBlockingFlush();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.test.microbench;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.buffer.ByteBuf;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.CQLStatement;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.cql3.QueryOptions;
+import org.apache.cassandra.cql3.QueryProcessor;
+import org.apache.cassandra.cql3.ResultSet;
+import org.apache.cassandra.db.ConsistencyLevel;
+import org.apache.cassandra.service.ClientState;
+import org.apache.cassandra.service.QueryState;
+import org.apache.cassandra.transport.CBUtil;
+import org.apache.cassandra.transport.Server;
+import org.apache.cassandra.transport.messages.ResultMessage;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares building the result set of a query as lists of values and serializing it afterwards, with serializing the
+ * rows as they are read (native_transport_encode_rows_on_read), from executing the query to its serialized response.
+ * <p>
+ * Run with {@code ant microbench -Dbenchmark.name=ResultSetEncodingBench}, adding the JMH gc profiler ({@code -prof gc})
+ * to compare the allocation rates.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2G")
+@Threads(4)
+@State(Scope.Benchmark)
+public class ResultSetEncodingBench extends CQLTester
+{
+    @Param({"false", "true"})
+    boolean encodeRowsOnRead;
+
+    // the number of rows returned by each query
+    @Param({"5000", "50000"})
+    int rows;
+
+    private CQLStatement select;
+    private QueryState state;
+    private QueryOptions options;
+
+    @Setup(Level.Trial)
+    public void setup() throws Throwable
+    {
+        CQLTester.setUpClass();
+        CQLTester.prepareServer(true);
+        beforeTest();
+
+        createTable("CREATE TABLE %s (k int, c int, v1 text, v2 bigint, v3 blob, PRIMARY KEY (k, c))");
+        for (int i = 0; i < rows; i++)
+            execute("INSERT INTO %s (k, c, v1, v2, v3) VALUES (0, ?, ?, ?, ?)", i, "value" + i, (long) i, ByteBuffer.allocate(32));
+        getCurrentColumnFamilyStore().forceBlockingFlush();
+
+        DatabaseDescriptor.setNativeTransportEncodeRowsOnRead(encodeRowsOnRead);
+        ClientState clientState = ClientState.forExternalCalls(new InetSocketAddress(0));
+        state = new QueryState(clientState);
+        select = QueryProcessor.getStatement(String.format("SELECT * FROM %s.%s WHERE k = ?", KEYSPACE, currentTable()), clientState).statement;
+        options = QueryOptions.forInternalCalls(ConsistencyLevel.ONE, Collections.singletonList(ByteBufferUtil.bytes(0)));
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws Throwable
+    {
+        DatabaseDescriptor.setNativeTransportEncodeRowsOnRead(false);
+        afterTest();
+    }
+
+    @Benchmark
+    public int selectAndEncode()
+    {
+        ResultSet result = ((ResultMessage.Rows) QueryProcessor.instance.processStatement(select, state, options)).result;
+        ByteBuf body = CBUtil.allocator.buffer(ResultSet.codec.encodedSize(result, Server.CURRENT_VERSION));
+        try
+        {
+            ResultSet.codec.encode(result, body, Server.CURRENT_VERSION);
+            return body.readableBytes();
+        }
+        finally
+        {
+            body.release();
+        }
+    }
+}
@@ -66,7 +66,7 @@ public class MockSchema
 
     public static Memtable memtable(ColumnFamilyStore cfs)
     {
-        return new Memtable(cfs.metadata);
+        return new SkipListMemtable(cfs.metadata);
     }
 
     public static SSTableReader sstable(int generation, ColumnFamilyStore cfs)
@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.cassandra.db.ClusteringComparator;
+import org.apache.cassandra.db.marshal.BytesType;
+import org.apache.cassandra.io.compress.CompressedSequentialWriter;
+import org.apache.cassandra.io.compress.CompressionMetadata;
+import org.apache.cassandra.io.sstable.metadata.MetadataCollector;
+import org.apache.cassandra.io.util.ChannelProxy;
+import org.apache.cassandra.io.util.CompressedSegmentedFile;
+import org.apache.cassandra.io.util.RandomAccessReader;
+import org.apache.cassandra.io.util.SegmentedFile;
+import org.apache.cassandra.metrics.ChunkCacheMetrics;
+import org.apache.cassandra.schema.CompressionParams;
+import org.apache.cassandra.utils.ChecksumType;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ChunkCacheTest
+{
+    private static final int CHUNK_LENGTH = 4096;
+    private static final String PATH = "/path/to/file";
+
+    private final ChunkCache cache = ChunkCache.instance;
+    private final ChunkCacheMetrics metrics = cache.metrics;
+    private long capacity;
+
+    @Before
+    public void setUp()
+    {
+        capacity = cache.capacity();
+        cache.setCapacity(1 << 20);
+        cache.clear();
+    }
+
+    @After
+    public void tearDown()
+    {
+        cache.clear();
+        cache.setCapacity(capacity);
+    }
+
+    @Test
+    public void testHitsAndMisses()
+    {
+        ByteBuffer chunk = randomChunk(0);
+        long hits = metrics.hits.getCount();
+        long misses = metrics.misses.getCount();
+        long requests = metrics.requests.getCount();
+
+        ByteBuffer target = ByteBuffer.allocate(CHUNK_LENGTH);
+        assertFalse(cache.read(PATH, 0, target));
+
+        cache.put(PATH, 0, chunk.duplicate());
+        assertTrue(cache.read(PATH, 0, target));
+        assertEquals(chunk, target);
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(CHUNK_LENGTH);
+        assertTrue(cache.read(PATH, 0, direct));
+        assertEquals(chunk, direct);
+
+        // chunks are keyed by both the file and the position
+        assertFalse(cache.read(PATH, CHUNK_LENGTH, target));
+        assertFalse(cache.read(PATH + "2", 0, target));
+
+        assertEquals(hits + 2, metrics.hits.getCount());
+        assertEquals(misses + 3, metrics.misses.getCount());
+        assertEquals(requests + 5, metrics.requests.getCount());
+    }
+
+    @Test
+    public void testEvictions()
+    {
+        cache.setCapacity(4 * CHUNK_LENGTH);
+        long evictions = metrics.evictions.getCount();
+
+        for (int i = 0; i < 8; i++)
+            cache.put(PATH, i * CHUNK_LENGTH, randomChunk(i));
+
+        assertEquals(4, cache.size());
+        assertEquals(4 * CHUNK_LENGTH, cache.weightedSize());
+        assertEquals(evictions + 4, metrics.evictions.getCount());
+        assertFalse(cache.contains(PATH, 0));
+        assertTrue(cache.contains(PATH, 7 * CHUNK_LENGTH));
+
+        // a cache without capacity is disabled
+        cache.setCapacity(0);
+        assertEquals(0, cache.size());
+        long requests = metrics.requests.getCount();
+        cache.put(PATH, 0, randomChunk(0));
+        assertFalse(cache.read(PATH, 0, ByteBuffer.allocate(CHUNK_LENGTH)));
+        assertEquals(requests, metrics.requests.getCount());
+    }
+
+    @Test
+    public void testInvalidateFile()
+    {
+        cache.put(PATH, 0, randomChunk(0));
+        cache.put(PATH, CHUNK_LENGTH, randomChunk(1));
+        cache.put(PATH + "2", 0, randomChunk(2));
+
+        cache.invalidateFile(PATH);
+        assertFalse(cache.contains(PATH, 0));
+        assertFalse(cache.contains(PATH, CHUNK_LENGTH));
+        assertTrue(cache.contains(PATH + "2", 0));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testCompressedReader() throws IOException
+    {
+        File f = File.createTempFile("chunkcache", ".db");
+        String path = f.getAbsolutePath();
+        int chunks = 16;
+        byte[] data = new byte[chunks * CHUNK_LENGTH];
+        Random random = new Random(42);
+        for (int i = 0; i < data.length; i++)
+            data[i] = (byte) random.nextInt(16);
+
+        MetadataCollector collector = new MetadataCollector(new ClusteringComparator(BytesType.instance));
+        try (CompressedSequentialWriter writer = new CompressedSequentialWriter(f, path + ".metadata", CompressionParams.lz4(CHUNK_LENGTH), collector))
+        {
+            writer.write(data);
+            writer.finish();
+        }
+
+        try
+        {
+            CompressionMetadata compressionMetadata = new CompressionMetadata(path + ".metadata", f.length(), ChecksumType.CRC32);
+            long[] offsets = new long[chunks];
+            for (int i = 0; i < chunks; i++)
+                offsets[i] = compressionMetadata.chunkFor(i * CHUNK_LENGTH).offset;
+
+            SegmentedFile file = new CompressedSegmentedFile(new ChannelProxy(f), CHUNK_LENGTH, compressionMetadata);
+            try
+            {
+                long hits = metrics.hits.getCount();
+                long misses = metrics.misses.getCount();
+
+                assertArrayEquals(data, readFully(file, data.length));
+                assertEquals(hits, metrics.hits.getCount());
+                assertEquals(misses + chunks, metrics.misses.getCount());
+                assertEquals(chunks, cache.size());
+                for (long offset : offsets)
+                    assertTrue(cache.contains(path, offset));
+
+                // the second read only copies the cached chunks
+                assertArrayEquals(data, readFully(file, data.length));
+                assertEquals(hits + chunks, metrics.hits.getCount());
+                assertEquals(misses + chunks, metrics.misses.getCount());
+            }
+            finally
+            {
+                file.close();
+            }
+
+            // the chunks of a file are dropped once it is closed
+            for (long offset : offsets)
+                assertFalse(cache.contains(path, offset));
+        }
+        finally
+        {
+            f.delete();
+            new File(path + ".metadata").delete();
+        }
+    }
+
+    private static byte[] readFully(SegmentedFile file, int length) throws IOException
+    {
+        byte[] read = new byte[length];
+        try (RandomAccessReader reader = file.createReader())
+        {
+            reader.readFully(read);
+        }
+        return read;
+    }
+
+    private static ByteBuffer randomChunk(int seed)
+    {
+        byte[] bytes = new byte[CHUNK_LENGTH];
+        new Random(seed).nextBytes(bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+}
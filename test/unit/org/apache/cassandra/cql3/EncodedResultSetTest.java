@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.cql3;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.SimpleStatement;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.After;
+import org.junit.Test;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.marshal.Int32Type;
+import org.apache.cassandra.transport.Server;
+import org.apache.cassandra.utils.ByteBufferUtil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class EncodedResultSetTest extends CQLTester
+{
+    @After
+    public void tearDown()
+    {
+        DatabaseDescriptor.setNativeTransportEncodeRowsOnRead(false);
+    }
+
+    @Test
+    public void testSameEncoding()
+    {
+        ResultSet expected = new ResultSet(metadata().names);
+        ResultSet encoded = ResultSet.withEncodedRows(metadata());
+        for (List<ByteBuffer> row : rows(100))
+        {
+            expected.addRow(row);
+            encoded.addRow(row);
+        }
+
+        assertEquals(100, encoded.size());
+        assertEquals(ResultSet.codec.encodedSize(expected, Server.CURRENT_VERSION), ResultSet.codec.encodedSize(encoded, Server.CURRENT_VERSION));
+        assertEquals(encode(expected), encode(encoded));
+
+        // the rows are released once encoded
+        try
+        {
+            encoded.rows.get(0);
+            fail("Expected the rows to be released");
+        }
+        catch (IllegalStateException e)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void testDecodeOnAccess()
+    {
+        List<List<ByteBuffer>> rows = rows(10);
+        ResultSet encoded = ResultSet.withEncodedRows(metadata());
+        for (List<ByteBuffer> row : rows)
+            encoded.addRow(row);
+
+        assertEquals(rows, new ArrayList<>(encoded.rows));
+
+        // once decoded, the rows can be modified and are encoded from the lists
+        encoded.trim(5);
+        encoded.reverse();
+        ResultSet expected = new ResultSet(metadata().names);
+        for (int i = 4; i >= 0; i--)
+            expected.addRow(rows.get(i));
+        assertEquals(expected.rows, encoded.rows);
+        assertEquals(encode(expected), encode(encoded));
+    }
+
+    @Test
+    public void testDiscard()
+    {
+        ResultSet encoded = ResultSet.withEncodedRows(metadata());
+        encoded.addRow(rows(1).get(0));
+        encoded.discard();
+        try
+        {
+            encode(encoded);
+            fail("Expected the rows to be released");
+        }
+        catch (IllegalStateException e)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void testSameQueryResults() throws Throwable
+    {
+        requireNetwork();
+        createTable("CREATE TABLE %s (k int, c int, v text, s int static, PRIMARY KEY (k, c))");
+        for (int i = 0; i < 5; i++)
+        {
+            execute("INSERT INTO %s (k, s) VALUES (?, ?)", i, i);
+            for (int j = 0; j < 20; j++)
+                execute("INSERT INTO %s (k, c, v) VALUES (?, ?, ?)", i, j, j % 3 == 0 ? null : "v" + j);
+        }
+
+        for (String query : new String[]{ "SELECT * FROM %s",
+                                          "SELECT * FROM %s WHERE k = 1",
+                                          "SELECT k, c, v FROM %s WHERE k IN (3, 1, 2) LIMIT 30",
+                                          "SELECT k, c, v FROM %s WHERE k IN (3, 1, 2) ORDER BY c DESC",
+                                          "SELECT c, writetime(v), ttl(v) FROM %s WHERE k = 2",
+                                          "SELECT JSON k, c, v FROM %s WHERE k = 3",
+                                          "SELECT DISTINCT k, s FROM %s",
+                                          "SELECT count(*), max(c) FROM %s WHERE k = 4",
+                                          "SELECT k, c FROM %s WHERE k = 5" })
+        {
+            for (int fetchSize : new int[]{ Integer.MAX_VALUE, 7 })
+            {
+                if (fetchSize < Integer.MAX_VALUE && query.contains("ORDER BY"))
+                    continue;
+
+                List<String> expected = rows(query, fetchSize);
+                DatabaseDescriptor.setNativeTransportEncodeRowsOnRead(true);
+                assertEquals(query, expected, rows(query, fetchSize));
+                DatabaseDescriptor.setNativeTransportEncodeRowsOnRead(false);
+            }
+        }
+    }
+
+    private List<String> rows(String query, int fetchSize) throws Throwable
+    {
+        SimpleStatement statement = sessionNet().newSimpleStatement(formatQuery(query));
+        statement.setFetchSize(fetchSize);
+
+        List<String> rows = new ArrayList<>();
+        for (Row row : sessionNet().execute(statement))
+            rows.add(row.toString());
+        return rows;
+    }
+
+    private String formatQuery(String query)
+    {
+        return String.format(query, KEYSPACE + "." + currentTable());
+    }
+
+    private static ResultSet.ResultMetadata metadata()
+    {
+        List<ColumnSpecification> names = new ArrayList<>();
+        for (String name : new String[]{ "a", "b", "c" })
+            names.add(new ColumnSpecification("ks", "cf", new ColumnIdentifier(name, true), Int32Type.instance));
+        return new ResultSet.ResultMetadata(names);
+    }
+
+    private static List<List<ByteBuffer>> rows(int count)
+    {
+        List<List<ByteBuffer>> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            rows.add(Arrays.asList(ByteBufferUtil.bytes(i), i % 2 == 0 ? null : ByteBufferUtil.bytes(-i), ByteBufferUtil.EMPTY_BYTE_BUFFER));
+        return rows;
+    }
+
+    private static ByteBuf encode(ResultSet rs)
+    {
+        ByteBuf buffer = Unpooled.buffer();
+        ResultSet.codec.encode(rs, buffer, Server.CURRENT_VERSION);
+        return buffer;
+    }
+}
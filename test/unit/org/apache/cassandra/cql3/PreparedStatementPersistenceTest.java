@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.cql3;
+
+import org.junit.Test;
+
+import org.apache.cassandra.cql3.statements.ParsedStatement;
+import org.apache.cassandra.db.SystemKeyspace;
+import org.apache.cassandra.service.ClientState;
+import org.apache.cassandra.transport.messages.ResultMessage;
+import org.apache.cassandra.utils.MD5Digest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PreparedStatementPersistenceTest extends CQLTester
+{
+    @Test
+    public void testReloadAfterRestart() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int)");
+        execute("INSERT INTO %s (k, v) VALUES (0, 1)");
+
+        ResultMessage.Prepared prepared = prepare("SELECT v FROM %s WHERE k = ?");
+        assertTrue(SystemKeyspace.loadPreparedStatementIds().contains(prepared.statementId));
+
+        long hits = QueryProcessor.metrics.preparedStatementsHits.getCount();
+        assertNotNull(QueryProcessor.instance.getPrepared(prepared.statementId));
+        assertEquals(hits + 1, QueryProcessor.metrics.preparedStatementsHits.getCount());
+
+        // losing the cache, as on restart, only costs a miss and the statement is prepared again from the system table
+        restart();
+        long misses = QueryProcessor.metrics.preparedStatementsMisses.getCount();
+        long reloaded = QueryProcessor.metrics.preparedStatementsReloaded.getCount();
+        ParsedStatement.Prepared reprepared = QueryProcessor.instance.getPrepared(prepared.statementId);
+        assertNotNull(reprepared);
+        assertEquals(misses + 1, QueryProcessor.metrics.preparedStatementsMisses.getCount());
+        assertEquals(reloaded + 1, QueryProcessor.metrics.preparedStatementsReloaded.getCount());
+        assertEquals(prepared.metadata.names.size(), reprepared.boundNames.size());
+        assertNotNull(QueryProcessor.instance.getPrepared(prepared.statementId));
+        assertEquals(misses + 1, QueryProcessor.metrics.preparedStatementsMisses.getCount());
+    }
+
+    @Test
+    public void testLoggedKeyspace() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int)");
+
+        ClientState state = ClientState.forInternalCalls();
+        state.setKeyspace(KEYSPACE);
+        ResultMessage.Prepared prepared = QueryProcessor.prepare(String.format("SELECT v FROM %s WHERE k = ?", currentTable()), state, false);
+
+        restart();
+        assertNotNull(QueryProcessor.instance.getPrepared(prepared.statementId));
+    }
+
+    @Test
+    public void testUnknownStatement() throws Throwable
+    {
+        long misses = QueryProcessor.metrics.preparedStatementsMisses.getCount();
+        assertNull(QueryProcessor.instance.getPrepared(MD5Digest.compute("SELECT * FROM unknown")));
+        assertEquals(misses + 1, QueryProcessor.metrics.preparedStatementsMisses.getCount());
+    }
+
+    @Test
+    public void testInvalidatedBySchemaChange() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int)");
+        ResultMessage.Prepared cached = prepare("SELECT v FROM %s WHERE k = ?");
+        ResultMessage.Prepared uncached = prepare("INSERT INTO %s (k, v) VALUES (?, ?)");
+        restart();
+        QueryProcessor.instance.getPrepared(cached.statementId);
+
+        // the statements in the cache are dropped with the table, those only persisted when they fail to reload
+        execute("DROP TABLE %s");
+        assertFalse(SystemKeyspace.loadPreparedStatementIds().contains(cached.statementId));
+        assertTrue(SystemKeyspace.loadPreparedStatementIds().contains(uncached.statementId));
+        assertNull(QueryProcessor.instance.getPrepared(cached.statementId));
+        assertNull(QueryProcessor.instance.getPrepared(uncached.statementId));
+        assertFalse(SystemKeyspace.loadPreparedStatementIds().contains(uncached.statementId));
+    }
+
+    @Test
+    public void testUnrelatedSchemaChange() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int)");
+        ResultMessage.Prepared cached = prepare("SELECT v FROM %s WHERE k = ?");
+        ResultMessage.Prepared uncached = prepare("INSERT INTO %s (k, v) VALUES (?, ?)");
+        restart();
+        QueryProcessor.instance.getPrepared(cached.statementId);
+
+        // dropping another table leaves all of them
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int)");
+        execute("DROP TABLE %s");
+        assertTrue(SystemKeyspace.loadPreparedStatementIds().contains(cached.statementId));
+        assertTrue(SystemKeyspace.loadPreparedStatementIds().contains(uncached.statementId));
+        assertNotNull(QueryProcessor.instance.getPrepared(uncached.statementId));
+    }
+
+    /**
+     * Loses the cache, and finds the persisted statements again, as on restart.
+     */
+    private static void restart()
+    {
+        QueryProcessor.clearPreparedStatementsCache();
+        QueryProcessor.loadPersistedStatementIds();
+    }
+
+    private ResultMessage.Prepared prepare(String query)
+    {
+        return QueryProcessor.prepare(String.format(query, KEYSPACE + "." + currentTable()), ClientState.forInternalCalls(), false);
+    }
+}
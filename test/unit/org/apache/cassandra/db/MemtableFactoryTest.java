@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db;
+
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.cql3.UntypedResultSet;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.cassandra.exceptions.ConfigurationException;
+import org.apache.cassandra.schema.MemtableParams;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MemtableFactoryTest extends CQLTester
+{
+    @Test
+    public void testDefaultFactory() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int)");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        assertEquals(MemtableParams.DEFAULT, cfs.metadata.params.memtable);
+        assertTrue(cfs.getTracker().getView().getCurrentMemtable() instanceof SkipListMemtable);
+
+        // the default isn't written to the schema, which stays the same as on older versions
+        assertFalse(schemaMemtable().has("memtable"));
+    }
+
+    @Test
+    public void testHashMemtable() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int, c int, v int, PRIMARY KEY (k, c)) WITH memtable = {'class': 'HashMemtableFactory'}");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        assertTrue(cfs.getTracker().getView().getCurrentMemtable() instanceof HashMemtable);
+
+        // the option is persisted in the schema
+        Map<String, String> memtable = schemaMemtable().getMap("memtable", UTF8Type.instance, UTF8Type.instance);
+        assertEquals(HashMemtableFactory.class.getName(), memtable.get("class"));
+
+        int partitions = 500;
+        for (int i = 0; i < partitions; i++)
+        {
+            execute("INSERT INTO %s (k, c, v) VALUES (?, ?, ?)", i, 0, i);
+            execute("INSERT INTO %s (k, c, v) VALUES (?, ?, ?)", i, 1, i);
+        }
+        execute("DELETE FROM %s WHERE k = ? AND c = ?", 7, 1);
+
+        checkContent(partitions);
+        cfs.forceBlockingFlush();
+        assertEquals(1, cfs.getLiveSSTables().size());
+        checkContent(partitions);
+    }
+
+    @Test
+    public void testAlterMemtable() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int)");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        execute("INSERT INTO %s (k, v) VALUES (?, ?)", 0, 0);
+
+        alterTable("ALTER TABLE %s WITH memtable = {'class': 'HashMemtableFactory'}");
+        assertEquals(HashMemtableFactory.class, cfs.metadata.params.memtable.klass());
+
+        // the new implementation is picked up on the next memtable switch
+        execute("INSERT INTO %s (k, v) VALUES (?, ?)", 1, 1);
+        cfs.forceBlockingFlush();
+        assertTrue(cfs.getTracker().getView().getCurrentMemtable() instanceof HashMemtable);
+
+        alterTable("ALTER TABLE %s WITH memtable = {'class': 'SkipListMemtableFactory', 'shards': '4'}");
+        execute("INSERT INTO %s (k, v) VALUES (?, ?)", 2, 2);
+        cfs.forceBlockingFlush();
+        assertEquals(4, ((SkipListMemtable) cfs.getTracker().getView().getCurrentMemtable()).shardCount());
+        assertRowsIgnoringOrder(execute("SELECT * FROM %s"), row(0, 0), row(1, 1), row(2, 2));
+
+        // reverting to the default removes it from the schema
+        alterTable("ALTER TABLE %s WITH memtable = {'class': 'SkipListMemtableFactory'}");
+        assertEquals(MemtableParams.DEFAULT, cfs.metadata.params.memtable);
+        assertFalse(schemaMemtable().has("memtable"));
+    }
+
+    private UntypedResultSet.Row schemaMemtable() throws Throwable
+    {
+        return execute("SELECT memtable FROM system_schema.tables WHERE keyspace_name = ? AND table_name = ?", KEYSPACE, currentTable()).one();
+    }
+
+    @Test
+    public void testInvalidOptions() throws Throwable
+    {
+        assertInvalidMessage("Missing sub-option 'class'",
+                             "CREATE TABLE " + KEYSPACE + ".invalid_memtable (k int PRIMARY KEY, v int) WITH memtable = {'shards': '4'}");
+        assertInvalidMessage("Unable to find memtable factory class",
+                             "CREATE TABLE " + KEYSPACE + ".invalid_memtable (k int PRIMARY KEY, v int) WITH memtable = {'class': 'NoSuchFactory'}");
+        assertInvalidMessage("must be at least 1",
+                             "CREATE TABLE " + KEYSPACE + ".invalid_memtable (k int PRIMARY KEY, v int) WITH memtable = {'class': 'SkipListMemtableFactory', 'shards': '0'}");
+        assertInvalidMessage("are not understood by HashMemtableFactory",
+                             "CREATE TABLE " + KEYSPACE + ".invalid_memtable (k int PRIMARY KEY, v int) WITH memtable = {'class': 'HashMemtableFactory', 'shards': '4'}");
+
+        try
+        {
+            MemtableParams.create(HashMemtableFactory.class, ImmutableMap.of("foo", "bar")).validate();
+            fail("Expected a ConfigurationException");
+        }
+        catch (ConfigurationException e)
+        {
+            assertTrue(e.getMessage().contains("foo"));
+        }
+    }
+
+    private void checkContent(int partitions) throws Throwable
+    {
+        assertRows(execute("SELECT c, v FROM %s WHERE k = ?", 42), row(0, 42), row(1, 42));
+        assertRows(execute("SELECT c, v FROM %s WHERE k = ?", 7), row(0, 7));
+
+        // range reads must return the partitions in token order
+        UntypedResultSet result = execute("SELECT token(k) AS t FROM %s WHERE c = 0 ALLOW FILTERING");
+        assertEquals(partitions, result.size());
+        long previous = Long.MIN_VALUE;
+        int positiveTokens = 0;
+        for (UntypedResultSet.Row row : result)
+        {
+            long token = row.getLong("t");
+            assertTrue(previous < token);
+            previous = token;
+            if (token >= 0)
+                positiveTokens++;
+        }
+        assertEquals(positiveTokens, execute("SELECT k FROM %s WHERE token(k) >= 0 AND c = 0 ALLOW FILTERING").size());
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.io.util.FileUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MemtablePerDiskFlushTest extends CQLTester
+{
+    private static final int EXTRA_DIRECTORIES = 3;
+
+    @BeforeClass
+    public static void addDataDirectories()
+    {
+        Directories.DataDirectory[] directories = new Directories.DataDirectory[EXTRA_DIRECTORIES];
+        for (int i = 0; i < EXTRA_DIRECTORIES; i++)
+        {
+            File location = FileUtils.createTempFile("MemtablePerDiskFlushTest", "");
+            location.delete();
+            location.mkdirs();
+            location.deleteOnExit();
+            directories[i] = new Directories.DataDirectory(location);
+        }
+        ColumnFamilyStore.addInitialDirectories(directories);
+    }
+
+    @Test
+    public void testFlushSplitByDataDirectory() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int)");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        Directories.DataDirectory[] locations = cfs.getDirectories().getWriteableLocations();
+        assertEquals(EXTRA_DIRECTORIES + 1, locations.length);
+
+        int partitions = 1000;
+        for (int i = 0; i < partitions; i++)
+            execute("INSERT INTO %s (k, v) VALUES (?, ?)", i, i);
+        cfs.forceBlockingFlush();
+
+        // one sstable per data directory, each covering a distinct part of the ring
+        assertEquals(locations.length, cfs.getLiveSSTables().size());
+        Set<File> sstableDirectories = new HashSet<>();
+        long keys = 0;
+        for (SSTableReader sstable : cfs.getLiveSSTables())
+        {
+            sstableDirectories.add(sstable.descriptor.directory);
+            keys += sstable.estimatedKeys();
+            for (SSTableReader other : cfs.getLiveSSTables())
+            {
+                if (other != sstable)
+                    assertTrue(sstable.last.compareTo(other.first) < 0 || other.last.compareTo(sstable.first) < 0);
+            }
+        }
+        assertEquals(locations.length, sstableDirectories.size());
+        assertTrue(keys >= partitions);
+
+        for (Directories.DataDirectory location : locations)
+        {
+            assertTrue(cfs.metric.flushedBytesPerDataDirectory.get(location).getCount() > 0);
+            assertTrue(cfs.metric.flushThroughputPerDataDirectory.get(location).getValue() >= 0);
+        }
+
+        assertEquals(partitions, execute("SELECT * FROM %s").size());
+        assertRows(execute("SELECT v FROM %s WHERE k = ?", 42), row(42));
+    }
+}
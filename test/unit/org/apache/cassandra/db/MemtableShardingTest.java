@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import org.junit.After;
+import org.junit.Test;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.cql3.UntypedResultSet;
+import org.apache.cassandra.db.commitlog.CommitLog;
+import org.apache.cassandra.db.lifecycle.LifecycleTransaction;
+import org.apache.cassandra.db.marshal.BytesType;
+import org.apache.cassandra.db.partitions.AtomicBTreePartition;
+import org.apache.cassandra.dht.LocalPartitioner;
+import org.apache.cassandra.dht.Murmur3Partitioner;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.index.transactions.UpdateTransaction;
+import org.apache.cassandra.utils.concurrent.OpOrder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MemtableShardingTest extends CQLTester
+{
+    @After
+    public void resetShards()
+    {
+        DatabaseDescriptor.setMemtableShards(1);
+    }
+
+    @Test
+    public void testSplitRing()
+    {
+        assertEquals(0, Memtable.splitRing(Murmur3Partitioner.instance, 1).length);
+        assertEquals(0, Memtable.splitRing(new LocalPartitioner(BytesType.instance), 8).length);
+
+        for (int shards : new int[]{ 2, 3, 8, 13 })
+        {
+            Token[] boundaries = Memtable.splitRing(Murmur3Partitioner.instance, shards);
+            assertEquals(shards - 1, boundaries.length);
+            for (int i = 1; i < boundaries.length; i++)
+                assertTrue(boundaries[i - 1].compareTo(boundaries[i]) < 0);
+        }
+    }
+
+    @Test
+    public void testShardedWritesReadsAndFlush() throws Throwable
+    {
+        DatabaseDescriptor.setMemtableShards(8);
+
+        createTable("CREATE TABLE %s (k int, c int, v int, PRIMARY KEY (k, c))");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        cfs.forceBlockingFlush(); // switch to a memtable created with the new shard count
+        assertEquals(8, ((SkipListMemtable) cfs.getTracker().getView().getCurrentMemtable()).shardCount());
+
+        int partitions = 1000;
+        for (int i = 0; i < partitions; i++)
+        {
+            execute("INSERT INTO %s (k, c, v) VALUES (?, ?, ?)", i, 0, i);
+            execute("INSERT INTO %s (k, c, v) VALUES (?, ?, ?)", i, 1, i);
+        }
+
+        assertEquals(partitions, cfs.getTracker().getView().getCurrentMemtable().partitionCount());
+        checkContent(partitions);
+
+        cfs.forceBlockingFlush();
+        assertEquals(8, cfs.getLiveSSTables().size());
+        checkContent(partitions);
+    }
+
+    @Test
+    public void testFailedShardFlushLeavesNoSSTables() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int)");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+
+        // a memtable whose last shard fails to be written, once the others may already be
+        Memtable memtable = new SkipListMemtable(cfs, 4)
+        {
+            protected List<FlushSet> getFlushSets()
+            {
+                List<FlushSet> flushSets = new ArrayList<>(super.getFlushSets());
+                FlushSet last = flushSets.remove(flushSets.size() - 1);
+                flushSets.add(new FlushSet(failingOnWrite(last.partitions), last.partitionCount, last.columns, last.stats, last.liveDataSize));
+                return flushSets;
+            }
+        };
+        try (OpOrder.Group opGroup = Keyspace.writeOrder.start())
+        {
+            for (int i = 0; i < 100; i++)
+                memtable.put(new RowUpdateBuilder(cfs.metadata, 0, i).add("v", i).buildUpdate(), UpdateTransaction.NO_OP, opGroup);
+        }
+        OpOrder.Barrier barrier = Keyspace.writeOrder.newBarrier();
+        barrier.issue();
+        memtable.setDiscarding(barrier, new AtomicReference<>(CommitLog.instance.getContext(cfs.metadata.cfId)));
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try
+        {
+            memtable.flush(executor);
+            fail("The flush should have failed");
+        }
+        catch (RuntimeException e)
+        {
+            // expected
+        }
+        finally
+        {
+            executor.shutdown();
+            memtable.setDiscarded();
+        }
+
+        // the sstables of the other shards are aborted along with the failed one
+        LifecycleTransaction.waitForDeletions();
+        assertTrue(cfs.getLiveSSTables().isEmpty());
+        assertTrue(cfs.getDirectories().sstableLister(Directories.OnTxnErr.IGNORE).list().isEmpty());
+    }
+
+    private static Iterable<AtomicBTreePartition> failingOnWrite(Iterable<AtomicBTreePartition> partitions)
+    {
+        // the partitions are iterated once to size the flush, and once to write them
+        AtomicInteger iterations = new AtomicInteger();
+        return () -> iterations.getAndIncrement() == 0
+                     ? partitions.iterator()
+                     : Iterators.concat(partitions.iterator(), new AbstractIterator<AtomicBTreePartition>()
+                     {
+                         protected AtomicBTreePartition computeNext()
+                         {
+                             throw new RuntimeException("Failed shard");
+                         }
+                     });
+    }
+
+    private void checkContent(int partitions) throws Throwable
+    {
+        assertRows(execute("SELECT v FROM %s WHERE k = ? AND c = ?", 42, 1), row(42));
+
+        // a full scan should return every partition exactly once, in token order
+        UntypedResultSet result = execute("SELECT token(k) AS t, k FROM %s WHERE c = 0 ALLOW FILTERING");
+        assertEquals(partitions, result.size());
+        long previous = Long.MIN_VALUE;
+        int positiveTokens = 0;
+        for (UntypedResultSet.Row row : result)
+        {
+            long token = row.getLong("t");
+            assertTrue(previous < token);
+            previous = token;
+            if (token >= 0)
+                positiveTokens++;
+        }
+
+        // and ranges spanning several shards should be selected correctly
+        assertEquals(positiveTokens, execute("SELECT k FROM %s WHERE token(k) >= 0 AND c = 0 ALLOW FILTERING").size());
+    }
+}
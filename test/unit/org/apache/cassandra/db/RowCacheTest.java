@@ -39,6 +39,7 @@ import org.apache.cassandra.db.partitions.CachedPartition;
 import org.apache.cassandra.exceptions.ConfigurationException;
 import org.apache.cassandra.dht.ByteOrderedPartitioner.BytesToken;
 import org.apache.cassandra.locator.TokenMetadata;
+import org.apache.cassandra.metrics.CacheMetrics;
 import org.apache.cassandra.schema.CachingParams;
 import org.apache.cassandra.schema.KeyspaceParams;
 import org.apache.cassandra.service.CacheService;
@@ -96,13 +97,17 @@ public class RowCacheTest
         rub.build().applyUnsafe();
 
         // populate row cache, we should not get a row cache hit;
+        CacheMetrics metrics = CacheService.instance.rowCache.getMetrics();
+        long misses = metrics.misses.getCount();
         Util.getAll(Util.cmd(cachedStore, dk).withLimit(1).build());
         assertEquals(startRowCacheHits, cachedStore.metric.rowCacheHit.getCount());
+        assertEquals(misses + 1, metrics.misses.getCount());
 
         // do another query, limit is 20, which is < 100 that we cache, we should get a hit and it should be in range
         Util.getAll(Util.cmd(cachedStore, dk).withLimit(1).build());
         assertEquals(++startRowCacheHits, cachedStore.metric.rowCacheHit.getCount());
         assertEquals(startRowCacheOutOfRange, cachedStore.metric.rowCacheHitOutOfRange.getCount());
+        assertEquals(misses + 1, metrics.misses.getCount());
 
         CachedPartition cachedCf = (CachedPartition)CacheService.instance.rowCache.get(rck);
         assertEquals(1, cachedCf.rowCount());
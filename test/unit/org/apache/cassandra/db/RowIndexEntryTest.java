@@ -20,6 +20,7 @@ package org.apache.cassandra.db;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -32,16 +33,19 @@ import org.apache.cassandra.db.marshal.LongType;
 import org.apache.cassandra.db.rows.EncodingStats;
 import org.apache.cassandra.db.partitions.*;
 import org.apache.cassandra.io.sstable.IndexHelper;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
 import org.apache.cassandra.io.sstable.format.big.BigFormat;
 import org.apache.cassandra.io.util.DataInputBuffer;
 import org.apache.cassandra.io.util.DataOutputBuffer;
 import org.apache.cassandra.io.util.SequentialWriter;
+import org.apache.cassandra.utils.ByteBufferUtil;
 import org.apache.cassandra.utils.FBUtilities;
 
 import org.junit.Assert;
 import org.junit.Test;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertTrue;
 
 public class RowIndexEntryTest extends CQLTester
@@ -178,6 +182,52 @@ public class RowIndexEntryTest extends CQLTester
         Assert.assertEquals(0, bb.remaining());
     }
 
+    @Test
+    public void testShallowIndexedEntry() throws Throwable
+    {
+        createTable("CREATE TABLE %s (a int, b int, c text, PRIMARY KEY(a, b))");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+
+        // write enough rows for the column index to be bigger than column_index_cache_size_in_kb
+        String value = new String(new char[100]).replace('\0', 'x');
+        int rows = 8000;
+        for (int i = 0; i < rows; i++)
+            execute("INSERT INTO %s (a, b, c) VALUES (?, ?, ?)", 0, i, value);
+        cfs.forceBlockingFlush();
+
+        SSTableReader sstable = cfs.getLiveSSTables().iterator().next();
+        RowIndexEntry entry = sstable.getPosition(Util.dk(ByteBufferUtil.bytes(0)), SSTableReader.Operator.EQ);
+        assertTrue(entry.isIndexed());
+        assertFalse(entry.indexOnHeap());
+
+        // the lookups done against the index file should match the ones done against the deserialized index
+        try (IndexHelper.IndexInfoRetriever indexes = entry.openWithIndex(sstable.getIndexFile()))
+        {
+            assertEquals(entry.columnsCount(), indexes.size());
+            List<IndexHelper.IndexInfo> infos = new ArrayList<>();
+            for (int i = 0; i < indexes.size(); i++)
+                infos.add(indexes.get(i));
+
+            for (int i = -1; i <= rows; i += 7)
+            {
+                ClusteringPrefix name = Util.clustering(cfs.metadata.comparator, i);
+                for (int last = -1; last <= infos.size(); last++)
+                {
+                    assertEquals(IndexHelper.indexFor(name, infos, cfs.metadata.comparator, false, last),
+                                 IndexHelper.indexFor(name, indexes, cfs.metadata.comparator, false, last));
+                    assertEquals(IndexHelper.indexFor(name, infos, cfs.metadata.comparator, true, last),
+                                 IndexHelper.indexFor(name, indexes, cfs.metadata.comparator, true, last));
+                }
+            }
+        }
+
+        assertRowCount(execute("SELECT * FROM %s WHERE a = 0"), rows);
+        assertRowCount(execute("SELECT * FROM %s WHERE a = 0 ORDER BY b DESC"), rows);
+        assertRows(execute("SELECT b FROM %s WHERE a = 0 AND b >= ? AND b < ?", 1000, 1003), row(1000), row(1001), row(1002));
+        assertRows(execute("SELECT b FROM %s WHERE a = 0 AND b >= ? AND b < ? ORDER BY b DESC", 1000, 1003), row(1002), row(1001), row(1000));
+        assertRows(execute("SELECT b FROM %s WHERE a = 0 AND b IN (?, ?, ?)", 5, 4000, rows - 1), row(5), row(4000), row(rows - 1));
+    }
+
     private void serializationCheck(RowIndexEntry<IndexHelper.IndexInfo> withIndex, IndexHelper.IndexInfo.Serializer indexSerializer, ByteBuffer bb, DataInputBuffer input) throws IOException
     {
         Assert.assertEquals(0xdeadbeef, input.readUnsignedVInt());
@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.commitlog;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Sets;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.cassandra.SchemaLoader;
+import org.apache.cassandra.Util;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.Keyspace;
+import org.apache.cassandra.db.Mutation;
+import org.apache.cassandra.db.RowUpdateBuilder;
+import org.apache.cassandra.db.marshal.AsciiType;
+import org.apache.cassandra.db.marshal.BytesType;
+import org.apache.cassandra.schema.KeyspaceParams;
+import org.apache.cassandra.service.MigrationManager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DedicatedCommitLogTest
+{
+    private static final String KEYSPACE = "DedicatedCommitLogTest";
+    private static final String STANDARD = "Standard1";
+    private static final String DEDICATED = "Dedicated1";
+    private static final String DROPPED = "Dedicated2";
+
+    @BeforeClass
+    public static void defineSchema()
+    {
+        // before the commit log is started
+        DatabaseDescriptor.setCommitLogDedicatedTables(Sets.newHashSet(KEYSPACE + '.' + DEDICATED, KEYSPACE + '.' + DROPPED));
+
+        SchemaLoader.prepareServer();
+        SchemaLoader.createKeyspace(KEYSPACE,
+                                    KeyspaceParams.simple(1),
+                                    SchemaLoader.standardCFMD(KEYSPACE, STANDARD, 0, AsciiType.instance, BytesType.instance),
+                                    SchemaLoader.standardCFMD(KEYSPACE, DEDICATED, 0, AsciiType.instance, BytesType.instance),
+                                    SchemaLoader.standardCFMD(KEYSPACE, DROPPED, 0, AsciiType.instance, BytesType.instance));
+    }
+
+    @Test
+    public void testSegmentsRecycledPerTable() throws Exception
+    {
+        CommitLog.instance.resetUnsafe(true);
+        ColumnFamilyStore standard = Keyspace.open(KEYSPACE).getColumnFamilyStore(STANDARD);
+        ColumnFamilyStore dedicated = Keyspace.open(KEYSPACE).getColumnFamilyStore(DEDICATED);
+        standard.clearUnsafe();
+        dedicated.clearUnsafe();
+
+        CommitLogSegmentManager shared = CommitLog.instance.allocatorFor(standard.metadata.cfId);
+        CommitLogSegmentManager own = CommitLog.instance.allocatorFor(dedicated.metadata.cfId);
+        assertSame(CommitLog.instance.allocator, shared);
+        assertNotSame(shared, own);
+
+        // fill more than a segment of each set
+        int count = 400;
+        for (int i = 0; i < count; i++)
+        {
+            mutation(standard, "k" + i).apply();
+            mutation(dedicated, "k" + i).apply();
+        }
+        int sharedSegments = shared.getActiveSegments().size();
+        assertTrue(sharedSegments > 1);
+        assertTrue(own.getActiveSegments().size() > 1);
+        for (CommitLogSegment segment : shared.getActiveSegments())
+        {
+            assertNull(segment.descriptor.table);
+            assertFalse(segment.getDirtyCFIDs().contains(dedicated.metadata.cfId));
+        }
+        for (CommitLogSegment segment : own.getActiveSegments())
+        {
+            assertEquals(dedicated.metadata.cfId, segment.descriptor.table);
+            assertEquals(1, segment.getDirtyCFIDs().size());
+        }
+
+        // flushing the dedicated table recycles all of its segments but the one in use, and none of the others
+        dedicated.forceBlockingFlush();
+        assertEquals(1, own.getActiveSegments().size());
+        assertEquals(sharedSegments, shared.getActiveSegments().size());
+
+        // a mutation of both tables is split between the sets
+        Mutation both = mutation(standard, "both");
+        both.add(mutation(dedicated, "both").getPartitionUpdate(dedicated.metadata.cfId));
+        assertTrue(CommitLog.instance.spansSegmentSets(both));
+        both.apply();
+        assertEquals(count + 1, Util.getAll(Util.cmd(standard).build()).size());
+        assertEquals(count + 1, Util.getAll(Util.cmd(dedicated).build()).size());
+
+        // only the dedicated table's entries written after its flush are replayed, with all of the other table's
+        standard.clearUnsafe();
+        assertEquals(count + 2, CommitLog.instance.resetUnsafe(false));
+        assertEquals(count + 1, Util.getAll(Util.cmd(standard).build()).size());
+        assertEquals(count + 1, Util.getAll(Util.cmd(dedicated).build()).size());
+    }
+
+    @Test
+    public void testSplitMutationReplayedPerSet() throws Exception
+    {
+        CommitLog.instance.resetUnsafe(true);
+        ColumnFamilyStore standard = Keyspace.open(KEYSPACE).getColumnFamilyStore(STANDARD);
+        ColumnFamilyStore dedicated = Keyspace.open(KEYSPACE).getColumnFamilyStore(DEDICATED);
+        standard.clearUnsafe();
+        dedicated.clearUnsafe();
+
+        // a mutation of both tables is written as two entries, in different segments
+        Mutation both = mutation(standard, "split");
+        both.add(mutation(dedicated, "split").getPartitionUpdate(dedicated.metadata.cfId));
+        Map<UUID, ReplayPosition> positions = CommitLog.instance.addSplit(both);
+        assertEquals(2, positions.size());
+        assertTrue(positions.get(standard.metadata.cfId).segment != positions.get(dedicated.metadata.cfId).segment);
+
+        // so losing the dedicated table's entry in a crash replays the update of the other table without it
+        List<File> dedicatedSegments = new ArrayList<>();
+        for (CommitLogSegment segment : CommitLog.instance.allocatorFor(dedicated.metadata.cfId).getActiveSegments())
+            dedicatedSegments.add(new File(segment.getPath()));
+        CommitLog.instance.stopUnsafe(false);
+        for (File segment : dedicatedSegments)
+            assertTrue(segment.delete());
+        assertEquals(1, CommitLog.instance.restartUnsafe());
+        assertEquals(1, Util.getAll(Util.cmd(standard).build()).size());
+        Util.assertEmpty(Util.cmd(dedicated).build());
+    }
+
+    @Test
+    public void testDroppedTableReleasesSegments() throws Exception
+    {
+        for (int round = 0; round < 2; round++)
+        {
+            ColumnFamilyStore dropped = Keyspace.open(KEYSPACE).getColumnFamilyStore(DROPPED);
+            UUID cfId = dropped.metadata.cfId;
+            mutation(dropped, "k").apply();
+            CommitLogSegmentManager own = CommitLog.instance.allocatorFor(cfId);
+            assertNotSame(CommitLog.instance.allocator, own);
+            List<File> segments = new ArrayList<>();
+            for (CommitLogSegment segment : own.getActiveSegments())
+                segments.add(new File(segment.getPath()));
+
+            MigrationManager.announceColumnFamilyDrop(KEYSPACE, DROPPED, true);
+
+            // the set is gone with its segments and its thread, so a table re-created under the name starts afresh
+            assertFalse(Iterables.contains(CommitLog.instance.allocators(), own));
+            for (File segment : segments)
+                assertFalse(segment.exists());
+            assertFalse(threadExists("COMMIT-LOG-ALLOCATOR:" + cfId));
+
+            MigrationManager.announceNewColumnFamily(SchemaLoader.standardCFMD(KEYSPACE, DROPPED, 0, AsciiType.instance, BytesType.instance), true);
+        }
+    }
+
+    private static boolean threadExists(String name)
+    {
+        for (Thread thread : Thread.getAllStackTraces().keySet())
+            if (thread.getName().equals(name))
+                return true;
+        return false;
+    }
+
+    private static Mutation mutation(ColumnFamilyStore cfs, String key)
+    {
+        return new RowUpdateBuilder(cfs.metadata, 0, key)
+               .clustering("bytes")
+               .add("val", ByteBuffer.allocate(16 << 10))
+               .build();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.commitlog;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.cassandra.SchemaLoader;
+import org.apache.cassandra.Util;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.Keyspace;
+import org.apache.cassandra.db.RowUpdateBuilder;
+import org.apache.cassandra.db.marshal.AsciiType;
+import org.apache.cassandra.db.marshal.BytesType;
+import org.apache.cassandra.schema.KeyspaceParams;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DirectIOCommitLogTest
+{
+    private static final String KEYSPACE = "DirectIOCommitLogTest";
+    private static final String STANDARD = "Standard1";
+
+    @BeforeClass
+    public static void defineSchema()
+    {
+        // before the commit log is started
+        DatabaseDescriptor.setCommitLogDirectIO(true);
+
+        SchemaLoader.prepareServer();
+        SchemaLoader.createKeyspace(KEYSPACE,
+                                    KeyspaceParams.simple(1),
+                                    SchemaLoader.standardCFMD(KEYSPACE, STANDARD, 0, AsciiType.instance, BytesType.instance));
+    }
+
+    @Test
+    public void testReplay() throws Exception
+    {
+        CommitLog.instance.resetUnsafe(true);
+        ColumnFamilyStore cfs = Keyspace.open(KEYSPACE).getColumnFamilyStore(STANDARD);
+
+        // mutations of many sizes, that aren't aligned and fill more than a segment
+        Random random = new Random(42);
+        int count = 500;
+        for (int i = 0; i < count; i++)
+        {
+            CommitLog.instance.add(new RowUpdateBuilder(cfs.metadata, 0, "k" + i)
+                                   .clustering("bytes")
+                                   .add("val", ByteBuffer.allocate(random.nextInt(32 << 10)))
+                                   .build());
+        }
+
+        assertTrue(CommitLog.instance.allocator.getActiveSegments().size() > 1);
+        for (CommitLogSegment segment : CommitLog.instance.allocator.getActiveSegments())
+        {
+            assertTrue(segment instanceof DirectIOSegment);
+            assertEquals(0, new File(segment.getPath()).length() % DirectIOSegment.ALIGNMENT);
+            assertEquals(segment.onDiskSize(), new File(segment.getPath()).length());
+        }
+
+        cfs.clearUnsafe();
+        assertEquals(count, CommitLog.instance.resetUnsafe(false));
+        assertEquals(count, Util.getAll(Util.cmd(cfs).build()).size());
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.commitlog;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.cassandra.SchemaLoader;
+import org.apache.cassandra.config.Config;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.Keyspace;
+import org.apache.cassandra.db.Mutation;
+import org.apache.cassandra.db.RowUpdateBuilder;
+import org.apache.cassandra.db.marshal.AsciiType;
+import org.apache.cassandra.db.marshal.BytesType;
+import org.apache.cassandra.schema.KeyspaceParams;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GroupCommitLogTest
+{
+    private static final String KEYSPACE = "GroupCommitLogTest";
+    private static final String STANDARD = "Standard1";
+
+    // long enough for the tests to tell syncs triggered by the threshold from those of the window
+    private static final int WINDOW_MILLIS = 1000;
+
+    @BeforeClass
+    public static void defineSchema()
+    {
+        // before the commit log is started
+        DatabaseDescriptor.setCommitLogSync(Config.CommitLogSync.group);
+        DatabaseDescriptor.setCommitLogSyncGroupWindow(WINDOW_MILLIS);
+        DatabaseDescriptor.setCommitLogSyncGroupThresholdInKB(1);
+
+        SchemaLoader.prepareServer();
+        SchemaLoader.createKeyspace(KEYSPACE,
+                                    KeyspaceParams.simple(1),
+                                    SchemaLoader.standardCFMD(KEYSPACE, STANDARD, 0, AsciiType.instance, BytesType.instance));
+    }
+
+    @Test
+    public void testThresholdTriggersSync()
+    {
+        assertTrue(CommitLog.instance.executor instanceof GroupCommitLogService);
+        Mutation mutation = mutation("k", 2048);
+
+        long syncs = CommitLog.instance.metrics.syncGroupSize.getCount();
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++)
+            CommitLog.instance.add(mutation);
+
+        // each write is over the threshold, so doesn't wait for the window to expire
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(WINDOW_MILLIS));
+        assertTrue(CommitLog.instance.metrics.syncGroupSize.getCount() >= syncs + 5);
+        assertTrue(CommitLog.instance.metrics.syncLatency.getCount() >= syncs + 5);
+    }
+
+    @Test
+    public void testWritesAreGrouped() throws Throwable
+    {
+        long syncs = CommitLog.instance.metrics.syncGroupSize.getCount();
+
+        List<Thread> writers = new ArrayList<>();
+        for (int i = 0; i < 16; i++)
+        {
+            Mutation mutation = mutation("k" + i, 200);
+            writers.add(new Thread(() -> {
+                for (int j = 0; j < 10; j++)
+                    CommitLog.instance.add(mutation);
+            }));
+        }
+        for (Thread writer : writers)
+            writer.start();
+        for (Thread writer : writers)
+            writer.join();
+
+        // some syncs were shared by several writes
+        long groups = CommitLog.instance.metrics.syncGroupSize.getCount() - syncs;
+        assertTrue(groups > 0 && groups < 160);
+        assertTrue(CommitLog.instance.metrics.syncGroupSize.getSnapshot().getMax() > 1);
+    }
+
+    @Test
+    public void testFractionalWindow()
+    {
+        DatabaseDescriptor.setCommitLogSyncGroupWindow(0.5);
+        try
+        {
+            assertEquals(TimeUnit.MICROSECONDS.toNanos(500), new GroupCommitLogService(CommitLog.instance).pollIntervalNanos);
+        }
+        finally
+        {
+            DatabaseDescriptor.setCommitLogSyncGroupWindow(WINDOW_MILLIS);
+        }
+    }
+
+    private static Mutation mutation(String key, int size)
+    {
+        ColumnFamilyStore cfs = Keyspace.open(KEYSPACE).getColumnFamilyStore(STANDARD);
+        return new RowUpdateBuilder(cfs.metadata, 0, key)
+               .clustering("bytes")
+               .add("val", ByteBuffer.allocate(size))
+               .build();
+    }
+}
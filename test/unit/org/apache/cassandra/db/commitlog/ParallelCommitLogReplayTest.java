@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.commitlog;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.cassandra.SchemaLoader;
+import org.apache.cassandra.Util;
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.config.ColumnDefinition;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.statements.IndexTarget;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.DeletionTime;
+import org.apache.cassandra.db.Keyspace;
+import org.apache.cassandra.db.RangeTombstone;
+import org.apache.cassandra.db.RowUpdateBuilder;
+import org.apache.cassandra.db.marshal.AsciiType;
+import org.apache.cassandra.db.marshal.BytesType;
+import org.apache.cassandra.db.rows.Cell;
+import org.apache.cassandra.db.rows.Row;
+import org.apache.cassandra.index.StubIndex;
+import org.apache.cassandra.index.transactions.IndexTransaction;
+import org.apache.cassandra.schema.IndexMetadata;
+import org.apache.cassandra.schema.KeyspaceParams;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.concurrent.OpOrder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelCommitLogReplayTest
+{
+    private static final String KEYSPACE = "ParallelCommitLogReplayTest";
+    private static final String STANDARD = "Standard1";
+
+    @BeforeClass
+    public static void defineSchema()
+    {
+        DatabaseDescriptor.setCommitLogReplayParallelism(4);
+
+        SchemaLoader.prepareServer();
+        CFMetaData standard = SchemaLoader.standardCFMD(KEYSPACE, STANDARD, 0, AsciiType.instance, BytesType.instance);
+        ColumnDefinition val = standard.getColumnDefinition(ByteBufferUtil.bytes("val"));
+        standard.indexes(standard.getIndexes().with(IndexMetadata.fromIndexTargets(standard,
+                                                                                   Collections.singletonList(new IndexTarget(val.name, IndexTarget.Type.VALUES)),
+                                                                                   "apply_order",
+                                                                                   IndexMetadata.Kind.CUSTOM,
+                                                                                   Collections.singletonMap(IndexTarget.CUSTOM_INDEX_OPTION_NAME,
+                                                                                                            ApplyOrderIndex.class.getName()))));
+        SchemaLoader.createKeyspace(KEYSPACE, KeyspaceParams.simple(1), standard);
+    }
+
+    @Test
+    public void testReplay() throws Exception
+    {
+        CommitLog.instance.resetUnsafe(true);
+        ColumnFamilyStore cfs = Keyspace.open(KEYSPACE).getColumnFamilyStore(STANDARD);
+
+        // overwrites of the same partitions spread over several segments, all with the same timestamp so that each one
+        // wins over those applied before it, whatever the order it is applied in
+        int partitions = 20;
+        int count = 800;
+        for (int i = 0; i < count; i++)
+        {
+            CommitLog.instance.add(new RowUpdateBuilder(cfs.metadata, 0, "k" + (i % partitions))
+                                   .clustering("c")
+                                   .add("val", value(i))
+                                   .build());
+        }
+        assertTrue(CommitLog.instance.allocator.getActiveSegments().size() > 2);
+
+        long replayedBytes = CommitLog.instance.metrics.replayedBytes.getCount();
+        long replayedMutations = CommitLog.instance.metrics.replayedMutations.getCount();
+
+        cfs.clearUnsafe();
+        ApplyOrderIndex index = (ApplyOrderIndex) cfs.indexManager.getIndexByName("apply_order");
+        index.applied.clear();
+        assertEquals(count, CommitLog.instance.resetUnsafe(false));
+
+        // the writes of each partition are applied in the order they were written
+        for (int p = 0; p < partitions; p++)
+        {
+            List<Integer> expected = new ArrayList<>();
+            for (int i = p; i < count; i += partitions)
+                expected.add(i);
+            assertEquals(expected, index.applied.get(ByteBufferUtil.bytes("k" + p)));
+
+            Row row = Util.getOnlyRow(Util.cmd(cfs, "k" + p).build());
+            assertEquals(count - partitions + p, valueOf(row.getCell(cfs.metadata.getColumnDefinition(ByteBufferUtil.bytes("val")))));
+        }
+        assertTrue(CommitLog.instance.metrics.replayedBytes.getCount() > replayedBytes + (count << 14));
+        assertEquals(replayedMutations + count, CommitLog.instance.metrics.replayedMutations.getCount());
+    }
+
+    /**
+     * Values of equal timestamps are reconciled by comparing their (signed) bytes, so i is written 7 bits per byte for
+     * the larger i to win.
+     */
+    private static ByteBuffer value(int i)
+    {
+        ByteBuffer value = ByteBuffer.allocate(16 << 10);
+        value.put(0, (byte) (i >> 7));
+        value.put(1, (byte) (i & 0x7F));
+        return value;
+    }
+
+    private static int valueOf(Cell cell)
+    {
+        ByteBuffer value = cell.value();
+        return value.get(value.position()) << 7 | value.get(value.position() + 1);
+    }
+
+    /**
+     * Records, for each partition, the values written to it in the order they are applied to the memtable.
+     */
+    public static class ApplyOrderIndex extends StubIndex
+    {
+        final Map<ByteBuffer, List<Integer>> applied = new ConcurrentHashMap<>();
+
+        public ApplyOrderIndex(ColumnFamilyStore baseCfs, IndexMetadata metadata)
+        {
+            super(baseCfs, metadata);
+        }
+
+        public Indexer indexerFor(DecoratedKey key, int nowInSec, OpOrder.Group opGroup, IndexTransaction.Type transactionType)
+        {
+            return new Indexer()
+            {
+                public void begin()
+                {
+                }
+
+                public void partitionDelete(DeletionTime deletionTime)
+                {
+                }
+
+                public void rangeTombstone(RangeTombstone tombstone)
+                {
+                }
+
+                public void insertRow(Row row)
+                {
+                    record(row);
+                }
+
+                public void removeRow(Row row)
+                {
+                }
+
+                public void updateRow(Row oldRowData, Row newRowData)
+                {
+                    record(newRowData);
+                }
+
+                public void finish()
+                {
+                }
+
+                private void record(Row row)
+                {
+                    for (Cell cell : row.cells())
+                        applied.computeIfAbsent(key.getKey(), k -> Collections.synchronizedList(new ArrayList<>())).add(valueOf(cell));
+                }
+            };
+        }
+    }
+}
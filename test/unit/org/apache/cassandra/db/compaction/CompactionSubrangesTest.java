@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.compaction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.lifecycle.LifecycleTransaction;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CompactionSubrangesTest extends CQLTester
+{
+    private static final int PARTITIONS = 1000;
+
+    @Before
+    public void enableSubranges()
+    {
+        DatabaseDescriptor.setCompactionSubranges(4);
+        DatabaseDescriptor.setCompactionSubrangeMinSizeInMB(0);
+    }
+
+    @After
+    public void resetSubranges()
+    {
+        DatabaseDescriptor.setCompactionSubranges(1);
+        DatabaseDescriptor.setCompactionSubrangeMinSizeInMB(64);
+    }
+
+    @Test
+    public void testSplitRanges() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int, c int, v int, PRIMARY KEY (k, c))");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        cfs.disableAutoCompaction();
+        populate(cfs, 2);
+
+        Set<SSTableReader> sstables = cfs.getLiveSSTables();
+        try (LifecycleTransaction txn = cfs.getTracker().tryModify(sstables, OperationType.COMPACTION))
+        {
+            CompactionTask task = new CompactionTask(cfs, txn, CompactionManager.NO_GC);
+            List<Range<Token>> ranges = task.splitRanges(sstables, 1);
+            assertEquals(4, ranges.size());
+
+            // the ranges follow each other and cover the whole ring
+            Token minimum = cfs.getPartitioner().getMinimumToken();
+            assertEquals(minimum, ranges.get(0).left);
+            for (int i = 1; i < ranges.size(); i++)
+                assertEquals(ranges.get(i - 1).right, ranges.get(i).left);
+            assertEquals(minimum, ranges.get(ranges.size() - 1).right);
+
+            // but small compactions aren't split
+            DatabaseDescriptor.setCompactionSubrangeMinSizeInMB(1);
+            assertEquals(Collections.singletonList(null), task.splitRanges(sstables, 1 << 20));
+            DatabaseDescriptor.setCompactionSubrangeMinSizeInMB(0);
+
+            // and neither are the ones of other operations
+            task.setCompactionType(OperationType.CLEANUP);
+            assertEquals(Collections.singletonList(null), task.splitRanges(sstables, 1));
+        }
+    }
+
+    @Test
+    public void testMajorCompaction() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int, c int, v int, PRIMARY KEY (k, c))");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        cfs.disableAutoCompaction();
+        populate(cfs, 4);
+        execute("DELETE FROM %s WHERE k = ?", 42);
+        cfs.forceBlockingFlush();
+        Set<SSTableReader> originals = cfs.getLiveSSTables();
+        assertEquals(5, originals.size());
+
+        cfs.forceMajorCompaction();
+
+        // every range is written to its own sstable, and they all replace the originals
+        List<SSTableReader> compacted = new ArrayList<>(cfs.getLiveSSTables());
+        assertEquals(4, compacted.size());
+        for (SSTableReader sstable : compacted)
+            assertFalse(originals.contains(sstable));
+        Collections.sort(compacted, SSTableReader.sstableComparator);
+        for (int i = 1; i < compacted.size(); i++)
+            assertTrue(compacted.get(i - 1).last.compareTo(compacted.get(i).first) < 0);
+        assertTrue(cfs.getTracker().getCompacting().isEmpty());
+
+        assertEquals(PARTITIONS - 1, execute("SELECT DISTINCT k FROM %s").size());
+        assertEmpty(execute("SELECT * FROM %s WHERE k = ?", 42));
+        assertRows(execute("SELECT c, v FROM %s WHERE k = ?", 7), row(0, 3), row(1, 1), row(2, 2), row(3, 3));
+    }
+
+    @Test
+    public void testLeveledCompaction() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int, c int, v int, PRIMARY KEY (k, c)) WITH compaction = {'class': 'LeveledCompactionStrategy'}");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        cfs.disableAutoCompaction();
+        populate(cfs, 4);
+
+        // a regular leveled compaction is split, unlike a major one
+        // (the manager doesn't hand out tasks with automatic compaction disabled, so we ask the unrepaired strategy)
+        AbstractCompactionStrategy strategy = cfs.getCompactionStrategyManager().getStrategies().get(1);
+        AbstractCompactionTask task = strategy.getNextBackgroundTask(CompactionManager.NO_GC);
+        assertTrue(task instanceof LeveledCompactionTask);
+        task.execute(null);
+
+        assertEquals(4, cfs.getLiveSSTables().size());
+        assertEquals(PARTITIONS, execute("SELECT DISTINCT k FROM %s").size());
+        assertRows(execute("SELECT c, v FROM %s WHERE k = ?", 7), row(0, 3), row(1, 1), row(2, 2), row(3, 3));
+    }
+
+    /**
+     * Writes every partition to the given number of sstables, with a new row and an update of the first one each time.
+     */
+    private void populate(ColumnFamilyStore cfs, int sstables) throws Throwable
+    {
+        for (int i = 0; i < sstables; i++)
+        {
+            for (int k = 0; k < PARTITIONS; k++)
+            {
+                execute("INSERT INTO %s (k, c, v) VALUES (?, ?, ?)", k, i, i);
+                execute("UPDATE %s SET v = ? WHERE k = ? AND c = 0", i, k);
+            }
+            cfs.forceBlockingFlush();
+        }
+    }
+}
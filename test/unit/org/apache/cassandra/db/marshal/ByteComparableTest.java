@@ -0,0 +1,358 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.marshal;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import org.junit.Test;
+
+import org.apache.cassandra.db.*;
+import org.apache.cassandra.dht.*;
+import org.apache.cassandra.io.util.DataOutputBuffer;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.ByteComparable;
+import org.apache.cassandra.utils.UUIDGen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ByteComparableTest
+{
+    private static final Random random = new Random(42);
+
+    @Test
+    public void testFixedLengthTypes()
+    {
+        checkOrder(BooleanType.instance, ByteBufferUtil.EMPTY_BYTE_BUFFER, BooleanType.instance.decompose(false),
+                   BooleanType.instance.decompose(true), ByteBuffer.wrap(new byte[]{ 7 }));
+        checkOrder(ByteType.instance, bytes(ByteType.instance, (byte) 0, (byte) 1, (byte) -1, Byte.MIN_VALUE, Byte.MAX_VALUE));
+        checkOrder(ShortType.instance, bytes(ShortType.instance, (short) 0, (short) 1, (short) -1, (short) 255, (short) -256, Short.MIN_VALUE, Short.MAX_VALUE));
+
+        List<ByteBuffer> ints = bytes(Int32Type.instance, 0, 1, -1, 255, 256, -255, -256, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        ints.add(ByteBufferUtil.EMPTY_BYTE_BUFFER);
+        checkOrder(Int32Type.instance, ints);
+
+        List<Long> longs = new ArrayList<>(Arrays.asList(0L, 1L, -1L, Long.MIN_VALUE, Long.MAX_VALUE, 1L << 32, -(1L << 32)));
+        for (int i = 0; i < 50; i++)
+            longs.add(random.nextLong());
+        checkOrder(LongType.instance, bytes(LongType.instance, longs.toArray(new Long[0])));
+        checkOrder(TimestampType.instance, bytes(TimestampType.instance, new Date(0), new Date(-1000), new Date(1000), new Date(Long.MAX_VALUE)));
+
+        checkOrder(FloatType.instance, bytes(FloatType.instance, 0f, -0f, 1f, -1f, 0.5f, -0.5f, Float.MIN_VALUE, -Float.MIN_VALUE,
+                                             Float.MAX_VALUE, -Float.MAX_VALUE, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NaN));
+        checkOrder(DoubleType.instance, bytes(DoubleType.instance, 0d, -0d, 1d, -1d, 0.5d, -0.5d, Double.MIN_VALUE, -Double.MIN_VALUE,
+                                              Double.MAX_VALUE, -Double.MAX_VALUE, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NaN));
+    }
+
+    @Test
+    public void testUUIDTypes()
+    {
+        List<UUID> timeUUIDs = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+            timeUUIDs.add(UUIDGen.getTimeUUID(random.nextInt(1000), random.nextInt(3)));
+        // same timestamp, least significant bytes differing in sign
+        timeUUIDs.add(new UUID(timeUUIDs.get(0).getMostSignificantBits(), 0x80L << 56));
+        timeUUIDs.add(new UUID(timeUUIDs.get(0).getMostSignificantBits(), 0x7FL << 56));
+        checkOrder(TimeUUIDType.instance, bytes(TimeUUIDType.instance, timeUUIDs.toArray(new UUID[0])));
+
+        List<UUID> uuids = new ArrayList<>(timeUUIDs);
+        for (int i = 0; i < 20; i++)
+            uuids.add(UUID.randomUUID());
+        uuids.add(new UUID(Long.MIN_VALUE, 0));
+        uuids.add(new UUID(0x4000L, Long.MIN_VALUE));
+        checkOrder(UUIDType.instance, bytes(UUIDType.instance, uuids.toArray(new UUID[0])));
+        checkOrder(LexicalUUIDType.instance, bytes(LexicalUUIDType.instance, uuids.toArray(new UUID[0])));
+    }
+
+    @Test
+    public void testVariableLengthTypes() throws Exception
+    {
+        checkOrder(UTF8Type.instance, bytes(UTF8Type.instance, "", "a", "ab", "b", "a\u0000", "a\u0000b", "\u0000", "ÿ", "€"));
+        checkOrder(AsciiType.instance, bytes(AsciiType.instance, "", "a", "aa", "a\u0000", "z"));
+        checkOrder(BytesType.instance, ByteBufferUtil.EMPTY_BYTE_BUFFER, ByteBuffer.wrap(new byte[]{ 0 }), ByteBuffer.wrap(new byte[]{ 0, 0 }),
+                   ByteBuffer.wrap(new byte[]{ 0, -1 }), ByteBuffer.wrap(new byte[]{ -1 }), ByteBuffer.wrap(new byte[]{ 1, 0, 2 }));
+        checkOrder(InetAddressType.instance, bytes(InetAddressType.instance, InetAddress.getByName("127.0.0.1"), InetAddress.getByName("10.0.0.1"),
+                                                   InetAddress.getByName("::1"), InetAddress.getByName("255.255.255.255")));
+
+        List<ByteBuffer> integers = bytes(IntegerType.instance, BigInteger.ZERO, BigInteger.ONE, BigInteger.valueOf(-1), BigInteger.valueOf(127),
+                                          BigInteger.valueOf(128), BigInteger.valueOf(-128), BigInteger.valueOf(-129), BigInteger.valueOf(65536),
+                                          new BigInteger("-123456789012345678901234567890"), new BigInteger("123456789012345678901234567890"));
+        // padded representations compare equal to the minimal ones
+        integers.add(ByteBuffer.wrap(new byte[]{ 0, 0, 1 }));
+        integers.add(ByteBuffer.wrap(new byte[]{ -1, -1, -1 }));
+        integers.add(ByteBufferUtil.EMPTY_BYTE_BUFFER);
+        checkOrder(IntegerType.instance, integers);
+
+        checkOrder(DecimalType.instance, bytes(DecimalType.instance, BigDecimal.ZERO, new BigDecimal("0.00"), BigDecimal.ONE, new BigDecimal("1.0"),
+                                               new BigDecimal("-1"), new BigDecimal("-1.00"), new BigDecimal("10"), new BigDecimal("1E+1"),
+                                               new BigDecimal("-10"), new BigDecimal("0.5"), new BigDecimal("-0.5"), new BigDecimal("0.25"),
+                                               new BigDecimal("-0.25"), new BigDecimal("1.25"), new BigDecimal("1.2"), new BigDecimal("-1.25"),
+                                               new BigDecimal("1E-300"), new BigDecimal("-1E+300"), new BigDecimal("123456789.987654321")));
+    }
+
+    @Test
+    public void testReversedAndCompositeTypes()
+    {
+        List<ByteBuffer> strings = bytes(UTF8Type.instance, "", "a", "ab", "b", "a\u0000");
+        checkOrder(ReversedType.getInstance(UTF8Type.instance), strings);
+        checkOrder(ReversedType.getInstance(Int32Type.instance), bytes(Int32Type.instance, 0, 1, -1, Integer.MIN_VALUE));
+
+        CompositeType composite = CompositeType.getInstance(UTF8Type.instance, ReversedType.getInstance(Int32Type.instance));
+        assertTrue(composite.isByteComparable());
+        List<ByteBuffer> composites = new ArrayList<>();
+        composites.add(ByteBufferUtil.EMPTY_BYTE_BUFFER);
+        for (String s : new String[]{ "", "a", "ab" })
+        {
+            for (byte eoc : new byte[]{ -1, 0, 1 })
+            {
+                composites.add(composite(eoc, UTF8Type.instance.decompose(s)));
+                for (int i : new int[]{ -1, 0, 5 })
+                    composites.add(composite(eoc, UTF8Type.instance.decompose(s), Int32Type.instance.decompose(i)));
+                composites.add(composite(eoc, UTF8Type.instance.decompose(s), ByteBufferUtil.EMPTY_BYTE_BUFFER));
+            }
+        }
+        checkOrder(composite, composites);
+
+        assertFalse(CompositeType.getInstance(UTF8Type.instance, DynamicCompositeType.getInstance(new HashMap<>())).isByteComparable());
+    }
+
+    @Test
+    public void testCollectionAndTupleTypes()
+    {
+        ListType<Integer> list = ListType.getInstance(Int32Type.instance, false);
+        List<ByteBuffer> lists = new ArrayList<>();
+        lists.add(ByteBufferUtil.EMPTY_BYTE_BUFFER);
+        lists.add(list.decompose(Collections.<Integer>emptyList()));
+        lists.add(list.decompose(Arrays.asList(1)));
+        lists.add(list.decompose(Arrays.asList(1, 2)));
+        lists.add(list.decompose(Arrays.asList(1, -2)));
+        lists.add(list.decompose(Arrays.asList(-1, 2, 3)));
+        lists.add(list.decompose(Arrays.asList(2)));
+        checkOrder(list, lists);
+        checkOrder(SetType.getInstance(Int32Type.instance, false), lists);
+
+        MapType<String, Integer> map = MapType.getInstance(UTF8Type.instance, Int32Type.instance, false);
+        List<ByteBuffer> maps = new ArrayList<>();
+        maps.add(ByteBufferUtil.EMPTY_BYTE_BUFFER);
+        maps.add(map.decompose(Collections.<String, Integer>emptyMap()));
+        maps.add(map.decompose(Collections.singletonMap("a", 1)));
+        maps.add(map.decompose(Collections.singletonMap("a", 2)));
+        maps.add(map.decompose(Collections.singletonMap("b", 0)));
+        Map<String, Integer> two = new TreeMap<>();
+        two.put("a", 1);
+        two.put("b", 0);
+        maps.add(map.decompose(two));
+        checkOrder(map, maps);
+
+        TupleType tuple = new TupleType(Arrays.<AbstractType<?>>asList(Int32Type.instance, UTF8Type.instance));
+        List<ByteBuffer> tuples = new ArrayList<>();
+        tuples.add(ByteBufferUtil.EMPTY_BYTE_BUFFER);
+        for (ByteBuffer first : new ByteBuffer[]{ null, ByteBufferUtil.EMPTY_BYTE_BUFFER, Int32Type.instance.decompose(-1), Int32Type.instance.decompose(3) })
+        {
+            tuples.add(TupleType.buildValue(new ByteBuffer[]{ first }));
+            for (String second : new String[]{ "", "x", "xy" })
+                tuples.add(TupleType.buildValue(new ByteBuffer[]{ first, UTF8Type.instance.decompose(second) }));
+            tuples.add(TupleType.buildValue(new ByteBuffer[]{ first, null }));
+        }
+        checkOrder(tuple, tuples);
+
+        // nested in a reversed list
+        checkOrder(ReversedType.getInstance(list), lists);
+    }
+
+    @Test
+    public void testClusteringPrefixes()
+    {
+        ClusteringComparator comparator = new ClusteringComparator(Int32Type.instance, ReversedType.getInstance(UTF8Type.instance));
+        assertTrue(comparator.isByteComparable());
+
+        List<ClusteringPrefix> prefixes = new ArrayList<>();
+        prefixes.add(Clustering.STATIC_CLUSTERING);
+        prefixes.add(Slice.Bound.BOTTOM);
+        prefixes.add(Slice.Bound.TOP);
+        for (int i : new int[]{ -1, 0, 7 })
+        {
+            ByteBuffer first = Int32Type.instance.decompose(i);
+            for (ClusteringPrefix.Kind kind : ClusteringPrefix.Kind.values())
+            {
+                if (kind == ClusteringPrefix.Kind.CLUSTERING || kind == ClusteringPrefix.Kind.STATIC_CLUSTERING)
+                    continue;
+                prefixes.add(new RangeTombstone.Bound(kind, new ByteBuffer[]{ first }));
+                for (String s : new String[]{ "", "a", "b" })
+                    prefixes.add(new RangeTombstone.Bound(kind, new ByteBuffer[]{ first, UTF8Type.instance.decompose(s) }));
+            }
+            for (String s : new String[]{ "", "a", "b" })
+                prefixes.add(new Clustering(first, UTF8Type.instance.decompose(s)));
+        }
+
+        for (ClusteringPrefix left : prefixes)
+        {
+            ByteBuffer leftBytes = comparator.asComparableBytes(left);
+            for (ClusteringPrefix right : prefixes)
+            {
+                assertEquals(describe(left) + " vs " + describe(right),
+                             Integer.signum(comparator.compare(left, right)),
+                             Integer.signum(ByteComparable.compare(leftBytes, comparator.asComparableBytes(right))));
+            }
+        }
+    }
+
+    @Test
+    public void testPartitionPositions() throws Exception
+    {
+        checkPositions(Murmur3Partitioner.instance);
+        checkPositions(RandomPartitioner.instance);
+        checkPositions(ByteOrderedPartitioner.instance);
+        checkPositions(OrderPreservingPartitioner.instance);
+        checkPositions(new LocalPartitioner(Int32Type.instance));
+        checkPositions(new LocalPartitioner(CompositeType.getInstance(UTF8Type.instance, Int32Type.instance)));
+
+        assertFalse(new LocalPartitioner(DynamicCompositeType.getInstance(new HashMap<>())).getMinimumToken().isByteComparable());
+    }
+
+    private static void checkPositions(IPartitioner partitioner) throws Exception
+    {
+        assertTrue(partitioner.getMinimumToken().isByteComparable());
+        List<PartitionPosition> positions = new ArrayList<>();
+        positions.add(partitioner.getMinimumToken().minKeyBound());
+        positions.add(partitioner.getMinimumToken().maxKeyBound());
+        for (int i = 0; i < 30; i++)
+        {
+            ByteBuffer key = partitioner instanceof LocalPartitioner
+                           ? randomLocalKey(partitioner.partitionOrdering())
+                           : UTF8Type.instance.decompose("key" + random.nextInt(20));
+            DecoratedKey decorated = partitioner.decorateKey(key);
+            positions.add(decorated);
+            positions.add(decorated.getToken().minKeyBound());
+            positions.add(decorated.getToken().maxKeyBound());
+        }
+
+        for (PartitionPosition left : positions)
+        {
+            ByteBuffer leftBytes = encode(left);
+            for (PartitionPosition right : positions)
+            {
+                assertEquals(left + " vs " + right,
+                             Integer.signum(left.compareTo(right)),
+                             Integer.signum(ByteComparable.compare(leftBytes, encode(right))));
+            }
+        }
+
+        // keys of the partitioner defined order sort the same way
+        PartitionerDefinedOrder order = new PartitionerDefinedOrder(partitioner);
+        List<ByteBuffer> keys = new ArrayList<>();
+        for (PartitionPosition position : positions)
+        {
+            if (position instanceof DecoratedKey)
+                keys.add(((DecoratedKey) position).getKey());
+        }
+        keys.add(ByteBufferUtil.EMPTY_BYTE_BUFFER);
+        checkOrder(order, keys);
+    }
+
+    private static ByteBuffer randomLocalKey(AbstractType<?> type)
+    {
+        if (type instanceof CompositeType)
+            return CompositeType.build(UTF8Type.instance.decompose("k" + random.nextInt(3)), Int32Type.instance.decompose(random.nextInt(3)));
+        return Int32Type.instance.decompose(random.nextInt(10) - 5);
+    }
+
+    private static String describe(ClusteringPrefix prefix)
+    {
+        StringBuilder sb = new StringBuilder(prefix.kind().toString());
+        for (int i = 0; i < prefix.size(); i++)
+            sb.append(' ').append(ByteBufferUtil.bytesToHex(prefix.get(i)));
+        return sb.toString();
+    }
+
+    private static ByteBuffer encode(PartitionPosition position) throws Exception
+    {
+        try (DataOutputBuffer out = new DataOutputBuffer())
+        {
+            position.writeComparableBytes(out);
+            return out.buffer();
+        }
+    }
+
+    private static ByteBuffer composite(byte eoc, ByteBuffer... components)
+    {
+        int size = 0;
+        for (ByteBuffer component : components)
+            size += 2 + component.remaining() + 1;
+        ByteBuffer result = ByteBuffer.allocate(size);
+        for (int i = 0; i < components.length; i++)
+        {
+            ByteBufferUtil.writeShortLength(result, components[i].remaining());
+            result.put(components[i].duplicate());
+            result.put(i == components.length - 1 ? eoc : 0);
+        }
+        result.flip();
+        return result;
+    }
+
+    @SafeVarargs
+    private static <T> List<ByteBuffer> bytes(AbstractType<T> type, T... values)
+    {
+        List<ByteBuffer> result = new ArrayList<>();
+        for (T value : values)
+            result.add(type.decompose(value));
+        return result;
+    }
+
+    private static void checkOrder(AbstractType<?> type, ByteBuffer... values)
+    {
+        checkOrder(type, Arrays.asList(values));
+    }
+
+    /**
+     * Checks that the byte-comparable representations of every pair of values compare like the values, and that
+     * the representations of non-empty values are prefix-free.
+     */
+    private static void checkOrder(AbstractType<?> type, List<ByteBuffer> values)
+    {
+        assertTrue(type.isByteComparable());
+        for (ByteBuffer left : values)
+        {
+            ByteBuffer leftBytes = type.asComparableBytes(left);
+            for (ByteBuffer right : values)
+            {
+                ByteBuffer rightBytes = type.asComparableBytes(right);
+                assertEquals(type + ": " + ByteBufferUtil.bytesToHex(left) + " vs " + ByteBufferUtil.bytesToHex(right),
+                             Integer.signum(type.compare(left, right)),
+                             Integer.signum(ByteComparable.compare(leftBytes, rightBytes)));
+
+                if (left.hasRemaining() && right.hasRemaining() && !leftBytes.equals(rightBytes))
+                    assertFalse(isPrefix(leftBytes, rightBytes));
+            }
+        }
+    }
+
+    private static boolean isPrefix(ByteBuffer prefix, ByteBuffer value)
+    {
+        if (prefix.remaining() > value.remaining())
+            return false;
+        ByteBuffer start = value.duplicate();
+        start.limit(start.position() + prefix.remaining());
+        return start.equals(prefix);
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.sstable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import com.google.common.io.Files;
+import org.junit.Test;
+
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.PartitionPosition;
+import org.apache.cassandra.dht.ByteOrderedPartitioner;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Murmur3Partitioner;
+import org.apache.cassandra.dht.RandomPartitioner;
+import org.apache.cassandra.io.sstable.format.SSTableFormat;
+import org.apache.cassandra.io.util.SequentialWriter;
+import org.apache.cassandra.utils.ByteBufferUtil;
+
+import static org.junit.Assert.*;
+
+public class PartitionIndexTest
+{
+    private static int generation;
+
+    @Test
+    public void testEmpty() throws IOException
+    {
+        try (PartitionIndex index = write(Collections.<DecoratedKey>emptyList()))
+        {
+            assertEquals(0, index.size());
+            DecoratedKey key = Murmur3Partitioner.instance.decorateKey(ByteBufferUtil.bytes(1));
+            assertEquals(-1, index.exactCandidate(key));
+            assertEquals(-1, index.ceiling(key));
+        }
+    }
+
+    @Test
+    public void testMurmur3() throws IOException
+    {
+        testRandomKeys(Murmur3Partitioner.instance, 1);
+        testRandomKeys(Murmur3Partitioner.instance, 10000);
+    }
+
+    @Test
+    public void testRandomPartitioner() throws IOException
+    {
+        testRandomKeys(RandomPartitioner.instance, 5000);
+    }
+
+    @Test
+    public void testByteOrdered() throws IOException
+    {
+        testRandomKeys(ByteOrderedPartitioner.instance, 5000);
+
+        // keys that are prefixes of each other or hold zero bytes
+        IPartitioner partitioner = ByteOrderedPartitioner.instance;
+        List<DecoratedKey> keys = new ArrayList<>();
+        for (String key : new String[]{ "", "a", "a\0", "a\0\0", "a\0\1", "a\1", "ab", "abc", "b" })
+            keys.add(partitioner.decorateKey(ByteBufferUtil.bytes(key)));
+        check(partitioner, keys, new Random(0));
+    }
+
+    private void testRandomKeys(IPartitioner partitioner, int count) throws IOException
+    {
+        Random random = new Random(count);
+        SortedSet<DecoratedKey> keys = new TreeSet<>();
+        while (keys.size() < count)
+            keys.add(partitioner.decorateKey(randomKey(random)));
+        check(partitioner, new ArrayList<>(keys), random);
+    }
+
+    private void check(IPartitioner partitioner, List<DecoratedKey> keys, Random random) throws IOException
+    {
+        try (PartitionIndex index = write(keys))
+        {
+            assertEquals(keys.size(), index.size());
+            assertEquals(keys.get(0).getKey(), index.firstKey());
+            assertEquals(keys.get(keys.size() - 1).getKey(), index.lastKey());
+
+            for (int i = 0; i < keys.size(); i++)
+            {
+                assertEquals(position(i), index.exactCandidate(keys.get(i)));
+                assertEquals(position(i), index.ceiling(keys.get(i)));
+                checkCeiling(index, keys, keys.get(i).getToken().minKeyBound());
+                checkCeiling(index, keys, keys.get(i).getToken().maxKeyBound());
+            }
+
+            for (int i = 0; i < 1000; i++)
+            {
+                DecoratedKey key = partitioner.decorateKey(randomKey(random));
+                long candidate = index.exactCandidate(key);
+                assertTrue(candidate == -1 || candidate % 10 == 0 && candidate / 10 < keys.size());
+                if (Collections.binarySearch(keys, key) >= 0)
+                    assertTrue(candidate != -1);
+
+                checkCeiling(index, keys, key);
+                checkCeiling(index, keys, key.getToken().minKeyBound());
+                checkCeiling(index, keys, key.getToken().maxKeyBound());
+            }
+            checkCeiling(index, keys, partitioner.getMinimumToken().minKeyBound());
+        }
+    }
+
+    // the ceiling must be the first key greater or equal to the position, or the key just before it
+    private static void checkCeiling(PartitionIndex index, List<DecoratedKey> keys, PartitionPosition position)
+    {
+        int ceiling = 0;
+        while (ceiling < keys.size() && keys.get(ceiling).compareTo(position) < 0)
+            ceiling++;
+
+        long found = index.ceiling(position);
+        if (ceiling == keys.size())
+            assertTrue(position.toString(), found == -1 || found == position(keys.size() - 1));
+        else
+            assertTrue(position.toString(), found == position(ceiling) || ceiling > 0 && found == position(ceiling - 1));
+    }
+
+    private static long position(int i)
+    {
+        return i * 10L;
+    }
+
+    private static ByteBuffer randomKey(Random random)
+    {
+        byte[] bytes = new byte[random.nextInt(6)];
+        random.nextBytes(bytes);
+        // make zero bytes frequent to exercise escaping
+        for (int i = 0; i < bytes.length; i++)
+        {
+            if (random.nextInt(4) == 0)
+                bytes[i] = 0;
+        }
+        return ByteBuffer.wrap(bytes);
+    }
+
+    private static PartitionIndex write(List<DecoratedKey> keys) throws IOException
+    {
+        File directory = Files.createTempDir();
+        directory.deleteOnExit();
+        Descriptor descriptor = new Descriptor(directory, "ks", "cf", ++generation, SSTableFormat.Type.TRIE);
+        File file = new File(descriptor.filenameFor(Component.PARTITION_INDEX));
+        file.deleteOnExit();
+
+        try (SequentialWriter writer = SequentialWriter.open(file))
+        {
+            PartitionIndexBuilder builder = new PartitionIndexBuilder(writer);
+            for (int i = 0; i < keys.size(); i++)
+                builder.addEntry(keys.get(i), position(i));
+            builder.complete();
+            writer.finish();
+        }
+        return PartitionIndex.load(descriptor);
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.sstable.format.trie;
+
+import java.io.File;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.cql3.UntypedResultSet;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.io.sstable.Component;
+import org.apache.cassandra.io.sstable.SSTable;
+import org.apache.cassandra.io.sstable.format.SSTableFormat;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TrieFormatTest extends CQLTester
+{
+    @Before
+    public void setFormat()
+    {
+        DatabaseDescriptor.setSSTableFormat(SSTableFormat.Type.TRIE);
+    }
+
+    @After
+    public void resetFormat()
+    {
+        DatabaseDescriptor.setSSTableFormat(SSTableFormat.Type.BIG);
+    }
+
+    @Test
+    public void testReadsAfterFlushAndCompaction() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int, c int, v int, PRIMARY KEY (k, c))");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+
+        int partitions = 1000;
+        for (int i = 0; i < partitions; i++)
+        {
+            execute("INSERT INTO %s (k, c, v) VALUES (?, ?, ?)", i, 0, i);
+            if (i % 2 == 0)
+                execute("INSERT INTO %s (k, c, v) VALUES (?, ?, ?)", i, 1, i);
+        }
+        cfs.forceBlockingFlush();
+        for (int i = 0; i < partitions; i += 3)
+            execute("INSERT INTO %s (k, c, v) VALUES (?, ?, ?)", i, 2, i);
+        cfs.forceBlockingFlush();
+
+        assertEquals(2, cfs.getLiveSSTables().size());
+        checkSSTables(cfs);
+        checkContent(partitions);
+
+        cfs.forceMajorCompaction();
+        assertEquals(1, cfs.getLiveSSTables().size());
+        checkSSTables(cfs);
+        checkContent(partitions);
+
+        SSTableReader sstable = cfs.getLiveSSTables().iterator().next();
+        assertEquals(partitions, sstable.estimatedKeys());
+        Token token = sstable.first.getToken();
+        long estimate = sstable.estimatedKeysForRanges(Collections.singleton(new Range<>(cfs.getPartitioner().getMinimumToken(), token)));
+        assertTrue(estimate >= 1 && estimate <= partitions);
+        assertTrue(sstable.getKeySamples(new Range<>(cfs.getPartitioner().getMinimumToken(), cfs.getPartitioner().getMinimumToken())).iterator().hasNext());
+    }
+
+    @Test
+    public void testRebuildMissingPartitionIndex() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int)");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        for (int i = 0; i < 100; i++)
+            execute("INSERT INTO %s (k, v) VALUES (?, ?)", i, i);
+        cfs.forceBlockingFlush();
+
+        SSTableReader sstable = cfs.getLiveSSTables().iterator().next();
+        File partitionIndex = new File(sstable.descriptor.filenameFor(Component.PARTITION_INDEX));
+        assertTrue(partitionIndex.delete());
+
+        SSTableReader reopened = SSTableReader.open(sstable.descriptor);
+        try
+        {
+            assertTrue(partitionIndex.exists());
+            assertEquals(100, reopened.estimatedKeys());
+            assertEquals(sstable.first, reopened.first);
+            assertEquals(sstable.last, reopened.last);
+            assertRows(execute("SELECT v FROM %s WHERE k = ?", 7), row(7));
+        }
+        finally
+        {
+            reopened.selfRef().release();
+        }
+    }
+
+    @Test
+    public void testSecondaryIndex() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int)");
+        createIndex("CREATE INDEX ON %s (v)");
+        for (int i = 0; i < 100; i++)
+            execute("INSERT INTO %s (k, v) VALUES (?, ?)", i, i % 10);
+        flush();
+
+        // the local partitioner of the index orders keys by a byte-comparable type
+        assertEquals(10, execute("SELECT * FROM %s WHERE v = ?", 3).size());
+        for (ColumnFamilyStore index : getCurrentColumnFamilyStore().indexManager.getAllIndexColumnFamilyStores())
+        {
+            assertFalse(index.getLiveSSTables().isEmpty());
+            for (SSTableReader sstable : index.getLiveSSTables())
+                assertEquals(SSTableFormat.Type.TRIE, sstable.descriptor.formatType);
+        }
+    }
+
+    private void checkSSTables(ColumnFamilyStore cfs)
+    {
+        for (SSTableReader sstable : cfs.getLiveSSTables())
+        {
+            assertTrue(sstable instanceof TrieTableReader);
+            assertTrue(SSTable.componentsFor(sstable.descriptor).contains(Component.PARTITION_INDEX));
+            assertFalse(SSTable.componentsFor(sstable.descriptor).contains(Component.SUMMARY));
+            assertTrue(new File(sstable.descriptor.filenameFor(Component.PARTITION_INDEX)).exists());
+            assertFalse(new File(sstable.descriptor.filenameFor(Component.SUMMARY)).exists());
+        }
+    }
+
+    private void checkContent(int partitions) throws Throwable
+    {
+        assertRows(execute("SELECT c, v FROM %s WHERE k = ?", 42), row(0, 42), row(1, 42), row(2, 42));
+        assertRows(execute("SELECT c, v FROM %s WHERE k = ?", 43), row(0, 43));
+        assertEmpty(execute("SELECT * FROM %s WHERE k = ?", partitions + 1));
+
+        // range reads must return every partition once, in token order
+        UntypedResultSet result = execute("SELECT token(k) AS t FROM %s WHERE c = 0 ALLOW FILTERING");
+        assertEquals(partitions, result.size());
+        long previous = Long.MIN_VALUE;
+        int positiveTokens = 0;
+        for (UntypedResultSet.Row row : result)
+        {
+            long token = row.getLong("t");
+            assertTrue(previous < token);
+            previous = token;
+            if (token >= 0)
+                positiveTokens++;
+        }
+        assertEquals(positiveTokens, execute("SELECT k FROM %s WHERE token(k) >= 0 AND c = 0 ALLOW FILTERING").size());
+        assertEquals(partitions - positiveTokens, execute("SELECT k FROM %s WHERE token(k) < 0 AND c = 0 ALLOW FILTERING").size());
+    }
+}
@@ -21,6 +21,7 @@ package org.apache.cassandra.locator;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 
@@ -29,6 +30,7 @@ import org.apache.cassandra.service.StorageService;
 import org.apache.cassandra.utils.FBUtilities;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class DynamicEndpointSnitchTest
 {
@@ -88,4 +90,53 @@ public class DynamicEndpointSnitchTest
         order = Arrays.asList(host1, host3, host2);
         assertEquals(order, dsnitch.getSortedListByProximity(self, Arrays.asList(host1, host2, host3)));
     }
+
+    @Test
+    public void testInFlightRequests() throws InterruptedException, IOException, ConfigurationException
+    {
+        StorageService.instance.unsafeInitialize();
+        SimpleSnitch ss = new SimpleSnitch();
+        DynamicEndpointSnitch dsnitch = new DynamicEndpointSnitch(ss, String.valueOf(ss.hashCode()));
+        InetAddress self = FBUtilities.getBroadcastAddress();
+        InetAddress host1 = InetAddress.getByName("127.0.0.2");
+        InetAddress host2 = InetAddress.getByName("127.0.0.3");
+        List<InetAddress> hosts = Arrays.asList(host1, host2);
+        setScores(dsnitch, 1, hosts, 10, 10);
+
+        // a host with requests in flight ranks after an equally fast one without
+        dsnitch.requestSent(host1);
+        dsnitch.requestSent(host1);
+        assertEquals(Arrays.asList(host2, host1), dsnitch.getSortedListByProximity(self, hosts));
+
+        // until they are answered, or fail
+        dsnitch.receiveTiming(host1, 10);
+        dsnitch.requestFailed(host1);
+        assertEquals(Arrays.asList(host1, host2), dsnitch.getSortedListByProximity(self, hosts));
+        assertEquals(Arrays.asList(10.0, 0.0), dsnitch.dumpTimings(host1.getHostAddress()));
+    }
+
+    @Test
+    public void testLatencyPercentiles() throws InterruptedException, IOException, ConfigurationException
+    {
+        StorageService.instance.unsafeInitialize();
+        SimpleSnitch ss = new SimpleSnitch();
+        DynamicEndpointSnitch dsnitch = new DynamicEndpointSnitch(ss, String.valueOf(ss.hashCode()));
+        InetAddress host1 = InetAddress.getByName("127.0.0.2");
+        InetAddress host2 = InetAddress.getByName("127.0.0.3");
+
+        for (int i = 1; i <= 100; i++)
+            dsnitch.receiveTiming(host1, i);
+        dsnitch.receiveTiming(host2, 10);
+        Thread.sleep(150);
+
+        // the percentiles are the upper bounds of histogram buckets
+        long p99 = TimeUnit.NANOSECONDS.toMillis(dsnitch.getLatencyPercentileNanos(host1, 0.99));
+        assertTrue(String.valueOf(p99), p99 >= 99 && p99 <= 120);
+        long p50 = TimeUnit.NANOSECONDS.toMillis(dsnitch.getLatencyPercentileNanos(host1, 0.5));
+        assertTrue(String.valueOf(p50), p50 >= 50 && p50 <= 60);
+
+        // not enough samples, or none at all
+        assertEquals(-1, dsnitch.getLatencyPercentileNanos(host2, 0.99));
+        assertEquals(-1, dsnitch.getLatencyPercentileNanos(InetAddress.getByName("127.0.0.4"), 0.99));
+    }
 }
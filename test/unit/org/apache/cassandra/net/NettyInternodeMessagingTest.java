@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.net;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Strings;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.apache.cassandra.SchemaLoader;
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.config.Config;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.config.Schema;
+import org.apache.cassandra.db.Mutation;
+import org.apache.cassandra.db.RowUpdateBuilder;
+import org.apache.cassandra.exceptions.ConfigurationException;
+import org.apache.cassandra.io.util.DataOutputBuffer;
+import org.apache.cassandra.schema.KeyspaceParams;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.FBUtilities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NettyInternodeMessagingTest
+{
+    private static final String KEYSPACE = "NettyInternodeMessagingTest";
+    private static final String CF = "Standard1";
+
+    @BeforeClass
+    public static void defineSchema() throws ConfigurationException
+    {
+        SchemaLoader.prepareServer();
+        SchemaLoader.createKeyspace(KEYSPACE, KeyspaceParams.simple(1), SchemaLoader.standardCFMD(KEYSPACE, CF));
+        DatabaseDescriptor.setInternodeTransport(Config.InternodeTransport.netty);
+        MessagingService.instance().listen(FBUtilities.getLocalAddress());
+    }
+
+    @AfterClass
+    public static void tearDown()
+    {
+        MessagingService.instance().clearMessageSinks();
+        MessagingService.instance().destroyConnectionPool(FBUtilities.getBroadcastAddress());
+        DatabaseDescriptor.setInternodeTransport(Config.InternodeTransport.blocking);
+        DatabaseDescriptor.setInternodeCompression(Config.InternodeCompression.none);
+    }
+
+    @Test
+    public void testMessages() throws Exception
+    {
+        DatabaseDescriptor.setInternodeCompression(Config.InternodeCompression.none);
+        sendAndReceive(Config.InternodeTransport.netty);
+    }
+
+    @Test
+    public void testCompressedMessages() throws Exception
+    {
+        DatabaseDescriptor.setInternodeCompression(Config.InternodeCompression.all);
+        sendAndReceive(Config.InternodeTransport.netty);
+    }
+
+    @Test
+    public void testBlockingSender() throws Exception
+    {
+        // the messages of a blocking connection are received by a netty one
+        DatabaseDescriptor.setInternodeCompression(Config.InternodeCompression.all);
+        sendAndReceive(Config.InternodeTransport.blocking);
+    }
+
+    private void sendAndReceive(Config.InternodeTransport senderTransport) throws Exception
+    {
+        InetAddress local = FBUtilities.getBroadcastAddress();
+        MessagingService.instance().destroyConnectionPool(local);
+        DatabaseDescriptor.setInternodeTransport(senderTransport);
+        OutboundTcpConnectionPool pool = MessagingService.instance().getConnectionPool(local);
+        DatabaseDescriptor.setInternodeTransport(Config.InternodeTransport.netty);
+        assertEquals(senderTransport == Config.InternodeTransport.netty, pool.smallMessages instanceof OutboundNettyConnection);
+
+        int count = 1000;
+        List<String> received = new ArrayList<>();
+        CountDownLatch latch = new CountDownLatch(count + 1);
+        MessagingService.instance().clearMessageSinks();
+        MessagingService.instance().addMessageSink(new IMessageSink()
+        {
+            public boolean allowOutgoingMessage(MessageOut message, int id, InetAddress to)
+            {
+                return true;
+            }
+
+            public boolean allowIncomingMessage(MessageIn message, int id)
+            {
+                if (message.verb != MessagingService.Verb.MUTATION)
+                    return true;
+
+                Mutation mutation = (Mutation) message.payload;
+                synchronized (received)
+                {
+                    received.add(key(mutation));
+                }
+                latch.countDown();
+                return false;
+            }
+        });
+
+        CFMetaData cfm = Schema.instance.getCFMetaData(KEYSPACE, CF);
+        // a message large enough to go through the connection for large messages
+        MessagingService.instance().sendOneWay(mutation(cfm, "large", 200 * 1024).createMessage(), local);
+        for (int i = 0; i < count; i++)
+            MessagingService.instance().sendOneWay(mutation(cfm, "key" + i, 100).createMessage(), local);
+
+        assertTrue(latch.await(1, TimeUnit.MINUTES));
+        assertTrue(received.remove("large"));
+        // the messages of a connection are received in order
+        for (int i = 0; i < count; i++)
+            assertEquals("key" + i, received.get(i));
+        assertEquals(count, pool.smallMessages.getCompletedMesssages());
+        assertEquals(1, pool.largeMessages.getCompletedMesssages());
+    }
+
+    @Test
+    public void testMessageLength() throws Exception
+    {
+        CFMetaData cfm = Schema.instance.getCFMetaData(KEYSPACE, CF);
+        MessageOut<Mutation> message = mutation(cfm, "key", 100).createMessage()
+                                                                 .withParameter("foo", new byte[]{ 1, 2, 3 })
+                                                                 .withParameter("bar", new byte[0]);
+        DataOutputBuffer out = new DataOutputBuffer();
+        OutboundTcpConnection.writeMessage(out, message, 42, System.currentTimeMillis(), MessagingService.current_version);
+        ByteBuffer serialized = out.buffer();
+
+        ByteBuf buffer = Unpooled.buffer();
+        buffer.writeBytes(new byte[]{ 7, 7 }); // already read
+        buffer.readerIndex(2);
+        for (int i = 0; i < serialized.remaining(); i++)
+        {
+            assertEquals(-1, IncomingNettyConnection.messageLength(buffer));
+            buffer.writeByte(serialized.get(i));
+        }
+        assertEquals(serialized.remaining(), IncomingNettyConnection.messageLength(buffer));
+        // the beginning of the next message doesn't matter
+        buffer.writeInt(MessagingService.PROTOCOL_MAGIC);
+        assertEquals(serialized.remaining(), IncomingNettyConnection.messageLength(buffer));
+    }
+
+    private static Mutation mutation(CFMetaData cfm, String key, int size)
+    {
+        return new RowUpdateBuilder(cfm, FBUtilities.timestampMicros(), key).clustering("c")
+                                                                           .add("val", Strings.repeat("x", size))
+                                                                           .build();
+    }
+
+    private static String key(Mutation mutation)
+    {
+        try
+        {
+            return ByteBufferUtil.string(mutation.key().getKey());
+        }
+        catch (Exception e)
+        {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -19,32 +19,53 @@
 package org.apache.cassandra.repair;
 
 import java.net.InetAddress;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.After;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import org.apache.cassandra.SchemaLoader;
+import org.apache.cassandra.UpdateBuilder;
+import org.apache.cassandra.config.Config;
+import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.config.Schema;
 import org.apache.cassandra.db.BufferDecoratedKey;
 import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.DecoratedKey;
 import org.apache.cassandra.db.Keyspace;
+import org.apache.cassandra.db.RowUpdateBuilder;
+import org.apache.cassandra.db.compaction.CompactionManager;
+import org.apache.cassandra.db.lifecycle.SSTableSet;
 import org.apache.cassandra.db.rows.UnfilteredRowIterators;
 import org.apache.cassandra.dht.IPartitioner;
 import org.apache.cassandra.dht.Range;
 import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.gms.ApplicationState;
+import org.apache.cassandra.gms.Gossiper;
+import org.apache.cassandra.gms.VersionedValue;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.io.util.DataInputBuffer;
+import org.apache.cassandra.io.util.DataOutputBuffer;
 import org.apache.cassandra.net.IMessageSink;
 import org.apache.cassandra.net.MessageIn;
 import org.apache.cassandra.net.MessageOut;
 import org.apache.cassandra.net.MessagingService;
 import org.apache.cassandra.repair.messages.RepairMessage;
 import org.apache.cassandra.repair.messages.ValidationComplete;
+import org.apache.cassandra.repair.messages.ValidationRequest;
 import org.apache.cassandra.schema.KeyspaceParams;
+import org.apache.cassandra.service.ActiveRepairService;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.FBUtilities;
 import org.apache.cassandra.utils.MerkleTree;
 import org.apache.cassandra.utils.MerkleTrees;
 import org.apache.cassandra.utils.concurrent.SimpleCondition;
@@ -59,6 +80,8 @@ public class ValidatorTest
 {
     private static final String keyspace = "ValidatorTest";
     private static final String columnFamily = "Standard1";
+    private static final String columnFamily2 = "Standard2";
+    private static final String columnFamilyGCGS0 = "StandardGCGS0";
     private static IPartitioner partitioner;
 
     @BeforeClass
@@ -67,7 +90,9 @@ public class ValidatorTest
         SchemaLoader.prepareServer();
         SchemaLoader.createKeyspace(keyspace,
                                     KeyspaceParams.simple(1),
-                                    SchemaLoader.standardCFMD(keyspace, columnFamily));
+                                    SchemaLoader.standardCFMD(keyspace, columnFamily),
+                                    SchemaLoader.standardCFMD(keyspace, columnFamily2),
+                                    SchemaLoader.standardCFMD(keyspace, columnFamilyGCGS0).gcGraceSeconds(0));
         partitioner = Schema.instance.getCFMetaData(keyspace, columnFamily).partitioner;
     }
 
@@ -75,6 +100,9 @@ public class ValidatorTest
     public void tearDown()
     {
         MessagingService.instance().clearMessageSinks();
+        DatabaseDescriptor.setValidationSubranges(1);
+        DatabaseDescriptor.setRepairRowHash(Config.RepairRowHash.sha256);
+        DatabaseDescriptor.setPersistValidationTrees(false);
     }
 
     @Test
@@ -181,4 +209,231 @@ public class ValidatorTest
         if (!lock.isSignaled())
             lock.await();
     }
+
+    @Test
+    public void testSegments() throws Throwable
+    {
+        Token min = partitioner.getMinimumToken();
+        Range<Token> range = new Range<>(min, min);
+        RepairJobDesc desc = new RepairJobDesc(UUID.randomUUID(), UUID.randomUUID(), keyspace, columnFamily, Arrays.asList(range));
+        ColumnFamilyStore cfs = Keyspace.open(keyspace).getColumnFamilyStore(columnFamily);
+
+        Validator sequential = new Validator(desc, FBUtilities.getBroadcastAddress(), 0);
+        MerkleTrees sequentialTrees = new MerkleTrees(partitioner);
+        sequentialTrees.addMerkleTrees((int) Math.pow(2, 10), desc.ranges);
+        sequential.prepare(cfs, sequentialTrees);
+
+        Validator concurrent = new Validator(desc, FBUtilities.getBroadcastAddress(), 0);
+        MerkleTrees concurrentTrees = new MerkleTrees(partitioner);
+        concurrentTrees.addMerkleTrees((int) Math.pow(2, 10), desc.ranges);
+        concurrent.prepare(cfs, concurrentTrees);
+
+        List<List<Range<Token>>> segments = concurrent.segments(3);
+        assertEquals(3, segments.size());
+
+        List<DecoratedKey> keys = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+            keys.add(partitioner.decorateKey(ByteBufferUtil.bytes("key" + i)));
+        Collections.sort(keys);
+
+        // every key belongs to exactly one segment, and all the keys of a leaf to the same one
+        List<List<DecoratedKey>> keysPerSegment = new ArrayList<>();
+        for (int i = 0; i < segments.size(); i++)
+            keysPerSegment.add(new ArrayList<>());
+        Map<Range<Token>, Integer> segmentPerLeaf = new HashMap<>();
+        for (DecoratedKey key : keys)
+        {
+            int segment = -1;
+            for (int i = 0; i < segments.size(); i++)
+            {
+                if (Range.isInRanges(key.getToken(), segments.get(i)))
+                {
+                    assertEquals(-1, segment);
+                    segment = i;
+                }
+            }
+            assertTrue(segment >= 0);
+            Integer previous = segmentPerLeaf.put(concurrentTrees.get(key.getToken()), segment);
+            assertTrue(previous == null || previous == segment);
+            keysPerSegment.get(segment).add(key);
+        }
+
+        for (DecoratedKey key : keys)
+            sequential.add(UnfilteredRowIterators.emptyIterator(cfs.metadata, key, false));
+        sequential.completeTree();
+
+        List<Thread> threads = new ArrayList<>();
+        for (List<DecoratedKey> segmentKeys : keysPerSegment)
+        {
+            threads.add(new Thread(() -> {
+                for (DecoratedKey key : segmentKeys)
+                    concurrent.addConcurrently(UnfilteredRowIterators.emptyIterator(cfs.metadata, key, false));
+            }));
+        }
+        for (Thread thread : threads)
+            thread.start();
+        for (Thread thread : threads)
+            thread.join();
+        concurrent.completeTree();
+
+        Iterator<MerkleTree.TreeRange> expected = sequentialTrees.invalids();
+        Iterator<MerkleTree.TreeRange> actual = concurrentTrees.invalids();
+        while (expected.hasNext())
+            assertTrue(Arrays.equals(expected.next().hash(), actual.next().hash()));
+        assertFalse(actual.hasNext());
+    }
+
+    @Test
+    public void testConcurrentValidation() throws Throwable
+    {
+        ColumnFamilyStore cfs = Keyspace.open(keyspace).getColumnFamilyStore(columnFamily2);
+        for (int i = 0; i < 1000; i++)
+            UpdateBuilder.create(cfs.metadata, "key" + i).newRow("name").add("val", "value" + i).applyUnsafe();
+        cfs.forceBlockingFlush();
+
+        Token min = partitioner.getMinimumToken();
+        Range<Token> range = new Range<>(min, min);
+        MerkleTrees expected = validate(cfs, range);
+
+        DatabaseDescriptor.setValidationSubranges(4);
+        MerkleTrees actual = validate(cfs, range);
+        assertTrue(MerkleTrees.difference(expected, actual).isEmpty());
+
+        // a different row hash, which gives different trees
+        DatabaseDescriptor.setRepairRowHash(Config.RepairRowHash.murmur3);
+        MerkleTrees murmur = validate(cfs, range);
+        assertFalse(MerkleTrees.difference(expected, murmur).isEmpty());
+        DatabaseDescriptor.setValidationSubranges(1);
+        assertTrue(MerkleTrees.difference(murmur, validate(cfs, range)).isEmpty());
+    }
+
+    @Test
+    public void testRowHashNegotiation() throws Throwable
+    {
+        DatabaseDescriptor.setRepairRowHash(Config.RepairRowHash.murmur3);
+        InetAddress local = FBUtilities.getBroadcastAddress();
+        InetAddress upgraded = InetAddress.getByName("127.0.0.10");
+        InetAddress older = InetAddress.getByName("127.0.0.11");
+        Gossiper.instance.initializeNodeUnsafe(upgraded, UUID.randomUUID(), 1);
+        Gossiper.instance.injectApplicationState(upgraded, ApplicationState.REPAIR_ROW_HASHES, new VersionedValue.VersionedValueFactory(partitioner).repairRowHashes());
+        Gossiper.instance.initializeNodeUnsafe(older, UUID.randomUUID(), 1);
+
+        // the configured hash is only used if all the replicas support it
+        assertEquals(Config.RepairRowHash.murmur3, ValidationRequest.rowHashFor(Arrays.asList(local, upgraded)));
+        assertEquals(Config.RepairRowHash.sha256, ValidationRequest.rowHashFor(Arrays.asList(local, upgraded, older)));
+        assertNull(ValidationRequest.rowHashesOf(older));
+
+        // it is sent in the requests, but for the ones to older nodes
+        RepairJobDesc desc = new RepairJobDesc(UUID.randomUUID(), UUID.randomUUID(), keyspace, columnFamily, Arrays.asList(new Range<>(partitioner.getMinimumToken(), partitioner.getMinimumToken())));
+        for (ValidationRequest request : Arrays.asList(new ValidationRequest(desc, 1234, Config.RepairRowHash.murmur3), new ValidationRequest(desc, 1234)))
+        {
+            DataOutputBuffer out = new DataOutputBuffer();
+            RepairMessage.serializer.serialize(request, out, MessagingService.current_version);
+            assertEquals(out.getLength(), RepairMessage.serializer.serializedSize(request, MessagingService.current_version));
+            RepairMessage deserialized = RepairMessage.serializer.deserialize(new DataInputBuffer(out.buffer(), false), MessagingService.current_version);
+            assertEquals(request, deserialized);
+        }
+        assertEquals(Config.RepairRowHash.sha256, new ValidationRequest(desc, 1234).rowHash);
+    }
+
+    @Test
+    public void testPersistedTrees() throws Throwable
+    {
+        DatabaseDescriptor.setPersistValidationTrees(true);
+        ColumnFamilyStore cfs = Keyspace.open(keyspace).getColumnFamilyStore(columnFamily2);
+        UpdateBuilder.create(cfs.metadata, "persisted").newRow("name").add("val", "value").applyUnsafe();
+        cfs.forceBlockingFlush();
+
+        Range<Token> range = new Range<>(partitioner.getMinimumToken(), partitioner.getRandomToken());
+        MerkleTrees validated = validate(cfs, range);
+        assertTrue(MerkleTrees.difference(validated, validate(cfs, range)).isEmpty());
+
+        RepairJobDesc desc = new RepairJobDesc(UUID.randomUUID(), UUID.randomUUID(), keyspace, columnFamily2, Arrays.asList(range));
+        Validator validator = new Validator(desc, FBUtilities.getBroadcastAddress(), 0);
+        List<SSTableReader> sstables = new ArrayList<>();
+        cfs.getSSTables(SSTableSet.CANONICAL).forEach(sstables::add);
+        ValidationTreeStore.save(cfs, validator, sstables, 16, 0, validated);
+
+        MerkleTrees loaded = ValidationTreeStore.load(cfs, validator, sstables, 16, 0);
+        assertNotNull(loaded);
+        assertTrue(MerkleTrees.difference(validated, loaded).isEmpty());
+
+        // the trees don't match a different tree size, row hash or set of sstables
+        assertNull(ValidationTreeStore.load(cfs, validator, sstables, 32, 0));
+        DatabaseDescriptor.setRepairRowHash(Config.RepairRowHash.murmur3);
+        assertNull(ValidationTreeStore.load(cfs, new Validator(desc, FBUtilities.getBroadcastAddress(), 0), sstables, 16, 0));
+        assertNull(ValidationTreeStore.load(cfs, validator, sstables.subList(1, sstables.size()), 16, 0));
+
+        // and aren't used when a validation could purge some of the data
+        RowUpdateBuilder.deleteRow(cfs.metadata, FBUtilities.timestampMicros(), "persisted", "name").applyUnsafe();
+        cfs.forceBlockingFlush();
+        sstables.clear();
+        cfs.getSSTables(SSTableSet.CANONICAL).forEach(sstables::add);
+        DatabaseDescriptor.setRepairRowHash(Config.RepairRowHash.sha256);
+        ValidationTreeStore.save(cfs, validator, sstables, 16, 0, validated);
+        assertNotNull(ValidationTreeStore.load(cfs, validator, sstables, 16, 0));
+        assertNull(ValidationTreeStore.load(cfs, validator, sstables, 16, Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testPersistedTreesWithExpiringData() throws Throwable
+    {
+        DatabaseDescriptor.setPersistValidationTrees(true);
+        ColumnFamilyStore cfs = Keyspace.open(keyspace).getColumnFamilyStore(columnFamilyGCGS0);
+        new RowUpdateBuilder(cfs.metadata, FBUtilities.timestampMicros(), 2, "expiring").clustering("name").add("val", "value").build().applyUnsafe();
+        cfs.forceBlockingFlush();
+
+        // the row expires between the two validations, and is then purged
+        Range<Token> range = new Range<>(partitioner.getMinimumToken(), partitioner.getMinimumToken());
+        MerkleTrees validated = validate(cfs, range);
+        Thread.sleep(3000);
+        assertFalse(MerkleTrees.difference(validated, validate(cfs, range)).isEmpty());
+
+        // so trees of sstables with expiring data are never persisted
+        RepairJobDesc desc = new RepairJobDesc(UUID.randomUUID(), UUID.randomUUID(), keyspace, columnFamilyGCGS0, Arrays.asList(range));
+        Validator validator = new Validator(desc, FBUtilities.getBroadcastAddress(), 0);
+        List<SSTableReader> sstables = new ArrayList<>();
+        cfs.getSSTables(SSTableSet.CANONICAL).forEach(sstables::add);
+        ValidationTreeStore.save(cfs, validator, sstables, 16, 0, validated);
+        assertNull(ValidationTreeStore.load(cfs, validator, sstables, 16, 0));
+    }
+
+    private static MerkleTrees validate(ColumnFamilyStore cfs, Range<Token> range) throws Throwable
+    {
+        final AtomicReference<MerkleTrees> trees = new AtomicReference<>();
+        final SimpleCondition lock = new SimpleCondition();
+        MessagingService.instance().addMessageSink(new IMessageSink()
+        {
+            public boolean allowOutgoingMessage(MessageOut message, int id, InetAddress to)
+            {
+                if (message.verb == MessagingService.Verb.REPAIR_MESSAGE)
+                {
+                    trees.set(((ValidationComplete) message.payload).trees);
+                    lock.signalAll();
+                }
+                return false;
+            }
+
+            public boolean allowIncomingMessage(MessageIn message, int id)
+            {
+                return false;
+            }
+        });
+
+        UUID parentSession = UUID.randomUUID();
+        ActiveRepairService.instance.registerParentRepairSession(parentSession, Arrays.asList(cfs), Arrays.asList(range), false, System.currentTimeMillis(), true);
+        try
+        {
+            RepairJobDesc desc = new RepairJobDesc(parentSession, UUID.randomUUID(), keyspace, cfs.name, Arrays.asList(range));
+            CompactionManager.instance.submitValidation(cfs, new Validator(desc, FBUtilities.getBroadcastAddress(), 0)).get();
+            lock.await();
+        }
+        finally
+        {
+            ActiveRepairService.instance.removeParentRepairSession(parentSession);
+            MessagingService.instance().clearMessageSinks();
+        }
+        assertNotNull(trees.get());
+        return trees.get();
+    }
 }
@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.service;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.SimpleStatement;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.dht.Murmur3Partitioner;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.locator.IEndpointSnitch;
+import org.apache.cassandra.locator.SimpleSnitch;
+import org.apache.cassandra.locator.TokenMetadata;
+import org.apache.cassandra.metrics.ClearableHistogram;
+import org.apache.cassandra.metrics.ClientRangeRequestMetrics;
+import org.apache.cassandra.utils.FBUtilities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveRangeReadTest extends CQLTester
+{
+    private static final int TOKENS = 16;
+
+    private final ClientRangeRequestMetrics metrics = new ClientRangeRequestMetrics("RangeSlice");
+
+    private Collection<Token> previousTokens;
+    private IEndpointSnitch previousSnitch;
+
+    @Before
+    public void splitRing() throws Throwable
+    {
+        // range reads only go through StorageProxy for queries coming from clients
+        requireNetwork();
+
+        // give the local node several tokens and never merge their ranges, so that scans query several sub-ranges
+        InetAddress local = FBUtilities.getBroadcastAddress();
+        TokenMetadata tmd = StorageService.instance.getTokenMetadata();
+        previousTokens = new ArrayList<>(tmd.getTokens(local));
+        List<Token> tokens = new ArrayList<>();
+        for (int i = 0; i < TOKENS; i++)
+            tokens.add(new Murmur3Partitioner.LongToken(Long.MIN_VALUE + (i + 1) * (Long.MAX_VALUE / TOKENS * 2)));
+        tmd.updateNormalTokens(tokens, local);
+
+        previousSnitch = DatabaseDescriptor.getEndpointSnitch();
+        DatabaseDescriptor.setEndpointSnitch(new SimpleSnitch()
+        {
+            public boolean isWorthMergingForRangeQuery(List<InetAddress> merged, List<InetAddress> l1, List<InetAddress> l2)
+            {
+                return false;
+            }
+        });
+    }
+
+    @After
+    public void restoreRing()
+    {
+        DatabaseDescriptor.setAdaptiveRangeReads(false);
+        DatabaseDescriptor.setRangeReadMaxConcurrency(32);
+        DatabaseDescriptor.setEndpointSnitch(previousSnitch);
+        StorageService.instance.getTokenMetadata().updateNormalTokens(previousTokens, FBUtilities.getBroadcastAddress());
+    }
+
+    @Test
+    public void testSameResultsAsBatchedReads() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int, c int, v int, PRIMARY KEY (k, c))");
+        int partitions = 500;
+        for (int i = 0; i < partitions; i++)
+        {
+            execute("INSERT INTO %s (k, c, v) VALUES (?, ?, ?)", i, 0, i);
+            execute("INSERT INTO %s (k, c, v) VALUES (?, ?, ?)", i, 1, i);
+        }
+        getCurrentColumnFamilyStore().forceBlockingFlush();
+
+        for (String query : new String[]{ "SELECT k, c, v FROM %s",
+                                          "SELECT k, c, v FROM %s LIMIT 1",
+                                          "SELECT k, c, v FROM %s LIMIT 150",
+                                          "SELECT k, c, v FROM %s WHERE c = 1 LIMIT 300 ALLOW FILTERING",
+                                          "SELECT k, c, v FROM %s WHERE token(k) > 0" })
+        {
+            DatabaseDescriptor.setAdaptiveRangeReads(false);
+            List<String> expected = rows(executeNet(query));
+            DatabaseDescriptor.setAdaptiveRangeReads(true);
+            assertEquals(expected, rows(executeNet(query)));
+        }
+
+        // and the same goes for every page of a paged scan
+        DatabaseDescriptor.setAdaptiveRangeReads(false);
+        List<String> expected = rows(executeNet("SELECT k, c, v FROM %s"));
+        assertEquals(2 * partitions, expected.size());
+        DatabaseDescriptor.setAdaptiveRangeReads(true);
+        for (int pageSize : new int[]{ 1, 7, 100, 2000 })
+        {
+            SimpleStatement statement = sessionNet().newSimpleStatement(String.format("SELECT k, c, v FROM %s.%s", KEYSPACE, currentTable()));
+            statement.setFetchSize(pageSize);
+            assertEquals(expected, rows(sessionNet().execute(statement)));
+        }
+    }
+
+    @Test
+    public void testWindow() throws Throwable
+    {
+        DatabaseDescriptor.setAdaptiveRangeReads(true);
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int)");
+        for (int i = 0; i < 1000; i++)
+            execute("INSERT INTO %s (k, v) VALUES (?, ?)", i, i);
+        getCurrentColumnFamilyStore().forceBlockingFlush();
+
+        // a full scan queries every range, with the window bounded by the configured maximum
+        DatabaseDescriptor.setRangeReadMaxConcurrency(4);
+        clearMetrics();
+        assertEquals(1000, executeNet("SELECT * FROM %s").all().size());
+        assertTrue(metrics.subRangeRequests.getSnapshot().getMax() >= TOKENS);
+        assertTrue(metrics.concurrency.getSnapshot().getMax() <= 4);
+        assertTrue(metrics.rows.getSnapshot().getMax() >= 1000);
+
+        // while a query with a small limit stops sending requests once it has enough rows
+        DatabaseDescriptor.setRangeReadMaxConcurrency(32);
+        clearMetrics();
+        long queries = metrics.subRangeRequests.getCount();
+        assertEquals(10, executeNet("SELECT * FROM %s LIMIT 10").all().size());
+        assertEquals(queries + 1, metrics.subRangeRequests.getCount());
+        assertTrue(metrics.subRangeRequests.getSnapshot().getMax() < TOKENS);
+    }
+
+    private void clearMetrics()
+    {
+        ((ClearableHistogram) metrics.subRangeRequests).clear();
+        ((ClearableHistogram) metrics.concurrency).clear();
+        ((ClearableHistogram) metrics.rows).clear();
+    }
+
+    private ResultSet executeNet(String query) throws Throwable
+    {
+        return executeNet(PROTOCOL_VERSIONS.get(PROTOCOL_VERSIONS.size() - 1), query);
+    }
+
+    private static List<String> rows(ResultSet result)
+    {
+        List<String> rows = new ArrayList<>();
+        for (Row row : result)
+            rows.add(row.getInt("k") + ":" + row.getInt("c") + ":" + row.getInt("v"));
+        return rows;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.exceptions.InvalidQueryException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.db.ConsistencyLevel;
+import org.apache.cassandra.db.Keyspace;
+import org.apache.cassandra.db.SinglePartitionReadCommand;
+import org.apache.cassandra.db.marshal.Int32Type;
+import org.apache.cassandra.exceptions.ReadTimeoutException;
+import org.apache.cassandra.utils.FBUtilities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsyncRequestTest extends CQLTester
+{
+    private long previousReadTimeout;
+
+    @Before
+    public void setUp() throws Throwable
+    {
+        requireNetwork();
+        previousReadTimeout = DatabaseDescriptor.getReadRpcTimeout();
+    }
+
+    @After
+    public void tearDown()
+    {
+        DatabaseDescriptor.setNativeTransportAsyncRequests(false);
+        DatabaseDescriptor.setReadRpcTimeout(previousReadTimeout);
+    }
+
+    @Test
+    public void testSameResultsAsSynchronousRequests() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int, c int, v int, PRIMARY KEY (k, c))");
+
+        DatabaseDescriptor.setNativeTransportAsyncRequests(true);
+        for (int i = 0; i < 20; i++)
+            for (int j = 0; j < 5; j++)
+                executeNet("INSERT INTO %s (k, c, v) VALUES (?, ?, ?)", i, j, i + j);
+        executeNet("UPDATE %s SET v = ? WHERE k = ? AND c = ?", 100, 0, 0);
+        executeNet("DELETE FROM %s WHERE k = ? AND c = ?", 1, 1);
+        executeNet("BEGIN UNLOGGED BATCH INSERT INTO %1$s (k, c, v) VALUES (30, 0, 0); INSERT INTO %1$s (k, c, v) VALUES (31, 0, 0); APPLY BATCH");
+        assertTrue(executeNet("INSERT INTO %s (k, c, v) VALUES (?, ?, ?) IF NOT EXISTS", 40, 0, 0).wasApplied());
+        assertFalse(executeNet("INSERT INTO %s (k, c, v) VALUES (?, ?, ?) IF NOT EXISTS", 40, 0, 1).wasApplied());
+        DatabaseDescriptor.setNativeTransportAsyncRequests(false);
+
+        assertRows(execute("SELECT v FROM %s WHERE k = ? AND c = ?", 0, 0), row(100));
+        assertEmpty(execute("SELECT v FROM %s WHERE k = ? AND c = ?", 1, 1));
+        assertRows(execute("SELECT k FROM %s WHERE k IN (30, 31, 40)"), row(30), row(31), row(40));
+
+        for (String query : new String[]{ "SELECT k, c, v FROM %s WHERE k = 2",
+                                          "SELECT k, c, v FROM %s WHERE k = 2 LIMIT 2",
+                                          "SELECT k, c, v FROM %s WHERE k = 2 AND c > 1",
+                                          "SELECT k, c, v FROM %s WHERE k IN (3, 1, 2)",
+                                          "SELECT k, c, v FROM %s WHERE k IN (3, 1, 2) LIMIT 7",
+                                          "SELECT k, c, v FROM %s WHERE k = 40 AND c = 0",
+                                          "SELECT k, c, v FROM %s WHERE k = 1000",
+                                          "SELECT k, c, v FROM %s" })
+        {
+            List<String> expected = rows(executeNet(query));
+            DatabaseDescriptor.setNativeTransportAsyncRequests(true);
+            assertEquals(query, expected, rows(executeNet(query)));
+            DatabaseDescriptor.setNativeTransportAsyncRequests(false);
+        }
+
+        // paged queries are executed synchronously, but must still page correctly
+        DatabaseDescriptor.setNativeTransportAsyncRequests(true);
+        SimpleStatement statement = sessionNet().newSimpleStatement(String.format("SELECT k, c, v FROM %s.%s WHERE k IN (3, 1, 2)", KEYSPACE, currentTable()));
+        statement.setFetchSize(2);
+        assertEquals(14, rows(sessionNet().execute(statement)).size());
+    }
+
+    @Test
+    public void testPreparedStatementsAndCounters() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, c counter)");
+        DatabaseDescriptor.setNativeTransportAsyncRequests(true);
+
+        String update = String.format("UPDATE %s.%s SET c = c + ? WHERE k = ?", KEYSPACE, currentTable());
+        for (int i = 0; i < 10; i++)
+            sessionNet().execute(sessionNet().prepare(update).bind(1L, i % 2));
+
+        String select = String.format("SELECT c FROM %s.%s WHERE k = ?", KEYSPACE, currentTable());
+        assertEquals(5L, sessionNet().execute(sessionNet().prepare(select).bind(0)).one().getLong("c"));
+        assertEquals(5L, sessionNet().execute(sessionNet().prepare(select).bind(1)).one().getLong("c"));
+    }
+
+    @Test
+    public void testErrors() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int)");
+        DatabaseDescriptor.setNativeTransportAsyncRequests(true);
+
+        try
+        {
+            executeNet("SELECT * FROM %s WHERE v = 0");
+            fail("Expected an invalid query error");
+        }
+        catch (InvalidQueryException e)
+        {
+            // expected
+        }
+
+        // the connection is still usable afterwards
+        executeNet("INSERT INTO %s (k, v) VALUES (0, 0)");
+        assertEquals(1, executeNet("SELECT * FROM %s WHERE k = 0").all().size());
+    }
+
+    @Test
+    public void testCompletionOnTimeout() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int)");
+        DatabaseDescriptor.setReadRpcTimeout(100L);
+
+        // a callback that never gets a response completes once the request has timed out
+        Keyspace keyspace = Keyspace.open(KEYSPACE);
+        SinglePartitionReadCommand command = SinglePartitionReadCommand.fullPartitionRead(getCurrentColumnFamilyStore().metadata,
+                                                                                          FBUtilities.nowInSeconds(),
+                                                                                          Int32Type.instance.decompose(0));
+        ReadCallback callback = new ReadCallback(new DigestResolver(keyspace, command, ConsistencyLevel.ONE, 1),
+                                                 ConsistencyLevel.ONE,
+                                                 1,
+                                                 command,
+                                                 keyspace,
+                                                 Collections.singletonList(FBUtilities.getBroadcastAddress()));
+        callback.completion().get(10, TimeUnit.SECONDS);
+        assertFalse(callback.isDone());
+
+        try
+        {
+            callback.get();
+            fail("Expected a read timeout");
+        }
+        catch (ReadTimeoutException e)
+        {
+            assertEquals(0, e.received);
+        }
+    }
+
+    private ResultSet executeNet(String query, Object... values) throws Throwable
+    {
+        return executeNet(PROTOCOL_VERSIONS.get(PROTOCOL_VERSIONS.size() - 1), query, values);
+    }
+
+    private static List<String> rows(ResultSet result)
+    {
+        List<String> rows = new ArrayList<>();
+        for (Row row : result)
+            rows.add(row.getInt("k") + ":" + row.getInt("c") + ":" + row.getInt("v"));
+        return rows;
+    }
+}
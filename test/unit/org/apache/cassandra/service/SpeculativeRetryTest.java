@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.service;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import org.apache.cassandra.Util;
+import org.apache.cassandra.concurrent.Stage;
+import org.apache.cassandra.concurrent.StageManager;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.ConsistencyLevel;
+import org.apache.cassandra.db.Keyspace;
+import org.apache.cassandra.db.ReadCommand;
+import org.apache.cassandra.db.ReadOrderGroup;
+import org.apache.cassandra.db.partitions.UnfilteredPartitionIterator;
+import org.apache.cassandra.locator.DynamicEndpointSnitch;
+import org.apache.cassandra.net.MessageIn;
+import org.apache.cassandra.net.MessagingService;
+import org.apache.cassandra.utils.FBUtilities;
+
+import static org.junit.Assert.assertEquals;
+
+public class SpeculativeRetryTest extends CQLTester
+{
+    @After
+    public void tearDown()
+    {
+        DatabaseDescriptor.setSpeculativeRetryPerReplica(false);
+        DatabaseDescriptor.setSpeculativeRangeReads(false);
+    }
+
+    @Test
+    public void testPerReplicaDelay() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int) WITH speculative_retry = '90PERCENTILE'");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+
+        DynamicEndpointSnitch snitch = (DynamicEndpointSnitch) DatabaseDescriptor.getEndpointSnitch();
+        InetAddress fast = InetAddress.getByName("127.0.0.2");
+        InetAddress slow = InetAddress.getByName("127.0.0.3");
+        for (int i = 0; i < 100; i++)
+        {
+            snitch.receiveTiming(fast, 2);
+            snitch.receiveTiming(slow, 20);
+        }
+        Thread.sleep(250);
+
+        // the table wide threshold unless enabled
+        assertEquals(cfs.sampleLatencyNanos, AbstractReadExecutor.speculationDelayNanos(cfs, Arrays.asList(fast, slow)));
+
+        DatabaseDescriptor.setSpeculativeRetryPerReplica(true);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(3), AbstractReadExecutor.speculationDelayNanos(cfs, Collections.singletonList(fast)));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(21), AbstractReadExecutor.speculationDelayNanos(cfs, Arrays.asList(fast, slow)));
+
+        // replicas without samples, like the local one, fall back to the table wide threshold
+        assertEquals(cfs.sampleLatencyNanos, AbstractReadExecutor.speculationDelayNanos(cfs, Arrays.asList(fast, InetAddress.getByName("127.0.0.4"))));
+        assertEquals(cfs.sampleLatencyNanos, AbstractReadExecutor.speculationDelayNanos(cfs, Arrays.asList(fast, FBUtilities.getBroadcastAddress())));
+    }
+
+    @Test
+    public void testRangeReads() throws Throwable
+    {
+        requireNetwork();
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int) WITH speculative_retry = 'ALWAYS'");
+        for (int i = 0; i < 100; i++)
+            execute("INSERT INTO %s (k, v) VALUES (?, ?)", i, i);
+
+        // there is no other replica to speculate on, so range reads are unchanged
+        DatabaseDescriptor.setSpeculativeRangeReads(true);
+        long retries = getCurrentColumnFamilyStore().metric.speculativeRetries.getCount();
+        assertEquals(100, executeNet(PROTOCOL_VERSIONS.get(PROTOCOL_VERSIONS.size() - 1), "SELECT * FROM %s").all().size());
+        assertEquals(retries, getCurrentColumnFamilyStore().metric.speculativeRetries.getCount());
+    }
+
+    @Test
+    public void testNoReadRepairOnRangeReads() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int)");
+        execute("INSERT INTO %s (k, v) VALUES (0, 0)");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        InetAddress extraReplica = InetAddress.getByName("127.0.0.2");
+
+        // the responses of all the replicas, including the one speculated on, start a background read repair for a
+        // single partition read, but not for a range read
+        assertEquals(1, readRepairsAfterAllResponses(Util.cmd(cfs, 0).build(), extraReplica));
+        assertEquals(0, readRepairsAfterAllResponses(Util.cmd(cfs).build(), extraReplica));
+    }
+
+    private static long readRepairsAfterAllResponses(ReadCommand command, InetAddress extraReplica) throws Exception
+    {
+        Keyspace keyspace = Keyspace.open(command.metadata().ksName);
+        List<InetAddress> endpoints = Arrays.asList(FBUtilities.getBroadcastAddress(), extraReplica);
+        ReadCallback callback = new ReadCallback(new DataResolver(keyspace, command, ConsistencyLevel.ONE, endpoints.size()),
+                                                 ConsistencyLevel.ONE,
+                                                 1,
+                                                 command,
+                                                 keyspace,
+                                                 endpoints);
+
+        ThreadPoolExecutor readRepairStage = (ThreadPoolExecutor) StageManager.getStage(Stage.READ_REPAIR);
+        long tasks = readRepairStage.getTaskCount();
+        for (InetAddress endpoint : endpoints)
+        {
+            try (ReadOrderGroup orderGroup = command.startOrderGroup();
+                 UnfilteredPartitionIterator partitions = command.executeLocally(orderGroup))
+            {
+                callback.response(MessageIn.create(endpoint,
+                                                   command.createResponse(partitions, command.columnFilter()),
+                                                   Collections.<String, byte[]>emptyMap(),
+                                                   MessagingService.Verb.READ,
+                                                   MessagingService.current_version));
+            }
+        }
+        return readRepairStage.getTaskCount() - tasks;
+    }
+}
@@ -40,20 +40,32 @@ import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.cql3.QueryProcessor;
 import org.apache.cassandra.cql3.UntypedResultSet;
 import org.apache.cassandra.db.*;
+import org.apache.cassandra.db.commitlog.CommitLog;
+import org.apache.cassandra.db.commitlog.ReplayPosition;
 import org.apache.cassandra.db.rows.*;
 import org.apache.cassandra.db.marshal.*;
 import org.apache.cassandra.db.partitions.*;
 import org.apache.cassandra.dht.IPartitioner;
 import org.apache.cassandra.dht.Range;
 import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.io.sstable.Component;
 import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.io.util.DataInputBuffer;
+import org.apache.cassandra.io.util.DataIntegrityMetadata;
+import org.apache.cassandra.io.util.DataOutputBuffer;
+import org.apache.cassandra.streaming.messages.FileMessageHeader;
+import org.apache.cassandra.streaming.messages.OutgoingFileMessage;
+import org.apache.cassandra.streaming.messages.StreamMessage;
 import org.apache.cassandra.schema.KeyspaceParams;
 import org.apache.cassandra.service.StorageService;
 import org.apache.cassandra.utils.ByteBufferUtil;
 import org.apache.cassandra.utils.FBUtilities;
+import org.apache.cassandra.utils.Pair;
 import org.apache.cassandra.utils.concurrent.Refs;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 @RunWith(OrderedJUnit4ClassRunner.class)
@@ -67,6 +79,7 @@ public class StreamingTransferTest
     public static final String CF_COUNTER = "Counter1";
     public static final String CF_STANDARDINT = "StandardInteger1";
     public static final String CF_INDEX = "Indexed1";
+    public static final String CF_ENTIRE = "Standard4";
     public static final String KEYSPACE_CACHEKEY = "KeyStreamingTransferTestSpace";
     public static final String CF_STANDARD2 = "Standard2";
     public static final String CF_STANDARD3 = "Standard3";
@@ -88,7 +101,8 @@ public class StreamingTransferTest
                                                       .addClusteringColumn("cols", Int32Type.instance)
                                                       .addRegularColumn("val", BytesType.instance)
                                                       .build(),
-                                    SchemaLoader.compositeIndexCFMD(KEYSPACE1, CF_INDEX, true));
+                                    SchemaLoader.compositeIndexCFMD(KEYSPACE1, CF_INDEX, true),
+                                    SchemaLoader.standardCFMD(KEYSPACE1, CF_ENTIRE));
         SchemaLoader.createKeyspace(KEYSPACE2,
                                     KeyspaceParams.simple(1));
         SchemaLoader.createKeyspace(KEYSPACE_CACHEKEY,
@@ -334,6 +348,171 @@ public class StreamingTransferTest
         Assert.assertTrue(1 == Int32Type.instance.compose(r.clustering().get(0)));
     }
 
+    @Test
+    public void testEntireSSTableHeader() throws Exception
+    {
+        ColumnFamilyStore cfs = Keyspace.open(KEYSPACE1).getColumnFamilyStore(CF_ENTIRE);
+        SSTableReader sstable = writeEntireSSTableData(cfs);
+        IPartitioner p = sstable.getPartitioner();
+
+        // an sstable is sent as it is only if all its data is streamed
+        List<Range<Token>> all = Collections.singletonList(new Range<>(p.getMinimumToken(), p.getMinimumToken()));
+        OutgoingFileMessage message = new OutgoingFileMessage(sstable.ref(), 0, sstable.estimatedKeysForRanges(all), sstable.getPositionsForRanges(all), 0, false);
+        FileMessageHeader header = message.header;
+        assertTrue(header.isEntireSSTable());
+        // all the components but the digest are sent
+        assertEquals(sstable.getComponents().size() - 1, header.components.size());
+        long size = 0;
+        for (Pair<Component, Long> component : header.components)
+        {
+            assertFalse(component.left.type == Component.Type.DIGEST);
+            size += new java.io.File(sstable.descriptor.filenameFor(component.left)).length();
+        }
+        assertEquals(size, header.size());
+
+        // the components are streamed from links to them, that are removed when the message is completed
+        assertEquals(1, cfs.getDirectories().listEphemeralSnapshots().size());
+        message.complete();
+        assertTrue(cfs.getDirectories().listEphemeralSnapshots().isEmpty());
+
+        DataOutputBuffer out = new DataOutputBuffer();
+        FileMessageHeader.serializer.serialize(header, out, StreamMessage.CURRENT_VERSION);
+        assertEquals(out.getLength(), FileMessageHeader.serializer.serializedSize(header, StreamMessage.CURRENT_VERSION));
+        FileMessageHeader deserialized = FileMessageHeader.serializer.deserialize(new DataInputBuffer(out.buffer(), false), StreamMessage.CURRENT_VERSION);
+        assertEquals(header.components, deserialized.components);
+
+        List<Range<Token>> some = Collections.singletonList(new Range<>(p.getMinimumToken(), p.getToken(ByteBufferUtil.bytes("key5"))));
+        assertFalse(header(sstable, some).isEntireSSTable());
+
+        DatabaseDescriptor.setStreamEntireSSTables(false);
+        try
+        {
+            assertFalse(header(sstable, all).isEntireSSTable());
+        }
+        finally
+        {
+            DatabaseDescriptor.setStreamEntireSSTables(true);
+        }
+    }
+
+    @Test
+    public void testEntireSSTableToOlderPeer() throws Exception
+    {
+        ColumnFamilyStore cfs = Keyspace.open(KEYSPACE1).getColumnFamilyStore(CF_ENTIRE);
+        SSTableReader sstable = writeEntireSSTableData(cfs);
+        IPartitioner p = sstable.getPartitioner();
+
+        // the nodes that don't gossip their stream version only accept the version before entire sstables
+        assertEquals(StreamMessage.VERSION_30, StreamMessage.versionFor(InetAddress.getByName("127.0.0.2")));
+        assertEquals(StreamMessage.CURRENT_VERSION, StreamMessage.versionFor(LOCAL));
+        assertTrue(StreamMessage.isSupported(StreamMessage.VERSION_30));
+
+        // and are sent the data of the sstable as a section
+        List<Range<Token>> all = Collections.singletonList(new Range<>(p.getMinimumToken(), p.getMinimumToken()));
+        OutgoingFileMessage message = new OutgoingFileMessage(sstable.ref(), 0, sstable.estimatedKeysForRanges(all), sstable.getPositionsForRanges(all), 0, false);
+        try
+        {
+            assertTrue(message.headerFor(StreamMessage.CURRENT_VERSION).isEntireSSTable());
+            FileMessageHeader header = message.headerFor(StreamMessage.VERSION_30);
+            assertFalse(header.isEntireSSTable());
+            assertEquals(message.header.sections, header.sections);
+
+            DataOutputBuffer out = new DataOutputBuffer();
+            FileMessageHeader.serializer.serialize(header, out, StreamMessage.VERSION_30);
+            assertEquals(out.getLength(), FileMessageHeader.serializer.serializedSize(header, StreamMessage.VERSION_30));
+            FileMessageHeader deserialized = FileMessageHeader.serializer.deserialize(new DataInputBuffer(out.buffer(), false), StreamMessage.VERSION_30);
+            assertFalse(deserialized.isEntireSSTable());
+            assertEquals(header.sections, deserialized.sections);
+        }
+        finally
+        {
+            message.complete();
+        }
+    }
+
+    @Test
+    public void testTransferEntireSSTable() throws Exception
+    {
+        ColumnFamilyStore cfs = Keyspace.open(KEYSPACE1).getColumnFamilyStore(CF_ENTIRE);
+        SSTableReader sstable = writeEntireSSTableData(cfs);
+        cfs.clearUnsafe();
+
+        // the receiver sets its own repair time on the received sstable
+        IPartitioner p = sstable.getPartitioner();
+        List<Range<Token>> ranges = Collections.singletonList(new Range<>(p.getMinimumToken(), p.getMinimumToken()));
+        StreamSession.SSTableStreamingSections details = new StreamSession.SSTableStreamingSections(sstable.ref(),
+                                                                                                   sstable.getPositionsForRanges(ranges),
+                                                                                                   sstable.estimatedKeysForRanges(ranges),
+                                                                                                   1234);
+        new StreamPlan("StreamingTransferTest").transferFiles(LOCAL, new ArrayList<>(Collections.singleton(details))).execute().get();
+
+        assertEquals(1, cfs.getLiveSSTables().size());
+        SSTableReader received = cfs.getLiveSSTables().iterator().next();
+        assertEquals(1234, received.getSSTableMetadata().repairedAt);
+        assertEquals(sstable.getComponents(), received.getComponents());
+        // the digest computed by the receiver matches the data
+        try (DataIntegrityMetadata.FileDigestValidator validator = DataIntegrityMetadata.fileDigestValidator(received.descriptor))
+        {
+            validator.validate();
+        }
+        assertEquals(sstable.onDiskLength(), received.onDiskLength());
+        assertEquals(sstable.first, received.first);
+        assertEquals(sstable.last, received.last);
+        for (int i = 0; i < 10; i++)
+            Util.getOnlyRow(Util.cmd(cfs, "key" + i).build());
+    }
+
+    @Test
+    public void testTransferEntireSSTableResetsReplayPosition() throws Exception
+    {
+        ColumnFamilyStore cfs = Keyspace.open(KEYSPACE1).getColumnFamilyStore(CF_ENTIRE);
+        SSTableReader sstable = writeEntireSSTableData(cfs);
+        cfs.clearUnsafe();
+        CommitLog.instance.resetUnsafe(true);
+
+        // the sender's sstable covers commit log positions beyond any of this node's
+        sstable.descriptor.getMetadataSerializer().mutateReplayPosition(sstable.descriptor, new ReplayPosition(Long.MAX_VALUE, 0));
+        IPartitioner p = sstable.getPartitioner();
+        List<Range<Token>> ranges = Collections.singletonList(new Range<>(p.getMinimumToken(), p.getMinimumToken()));
+        StreamSession.SSTableStreamingSections details = new StreamSession.SSTableStreamingSections(sstable.ref(),
+                                                                                                   sstable.getPositionsForRanges(ranges),
+                                                                                                   sstable.estimatedKeysForRanges(ranges),
+                                                                                                   0);
+        new StreamPlan("StreamingTransferTest").transferFiles(LOCAL, new ArrayList<>(Collections.singleton(details))).execute().get();
+        SSTableReader received = Iterables.getOnlyElement(cfs.getLiveSSTables());
+        assertEquals(ReplayPosition.NONE, received.getSSTableMetadata().replayPosition);
+
+        // so a write of this node that wasn't flushed is still replayed from its commit log
+        CommitLog.instance.add(new RowUpdateBuilder(cfs.metadata, FBUtilities.timestampMicros(), "unflushed")
+                               .clustering("c")
+                               .add("val", ByteBufferUtil.bytes("unflushed"))
+                               .build());
+        CommitLog.instance.resetUnsafe(false);
+        Util.getOnlyRow(Util.cmd(cfs, "unflushed").build());
+    }
+
+    private static SSTableReader writeEntireSSTableData(ColumnFamilyStore cfs)
+    {
+        cfs.truncateBlocking();
+        for (int i = 0; i < 10; i++)
+        {
+            new RowUpdateBuilder(cfs.metadata, FBUtilities.timestampMicros(), "key" + i)
+                .clustering("c")
+                .add("val", ByteBufferUtil.bytes("value" + i))
+                .build()
+                .applyUnsafe();
+        }
+        cfs.forceBlockingFlush();
+        return Iterables.getOnlyElement(cfs.getLiveSSTables());
+    }
+
+    private static FileMessageHeader header(SSTableReader sstable, List<Range<Token>> ranges)
+    {
+        OutgoingFileMessage message = new OutgoingFileMessage(sstable.ref(), 0, sstable.estimatedKeysForRanges(ranges), sstable.getPositionsForRanges(ranges), 0, false);
+        message.complete();
+        return message.header;
+    }
+
     @Test
     public void testTransferTableViaRanges() throws Exception
     {
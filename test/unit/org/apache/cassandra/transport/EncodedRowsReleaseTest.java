@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.transport;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ResourceLeakDetector;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.cql3.ColumnIdentifier;
+import org.apache.cassandra.cql3.ColumnSpecification;
+import org.apache.cassandra.cql3.ResultSet;
+import org.apache.cassandra.db.marshal.Int32Type;
+import org.apache.cassandra.transport.messages.ResultMessage;
+import org.apache.cassandra.utils.ByteBufferUtil;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that the rows of a result set encoded as they are read are released when the response holding them is never
+ * encoded, with netty's leak detector tracking every buffer.
+ */
+public class EncodedRowsReleaseTest
+{
+    private static ResourceLeakDetector.Level level;
+    private static final ListAppender<ILoggingEvent> leaks = new ListAppender<>();
+
+    @BeforeClass
+    public static void setUp()
+    {
+        level = ResourceLeakDetector.getLevel();
+        ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.PARANOID);
+        leaks.start();
+        ((Logger) LoggerFactory.getLogger(ResourceLeakDetector.class)).addAppender(leaks);
+    }
+
+    @AfterClass
+    public static void tearDown()
+    {
+        ((Logger) LoggerFactory.getLogger(ResourceLeakDetector.class)).detachAppender(leaks);
+        ResourceLeakDetector.setLevel(level);
+    }
+
+    @Test
+    public void testReleasedWhenEncodingFails() throws Exception
+    {
+        for (int i = 0; i < 10; i++)
+        {
+            EmbeddedChannel channel = new EmbeddedChannel(new Message.ProtocolEncoder());
+            channel.attr(Connection.attributeKey).set(new Connection(channel, Server.VERSION_3, (ch, connection) -> {}));
+
+            // warnings can't be sent before version 4
+            ResultMessage.Rows response = rows();
+            response.setWarnings(Collections.singletonList("warning"));
+            try
+            {
+                channel.writeOutbound(response);
+                fail("Expected the encoding to fail");
+            }
+            catch (Exception e)
+            {
+                // expected
+            }
+            assertReleased(response);
+            channel.finish();
+        }
+        assertNoLeak();
+    }
+
+    @Test
+    public void testDiscard() throws Exception
+    {
+        for (int i = 0; i < 10; i++)
+        {
+            ResultMessage.Rows response = rows();
+            response.discard();
+            assertReleased(response);
+            // discarding again does nothing
+            response.discard();
+        }
+        assertNoLeak();
+    }
+
+    private static ResultMessage.Rows rows()
+    {
+        List<ColumnSpecification> names = new ArrayList<>();
+        for (String name : new String[]{ "a", "b" })
+            names.add(new ColumnSpecification("ks", "cf", new ColumnIdentifier(name, true), Int32Type.instance));
+        ResultSet rs = ResultSet.withEncodedRows(new ResultSet.ResultMetadata(names));
+        for (int i = 0; i < 100; i++)
+            rs.addRow(Arrays.<ByteBuffer>asList(ByteBufferUtil.bytes(i), ByteBufferUtil.bytes(-i)));
+        return new ResultMessage.Rows(rs);
+    }
+
+    private static void assertReleased(ResultMessage.Rows response)
+    {
+        try
+        {
+            response.result.rows.get(0);
+            fail("Expected the rows to be released");
+        }
+        catch (IllegalStateException e)
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Collects the buffers that are no longer referenced, and allocates more for the leak detector to report any of
+     * those that weren't released.
+     */
+    private static void assertNoLeak() throws InterruptedException
+    {
+        for (int i = 0; i < 5; i++)
+        {
+            System.gc();
+            Thread.sleep(100);
+            CBUtil.allocator.buffer().release();
+        }
+        for (ILoggingEvent event : leaks.list)
+            assertTrue(event.getFormattedMessage(), !event.getFormattedMessage().contains("LEAK"));
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.transport;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.exceptions.InvalidQueryException;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.CQLStatement;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.cql3.QueryOptions;
+import org.apache.cassandra.cql3.QueryProcessor;
+import org.apache.cassandra.db.ConsistencyLevel;
+import org.apache.cassandra.metrics.ClientMetrics;
+import org.apache.cassandra.service.ClientState;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RequestBatchingTest extends CQLTester
+{
+    @BeforeClass
+    public static void setUp() throws Throwable
+    {
+        // the batcher is added to the pipeline of new connections, so it must be enabled before the driver connects
+        DatabaseDescriptor.setNativeTransportBatchRequests(true);
+        requireNetwork();
+    }
+
+    @After
+    public void tearDown()
+    {
+        DatabaseDescriptor.setNativeTransportAsyncRequests(false);
+    }
+
+    @Test
+    public void testInFlightRequests() throws Throwable
+    {
+        // synchronous requests aren't batched, not to wait for each other
+        long batches = ClientMetrics.instance.requestBatchSize.getCount();
+        checkInFlightRequests();
+        assertEquals(batches, ClientMetrics.instance.requestBatchSize.getCount());
+    }
+
+    @Test
+    public void testInFlightAsyncRequests() throws Throwable
+    {
+        DatabaseDescriptor.setNativeTransportAsyncRequests(true);
+        long batches = ClientMetrics.instance.requestBatchSize.getCount();
+        checkInFlightRequests();
+        assertTrue(ClientMetrics.instance.requestBatchSize.getCount() > batches);
+    }
+
+    @Test
+    public void testErrorsInBatch() throws Throwable
+    {
+        DatabaseDescriptor.setNativeTransportAsyncRequests(true);
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int)");
+        Session session = sessionNet(Server.CURRENT_VERSION);
+
+        List<ResultSetFuture> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++)
+            futures.add(session.executeAsync(i % 2 == 0
+                                             ? String.format("INSERT INTO %s.%s (k, v) VALUES (%d, %d)", KEYSPACE, currentTable(), i, i)
+                                             : String.format("SELECT * FROM %s.%s WHERE v = %d", KEYSPACE, currentTable(), i)));
+
+        for (int i = 0; i < futures.size(); i++)
+        {
+            try
+            {
+                futures.get(i).getUninterruptibly();
+                assertTrue(i % 2 == 0);
+            }
+            catch (InvalidQueryException e)
+            {
+                assertTrue(i % 2 == 1);
+            }
+        }
+        assertEquals(25, execute("SELECT * FROM %s").size());
+    }
+
+    @Test
+    public void testExecutesAsync() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int, c int, v int, PRIMARY KEY (k, c))");
+
+        assertTrue(executesAsync("SELECT * FROM %s WHERE k = 0", -1));
+        assertTrue(executesAsync("SELECT * FROM %s WHERE k = 0 LIMIT 10", 100));
+        assertTrue(executesAsync("INSERT INTO %s (k, c, v) VALUES (0, 0, 0)", 100));
+
+        // paged, range and conditional queries are executed synchronously, not to be batched with other requests
+        assertFalse(executesAsync("SELECT * FROM %s WHERE k = 0", 100));
+        assertFalse(executesAsync("SELECT * FROM %s", -1));
+        assertFalse(executesAsync("INSERT INTO %s (k, c, v) VALUES (0, 0, 0) IF NOT EXISTS", 100));
+    }
+
+    @Test
+    public void testSynchronousRequestsInBatch() throws Throwable
+    {
+        DatabaseDescriptor.setNativeTransportAsyncRequests(true);
+        createTable("CREATE TABLE %s (k int, c int, v int, PRIMARY KEY (k, c))");
+        Session session = sessionNet(Server.CURRENT_VERSION);
+
+        PreparedStatement insert = session.prepare(String.format("INSERT INTO %s.%s (k, c, v) VALUES (?, ?, ?)", KEYSPACE, currentTable()));
+        PreparedStatement select = session.prepare(String.format("SELECT v FROM %s.%s WHERE k = ?", KEYSPACE, currentTable()));
+        for (int i = 0; i < 100; i++)
+            session.execute(insert.bind(i, 0, i));
+
+        // the paged selects are executed on their own, the inserts are executed together
+        List<ResultSetFuture> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+        {
+            futures.add(session.executeAsync(select.bind(i).setFetchSize(10)));
+            futures.add(session.executeAsync(insert.bind(i, 1, i)));
+        }
+        for (int i = 0; i < futures.size(); i += 2)
+        {
+            assertEquals(i / 2, futures.get(i).getUninterruptibly().one().getInt("v"));
+            futures.get(i + 1).getUninterruptibly();
+        }
+        assertEquals(200, execute("SELECT * FROM %s").size());
+    }
+
+    private boolean executesAsync(String query, int pageSize) throws Throwable
+    {
+        CQLStatement statement = QueryProcessor.getStatement(String.format(query, KEYSPACE + "." + currentTable()), ClientState.forInternalCalls()).statement;
+        return statement.executesAsync(QueryOptions.create(ConsistencyLevel.ONE, Collections.emptyList(), false, pageSize, null, ConsistencyLevel.SERIAL));
+    }
+
+    private void checkInFlightRequests() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int)");
+        Session session = sessionNet(Server.CURRENT_VERSION);
+
+        PreparedStatement insert = session.prepare(String.format("INSERT INTO %s.%s (k, v) VALUES (?, ?)", KEYSPACE, currentTable()));
+        List<ResultSetFuture> futures = new ArrayList<>();
+        for (int i = 0; i < 500; i++)
+            futures.add(session.executeAsync(insert.bind(i, i)));
+        for (ResultSetFuture future : futures)
+            future.getUninterruptibly();
+
+        PreparedStatement select = session.prepare(String.format("SELECT v FROM %s.%s WHERE k = ?", KEYSPACE, currentTable()));
+        futures.clear();
+        for (int i = 0; i < 500; i++)
+            futures.add(session.executeAsync(select.bind(i)));
+        for (int i = 0; i < futures.size(); i++)
+        {
+            try
+            {
+                assertEquals(i, futures.get(i).getUninterruptibly().one().getInt("v"));
+            }
+            catch (Exception e)
+            {
+                fail("Unexpected error for request " + i + ": " + e);
+            }
+        }
+    }
+}
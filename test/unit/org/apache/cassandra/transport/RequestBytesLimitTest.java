@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.transport;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Session;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.cql3.QueryOptions;
+import org.apache.cassandra.exceptions.OverloadedException;
+import org.apache.cassandra.metrics.ClientMetrics;
+import org.apache.cassandra.transport.messages.QueryMessage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RequestBytesLimitTest extends CQLTester
+{
+    private static final long LIMIT = 1024 * 1024;
+
+    @BeforeClass
+    public static void setUp() throws Throwable
+    {
+        // the limits are only enforced on connections opened while one of them is set
+        DatabaseDescriptor.setNativeTransportMaxConcurrentRequestsInBytes(LIMIT);
+        requireNetwork();
+    }
+
+    @After
+    public void tearDown()
+    {
+        DatabaseDescriptor.setNativeTransportMaxConcurrentRequestsInBytesPerConnection(-1);
+        DatabaseDescriptor.setNativeTransportMaxConcurrentRequestsInBytesPerIp(-1);
+        DatabaseDescriptor.setNativeTransportMaxConcurrentRequestsInBytes(LIMIT);
+        DatabaseDescriptor.setNativeTransportThrowOnOverload(false);
+    }
+
+    @Test
+    public void testBackpressurePerConnection() throws Throwable
+    {
+        DatabaseDescriptor.setNativeTransportMaxConcurrentRequestsInBytesPerConnection(100);
+        checkAllRequestsComplete();
+    }
+
+    @Test
+    public void testBackpressurePerIp() throws Throwable
+    {
+        DatabaseDescriptor.setNativeTransportMaxConcurrentRequestsInBytesPerIp(100);
+        checkAllRequestsComplete();
+    }
+
+    @Test
+    public void testBackpressureOverall() throws Throwable
+    {
+        DatabaseDescriptor.setNativeTransportMaxConcurrentRequestsInBytes(100);
+        checkAllRequestsComplete();
+    }
+
+    @Test
+    public void testThrowOnOverload() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int)");
+        String query = String.format("INSERT INTO %s.%s (k, v) VALUES (0, 0)", KEYSPACE, currentTable());
+        long overloaded = ClientMetrics.instance.overloadedRequests.getCount();
+
+        try (SimpleClient client = new SimpleClient(nativeAddr.getHostAddress(), nativePort, Server.VERSION_4))
+        {
+            client.connect(false);
+            client.execute(new QueryMessage(query, QueryOptions.DEFAULT));
+
+            DatabaseDescriptor.setNativeTransportThrowOnOverload(true);
+            DatabaseDescriptor.setNativeTransportMaxConcurrentRequestsInBytesPerConnection(1);
+            try
+            {
+                client.execute(new QueryMessage(query, QueryOptions.DEFAULT));
+                fail("Expected an overloaded error");
+            }
+            catch (RuntimeException e)
+            {
+                assertTrue(e.getCause() instanceof OverloadedException);
+            }
+            assertEquals(overloaded + 1, ClientMetrics.instance.overloadedRequests.getCount());
+
+            // the connection keeps working once under the limit again
+            DatabaseDescriptor.setNativeTransportMaxConcurrentRequestsInBytesPerConnection(-1);
+            client.execute(new QueryMessage(query, QueryOptions.DEFAULT));
+        }
+    }
+
+    private void checkAllRequestsComplete() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int)");
+        Session session = sessionNet(Server.CURRENT_VERSION);
+
+        PreparedStatement insert = session.prepare(String.format("INSERT INTO %s.%s (k, v) VALUES (?, ?)", KEYSPACE, currentTable()));
+        List<ResultSetFuture> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++)
+            futures.add(session.executeAsync(insert.bind(i, i)));
+        for (ResultSetFuture future : futures)
+            future.getUninterruptibly();
+        assertEquals(200, execute("SELECT * FROM %s").size());
+
+        // every request has given its bytes back and no connection is left paused
+        long deadline = System.currentTimeMillis() + 10000;
+        while ((ClientMetrics.instance.inflightRequestBytes.getCount() != 0 || ClientMetrics.instance.pausedConnections.getCount() != 0)
+               && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertEquals(0, ClientMetrics.instance.inflightRequestBytes.getCount());
+        assertEquals(0, ClientMetrics.instance.pausedConnections.getCount());
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import org.apache.cassandra.io.sstable.format.big.BigFormat;
+import org.apache.cassandra.io.sstable.format.trie.TrieFormat;
+import org.apache.cassandra.io.util.DataOutputBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BlockedBloomFilterTest
+{
+    @Test
+    public void testOne()
+    {
+        try (IFilter filter = FilterFactory.getFilter(10000L, 0.01, true, false, true))
+        {
+            assertTrue(filter instanceof BlockedBloomFilter);
+            filter.add(FilterTestHelper.bytes("a"));
+            assertTrue(filter.isPresent(FilterTestHelper.bytes("a")));
+            assertFalse(filter.isPresent(FilterTestHelper.bytes("b")));
+        }
+    }
+
+    @Test
+    public void testSerialize() throws IOException
+    {
+        try (IFilter filter = FilterFactory.getFilter(10000L, 0.01, true, false, true))
+        {
+            for (int i = 0; i < 1000; i++)
+                filter.add(FilterTestHelper.bytes("key" + i));
+
+            DataOutputBuffer out = new DataOutputBuffer();
+            FilterFactory.serialize(filter, out);
+            assertEquals(filter.serializedSize(), out.getLength());
+
+            ByteArrayInputStream in = new ByteArrayInputStream(out.getData(), 0, out.getLength());
+            try (IFilter deserialized = FilterFactory.deserialize(new DataInputStream(in), true, false, true))
+            {
+                assertTrue(deserialized instanceof BlockedBloomFilter);
+                for (int i = 0; i < 1000; i++)
+                    assertTrue(deserialized.isPresent(FilterTestHelper.bytes("key" + i)));
+                assertFalse(deserialized.isPresent(FilterTestHelper.bytes("b")));
+            }
+        }
+    }
+
+    @Test
+    public void testProbesInOneBlock()
+    {
+        try (BlockedBloomFilter filter = (BlockedBloomFilter) FilterFactory.getFilter(100000L, 0.01, false, false, true))
+        {
+            for (int i = 0; i < 100; i++)
+            {
+                filter.clear();
+                filter.add(FilterTestHelper.bytes("key" + i));
+
+                long first = -1, last = -1;
+                int set = 0;
+                for (long bit = 0; bit < filter.bitset.capacity(); bit++)
+                {
+                    if (filter.bitset.get(bit))
+                    {
+                        if (first < 0)
+                            first = bit;
+                        last = bit;
+                        set++;
+                    }
+                }
+                assertTrue(set > 0 && set <= filter.hashCount);
+                assertEquals(first / BlockedBloomFilter.BLOCK_BITS, last / BlockedBloomFilter.BLOCK_BITS);
+            }
+        }
+    }
+
+    @Test
+    public void testFalsePositives()
+    {
+        for (double fpChance : new double[]{ 0.1, 0.01 })
+        {
+            BloomCalculations.BloomSpecification spec = BloomCalculations.computeBlockedBloomSpec(fpChance);
+            double expected = BloomCalculations.blockedProbs[spec.bucketsPerElement][spec.K];
+            assertTrue(expected <= fpChance);
+
+            try (IFilter filter = FilterFactory.getFilter(FilterTestHelper.ELEMENTS, fpChance, true, false, true))
+            {
+                ResetableIterator<ByteBuffer> keys = FilterTestHelper.randomKeys();
+                while (keys.hasNext())
+                    filter.add(FilterTestHelper.wrap(keys.next()));
+
+                keys.reset();
+                while (keys.hasNext())
+                    assertTrue(filter.isPresent(FilterTestHelper.wrap(keys.next())));
+
+                int falsePositives = 0;
+                ResetableIterator<ByteBuffer> others = FilterTestHelper.randomKeys2();
+                while (others.hasNext())
+                {
+                    if (filter.isPresent(FilterTestHelper.wrap(others.next())))
+                        falsePositives++;
+                }
+                double ratio = falsePositives / (others.size() * expected);
+                assertTrue("false positive ratio " + ratio + " for " + fpChance, ratio < 1.3);
+            }
+        }
+    }
+
+    @Test
+    public void testSpecification()
+    {
+        // a blocked filter needs at most a couple more bits per element than a standard one
+        for (double fpChance : new double[]{ 0.1, 0.01, 0.001, 0.0001 })
+        {
+            BloomCalculations.BloomSpecification blocked = BloomCalculations.computeBlockedBloomSpec(fpChance);
+            BloomCalculations.BloomSpecification standard = BloomCalculations.computeBloomSpec(BloomCalculations.probs.length - 1, fpChance);
+            assertTrue(blocked.toString(), BloomCalculations.blockedProbs[blocked.bucketsPerElement][blocked.K] <= fpChance);
+            assertTrue(blocked + " vs " + standard, blocked.bucketsPerElement <= standard.bucketsPerElement + 3);
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testBlockedLimits()
+    {
+        BloomCalculations.computeBlockedBloomSpec(1e-7);
+    }
+
+    @Test
+    public void testVersions()
+    {
+        assertTrue(BigFormat.latestVersion.hasBlockedBloomFilter());
+        assertFalse(BigFormat.instance.getVersion("ma").hasBlockedBloomFilter());
+        assertTrue(TrieFormat.latestVersion.hasBlockedBloomFilter());
+        assertFalse(TrieFormat.instance.getVersion("aa").hasBlockedBloomFilter());
+    }
+}
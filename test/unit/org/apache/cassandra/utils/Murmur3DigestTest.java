@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class Murmur3DigestTest
+{
+    @Test
+    public void testSameAsMurmurHash()
+    {
+        Random random = new Random(42);
+        Murmur3Digest digest = new Murmur3Digest();
+        for (int length = 0; length < 200; length++)
+        {
+            byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+            byte[] expected = murmurHash(bytes);
+
+            // all at once
+            digest.update(bytes);
+            assertArrayEquals(expected, digest.digest());
+
+            // in pieces of random sizes, mixing the update methods
+            int offset = 0;
+            while (offset < length)
+            {
+                int size = Math.min(random.nextInt(40), length - offset);
+                switch (random.nextInt(4))
+                {
+                    case 0:
+                        digest.update(bytes, offset, size);
+                        break;
+                    case 1:
+                        for (int i = 0; i < size; i++)
+                            digest.update(bytes[offset + i]);
+                        break;
+                    case 2:
+                        digest.update(ByteBuffer.wrap(bytes, offset, size));
+                        break;
+                    default:
+                        ByteBuffer direct = ByteBuffer.allocateDirect(size).order(random.nextBoolean() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+                        direct.put(bytes, offset, size).flip();
+                        digest.update(direct);
+                }
+                offset += size;
+            }
+            assertArrayEquals(expected, digest.digest());
+        }
+    }
+
+    private static byte[] murmurHash(byte[] bytes)
+    {
+        long[] hash = new long[2];
+        MurmurHash.hash3_x64_128(ByteBuffer.wrap(bytes), 0, bytes.length, 0, hash);
+        ByteBuffer result = ByteBuffer.allocate(16);
+        result.putLong(hash[0]).putLong(hash[1]);
+        return result.array();
+    }
+}